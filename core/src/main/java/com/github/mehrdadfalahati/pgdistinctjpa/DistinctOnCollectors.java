@@ -0,0 +1,282 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+
+/**
+ * {@link Collector}s with DISTINCT ON semantics for data already in memory, e.g. rows from another source or test
+ * fixtures: the first element of every key under a comparator, like {@code SELECT DISTINCT ON (key) ... ORDER BY key,
+ * order}. The result is sorted by the comparator, which should therefore start with the key, as PostgreSQL requires
+ * of the ORDER BY. Elements the comparator considers equal are resolved in encounter order, also for parallel streams.
+ * <pre>{@code
+ * List<Event> latest = events.stream().collect(DistinctOnCollectors.firstPerLongKey(Event::getUserId,
+ *         Comparator.comparingLong(Event::getUserId).thenComparing(Event::getCreatedAt, Comparator.reverseOrder())));
+ * }</pre>
+ * The {@code int} and {@code long} variants keep the first elements in open-addressing hash tables on primitive keys,
+ * so no key is boxed and no entry object is allocated per group.
+ */
+public final class DistinctOnCollectors {
+
+    private DistinctOnCollectors() {
+    }
+
+    /**
+     * The first element per key under {@code order}, keys compared with {@code equals}.
+     */
+    public static <T, K> Collector<T, ?, List<T>> firstPerKey(Function<? super T, ? extends K> key,
+                                                             Comparator<? super T> order) {
+        return Collector.<T, ObjectKeyed<T, K>, List<T>>of(
+                () -> new ObjectKeyed<>(key, order),
+                ObjectKeyed::add,
+                ObjectKeyed::combine,
+                table -> sorted(new ArrayList<>(table.first.values()), order));
+    }
+
+    /**
+     * The first element per {@code int} key under {@code order}.
+     */
+    public static <T> Collector<T, ?, List<T>> firstPerIntKey(ToIntFunction<? super T> key, Comparator<? super T> order) {
+        return Collector.<T, IntKeyed<T>, List<T>>of(
+                () -> new IntKeyed<>(key, order),
+                IntKeyed::add,
+                IntKeyed::combine,
+                table -> sorted(table.values(), order));
+    }
+
+    /**
+     * The first element per {@code long} key under {@code order}.
+     */
+    public static <T> Collector<T, ?, List<T>> firstPerLongKey(ToLongFunction<? super T> key, Comparator<? super T> order) {
+        return Collector.<T, LongKeyed<T>, List<T>>of(
+                () -> new LongKeyed<>(key, order),
+                LongKeyed::add,
+                LongKeyed::combine,
+                table -> sorted(table.values(), order));
+    }
+
+    private static <T> List<T> sorted(List<T> values, Comparator<? super T> order) {
+        values.sort(order);
+        return values;
+    }
+
+    /**
+     * Whether {@code candidate} replaces {@code current}: it sorts first, or sorts equal and came first.
+     */
+    private static <T> boolean wins(Comparator<? super T> order, T candidate, T current, boolean candidateCameFirst) {
+        int comparison = order.compare(candidate, current);
+        return comparison < 0 || comparison == 0 && candidateCameFirst;
+    }
+
+    // the 64-bit golden ratio, spreads consecutive keys over the table
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static final class ObjectKeyed<T, K> {
+        private final Function<? super T, ? extends K> key;
+        private final Comparator<? super T> order;
+        private final Map<K, T> first = new HashMap<>();
+
+        ObjectKeyed(Function<? super T, ? extends K> key, Comparator<? super T> order) {
+            this.key = key;
+            this.order = order;
+        }
+
+        void add(T element) {
+            offer(key.apply(element), element, false);
+        }
+
+        private void offer(K k, T element, boolean cameFirst) {
+            T current = first.putIfAbsent(k, element);
+            if (current != null && wins(order, element, current, cameFirst)) {
+                first.put(k, element);
+            }
+        }
+
+        ObjectKeyed<T, K> combine(ObjectKeyed<T, K> right) {
+            if (first.size() >= right.first.size()) {
+                right.first.forEach((k, element) -> offer(k, element, false));
+                return this;
+            }
+            first.forEach((k, element) -> right.offer(k, element, true));
+            return right;
+        }
+    }
+
+    /**
+     * Linear probing table from {@code int} keys to the first element; a slot is free while its value is null.
+     */
+    private static final class IntKeyed<T> {
+        private final ToIntFunction<? super T> key;
+        private final Comparator<? super T> order;
+        private int[] keys = new int[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        IntKeyed(ToIntFunction<? super T> key, Comparator<? super T> order) {
+            this.key = key;
+            this.order = order;
+        }
+
+        void add(T element) {
+            offer(key.applyAsInt(element), element, false);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void offer(int k, T element, boolean cameFirst) {
+            if (element == null) {
+                throw new NullPointerException("DISTINCT ON element is null");
+            }
+            int mask = values.length - 1;
+            int i = slot(k, mask);
+            while (values[i] != null) {
+                if (keys[i] == k) {
+                    if (wins(order, element, (T) values[i], cameFirst)) {
+                        values[i] = element;
+                    }
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = k;
+            values[i] = element;
+            // load factor 1/2
+            if (++size > values.length >>> 1) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = values.length - 1;
+            for (int j = 0; j < oldValues.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        IntKeyed<T> combine(IntKeyed<T> right) {
+            IntKeyed<T> into = size >= right.size ? this : right;
+            IntKeyed<T> from = into == this ? right : this;
+            for (int j = 0; j < from.values.length; j++) {
+                if (from.values[j] != null) {
+                    into.offer(from.keys[j], (T) from.values[j], from == this);
+                }
+            }
+            return into;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> values() {
+            List<T> result = new ArrayList<>(size);
+            for (Object value : values) {
+                if (value != null) {
+                    result.add((T) value);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Linear probing table from {@code long} keys to the first element; a slot is free while its value is null.
+     */
+    private static final class LongKeyed<T> {
+        private final ToLongFunction<? super T> key;
+        private final Comparator<? super T> order;
+        private long[] keys = new long[16];
+        private Object[] values = new Object[16];
+        private int size;
+
+        LongKeyed(ToLongFunction<? super T> key, Comparator<? super T> order) {
+            this.key = key;
+            this.order = order;
+        }
+
+        void add(T element) {
+            offer(key.applyAsLong(element), element, false);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void offer(long k, T element, boolean cameFirst) {
+            if (element == null) {
+                throw new NullPointerException("DISTINCT ON element is null");
+            }
+            int mask = values.length - 1;
+            int i = slot(k, mask);
+            while (values[i] != null) {
+                if (keys[i] == k) {
+                    if (wins(order, element, (T) values[i], cameFirst)) {
+                        values[i] = element;
+                    }
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = k;
+            values[i] = element;
+            if (++size > values.length >>> 1) {
+                resize();
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldValues.length * 2];
+            int mask = values.length - 1;
+            for (int j = 0; j < oldValues.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = slot(oldKeys[j], mask);
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        LongKeyed<T> combine(LongKeyed<T> right) {
+            LongKeyed<T> into = size >= right.size ? this : right;
+            LongKeyed<T> from = into == this ? right : this;
+            for (int j = 0; j < from.values.length; j++) {
+                if (from.values[j] != null) {
+                    into.offer(from.keys[j], (T) from.values[j], from == this);
+                }
+            }
+            return into;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> values() {
+            List<T> result = new ArrayList<>(size);
+            for (Object value : values) {
+                if (value != null) {
+                    result.add((T) value);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Maps DISTINCT ON rows straight to a record or DTO instead of a managed entity: only the projected columns are
+ * selected, and every row is built by one constructor call through a {@link MethodHandle} prepared once per type.
+ *
+ * <pre>{@code
+ * record DepartmentTopSalary(String department, String name, Integer salary) {}
+ *
+ * List<DepartmentTopSalary> top = executor.list(session, spec, DistinctOnProjection.of(DepartmentTopSalary.class));
+ * }</pre>
+ *
+ * Record components are mapped to snake_case columns ({@code hireDate} to {@code hire_date}). Other names, or DTO
+ * classes, use {@link #of(Class, String...)}. Instances are immutable and thread-safe.
+ */
+public final class DistinctOnProjection<R> {
+
+    private static final ClassValue<DistinctOnProjection<?>> RECORD_PROJECTIONS = new ClassValue<DistinctOnProjection<?>>() {
+        @Override
+        protected DistinctOnProjection<?> computeValue(Class<?> type) {
+            RecordComponent[] components = type.getRecordComponents();
+            String[] columns = new String[components.length];
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                columns[i] = toColumnName(components[i].getName());
+                parameterTypes[i] = components[i].getType();
+            }
+            try {
+                return new DistinctOnProjection<>(type, columns, type.getDeclaredConstructor(parameterTypes));
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Record " + type.getName() + " has no canonical constructor", e);
+            }
+        }
+    };
+
+    private final Class<R> type;
+    private final List<String> columns;
+    private final List<Class<?>> columnTypes;
+    private final String selectList;
+    private final MethodHandle constructor;
+
+    private DistinctOnProjection(Class<R> type, String[] columns, Constructor<?> constructor) {
+        this.type = type;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns.clone()));
+        this.columnTypes = Collections.unmodifiableList(Arrays.asList(constructor.getParameterTypes()));
+        this.selectList = String.join(", ", columns);
+        try {
+            constructor.setAccessible(true);
+            // (Object[]) -> Object, so every row is a single invokeExact without boxing the arguments again
+            this.constructor = MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, columns.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalArgumentException("Cannot access the constructor of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Projection onto a record, selecting one snake_case column per record component. Cached per record type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R extends Record> DistinctOnProjection<R> of(Class<R> recordType) {
+        return (DistinctOnProjection<R>) RECORD_PROJECTIONS.get(recordType);
+    }
+
+    /**
+     * Projection onto the constructor of {@code type} taking exactly {@code columns.length} parameters, which receive
+     * the columns in the given order. Columns may be SQL expressions with an alias.
+     *
+     * @throws IllegalArgumentException if there is no or more than one such constructor
+     */
+    public static <R> DistinctOnProjection<R> of(Class<R> type, String... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("Projection requires at least 1 column");
+        }
+        Constructor<?> match = null;
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (constructor.getParameterCount() == columns.length) {
+                if (match != null) {
+                    throw new IllegalArgumentException(type.getName() + " has several constructors with " + columns.length + " parameters");
+                }
+                match = constructor;
+            }
+        }
+        if (match == null) {
+            throw new IllegalArgumentException(type.getName() + " has no constructor with " + columns.length + " parameters");
+        }
+        return new DistinctOnProjection<>(type, columns, match);
+    }
+
+    public Class<R> getType() {
+        return type;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Java type of every column, the constructor's parameter types.
+     */
+    public List<Class<?>> getColumnTypes() {
+        return columnTypes;
+    }
+
+    String getSelectList() {
+        return selectList;
+    }
+
+    /**
+     * Column name or alias under which a column is returned: the alias after {@code AS}, otherwise the column itself.
+     */
+    String getColumnAlias(int index) {
+        String column = columns.get(index);
+        int as = column.toLowerCase(Locale.ROOT).lastIndexOf(" as ");
+        return as >= 0 ? column.substring(as + 4).trim() : column;
+    }
+
+    /**
+     * Builds the instance for one row, the values in column order.
+     */
+    @SuppressWarnings("unchecked")
+    R map(Object[] row) {
+        try {
+            return (R) (Object) constructor.invokeExact(row);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create " + type.getName(), e);
+        }
+    }
+
+    static String toColumnName(String property) {
+        StringBuilder column = new StringBuilder(property.length() + 4);
+        for (int i = 0; i < property.length(); i++) {
+            char c = property.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    column.append('_');
+                }
+                column.append(Character.toLowerCase(c));
+            } else {
+                column.append(c);
+            }
+        }
+        return column.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctOnProjection{type=" + type.getName() + ", columns=" + columns + '}';
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Container of repeated {@link DistinctOnQuery} declarations.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface DistinctOnQueries {
+
+    DistinctOnQuery[] value();
+}
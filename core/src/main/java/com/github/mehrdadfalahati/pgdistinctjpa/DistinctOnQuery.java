@@ -0,0 +1,71 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a DISTINCT ON query that the {@code DistinctOnProcessor} of the Hibernate 5 module renders at compile time
+ * into the class {@code <Type>_DistinctOn}, next to the annotated type:
+ *
+ * <pre>{@code
+ * @Entity
+ * @Table(name = "employees")
+ * @DistinctOnQuery(name = "topSalaryPerDepartment", columns = "department", orderBy = {"department", "salary DESC"})
+ * public class Employee { ... }
+ *
+ * List<Employee> top = Employee_DistinctOn.topSalaryPerDepartment(session).getResultList();
+ * }</pre>
+ *
+ * The generated class holds the SQL as a constant ({@code TOP_SALARY_PER_DEPARTMENT}) and a method creating the
+ * native query; with a {@link #resultType() record result type} also the scalar mappings and a mapper that calls the
+ * record constructor directly. Invalid declarations, e.g. an ORDER BY that does not start with the DISTINCT ON
+ * columns, fail the compilation.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(DistinctOnQueries.class)
+public @interface DistinctOnQuery {
+
+    /**
+     * Java identifier of the generated method, the constant is its UPPER_SNAKE_CASE form.
+     */
+    String name();
+
+    /**
+     * The DISTINCT ON columns.
+     */
+    String[] columns();
+
+    /**
+     * ORDER BY items, each a column optionally followed by {@code ASC} or {@code DESC}. Defaults to the DISTINCT ON
+     * columns.
+     */
+    String[] orderBy() default {};
+
+    /**
+     * Raw SQL filter, may contain named parameters.
+     */
+    String where() default "";
+
+    /**
+     * Rows per group, see {@link DistinctOnSpec.Builder#topNPerGroup(int)}.
+     */
+    int rowsPerGroup() default 1;
+
+    DistinctOnStrategy strategy() default DistinctOnStrategy.DISTINCT_ON;
+
+    /**
+     * The table, by default the {@code @Table} name of the annotated entity.
+     */
+    String table() default "";
+
+    /**
+     * A record to project onto, one snake_case column per component. By default the annotated entity is selected.
+     */
+    Class<?> resultType() default void.class;
+}
@@ -0,0 +1,293 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Logical "first row per group" request: the table, the DISTINCT ON columns, the ORDER BY that picks the first row
+ * of every group and an optional filter. A {@link DistinctOnStrategy} turns it into SQL.
+ * With {@link Builder#topNPerGroup(int)} it asks for the first N rows of every group instead.
+ * <p>
+ * The ORDER BY must start with the DISTINCT ON columns (PostgreSQL's prefix rule), this is checked by {@link Builder#build()}.
+ * When no ORDER BY is given, the distinct columns are used in ascending order.
+ *
+ * <pre>{@code
+ * DistinctOnSpec spec = DistinctOnSpec.from("employees")
+ *         .distinctOn("department")
+ *         .orderBy("department")
+ *         .orderByDesc("salary")
+ *         .build();
+ * }</pre>
+ */
+public final class DistinctOnSpec {
+
+    // a named or positional parameter, but not a :: cast
+    private static final Pattern PARAMETER = Pattern.compile("(?<!:):[A-Za-z_]|\\?");
+
+    private final String table;
+    private final List<String> distinctColumns;
+    private final List<SortKey> orderBy;
+    private final String where;
+    private final int rowsPerGroup;
+
+    private DistinctOnSpec(Builder builder) {
+        this.table = builder.table;
+        this.distinctColumns = Collections.unmodifiableList(new ArrayList<>(builder.distinctColumns));
+        this.orderBy = Collections.unmodifiableList(new ArrayList<>(builder.orderBy));
+        this.where = builder.where;
+        this.rowsPerGroup = builder.rowsPerGroup;
+    }
+
+    public static Builder from(String table) {
+        return new Builder(table);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public List<String> getDistinctColumns() {
+        return distinctColumns;
+    }
+
+    /**
+     * The full ORDER BY, starting with the DISTINCT ON columns.
+     */
+    public List<SortKey> getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * The leading ORDER BY keys that cover the DISTINCT ON columns, in ORDER BY order.
+     */
+    public List<SortKey> getDistinctOrder() {
+        return orderBy.subList(0, distinctColumns.size());
+    }
+
+    /**
+     * The ORDER BY keys after the DISTINCT ON columns, they pick the first row within a group.
+     */
+    public List<SortKey> getTieBreakers() {
+        return orderBy.subList(distinctColumns.size(), orderBy.size());
+    }
+
+    /**
+     * Raw SQL predicate or {@code null}. It may contain named parameters, bound on the query created from this spec.
+     */
+    public String getWhere() {
+        return where;
+    }
+
+    /**
+     * Number of rows returned per group, 1 for a plain DISTINCT ON request.
+     */
+    public int getRowsPerGroup() {
+        return rowsPerGroup;
+    }
+
+    /**
+     * Whether the filter has parameters, which statements without binding (triggers, COPY) cannot take.
+     */
+    boolean hasParameters() {
+        return where != null && PARAMETER.matcher(where).find();
+    }
+
+    /**
+     * This spec with the predicate added to its filter.
+     */
+    DistinctOnSpec and(String predicate) {
+        return toBuilder().where(where != null ? "(" + where + ") AND " + predicate : predicate).build();
+    }
+
+    public Builder toBuilder() {
+        Builder builder = new Builder(table);
+        builder.distinctColumns.addAll(distinctColumns);
+        builder.orderBy.addAll(orderBy);
+        builder.where = where;
+        builder.rowsPerGroup = rowsPerGroup;
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DistinctOnSpec)) {
+            return false;
+        }
+        DistinctOnSpec other = (DistinctOnSpec) o;
+        return table.equals(other.table)
+                && distinctColumns.equals(other.distinctColumns)
+                && orderBy.equals(other.orderBy)
+                && Objects.equals(where, other.where)
+                && rowsPerGroup == other.rowsPerGroup;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(table, distinctColumns, orderBy, where, rowsPerGroup);
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctOnSpec{" +
+                "table='" + table + '\'' +
+                ", distinctOn=" + distinctColumns +
+                ", orderBy=" + orderBy +
+                (where != null ? ", where='" + where + '\'' : "") +
+                (rowsPerGroup > 1 ? ", rowsPerGroup=" + rowsPerGroup : "") +
+                '}';
+    }
+
+    /**
+     * One ORDER BY item.
+     */
+    public static final class SortKey {
+        private final String column;
+        private final boolean descending;
+
+        private SortKey(String column, boolean descending) {
+            this.column = requireText(column, "ORDER BY column");
+            this.descending = descending;
+        }
+
+        public static SortKey asc(String column) {
+            return new SortKey(column, false);
+        }
+
+        public static SortKey desc(String column) {
+            return new SortKey(column, true);
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public boolean isDescending() {
+            return descending;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SortKey)) {
+                return false;
+            }
+            SortKey other = (SortKey) o;
+            return descending == other.descending && column.equals(other.column);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(column, descending);
+        }
+
+        @Override
+        public String toString() {
+            return descending ? column + " DESC" : column;
+        }
+    }
+
+    public static final class Builder {
+        private final String table;
+        private final List<String> distinctColumns = new ArrayList<>();
+        private final List<SortKey> orderBy = new ArrayList<>();
+        private String where;
+        private int rowsPerGroup = 1;
+
+        private Builder(String table) {
+            this.table = requireText(table, "Table");
+        }
+
+        public Builder distinctOn(String... columns) {
+            for (String column : columns) {
+                distinctColumns.add(requireText(column, "DISTINCT ON column"));
+            }
+            return this;
+        }
+
+        public Builder orderBy(String column) {
+            orderBy.add(SortKey.asc(column));
+            return this;
+        }
+
+        public Builder orderByDesc(String column) {
+            orderBy.add(SortKey.desc(column));
+            return this;
+        }
+
+        public Builder orderBy(SortKey key) {
+            orderBy.add(Objects.requireNonNull(key, "key"));
+            return this;
+        }
+
+        public Builder where(String predicate) {
+            this.where = predicate == null || predicate.trim().isEmpty() ? null : predicate.trim();
+            return this;
+        }
+
+        /**
+         * Returns the first {@code n} rows of every group, in ORDER BY order, instead of only the first one.
+         */
+        public Builder topNPerGroup(int n) {
+            if (n < 1) {
+                throw new IllegalArgumentException("Rows per group must be positive: " + n);
+            }
+            this.rowsPerGroup = n;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if no DISTINCT ON column is given or the ORDER BY does not start with them
+         */
+        public DistinctOnSpec build() {
+            if (distinctColumns.isEmpty()) {
+                throw new IllegalArgumentException("DISTINCT ON requires at least 1 column");
+            }
+            if (orderBy.isEmpty()) {
+                for (String column : distinctColumns) {
+                    orderBy.add(SortKey.asc(column));
+                }
+            }
+            checkOrderByPrefix(distinctColumns, orderBy);
+            return new DistinctOnSpec(this);
+        }
+    }
+
+    /**
+     * PostgreSQL requires the DISTINCT ON expressions to match the leftmost ORDER BY expressions, in any order.
+     */
+    static void checkOrderByPrefix(List<String> distinctColumns, List<SortKey> orderBy) {
+        if (orderBy.size() < distinctColumns.size()) {
+            throw new IllegalArgumentException("ORDER BY " + orderBy + " must start with the DISTINCT ON columns " + distinctColumns);
+        }
+        List<String> remaining = new ArrayList<>();
+        for (String column : distinctColumns) {
+            remaining.add(normalize(column));
+        }
+        for (int i = 0; i < distinctColumns.size(); i++) {
+            if (!remaining.remove(normalize(orderBy.get(i).getColumn()))) {
+                throw new IllegalArgumentException("ORDER BY " + orderBy + " must start with the DISTINCT ON columns "
+                        + distinctColumns + ", found " + orderBy.get(i).getColumn() + " at position " + (i + 1));
+            }
+        }
+    }
+
+    private static String normalize(String column) {
+        return column.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String requireText(String value, String name) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(name + " must not be empty");
+        }
+        return value.trim();
+    }
+}
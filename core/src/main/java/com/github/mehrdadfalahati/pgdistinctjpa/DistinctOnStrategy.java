@@ -0,0 +1,351 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+
+import java.util.List;
+
+/**
+ * SQL formulations of the same {@link DistinctOnSpec}. Every strategy selects all columns of the table
+ * ({@code *}), so the result maps onto the same entity as a plain DISTINCT ON query: one row per group,
+ * ordered by the DISTINCT ON columns.
+ * <p>
+ * Top-N-per-group specs ({@link DistinctOnSpec#getRowsPerGroup()} greater than 1) return up to N rows per group,
+ * ordered by the full ORDER BY. {@link #LATERAL} is the natural fit for them on NOT NULL group keys,
+ * {@link #DISTINCT_ON} cannot express them.
+ */
+public enum DistinctOnStrategy {
+
+    /**
+     * {@code SELECT DISTINCT ON (...) * FROM table ORDER BY ...}. One pass over the sorted table or a matching index.
+     * Only for specs with one row per group.
+     */
+    DISTINCT_ON {
+        @Override
+        public String render(DistinctOnSpec spec, String selectList) {
+            if (spec.getRowsPerGroup() > 1) {
+                throw new IllegalArgumentException("DISTINCT_ON returns one row per group, use LATERAL or ROW_NUMBER for "
+                        + spec.getRowsPerGroup() + " rows per group");
+            }
+            StringBuilder sql = new StringBuilder(128).append("SELECT DISTINCT ON (");
+            appendList(sql, spec.getDistinctColumns());
+            sql.append(") ").append(selectList != null ? selectList : "*").append(" FROM ").append(spec.getTable());
+            appendWhere(sql, spec.getWhere(), null);
+            sql.append(" ORDER BY ");
+            appendOrderBy(sql, spec.getOrderBy());
+            return sql.toString();
+        }
+    },
+
+    /**
+     * Loose index scan: a recursive CTE walks the distinct keys with one index probe per group, then a LATERAL
+     * subquery fetches the first row of each group. Orders of magnitude faster than DISTINCT ON when there are few
+     * groups in a large table, provided a btree index leads with the distinct columns.
+     * <p>
+     * All DISTINCT ON columns must be sorted in the same direction (they are compared as one row value), and rows
+     * whose distinct columns are NULL are skipped, so use it on NOT NULL group keys.
+     */
+    SKIP_SCAN {
+        @Override
+        public String render(DistinctOnSpec spec, String selectList) {
+            List<SortKey> keys = spec.getDistinctOrder();
+            boolean descending = keys.get(0).isDescending();
+            for (SortKey key : keys) {
+                if (key.isDescending() != descending) {
+                    throw new IllegalArgumentException("SKIP_SCAN requires all DISTINCT ON columns to be sorted in the same direction: " + keys);
+                }
+            }
+
+            StringBuilder sql = new StringBuilder(512);
+            appendDistinctKeysCte(sql, spec, keys, descending);
+
+            // first row of every group, one index probe each
+            sql.append(" SELECT ").append(selectList != null ? selectList : "first_row.*").append(" FROM distinct_keys k CROSS JOIN LATERAL (SELECT * FROM ").append(spec.getTable());
+            appendWhere(sql, spec.getWhere(), keyEquals(keys));
+            sql.append(" ORDER BY ");
+            appendOrderBy(sql, spec.getOrderBy());
+            sql.append(" LIMIT ").append(spec.getRowsPerGroup()).append(") first_row ORDER BY ");
+            appendKeyOrder(sql, keys.size(), descending);
+            appendTieBreakerOrder(sql, spec);
+            return sql.toString();
+        }
+    },
+
+    /**
+     * {@code ROW_NUMBER() OVER (PARTITION BY ... ORDER BY ...)} in a subquery, keeping row numbers up to N.
+     * Sorts or index-scans the whole (filtered) table like DISTINCT ON, plus the window evaluation. The extra
+     * {@code distinct_on_rn} column is ignored by entity mapping.
+     */
+    ROW_NUMBER {
+        @Override
+        public String render(DistinctOnSpec spec, String selectList) {
+            StringBuilder sql = new StringBuilder(256).append("SELECT ").append(selectList != null ? selectList : "*")
+                    .append(" FROM (SELECT *, ROW_NUMBER() OVER (PARTITION BY ");
+            appendList(sql, spec.getDistinctColumns());
+            if (!spec.getTieBreakers().isEmpty()) {
+                sql.append(" ORDER BY ");
+                appendOrderBy(sql, spec.getTieBreakers());
+            }
+            sql.append(") AS distinct_on_rn FROM ").append(spec.getTable());
+            appendWhere(sql, spec.getWhere(), null);
+            if (spec.getRowsPerGroup() > 1) {
+                sql.append(") ranked WHERE distinct_on_rn <= ").append(spec.getRowsPerGroup()).append(" ORDER BY ");
+                appendOrderBy(sql, spec.getOrderBy());
+            } else {
+                sql.append(") ranked WHERE distinct_on_rn = 1 ORDER BY ");
+                appendOrderBy(sql, spec.getDistinctOrder());
+            }
+            return sql.toString();
+        }
+    },
+
+    /**
+     * {@code SELECT DISTINCT} of the group keys (a hash aggregate, no sort), then a LATERAL subquery per key fetching
+     * its first row with an index probe. Unlike {@link #SKIP_SCAN} the keys are collected by one scan, but mixed sort
+     * directions are supported. Rows whose distinct columns are NULL are skipped.
+     * <p>
+     * For top-N-per-group specs on NOT NULL keys this is usually the cheapest: {@code LIMIT n} in the LATERAL subquery
+     * reads N index entries per group instead of sorting the whole table.
+     */
+    LATERAL {
+        @Override
+        public String render(DistinctOnSpec spec, String selectList) {
+            List<SortKey> keys = spec.getDistinctOrder();
+            StringBuilder sql = new StringBuilder(256).append("SELECT ").append(selectList != null ? selectList : "first_row.*")
+                    .append(" FROM (SELECT DISTINCT ");
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(keys.get(i).getColumn()).append(" AS k").append(i + 1);
+            }
+            sql.append(" FROM ").append(spec.getTable());
+            appendWhere(sql, spec.getWhere(), null);
+            sql.append(") k CROSS JOIN LATERAL (SELECT * FROM ").append(spec.getTable());
+            appendWhere(sql, spec.getWhere(), keyEquals(keys));
+            sql.append(" ORDER BY ");
+            appendOrderBy(sql, spec.getOrderBy());
+            sql.append(" LIMIT ").append(spec.getRowsPerGroup()).append(") first_row ORDER BY ");
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append("k.k").append(i + 1);
+                if (keys.get(i).isDescending()) {
+                    sql.append(" DESC");
+                }
+            }
+            appendTieBreakerOrder(sql, spec);
+            return sql.toString();
+        }
+    };
+
+    /**
+     * Name prefix of the key parameters and key columns of {@link #renderPage}.
+     */
+    static final String KEY_PARAMETER = "distinct_on_k";
+
+    /**
+     * Renders the native SQL for the given spec. Named parameters in the spec's filter are kept as they are.
+     *
+     * @throws IllegalArgumentException if this strategy cannot express the spec
+     */
+    public String render(DistinctOnSpec spec) {
+        return render(spec, null);
+    }
+
+    /**
+     * Renders the native SQL returning only the given select list (e.g. {@code "id, department, salary"}) instead of
+     * every column. The list is evaluated in the outermost query, against the columns of the table.
+     *
+     * @param selectList SQL select list, or {@code null} for all columns
+     * @throws IllegalArgumentException if this strategy cannot express the spec
+     */
+    public abstract String render(DistinctOnSpec spec, String selectList);
+
+    /**
+     * Renders one page of at most {@code limit} groups for keyset pagination. With {@code afterKey} the groups start
+     * after the key bound to the parameters {@code :distinct_on_k1, ...}, see {@link #seekPredicate(List)}. The key of
+     * every row is returned in the extra columns {@code distinct_on_k1, ...}.
+     *
+     * @throws IllegalArgumentException if this strategy cannot express the spec or the spec has several rows per group
+     */
+    public String renderPage(DistinctOnSpec spec, boolean afterKey, int limit) {
+        if (spec.getRowsPerGroup() > 1) {
+            throw new IllegalArgumentException("Keyset pagination pages over groups and requires one row per group");
+        }
+        List<SortKey> keys = spec.getDistinctOrder();
+        DistinctOnSpec page = spec;
+        if (afterKey) {
+            String seek = seekPredicate(keys);
+            page = spec.toBuilder().where(spec.getWhere() != null ? "(" + spec.getWhere() + ") AND " + seek : seek).build();
+        }
+        StringBuilder sql = new StringBuilder(256).append("SELECT page.*");
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(", ").append(keys.get(i).getColumn()).append(" AS ").append(KEY_PARAMETER).append(i + 1);
+        }
+        sql.append(" FROM (").append(render(page)).append(" LIMIT ").append(limit).append(") page ORDER BY ");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(KEY_PARAMETER).append(i + 1);
+            if (keys.get(i).isDescending()) {
+                sql.append(" DESC");
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Rows after the key {@code (:distinct_on_k1, ...)} in ORDER BY order: a single row-value comparison when all
+     * distinct columns sort in the same direction (it can start an index scan), otherwise the expanded OR form.
+     */
+    static String seekPredicate(List<SortKey> keys) {
+        boolean descending = keys.get(0).isDescending();
+        boolean sameDirection = true;
+        for (SortKey key : keys) {
+            sameDirection &= key.isDescending() == descending;
+        }
+        StringBuilder seek = new StringBuilder("(");
+        if (sameDirection) {
+            appendList(seek, columns(keys));
+            seek.append(descending ? ") < (" : ") > (");
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    seek.append(", ");
+                }
+                seek.append(':').append(KEY_PARAMETER).append(i + 1);
+            }
+            return seek.append(')').toString();
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                seek.append(" OR ");
+            }
+            seek.append('(');
+            for (int j = 0; j < i; j++) {
+                seek.append(keys.get(j).getColumn()).append(" = :").append(KEY_PARAMETER).append(j + 1).append(" AND ");
+            }
+            seek.append(keys.get(i).getColumn()).append(keys.get(i).isDescending() ? " < :" : " > :")
+                    .append(KEY_PARAMETER).append(i + 1).append(')');
+        }
+        return seek.append(')').toString();
+    }
+
+    /**
+     * {@code WITH RECURSIVE distinct_keys (k1, ...)} yielding every distinct key in ORDER BY order: the anchor takes
+     * the first key, each recursive step the next key after the previous one.
+     */
+    static void appendDistinctKeysCte(StringBuilder sql, DistinctOnSpec spec, List<SortKey> keys, boolean descending) {
+        sql.append("WITH RECURSIVE distinct_keys (").append(keyAliases(keys.size(), null)).append(") AS ((SELECT ");
+        appendList(sql, columns(keys));
+        sql.append(" FROM ").append(spec.getTable());
+        appendWhere(sql, spec.getWhere(), null);
+        sql.append(" ORDER BY ");
+        appendOrderBy(sql, keys);
+
+        sql.append(" LIMIT 1) UNION ALL SELECT ").append(keyAliases(keys.size(), "next_key"));
+        sql.append(" FROM distinct_keys k CROSS JOIN LATERAL (SELECT ");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(keys.get(i).getColumn()).append(" AS k").append(i + 1);
+        }
+        sql.append(" FROM ").append(spec.getTable());
+        StringBuilder next = new StringBuilder("(");
+        appendList(next, columns(keys));
+        next.append(descending ? ") < (" : ") > (").append(keyAliases(keys.size(), "k")).append(')');
+        appendWhere(sql, spec.getWhere(), next.toString());
+        sql.append(" ORDER BY ");
+        appendOrderBy(sql, keys);
+        sql.append(" LIMIT 1) next_key)");
+    }
+
+    static List<String> columns(List<SortKey> keys) {
+        String[] columns = new String[keys.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = keys.get(i).getColumn();
+        }
+        return List.of(columns);
+    }
+
+    static String keyAliases(int count, String qualifier) {
+        StringBuilder aliases = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                aliases.append(", ");
+            }
+            if (qualifier != null) {
+                aliases.append(qualifier).append('.');
+            }
+            aliases.append('k').append(i);
+        }
+        return aliases.toString();
+    }
+
+    static String keyEquals(List<SortKey> keys) {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                condition.append(" AND ");
+            }
+            condition.append(keys.get(i).getColumn()).append(" = k.k").append(i + 1);
+        }
+        return condition.toString();
+    }
+
+    static void appendKeyOrder(StringBuilder sql, int count, boolean descending) {
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                sql.append(", ");
+            }
+            sql.append("k.k").append(i);
+            if (descending) {
+                sql.append(" DESC");
+            }
+        }
+    }
+
+    /**
+     * Keeps the rows of a group in ORDER BY order when there are several per group. The tie-breakers are left
+     * unqualified, they resolve against {@code first_row}.
+     */
+    static void appendTieBreakerOrder(StringBuilder sql, DistinctOnSpec spec) {
+        if (spec.getRowsPerGroup() > 1 && !spec.getTieBreakers().isEmpty()) {
+            sql.append(", ");
+            appendOrderBy(sql, spec.getTieBreakers());
+        }
+    }
+
+    static void appendList(StringBuilder sql, List<String> items) {
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(items.get(i));
+        }
+    }
+
+    /**
+     * Appends {@code WHERE} with the spec's filter and/or an extra condition, if there is any.
+     */
+    static void appendWhere(StringBuilder sql, String where, String condition) {
+        if (where != null && condition != null) {
+            sql.append(" WHERE (").append(where).append(") AND ").append(condition);
+        } else if (where != null) {
+            sql.append(" WHERE ").append(where);
+        } else if (condition != null) {
+            sql.append(" WHERE ").append(condition);
+        }
+    }
+
+    static void appendOrderBy(StringBuilder sql, List<SortKey> orderBy) {
+        for (int i = 0; i < orderBy.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(orderBy.get(i));
+        }
+    }
+}
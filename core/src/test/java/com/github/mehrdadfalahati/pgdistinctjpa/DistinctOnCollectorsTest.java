@@ -0,0 +1,135 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnCollectorsTest {
+
+    private record Row(int seq, long user, String department, int score) {
+    }
+
+    // DISTINCT ON (user) ... ORDER BY user, score DESC
+    private static final Comparator<Row> BY_USER_SCORE_DESC = Comparator.comparingLong(Row::user)
+            .thenComparing(Comparator.comparingInt(Row::score).reversed());
+
+    @Test
+    @DisplayName("First element per key under the comparator, sorted like the ORDER BY")
+    void testFirstPerKey() {
+        List<Row> rows = Arrays.asList(
+                new Row(0, 2, "b", 10),
+                new Row(1, 1, "a", 5),
+                new Row(2, 2, "b", 30),
+                new Row(3, 1, "a", 7),
+                new Row(4, 3, "c", 1));
+        List<Integer> expected = Arrays.asList(3, 2, 4);
+
+        assertEquals(expected, seqs(rows.stream().collect(DistinctOnCollectors.firstPerLongKey(Row::user, BY_USER_SCORE_DESC))));
+        assertEquals(expected, seqs(rows.stream().collect(DistinctOnCollectors.firstPerIntKey(row -> (int) row.user(), BY_USER_SCORE_DESC))));
+        assertEquals(expected, seqs(rows.stream().collect(DistinctOnCollectors.firstPerKey(Row::department,
+                Comparator.comparing(Row::department).thenComparing(Comparator.comparingInt(Row::score).reversed())))));
+        assertTrue(new ArrayList<Row>().stream().collect(DistinctOnCollectors.firstPerLongKey(Row::user, BY_USER_SCORE_DESC)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ties keep the element encountered first, sequential and parallel")
+    void testTies() {
+        List<Row> rows = random(200_000, 5_000, 3, 1);
+        List<Integer> expected = seqs(reference(rows, Row::user, BY_USER_SCORE_DESC));
+
+        assertEquals(expected, seqs(rows.stream().collect(DistinctOnCollectors.firstPerLongKey(Row::user, BY_USER_SCORE_DESC))));
+        assertEquals(expected, seqs(rows.parallelStream().collect(DistinctOnCollectors.firstPerLongKey(Row::user, BY_USER_SCORE_DESC))));
+        assertEquals(expected, seqs(rows.parallelStream().collect(DistinctOnCollectors.firstPerIntKey(row -> (int) row.user(), BY_USER_SCORE_DESC))));
+        assertEquals(expected, seqs(rows.parallelStream().collect(DistinctOnCollectors.firstPerKey(Row::user, BY_USER_SCORE_DESC))));
+    }
+
+    @Test
+    @DisplayName("Tables grow past many keys, including zero, negative and extreme keys")
+    void testManyKeys() {
+        List<Row> rows = new ArrayList<>(random(100_000, 60_000, 1000, 2));
+        rows.add(new Row(-1, 0, "z", 1));
+        rows.add(new Row(-2, Long.MIN_VALUE, "z", 1));
+        rows.add(new Row(-3, Long.MAX_VALUE, "z", 1));
+        rows.add(new Row(-4, -5, "z", 1));
+        rows.add(new Row(-5, 1L << 32, "z", 1));
+
+        assertEquals(seqs(reference(rows, Row::user, BY_USER_SCORE_DESC)),
+                seqs(rows.parallelStream().collect(DistinctOnCollectors.firstPerLongKey(Row::user, BY_USER_SCORE_DESC))));
+
+        Comparator<Row> byIntKey = Comparator.comparingInt((Row row) -> (int) row.user()).thenComparingInt(Row::score);
+        assertEquals(seqs(reference(rows, row -> (int) row.user(), byIntKey)),
+                seqs(rows.stream().collect(DistinctOnCollectors.firstPerIntKey(row -> (int) row.user(), byIntKey))));
+    }
+
+    @Test
+    @DisplayName("Combining partial results in either direction keeps encounter order")
+    void testCombiner() {
+        Collector<Row, Object, List<Row>> collector = cast(DistinctOnCollectors.firstPerIntKey(row -> (int) row.user(), BY_USER_SCORE_DESC));
+        Row left = new Row(0, 1, "a", 5);
+        Row right = new Row(1, 1, "a", 5);
+        Row other = new Row(2, 2, "a", 5);
+
+        // the smaller left table is merged into the larger right one, the left element must still win
+        Object small = collector.supplier().get();
+        collector.accumulator().accept(small, left);
+        Object large = collector.supplier().get();
+        collector.accumulator().accept(large, right);
+        collector.accumulator().accept(large, other);
+        assertEquals(Arrays.asList(0, 2), seqs(collector.finisher().apply(collector.combiner().apply(small, large))));
+
+        Object large2 = collector.supplier().get();
+        collector.accumulator().accept(large2, left);
+        collector.accumulator().accept(large2, other);
+        Object small2 = collector.supplier().get();
+        collector.accumulator().accept(small2, right);
+        assertEquals(Arrays.asList(0, 2), seqs(collector.finisher().apply(collector.combiner().apply(large2, small2))));
+    }
+
+    @Test
+    @DisplayName("Null elements are rejected")
+    void testNullElement() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(null);
+        assertThrows(NullPointerException.class, () -> rows.stream().collect(DistinctOnCollectors.firstPerLongKey(row -> 1L, (a, b) -> 0)));
+    }
+
+    /**
+     * DISTINCT ON by definition: stable sort, then the first row of every key.
+     */
+    private static <K> List<Row> reference(List<Row> rows, Function<Row, K> key, Comparator<Row> order) {
+        List<Row> sorted = new ArrayList<>(rows);
+        sorted.sort(order);
+        Set<K> seen = new HashSet<>();
+        return sorted.stream().filter(row -> seen.add(key.apply(row))).collect(Collectors.toList());
+    }
+
+    private static List<Row> random(int count, int users, int scores, long seed) {
+        Random random = new Random(seed);
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Row(i, random.nextInt(users) - users / 2, "d", random.nextInt(scores)));
+        }
+        return rows;
+    }
+
+    private static List<Integer> seqs(List<Row> rows) {
+        return rows.stream().map(Row::seq).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collector<Row, Object, List<Row>> cast(Collector<Row, ?, List<Row>> collector) {
+        return (Collector<Row, Object, List<Row>>) collector;
+    }
+}
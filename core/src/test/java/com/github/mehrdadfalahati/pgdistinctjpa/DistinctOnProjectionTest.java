@@ -0,0 +1,69 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnProjectionTest {
+
+    record TopSalary(String department, String name, Integer salary, String hireDate) {
+    }
+
+    static final class SalaryBand {
+        final String department;
+        final int band;
+
+        SalaryBand(String department, int band) {
+            this.department = department;
+            this.band = band;
+        }
+
+        SalaryBand(String department) {
+            this(department, 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Record components become snake_case columns")
+    void testRecordColumns() {
+        DistinctOnProjection<TopSalary> projection = DistinctOnProjection.of(TopSalary.class);
+
+        assertEquals(Arrays.asList("department", "name", "salary", "hire_date"), projection.getColumns());
+        assertEquals(Arrays.asList(String.class, String.class, Integer.class, String.class), projection.getColumnTypes());
+        assertEquals("department, name, salary, hire_date", projection.getSelectList());
+        assertSame(projection, DistinctOnProjection.of(TopSalary.class), "Record projections should be cached per type");
+    }
+
+    @Test
+    @DisplayName("Rows are mapped through the constructor")
+    void testMap() {
+        DistinctOnProjection<TopSalary> projection = DistinctOnProjection.of(TopSalary.class);
+
+        assertEquals(new TopSalary("Sales", "Alice", 90000, "2020-01-01"),
+                projection.map(new Object[]{"Sales", "Alice", 90000, "2020-01-01"}));
+    }
+
+    @Test
+    @DisplayName("DTO projection picks the constructor by column count and reads aliases")
+    void testDtoProjection() {
+        DistinctOnProjection<SalaryBand> projection = DistinctOnProjection.of(SalaryBand.class, "department", "salary / 10000 AS band");
+
+        assertEquals(Arrays.asList(String.class, int.class), projection.getColumnTypes());
+        assertEquals("department", projection.getColumnAlias(0));
+        assertEquals("band", projection.getColumnAlias(1));
+        assertEquals(7, projection.map(new Object[]{"Sales", 7}).band);
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnProjection.of(SalaryBand.class, "a", "b", "c"));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnProjection.of(SalaryBand.class));
+    }
+
+    @Test
+    @DisplayName("Property names convert to snake_case")
+    void testToColumnName() {
+        assertEquals("hire_date", DistinctOnProjection.toColumnName("hireDate"));
+        assertEquals("id", DistinctOnProjection.toColumnName("id"));
+        assertEquals("created_at_utc", DistinctOnProjection.toColumnName("createdAtUtc"));
+    }
+}
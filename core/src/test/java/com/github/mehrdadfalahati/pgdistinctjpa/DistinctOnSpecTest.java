@@ -0,0 +1,99 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnSpecTest {
+
+    @Test
+    @DisplayName("Builder keeps distinct columns, full ORDER BY and filter")
+    void testBuild() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .where("salary > 0")
+                .build();
+
+        assertEquals("employees", spec.getTable());
+        assertEquals(Collections.singletonList("department"), spec.getDistinctColumns());
+        assertEquals(Arrays.asList(SortKey.asc("department"), SortKey.desc("salary")), spec.getOrderBy());
+        assertEquals(Collections.singletonList(SortKey.asc("department")), spec.getDistinctOrder());
+        assertEquals(Collections.singletonList(SortKey.desc("salary")), spec.getTieBreakers());
+        assertEquals("salary > 0", spec.getWhere());
+    }
+
+    @Test
+    @DisplayName("ORDER BY defaults to the distinct columns ascending")
+    void testDefaultOrderBy() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees").distinctOn("department", "name").build();
+
+        assertEquals(Arrays.asList(SortKey.asc("department"), SortKey.asc("name")), spec.getOrderBy());
+        assertTrue(spec.getTieBreakers().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Distinct columns may appear in any order in the ORDER BY prefix")
+    void testPrefixInAnyOrder() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department", "name")
+                .orderByDesc("NAME")
+                .orderBy("department")
+                .orderBy("id")
+                .build();
+
+        assertEquals(Arrays.asList(SortKey.desc("NAME"), SortKey.asc("department")), spec.getDistinctOrder());
+    }
+
+    @Test
+    @DisplayName("ORDER BY that does not start with the distinct columns is rejected")
+    void testPrefixRuleViolation() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderByDesc("salary")
+                .orderBy("department")
+                .build());
+        assertTrue(e.getMessage().contains("must start with the DISTINCT ON columns"));
+
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnSpec.from("employees")
+                .distinctOn("department", "name")
+                .orderBy("department")
+                .build());
+    }
+
+    @Test
+    @DisplayName("Missing table or distinct columns are rejected")
+    void testMissingParts() {
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnSpec.from(" "));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnSpec.from("employees").build());
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnSpec.from("employees").distinctOn(""));
+    }
+
+    @Test
+    @DisplayName("Specs with the same definition are equal")
+    void testEquality() {
+        DistinctOnSpec first = DistinctOnSpec.from("employees").distinctOn("department").orderBy("department").orderByDesc("salary").build();
+        DistinctOnSpec second = first.toBuilder().build();
+
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertNotEquals(first, first.toBuilder().where("salary > 0").build());
+        assertNotEquals(first, first.toBuilder().topNPerGroup(5).build());
+    }
+
+    @Test
+    @DisplayName("Rows per group defaults to 1 and must be positive")
+    void testTopNPerGroup() {
+        DistinctOnSpec.Builder builder = DistinctOnSpec.from("employees").distinctOn("department");
+
+        assertEquals(1, builder.build().getRowsPerGroup());
+        assertEquals(5, builder.topNPerGroup(5).build().getRowsPerGroup());
+        assertThrows(IllegalArgumentException.class, () -> builder.topNPerGroup(0));
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnStrategyTest {
+
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .build();
+
+    @Test
+    @DisplayName("DISTINCT_ON renders a plain DISTINCT ON query")
+    void testDistinctOn() {
+        assertEquals("SELECT DISTINCT ON (department) * FROM employees ORDER BY department, salary DESC",
+                DistinctOnStrategy.DISTINCT_ON.render(spec));
+        assertEquals("SELECT DISTINCT ON (department) * FROM employees WHERE salary > :min ORDER BY department, salary DESC",
+                DistinctOnStrategy.DISTINCT_ON.render(spec.toBuilder().where("salary > :min").build()));
+    }
+
+    @Test
+    @DisplayName("SKIP_SCAN renders a recursive CTE over the distinct keys")
+    void testSkipScan() {
+        assertEquals("WITH RECURSIVE distinct_keys (k1) AS ("
+                        + "(SELECT department FROM employees ORDER BY department LIMIT 1)"
+                        + " UNION ALL SELECT next_key.k1 FROM distinct_keys k CROSS JOIN LATERAL"
+                        + " (SELECT department AS k1 FROM employees WHERE (department) > (k.k1) ORDER BY department LIMIT 1) next_key)"
+                        + " SELECT first_row.* FROM distinct_keys k CROSS JOIN LATERAL"
+                        + " (SELECT * FROM employees WHERE department = k.k1 ORDER BY department, salary DESC LIMIT 1) first_row"
+                        + " ORDER BY k.k1",
+                DistinctOnStrategy.SKIP_SCAN.render(spec));
+    }
+
+    @Test
+    @DisplayName("SKIP_SCAN applies the filter to every probe and walks descending keys backwards")
+    void testSkipScanDescendingWithFilter() {
+        DistinctOnSpec descending = DistinctOnSpec.from("employees")
+                .distinctOn("department", "name")
+                .orderByDesc("department")
+                .orderByDesc("name")
+                .where("salary > 0")
+                .build();
+
+        String sql = DistinctOnStrategy.SKIP_SCAN.render(descending);
+
+        assertTrue(sql.contains("WITH RECURSIVE distinct_keys (k1, k2)"));
+        assertTrue(sql.contains("WHERE (salary > 0) AND (department, name) < (k.k1, k.k2)"));
+        assertTrue(sql.contains("WHERE (salary > 0) AND department = k.k1 AND name = k.k2"));
+        assertTrue(sql.endsWith("ORDER BY k.k1 DESC, k.k2 DESC"));
+    }
+
+    @Test
+    @DisplayName("SKIP_SCAN rejects mixed sort directions on the distinct columns")
+    void testSkipScanMixedDirections() {
+        DistinctOnSpec mixed = DistinctOnSpec.from("employees")
+                .distinctOn("department", "name")
+                .orderBy("department")
+                .orderByDesc("name")
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnStrategy.SKIP_SCAN.render(mixed));
+        assertNotNull(DistinctOnStrategy.DISTINCT_ON.render(mixed));
+    }
+
+    @Test
+    @DisplayName("ROW_NUMBER keeps the first row of every partition")
+    void testRowNumber() {
+        assertEquals("SELECT * FROM (SELECT *, ROW_NUMBER() OVER (PARTITION BY department ORDER BY salary DESC) AS distinct_on_rn"
+                        + " FROM employees) ranked WHERE distinct_on_rn = 1 ORDER BY department",
+                DistinctOnStrategy.ROW_NUMBER.render(spec));
+    }
+
+    @Test
+    @DisplayName("LATERAL probes the first row of every distinct key")
+    void testLateral() {
+        assertEquals("SELECT first_row.* FROM (SELECT DISTINCT department AS k1 FROM employees WHERE salary > 0) k"
+                        + " CROSS JOIN LATERAL (SELECT * FROM employees WHERE (salary > 0) AND department = k.k1"
+                        + " ORDER BY department, salary DESC LIMIT 1) first_row ORDER BY k.k1",
+                DistinctOnStrategy.LATERAL.render(spec.toBuilder().where("salary > 0").build()));
+    }
+
+    @Test
+    @DisplayName("Top-N-per-group limits every LATERAL probe to N rows and keeps them in ORDER BY order")
+    void testTopNPerGroup() {
+        DistinctOnSpec topThree = spec.toBuilder().topNPerGroup(3).build();
+
+        assertEquals("SELECT first_row.* FROM (SELECT DISTINCT department AS k1 FROM employees) k"
+                        + " CROSS JOIN LATERAL (SELECT * FROM employees WHERE department = k.k1"
+                        + " ORDER BY department, salary DESC LIMIT 3) first_row ORDER BY k.k1, salary DESC",
+                DistinctOnStrategy.LATERAL.render(topThree));
+        assertEquals("SELECT * FROM (SELECT *, ROW_NUMBER() OVER (PARTITION BY department ORDER BY salary DESC) AS distinct_on_rn"
+                        + " FROM employees) ranked WHERE distinct_on_rn <= 3 ORDER BY department, salary DESC",
+                DistinctOnStrategy.ROW_NUMBER.render(topThree));
+        assertTrue(DistinctOnStrategy.SKIP_SCAN.render(topThree).endsWith(" LIMIT 3) first_row ORDER BY k.k1, salary DESC"));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnStrategy.DISTINCT_ON.render(topThree));
+    }
+
+    @Test
+    @DisplayName("Keyset page seeks past the last key with a row-value comparison and returns the key columns")
+    void testRenderPage() {
+        assertEquals("SELECT page.*, department AS distinct_on_k1 FROM (SELECT DISTINCT ON (department) * FROM employees"
+                        + " WHERE (department) > (:distinct_on_k1) ORDER BY department, salary DESC LIMIT 11) page"
+                        + " ORDER BY distinct_on_k1",
+                DistinctOnStrategy.DISTINCT_ON.renderPage(spec, true, 11));
+        assertEquals("SELECT page.*, department AS distinct_on_k1 FROM (SELECT DISTINCT ON (department) * FROM employees"
+                        + " WHERE salary > 0 ORDER BY department, salary DESC LIMIT 11) page ORDER BY distinct_on_k1",
+                DistinctOnStrategy.DISTINCT_ON.renderPage(spec.toBuilder().where("salary > 0").build(), false, 11));
+        assertThrows(IllegalArgumentException.class,
+                () -> DistinctOnStrategy.LATERAL.renderPage(spec.toBuilder().topNPerGroup(2).build(), false, 11));
+    }
+
+    @Test
+    @DisplayName("Seek predicate expands mixed sort directions")
+    void testSeekPredicate() {
+        DistinctOnSpec descending = DistinctOnSpec.from("employees").distinctOn("department", "name")
+                .orderByDesc("department").orderByDesc("name").build();
+        DistinctOnSpec mixed = DistinctOnSpec.from("employees").distinctOn("department", "name")
+                .orderBy("department").orderByDesc("name").build();
+
+        assertEquals("(department, name) < (:distinct_on_k1, :distinct_on_k2)",
+                DistinctOnStrategy.seekPredicate(descending.getDistinctOrder()));
+        assertEquals("((department > :distinct_on_k1) OR (department = :distinct_on_k1 AND name < :distinct_on_k2))",
+                DistinctOnStrategy.seekPredicate(mixed.getDistinctOrder()));
+    }
+
+    @Test
+    @DisplayName("Select list replaces * in the outermost query of every strategy")
+    void testSelectList() {
+        assertTrue(DistinctOnStrategy.DISTINCT_ON.render(spec, "department, name").startsWith("SELECT DISTINCT ON (department) department, name FROM employees"));
+        assertTrue(DistinctOnStrategy.ROW_NUMBER.render(spec, "department, name").startsWith("SELECT department, name FROM (SELECT *, ROW_NUMBER()"));
+        assertTrue(DistinctOnStrategy.LATERAL.render(spec, "department, name").startsWith("SELECT department, name FROM (SELECT DISTINCT"));
+        assertTrue(DistinctOnStrategy.SKIP_SCAN.render(spec, "department, name").contains(" SELECT department, name FROM distinct_keys k"));
+    }
+}
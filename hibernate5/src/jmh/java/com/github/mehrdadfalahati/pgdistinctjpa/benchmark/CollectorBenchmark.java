@@ -0,0 +1,84 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnCollectors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * The latest event per user from one million events in memory, for 1,000 to 500,000 users.
+ * <ul>
+ *     <li>{@code toMap} - the ad-hoc {@code Collectors.toMap(key, identity, minBy)}, boxing every key, then sorted</li>
+ *     <li>{@code firstPerKey} - {@link DistinctOnCollectors#firstPerKey}, boxed keys in a {@code HashMap}</li>
+ *     <li>{@code firstPerLongKey} - {@link DistinctOnCollectors#firstPerLongKey}, primitive open addressing</li>
+ * </ul>
+ * The {@code parallel} variants run on the common pool; run with {@code -prof gc} to compare allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectorBenchmark {
+
+    public record Event(long userId, long createdAt, int payload) {
+    }
+
+    private static final Comparator<Event> LATEST_PER_USER = Comparator.comparingLong(Event::userId)
+            .thenComparing(Comparator.comparingLong(Event::createdAt).reversed());
+
+    @Param({"1000", "500000"})
+    public int users;
+
+    private List<Event> events;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        events = new ArrayList<>(1_000_000);
+        for (int i = 0; i < 1_000_000; i++) {
+            events.add(new Event(random.nextInt(users), random.nextLong(), i));
+        }
+    }
+
+    @Benchmark
+    public List<Event> toMap() {
+        Map<Long, Event> latest = events.stream()
+                .collect(Collectors.toMap(Event::userId, event -> event, BinaryOperator.minBy(LATEST_PER_USER)));
+        List<Event> result = new ArrayList<>(latest.values());
+        result.sort(LATEST_PER_USER);
+        return result;
+    }
+
+    @Benchmark
+    public List<Event> firstPerKey() {
+        return events.stream().collect(DistinctOnCollectors.firstPerKey(Event::userId, LATEST_PER_USER));
+    }
+
+    @Benchmark
+    public List<Event> firstPerLongKey() {
+        return events.stream().collect(DistinctOnCollectors.firstPerLongKey(Event::userId, LATEST_PER_USER));
+    }
+
+    @Benchmark
+    public List<Event> toMapParallel() {
+        Map<Long, Event> latest = events.parallelStream()
+                .collect(Collectors.toMap(Event::userId, event -> event, BinaryOperator.minBy(LATEST_PER_USER)));
+        List<Event> result = new ArrayList<>(latest.values());
+        result.sort(LATEST_PER_USER);
+        return result;
+    }
+
+    @Benchmark
+    public List<Event> firstPerLongKeyParallel() {
+        return events.parallelStream().collect(DistinctOnCollectors.firstPerLongKey(Event::userId, LATEST_PER_USER));
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOn;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads rendering through one shared {@link DistinctOn}, as they do through the dialect of a session factory.
+ * {@code shapes} controls how many distinct argument shapes the threads rotate through.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class ConcurrentRenderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedFunction {
+        @Param({"1", "64", "1024"})
+        public int shapes;
+
+        DistinctOn distinctOn;
+        List<String>[] arguments;
+
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void setUp() {
+            distinctOn = new DistinctOn();
+            arguments = new List[shapes];
+            for (int i = 0; i < shapes; i++) {
+                arguments[i] = DistinctOnRenderBenchmark.arguments("employee" + i + "_.col", 4);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public String render(SharedFunction shared, Cursor cursor) {
+        List<String> arguments = shared.arguments[cursor.next];
+        cursor.next = (cursor.next + 1) % shared.shapes;
+        return shared.distinctOn.render(null, arguments, null);
+    }
+}
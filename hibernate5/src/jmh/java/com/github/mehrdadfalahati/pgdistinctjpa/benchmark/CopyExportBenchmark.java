@@ -0,0 +1,87 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnExecutor;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec;
+import com.github.mehrdadfalahati.pgdistinctjpa.Employee;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Exporting the highest paid employee of every department: entities from a list, entities streamed from a
+ * {@link StatelessSession}, and a binary COPY decoded in place. Needs a PostgreSQL database, see
+ * {@link BenchmarkDatabase}; run with {@code -prof gc} to compare the allocation per export.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CopyExportBenchmark {
+
+    @Param({"10000", "100000"})
+    public int departments;
+
+    private SessionFactory sessionFactory;
+    private final DistinctOnExecutor executor = new DistinctOnExecutor();
+    private final List<String> columns = Arrays.asList("id", "department", "salary");
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.open(200_000, departments);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public void entities(Blackhole blackhole) {
+        try (Session session = sessionFactory.openSession()) {
+            for (Employee employee : executor.list(session, spec, Employee.class)) {
+                blackhole.consume(employee.getId());
+                blackhole.consume(employee.getDepartment());
+                blackhole.consume(employee.getSalary());
+            }
+        }
+    }
+
+    @Benchmark
+    public void statelessStream(Blackhole blackhole) {
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             Stream<Employee> employees = executor.stream(session, spec, Employee.class)) {
+            employees.forEach(employee -> {
+                blackhole.consume(employee.getId());
+                blackhole.consume(employee.getDepartment());
+                blackhole.consume(employee.getSalary());
+            });
+        }
+    }
+
+    @Benchmark
+    public long copy(Blackhole blackhole) {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return executor.export(session, spec, columns, row -> {
+                blackhole.consume(row.getLong(0));
+                // the raw bytes, as an exporter writing them on would
+                blackhole.consume(row.getBytes(1));
+                blackhole.consume(row.getInt(2));
+            });
+        }
+    }
+}
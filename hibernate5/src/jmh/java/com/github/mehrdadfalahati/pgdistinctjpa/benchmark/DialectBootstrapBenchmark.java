@@ -0,0 +1,43 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOn;
+import com.github.mehrdadfalahati.pgdistinctjpa.PostgreSqlDistinctOnDialect;
+import org.hibernate.dialect.function.SQLFunction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of bootstrapping the dialect: construction (which registers every PostgreSQL function plus DISTINCT_ON),
+ * creating the DISTINCT_ON function on its own, and resolving it the way Hibernate does at query translation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DialectBootstrapBenchmark {
+
+    private PostgreSqlDistinctOnDialect dialect;
+
+    @Setup
+    public void setUp() {
+        dialect = new PostgreSqlDistinctOnDialect();
+    }
+
+    @Benchmark
+    public PostgreSqlDistinctOnDialect constructDialect() {
+        return new PostgreSqlDistinctOnDialect();
+    }
+
+    @Benchmark
+    public DistinctOn createFunction() {
+        return new DistinctOn();
+    }
+
+    @Benchmark
+    public SQLFunction lookupRegisteredFunction() {
+        return dialect.getFunctions().get("distinct_on");
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOn;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnFragmentCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of {@link DistinctOn#render} for 2 to 32 arguments.
+ * <ul>
+ *     <li>{@code cacheHit} - the same argument shape on every call</li>
+ *     <li>{@code cacheMiss} - two shapes competing for a single slot, so every call renders</li>
+ *     <li>{@code uncachedJoin} - the original subList/String.join rendering, kept as a baseline</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistinctOnRenderBenchmark {
+
+    @Param({"2", "4", "8", "16", "32"})
+    public int argumentCount;
+
+    private DistinctOn cached;
+    private DistinctOn singleSlot;
+    private List<String> arguments;
+    private List<String> otherArguments;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        cached = new DistinctOn();
+        singleSlot = new DistinctOn(new DistinctOnFragmentCache(1));
+        arguments = arguments("employee0_.col", argumentCount);
+        otherArguments = arguments("employee1_.col", argumentCount);
+    }
+
+    static List<String> arguments(String prefix, int count) {
+        List<String> arguments = new ArrayList<>(count);
+        for (int i = 0; i < count - 1; i++) {
+            arguments.add(prefix + i);
+        }
+        arguments.add("employee0_.id");
+        return arguments;
+    }
+
+    @Benchmark
+    public String cacheHit() {
+        return cached.render(null, arguments, null);
+    }
+
+    @Benchmark
+    public String cacheMiss() {
+        flip = !flip;
+        return singleSlot.render(null, flip ? arguments : otherArguments, null);
+    }
+
+    @Benchmark
+    public String uncachedJoin() {
+        String commaSeparatedArgs = String.join(",", arguments.subList(0, arguments.size() - 1));
+        String entity = arguments.get(arguments.size() - 1);
+        return "DISTINCT ON(" + commaSeparatedArgs + ") " + entity + " ";
+    }
+}
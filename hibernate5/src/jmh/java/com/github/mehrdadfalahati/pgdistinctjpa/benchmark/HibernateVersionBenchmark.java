@@ -0,0 +1,15 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnStatementInspector;
+import org.hibernate.cfg.Configuration;
+
+/**
+ * {@link AbstractHibernateVersionBenchmark} on Hibernate 5, with the HQL rewritten by {@link DistinctOnStatementInspector}.
+ */
+public class HibernateVersionBenchmark extends AbstractHibernateVersionBenchmark {
+
+    @Override
+    protected void configure(Configuration configuration) {
+        configuration.setProperty("hibernate.session_factory.statement_inspector", DistinctOnStatementInspector.class.getName());
+    }
+}
@@ -0,0 +1,220 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnExecutor;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnStrategy;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnStrategySelector;
+import com.github.mehrdadfalahati.pgdistinctjpa.Employee;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Concurrent load harness: N platform or virtual threads running DISTINCT ON queries through
+ * {@link DistinctOnExecutor} over the {@code employees} table, generated with the configured row count and number of
+ * departments. For every thread kind and count it reports throughput, p50/p99/p99.9 latency and the allocation rate of
+ * the whole JVM during the measurement. Throughput and latency count successful operations only, failed ones are
+ * reported in their own column.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@load -Dload.args="--threads=1,16,64 --threads-kind=platform,virtual"
+ * </pre>
+ * Options, all {@code --name=value}:
+ * <ul>
+ *     <li>{@code rows} (1000000), {@code departments} (1000) - dataset size and key cardinality</li>
+ *     <li>{@code workload} - {@code full} (every department, default), {@code lookup} (the first row of
+ *     {@code keys} random departments, 10 by default) or {@code page} (the first 50 departments)</li>
+ *     <li>{@code strategy} - a {@link DistinctOnStrategy} or {@code auto} for the cost-based selector (DISTINCT_ON)</li>
+ *     <li>{@code threads} (1,8,32), {@code threads-kind} (platform,virtual), {@code pool} (64 connections)</li>
+ *     <li>{@code warmup} (5) and {@code duration} (20) seconds per run</li>
+ *     <li>{@code url}, {@code user}, {@code password} - the database, defaulting to the {@code benchmark.jdbc.*}
+ *     system properties of {@link BenchmarkDatabase}; or {@code --testcontainers} to start PostgreSQL 15 in Docker</li>
+ * </ul>
+ * Connections come from a HikariCP pool: threads beyond the pool size wait for a connection, which shows up as
+ * latency, and fail after HikariCP's 30 second connection timeout.
+ */
+public final class LoadHarness {
+
+    private static final DistinctOnSpec TOP_SALARY = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int rows = Integer.parseInt(options.getOrDefault("rows", "1000000"));
+        int departments = Integer.parseInt(options.getOrDefault("departments", "1000"));
+        String workload = options.getOrDefault("workload", "full");
+        int keys = Integer.parseInt(options.getOrDefault("keys", "10"));
+        String strategy = options.getOrDefault("strategy", "DISTINCT_ON");
+        int pool = Integer.parseInt(options.getOrDefault("pool", "64"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "20"));
+        List<Integer> threadCounts = new ArrayList<>();
+        for (String count : options.getOrDefault("threads", "1,8,32").split(",")) {
+            threadCounts.add(Integer.parseInt(count.trim()));
+        }
+        List<String> kinds = Arrays.asList(options.getOrDefault("threads-kind", "platform,virtual").split(","));
+
+        DistinctOnExecutor executor = strategy.equalsIgnoreCase("auto")
+                ? new DistinctOnExecutor(new DistinctOnStrategySelector())
+                : new DistinctOnExecutor(DistinctOnStrategy.valueOf(strategy.toUpperCase(Locale.ROOT)));
+        Workload operation = workload(workload, executor, departments, keys);
+
+        PostgreSQLContainer<?> container = null;
+        String url = options.getOrDefault("url", System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/postgres"));
+        String user = options.getOrDefault("user", System.getProperty("benchmark.jdbc.user", "postgres"));
+        String password = options.getOrDefault("password", System.getProperty("benchmark.jdbc.password", ""));
+        if (options.containsKey("testcontainers")) {
+            container = new PostgreSQLContainer<>("postgres:15-alpine").withCommand("postgres", "-c", "max_connections=" + (pool + 10));
+            container.start();
+            url = container.getJdbcUrl();
+            user = container.getUsername();
+            password = container.getPassword();
+        }
+        try {
+            System.out.printf("Generating %,d employees in %,d departments at %s%n", rows, departments, url);
+            try (SessionFactory sessionFactory = BenchmarkDatabase.open(url, user, password, pool, rows, departments)) {
+                System.out.printf("workload=%s strategy=%s pool=%d warmup=%ds duration=%ds%n%n", workload, strategy, pool, warmup, duration);
+                System.out.printf("%-9s %7s %9s %10s %9s %9s %9s %9s %11s %12s %7s%n",
+                        "threads", "count", "ops", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "alloc MB/s", "alloc KB/op", "errors");
+                for (String kind : kinds) {
+                    for (int threads : threadCounts) {
+                        run(sessionFactory, operation, kind.trim(), threads, warmup, duration);
+                    }
+                }
+            }
+        } finally {
+            if (container != null) {
+                container.stop();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Workload {
+        void run(Session session);
+    }
+
+    private static Workload workload(String name, DistinctOnExecutor executor, int departments, int keys) {
+        switch (name) {
+            case "full":
+                return session -> executor.list(session, TOP_SALARY, Employee.class);
+            case "lookup":
+                return session -> {
+                    List<String> departmentKeys = new ArrayList<>(keys);
+                    for (int i = 0; i < keys; i++) {
+                        departmentKeys.add("Dept " + ThreadLocalRandom.current().nextInt(departments));
+                    }
+                    executor.lookup(session, TOP_SALARY, Employee.class, departmentKeys);
+                };
+            case "page":
+                return session -> executor.page(session, TOP_SALARY, Employee.class, null, 50);
+            default:
+                throw new IllegalArgumentException("Unknown workload " + name + ", use full, lookup or page");
+        }
+    }
+
+    private static void run(SessionFactory sessionFactory, Workload workload, String kind, int threadCount,
+                            int warmupSeconds, int durationSeconds) throws InterruptedException {
+        // 0 warm-up, 1 measuring, 2 stopped
+        AtomicInteger phase = new AtomicInteger();
+        List<LatencyHistogram> histograms = new ArrayList<>();
+        long[] errors = new long[threadCount];
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        Thread.Builder builder;
+        switch (kind) {
+            case "platform":
+                builder = Thread.ofPlatform().name("load-", 0);
+                break;
+            case "virtual":
+                builder = Thread.ofVirtual().name("load-", 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown thread kind " + kind + ", use platform or virtual");
+        }
+
+        List<Thread> threads = new ArrayList<>(threadCount);
+        for (int t = 0; t < threadCount; t++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histograms.add(histogram);
+            int index = t;
+            threads.add(builder.start(() -> {
+                while (true) {
+                    int current = phase.get();
+                    if (current == 2) {
+                        return;
+                    }
+                    long start = System.nanoTime();
+                    try (Session session = sessionFactory.openSession()) {
+                        workload.run(session);
+                    } catch (RuntimeException e) {
+                        if (current == 1) {
+                            errors[index]++;
+                        }
+                        firstError.compareAndSet(null, e);
+                        continue;
+                    }
+                    if (current == 1) {
+                        histogram.record(System.nanoTime() - start);
+                    }
+                }
+            }));
+        }
+
+        Thread.sleep(warmupSeconds * 1000L);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threadBean.getTotalThreadAllocatedBytes();
+        long started = System.nanoTime();
+        phase.set(1);
+        Thread.sleep(durationSeconds * 1000L);
+        phase.set(2);
+        long elapsed = System.nanoTime() - started;
+        long allocated = threadBean.getTotalThreadAllocatedBytes() - allocatedBefore;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram total = new LatencyHistogram();
+        histograms.forEach(total::add);
+        long errorCount = Arrays.stream(errors).sum();
+        double seconds = elapsed / 1e9;
+        long ops = total.count();
+        System.out.printf("%-9s %7d %9d %10.1f %9.2f %9.2f %9.2f %9.2f %11s %12s %7d%n",
+                kind, threadCount, ops, ops / seconds,
+                total.percentile(0.50) / 1e6, total.percentile(0.99) / 1e6, total.percentile(0.999) / 1e6, total.max() / 1e6,
+                allocatedBefore < 0 ? "n/a" : String.format("%.1f", allocated / seconds / (1024 * 1024)),
+                allocatedBefore < 0 || ops == 0 ? "n/a" : String.format("%.1f", allocated / 1024.0 / ops),
+                errorCount);
+        if (firstError.get() != null) {
+            System.out.println("  first error: " + firstError.get());
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Options are --name=value: " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+        }
+        return options;
+    }
+}
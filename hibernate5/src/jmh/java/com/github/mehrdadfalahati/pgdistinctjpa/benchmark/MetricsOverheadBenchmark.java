@@ -0,0 +1,72 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnExecutor;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnMetrics;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec;
+import com.github.mehrdadfalahati.pgdistinctjpa.Employee;
+import com.github.mehrdadfalahati.pgdistinctjpa.MicrometerDistinctOnMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.query.NativeQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the executor's instrumentation, without a database: the session and query are stubs returning a
+ * prepared result, so only rendering and the metrics path are measured. {@code disabled} and {@code noop} must be
+ * equal, {@code micrometer} shows the cost of recording to a {@link SimpleMeterRegistry}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .build();
+
+    private SharedSessionContract session;
+    private DistinctOnExecutor disabled;
+    private DistinctOnExecutor noop;
+    private DistinctOnExecutor micrometer;
+
+    @Setup
+    public void setUp() {
+        List<Employee> result = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            result.add(new Employee());
+        }
+        NativeQuery<?> query = (NativeQuery<?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{NativeQuery.class},
+                (proxy, method, args) -> method.getName().equals("getResultList") ? result : null);
+        session = (SharedSessionContract) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SharedSessionContract.class},
+                (proxy, method, args) -> method.getName().equals("createNativeQuery") ? query : null);
+
+        disabled = new DistinctOnExecutor();
+        noop = disabled.withMetrics(DistinctOnMetrics.NOOP);
+        micrometer = disabled.withMetrics(new MicrometerDistinctOnMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Benchmark
+    public List<Employee> disabled() {
+        return disabled.list(session, spec, Employee.class);
+    }
+
+    @Benchmark
+    public List<Employee> noop() {
+        return noop.list(session, spec, Employee.class);
+    }
+
+    @Benchmark
+    public List<Employee> micrometer() {
+        return micrometer.list(session, spec, Employee.class);
+    }
+}
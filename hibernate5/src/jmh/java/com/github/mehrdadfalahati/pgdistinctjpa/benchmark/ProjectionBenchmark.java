@@ -0,0 +1,65 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnExecutor;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnProjection;
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec;
+import com.github.mehrdadfalahati.pgdistinctjpa.Employee;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The highest paid employee of every department, hydrated as managed entities versus mapped to a record that selects
+ * three columns. Needs a PostgreSQL database, see {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProjectionBenchmark {
+
+    public record TopSalary(String department, String name, Integer salary) {
+    }
+
+    @Param({"100", "10000"})
+    public int departments;
+
+    private SessionFactory sessionFactory;
+    private final DistinctOnExecutor executor = new DistinctOnExecutor();
+    private final DistinctOnProjection<TopSalary> projection = DistinctOnProjection.of(TopSalary.class);
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.open(100_000, departments);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<Employee> entities() {
+        try (Session session = sessionFactory.openSession()) {
+            return executor.list(session, spec, Employee.class);
+        }
+    }
+
+    @Benchmark
+    public List<TopSalary> projection() {
+        try (Session session = sessionFactory.openSession()) {
+            return executor.list(session, spec, projection);
+        }
+    }
+}
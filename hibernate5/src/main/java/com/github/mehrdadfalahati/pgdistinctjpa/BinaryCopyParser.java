@@ -0,0 +1,184 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.Arrays;
+
+/**
+ * Push parser of PostgreSQL's binary {@code COPY} format: the 11-byte signature, flags and header extension, then one
+ * tuple per row (a 16-bit field count, per field a 32-bit length, -1 for NULL, and the value) and a -1 trailer.
+ * <p>
+ * Chunks are decoded in place: complete tuples are handed to the sink as a {@link DistinctOnCopyRow} over the chunk
+ * itself, only a tuple split across chunks is copied into a carry buffer until its rest arrives.
+ */
+final class BinaryCopyParser {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    private static final int HEADER_LENGTH = SIGNATURE.length + 8;
+
+    private final DistinctOnCopySink sink;
+    private final DistinctOnCopyRow row = new DistinctOnCopyRow();
+    private byte[] carry = new byte[0];
+    private int carryLength;
+    private boolean headerRead;
+    private boolean finished;
+    private long rows;
+
+    BinaryCopyParser(DistinctOnCopySink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Number of rows handed to the sink so far.
+     */
+    long rows() {
+        return rows;
+    }
+
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Decodes the complete tuples of the chunk, together with the bytes left over from the previous chunk.
+     *
+     * @throws IllegalStateException if the data is not in binary COPY format
+     */
+    void accept(byte[] chunk) {
+        if (finished) {
+            if (chunk.length > 0) {
+                throw new IllegalStateException("Binary COPY data after the trailer");
+            }
+            return;
+        }
+        int position = 0;
+        int limit = chunk.length;
+        if (carryLength > 0) {
+            // complete the split tuple from the new chunk, then continue in the chunk itself if it ended there
+            int needed = needed(carry, 0, carryLength);
+            while (needed > carryLength && position < limit) {
+                int take = Math.min(needed - carryLength, limit - position);
+                append(chunk, position, take);
+                position += take;
+                needed = needed(carry, 0, carryLength);
+            }
+            if (needed > carryLength) {
+                return;
+            }
+            int consumed = consume(carry, 0);
+            if (consumed != carryLength) {
+                throw new IllegalStateException("Binary COPY tuple boundary mismatch");
+            }
+            carryLength = 0;
+        }
+        while (position < limit && !finished) {
+            int needed = needed(chunk, position, limit);
+            if (needed > limit - position) {
+                break;
+            }
+            position += consume(chunk, position);
+        }
+        if (finished && position < limit) {
+            throw new IllegalStateException("Binary COPY data after the trailer");
+        }
+        if (position < limit) {
+            append(chunk, position, limit - position);
+        }
+    }
+
+    /**
+     * Verifies that the data ended with the trailer.
+     */
+    void finish() {
+        if (!finished) {
+            throw new IllegalStateException("Binary COPY data ended without the trailer"
+                    + (carryLength > 0 ? ", " + carryLength + " bytes left" : ""));
+        }
+    }
+
+    /**
+     * Bytes the next unit (header or tuple) starting at {@code position} needs, as far as it can be told from the
+     * available bytes; more than available means the unit is incomplete.
+     */
+    private int needed(byte[] data, int position, int limit) {
+        int available = limit - position;
+        if (!headerRead) {
+            if (available < HEADER_LENGTH) {
+                return HEADER_LENGTH;
+            }
+            return HEADER_LENGTH + readInt(data, position + SIGNATURE.length + 4);
+        }
+        if (available < 2) {
+            return 2;
+        }
+        int fields = (short) readShort(data, position);
+        if (fields < 0) {
+            return 2;
+        }
+        int length = 2;
+        for (int i = 0; i < fields; i++) {
+            if (available < length + 4) {
+                return length + 4;
+            }
+            int fieldLength = readInt(data, position + length);
+            length += 4 + Math.max(fieldLength, 0);
+        }
+        return length;
+    }
+
+    /**
+     * Decodes the complete unit at {@code position}, returns its length.
+     */
+    private int consume(byte[] data, int position) {
+        if (!headerRead) {
+            for (int i = 0; i < SIGNATURE.length; i++) {
+                if (data[position + i] != SIGNATURE[i]) {
+                    throw new IllegalStateException("Not a binary COPY stream, bad signature");
+                }
+            }
+            int flags = readInt(data, position + SIGNATURE.length);
+            if ((flags & (1 << 16)) != 0) {
+                throw new IllegalStateException("Binary COPY with OIDs is not supported");
+            }
+            headerRead = true;
+            return HEADER_LENGTH + readInt(data, position + SIGNATURE.length + 4);
+        }
+        int fields = (short) readShort(data, position);
+        if (fields == -1) {
+            finished = true;
+            return 2;
+        }
+        if (fields < 0) {
+            throw new IllegalStateException("Invalid binary COPY field count " + fields);
+        }
+        row.reset(data, fields);
+        int offset = position + 2;
+        for (int i = 0; i < fields; i++) {
+            int length = readInt(data, offset);
+            if (length < -1) {
+                throw new IllegalStateException("Invalid binary COPY field length " + length);
+            }
+            offset += 4;
+            row.field(i, offset, length);
+            offset += Math.max(length, 0);
+        }
+        rows++;
+        sink.accept(row);
+        return offset - position;
+    }
+
+    private void append(byte[] chunk, int from, int length) {
+        if (carryLength + length > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carryLength + length, carry.length * 2));
+        }
+        System.arraycopy(chunk, from, carry, carryLength, length);
+        carryLength += length;
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Compiled {@link DistinctOnCriteria} shapes of one executor: the spec resolved against a session factory's mapping
+ * and its SQL per strategy. Bounded, shapes beyond {@link #MAX_SHAPES} are compiled on every call.
+ */
+final class CriteriaTemplates {
+
+    static final int MAX_SHAPES = 1024;
+
+    private final Map<List<Object>, Template> templates = new ConcurrentHashMap<>();
+
+    Template get(SessionFactoryImplementor factory, DistinctOnCriteria<?> criteria) {
+        List<Object> key = Arrays.asList(factory.getUuid(), criteria.shape());
+        Template template = templates.get(key);
+        if (template != null) {
+            return template;
+        }
+        template = new Template(criteria.toSpec(factory), criteria.limitPosition());
+        if (templates.size() < MAX_SHAPES) {
+            Template raced = templates.putIfAbsent(key, template);
+            return raced != null ? raced : template;
+        }
+        return template;
+    }
+
+    int size() {
+        return templates.size();
+    }
+
+    static final class Template {
+        private final DistinctOnSpec spec;
+        private final int limitPosition;
+        private final Map<DistinctOnStrategy, String> sql = new ConcurrentHashMap<>();
+
+        private Template(DistinctOnSpec spec, int limitPosition) {
+            this.spec = spec;
+            this.limitPosition = limitPosition;
+        }
+
+        DistinctOnSpec getSpec() {
+            return spec;
+        }
+
+        /**
+         * The SQL for the strategy, rendered on first use. Every strategy ends with the outer ORDER BY, so the limit
+         * applies to the final result.
+         */
+        String sql(DistinctOnStrategy strategy, Function<DistinctOnStrategy, String> render) {
+            return sql.computeIfAbsent(strategy, s -> limitPosition > 0 ? render.apply(s) + " LIMIT ?" + limitPosition : render.apply(s));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.QueryException;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+public class DistinctOn implements SQLFunction {
+
+    private final DistinctOnFragmentCache fragmentCache;
+
+    public DistinctOn() {
+        this(new DistinctOnFragmentCache());
+    }
+
+    public DistinctOn(DistinctOnFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    @Override
+    public boolean hasArguments() {
+        return true;
+    }
+
+    @Override
+    public boolean hasParenthesesIfNoArguments() {
+        return true;
+    }
+
+    @Override
+    public Type getReturnType(Type type, Mapping mapping) throws QueryException {
+        return StandardBasicTypes.STRING;
+    }
+
+    @Override
+    public String render(Type type, List arguments, SessionFactoryImplementor sessionFactoryImplementor) throws QueryException {
+        // HQL usage: SELECT DISTINCT_ON(col1, col2, ..., entity) FROM Entity
+        // Rendered: DISTINCT ON(col1,col2,...) entity
+        // Fragments are memoized per argument shape, the argument checks only run on a cache miss
+        DistinctOnRenderEvent event = new DistinctOnRenderEvent();
+        event.begin();
+        try {
+            String fragment = fragmentCache.render(arguments);
+            if (event.shouldCommit()) {
+                event.distinctColumnCount = arguments.size() - 1;
+                event.shapeHash = fragment.hashCode();
+                event.commit();
+            }
+            return fragment;
+        } catch (IllegalArgumentException e) {
+            throw new QueryException(e.getMessage());
+        }
+    }
+
+    /**
+     * The rendered-fragment cache backing this function, exposes hit/miss counters for monitoring.
+     */
+    public DistinctOnFragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * One row of a binary {@code COPY}, decoded lazily from the buffer it was received in. Fields are addressed by
+ * position in the select list and read with the getter matching their PostgreSQL type; nothing is decoded or copied
+ * until a getter asks for it, and the same instance is reused for every row.
+ */
+public final class DistinctOnCopyRow {
+
+    // PostgreSQL epoch for date and timestamp, 2000-01-01
+    private static final LocalDate EPOCH_DATE = LocalDate.of(2000, 1, 1);
+    private static final LocalDateTime EPOCH_TIMESTAMP = EPOCH_DATE.atStartOfDay();
+    private static final Instant EPOCH_INSTANT = Instant.parse("2000-01-01T00:00:00Z");
+    private static final BigInteger NBASE = BigInteger.valueOf(10000);
+
+    private byte[] data;
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    private int size;
+
+    DistinctOnCopyRow() {
+    }
+
+    void reset(byte[] data, int size) {
+        this.data = data;
+        this.size = size;
+        if (offsets.length < size) {
+            offsets = new int[Math.max(size, offsets.length * 2)];
+            lengths = new int[offsets.length];
+        }
+    }
+
+    void field(int index, int offset, int length) {
+        offsets[index] = offset;
+        lengths[index] = length;
+    }
+
+    /**
+     * Number of fields.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int index) {
+        return length(index) < 0;
+    }
+
+    /**
+     * Length of the field's binary value in bytes, -1 for NULL.
+     */
+    public int length(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + size);
+        }
+        return lengths[index];
+    }
+
+    public boolean getBoolean(int index) {
+        return data[offset(index, 1)] != 0;
+    }
+
+    public short getShort(int index) {
+        return (short) readShort(offset(index, 2));
+    }
+
+    public int getInt(int index) {
+        return readInt(offset(index, 4));
+    }
+
+    public long getLong(int index) {
+        return readLong(offset(index, 8));
+    }
+
+    public float getFloat(int index) {
+        return Float.intBitsToFloat(getInt(index));
+    }
+
+    public double getDouble(int index) {
+        return Double.longBitsToDouble(getLong(index));
+    }
+
+    /**
+     * A {@code text}, {@code varchar} or {@code char} field, {@code null} for NULL.
+     */
+    public String getString(int index) {
+        int length = length(index);
+        return length < 0 ? null : new String(data, offsets[index], length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The raw binary value as a read-only view, without copying; {@code null} for NULL. Valid only inside the callback.
+     */
+    public ByteBuffer getBytes(int index) {
+        int length = length(index);
+        return length < 0 ? null : ByteBuffer.wrap(data, offsets[index], length).slice().asReadOnlyBuffer();
+    }
+
+    public UUID getUuid(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        int offset = offset(index, 16);
+        return new UUID(readLong(offset), readLong(offset + 8));
+    }
+
+    public LocalDate getDate(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        int days = getInt(index);
+        if (days == Integer.MAX_VALUE) {
+            return LocalDate.MAX;
+        }
+        if (days == Integer.MIN_VALUE) {
+            return LocalDate.MIN;
+        }
+        return EPOCH_DATE.plusDays(days);
+    }
+
+    /**
+     * A {@code timestamp} field as microseconds since 2000-01-01 00:00, without allocating.
+     */
+    public long getTimestampMicros(int index) {
+        return getLong(index);
+    }
+
+    /**
+     * A {@code timestamp} (without time zone) field; {@code infinity} maps to {@link LocalDateTime#MAX} and
+     * {@link LocalDateTime#MIN}.
+     */
+    public LocalDateTime getTimestamp(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        long micros = getLong(index);
+        if (micros == Long.MAX_VALUE) {
+            return LocalDateTime.MAX;
+        }
+        if (micros == Long.MIN_VALUE) {
+            return LocalDateTime.MIN;
+        }
+        return EPOCH_TIMESTAMP.plus(micros, ChronoUnit.MICROS);
+    }
+
+    /**
+     * A {@code timestamptz} field, sent in UTC.
+     */
+    public Instant getInstant(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        long micros = getLong(index);
+        if (micros == Long.MAX_VALUE) {
+            return Instant.MAX;
+        }
+        if (micros == Long.MIN_VALUE) {
+            return Instant.MIN;
+        }
+        return EPOCH_INSTANT.plus(micros, ChronoUnit.MICROS);
+    }
+
+    /**
+     * A {@code numeric} field: base-10000 digits with a weight, a sign and the display scale.
+     *
+     * @throws ArithmeticException for {@code NaN} and infinities
+     */
+    public BigDecimal getBigDecimal(int index) {
+        if (isNull(index)) {
+            return null;
+        }
+        int offset = offset(index, 8);
+        int digits = readShort(offset);
+        int weight = (short) readShort(offset + 2);
+        int sign = readShort(offset + 4);
+        int scale = readShort(offset + 6);
+        if (sign != 0x0000 && sign != 0x4000) {
+            throw new ArithmeticException("numeric special value 0x" + Integer.toHexString(sign) + " in field " + index);
+        }
+        BigInteger unscaled;
+        if (digits <= 4) {
+            // up to 16 decimal digits fit a long
+            long small = 0;
+            for (int i = 0; i < digits; i++) {
+                small = small * 10000 + readShort(offset + 8 + 2 * i);
+            }
+            unscaled = BigInteger.valueOf(small);
+        } else {
+            unscaled = BigInteger.ZERO;
+            for (int i = 0; i < digits; i++) {
+                unscaled = unscaled.multiply(NBASE).add(BigInteger.valueOf(readShort(offset + 8 + 2 * i)));
+            }
+        }
+        BigDecimal value = new BigDecimal(unscaled, (digits - weight - 1) * 4).setScale(scale, RoundingMode.UNNECESSARY);
+        return sign == 0x4000 ? value.negate() : value;
+    }
+
+    private int offset(int index, int expected) {
+        int length = length(index);
+        if (length < 0) {
+            throw new IllegalStateException("Field " + index + " is NULL, check isNull() first");
+        }
+        if (length < expected) {
+            throw new IllegalStateException("Field " + index + " has " + length + " bytes, expected " + expected);
+        }
+        return offsets[index];
+    }
+
+    private int readShort(int offset) {
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private int readInt(int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    private long readLong(int offset) {
+        return ((long) readInt(offset) << 32) | (readInt(offset + 4) & 0xffffffffL);
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctOnCopyRow{fields=" + size + '}';
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+/**
+ * Receives the rows of {@link DistinctOnExecutor#export} one at a time. The {@link DistinctOnCopyRow} is a view over
+ * the COPY buffer that is reused for the next row: read the values inside the callback, do not keep the row.
+ */
+@FunctionalInterface
+public interface DistinctOnCopySink {
+
+    void accept(DistinctOnCopyRow row);
+}
@@ -0,0 +1,380 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.MappingException;
+import org.hibernate.QueryException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Type-safe "first row per group" query over a mapped entity, written against its attributes instead of SQL.
+ * <p>
+ * Attributes are given as JPA metamodel attributes or as attribute names and resolved to columns through the
+ * session factory's mapping. Filter values and the limit are bound as positional parameters, so the SQL only depends
+ * on the query's shape: {@link DistinctOnExecutor} renders every shape once and afterwards only binds the values.
+ * <pre>{@code
+ * DistinctOnCriteria<Employee> criteria = DistinctOnCriteria.from(Employee.class)
+ *         .distinctOn(Employee_.department)
+ *         .orderBy(Employee_.department)
+ *         .orderByDesc(Employee_.salary)
+ *         .where(Employee_.salary, Operator.GE, minSalary)
+ *         .limit(10)
+ *         .build();
+ * List<Employee> top = executor.list(session, criteria);
+ * }</pre>
+ */
+public final class DistinctOnCriteria<T> {
+
+    private final Shape shape;
+    private final List<Object> parameters;
+
+    private DistinctOnCriteria(Shape shape, List<Object> parameters) {
+        this.shape = shape;
+        this.parameters = Collections.unmodifiableList(parameters);
+    }
+
+    public static <T> Builder<T> from(Class<T> entityType) {
+        return new Builder<>(entityType);
+    }
+
+    @SuppressWarnings("unchecked")
+    public Class<T> getEntityType() {
+        return (Class<T>) shape.entityType;
+    }
+
+    /**
+     * The values bound to the positional parameters {@code ?1..?n}: the filter values, IN lists as array literals,
+     * and the limit last.
+     */
+    public List<Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Everything but the bound values, equal for criteria that render to the same SQL.
+     */
+    Object shape() {
+        return shape;
+    }
+
+    /**
+     * The spec with attributes resolved to the columns of the entity's table, the filter written with positional
+     * parameters.
+     *
+     * @throws IllegalArgumentException if an attribute is not mapped to exactly one column
+     */
+    DistinctOnSpec toSpec(SessionFactoryImplementor factory) {
+        EntityPersister persister = factory.getMetamodel().entityPersister(shape.entityType);
+        if (!(persister instanceof AbstractEntityPersister)) {
+            throw new IllegalArgumentException("Unsupported persister for " + shape.entityType.getName());
+        }
+        AbstractEntityPersister entity = (AbstractEntityPersister) persister;
+        DistinctOnSpec.Builder spec = DistinctOnSpec.from(entity.getTableName());
+        for (String attribute : shape.distinctOn) {
+            spec.distinctOn(column(entity, attribute));
+        }
+        for (DistinctOnSpec.SortKey key : shape.orderBy) {
+            String column = column(entity, key.getColumn());
+            spec.orderBy(key.isDescending() ? DistinctOnSpec.SortKey.desc(column) : DistinctOnSpec.SortKey.asc(column));
+        }
+        List<String> predicates = new ArrayList<>();
+        int position = 1;
+        for (Condition condition : shape.conditions) {
+            int parameter = condition.predicate.indexOf('?');
+            predicates.add(column(entity, condition.attribute) + (parameter < 0 ? condition.predicate
+                    : condition.predicate.substring(0, parameter + 1) + position++ + condition.predicate.substring(parameter + 1)));
+        }
+        return spec.where(String.join(" AND ", predicates)).topNPerGroup(shape.rowsPerGroup).build();
+    }
+
+    /**
+     * The position of the limit parameter, or 0 without a limit.
+     */
+    int limitPosition() {
+        return shape.limited ? parameters.size() : 0;
+    }
+
+    private String column(AbstractEntityPersister entity, String attribute) {
+        String[] columns;
+        try {
+            columns = entity.getPropertyColumnNames(attribute);
+        } catch (MappingException | QueryException e) {
+            throw new IllegalArgumentException("Unknown attribute " + attribute + " of " + shape.entityType.getName(), e);
+        }
+        if (columns == null || columns.length != 1) {
+            throw new IllegalArgumentException("Attribute " + attribute + " of " + shape.entityType.getName()
+                    + " must map to exactly one column");
+        }
+        return columns[0];
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctOnCriteria{" + shape + ", parameters=" + parameters + '}';
+    }
+
+    /**
+     * Comparison of an attribute with a bound value.
+     */
+    public enum Operator {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    public static final class Builder<T> {
+        private final Class<T> entityType;
+        private final List<String> distinctOn = new ArrayList<>();
+        private final List<DistinctOnSpec.SortKey> orderBy = new ArrayList<>();
+        private final List<Condition> conditions = new ArrayList<>();
+        private final List<Object> parameters = new ArrayList<>();
+        private int rowsPerGroup = 1;
+        private Integer limit;
+
+        private Builder(Class<T> entityType) {
+            this.entityType = Objects.requireNonNull(entityType, "entityType");
+        }
+
+        @SafeVarargs
+        public final Builder<T> distinctOn(SingularAttribute<? super T, ?>... attributes) {
+            for (SingularAttribute<? super T, ?> attribute : attributes) {
+                distinctOn.add(name(attribute));
+            }
+            return this;
+        }
+
+        public Builder<T> distinctOn(String... attributes) {
+            for (String attribute : attributes) {
+                distinctOn.add(requireName(attribute));
+            }
+            return this;
+        }
+
+        public Builder<T> orderBy(SingularAttribute<? super T, ?> attribute) {
+            return orderBy(name(attribute));
+        }
+
+        public Builder<T> orderByDesc(SingularAttribute<? super T, ?> attribute) {
+            return orderByDesc(name(attribute));
+        }
+
+        public Builder<T> orderBy(String attribute) {
+            orderBy.add(DistinctOnSpec.SortKey.asc(requireName(attribute)));
+            return this;
+        }
+
+        public Builder<T> orderByDesc(String attribute) {
+            orderBy.add(DistinctOnSpec.SortKey.desc(requireName(attribute)));
+            return this;
+        }
+
+        public <V> Builder<T> where(SingularAttribute<? super T, V> attribute, Operator operator, V value) {
+            return where(name(attribute), operator, (Object) value);
+        }
+
+        /**
+         * Adds {@code attribute <operator> value}, combined with the other filters by AND.
+         *
+         * @throws IllegalArgumentException if the value is null, use {@link #whereNull} instead
+         */
+        public Builder<T> where(String attribute, Operator operator, Object value) {
+            if (operator == null) {
+                throw new IllegalArgumentException("Operator must not be null");
+            }
+            if (value == null) {
+                throw new IllegalArgumentException("Value of " + attribute + " must not be null, use whereNull");
+            }
+            conditions.add(new Condition(requireName(attribute), " " + operator.sql + " ?"));
+            parameters.add(value);
+            return this;
+        }
+
+        public <V> Builder<T> whereIn(SingularAttribute<? super T, V> attribute, Collection<? extends V> values) {
+            return whereIn(name(attribute), values);
+        }
+
+        /**
+         * Adds {@code attribute IN (values)}, bound as one array so that the SQL does not depend on the number of
+         * values.
+         *
+         * @throws IllegalArgumentException if the values are empty, contain null or are of an unsupported type
+         */
+        public Builder<T> whereIn(String attribute, Collection<?> values) {
+            if (values == null || values.isEmpty()) {
+                throw new IllegalArgumentException("IN values of " + attribute + " must not be empty");
+            }
+            List<Object> distinct = KeyArray.distinct(values, false);
+            conditions.add(new Condition(requireName(attribute), " = ANY(CAST(? AS " + KeyArray.sqlType(distinct) + "[]))"));
+            parameters.add(KeyArray.literal(distinct));
+            return this;
+        }
+
+        public Builder<T> whereNull(SingularAttribute<? super T, ?> attribute) {
+            return whereNull(name(attribute));
+        }
+
+        public Builder<T> whereNull(String attribute) {
+            conditions.add(new Condition(requireName(attribute), " IS NULL"));
+            return this;
+        }
+
+        public Builder<T> whereNotNull(SingularAttribute<? super T, ?> attribute) {
+            return whereNotNull(name(attribute));
+        }
+
+        public Builder<T> whereNotNull(String attribute) {
+            conditions.add(new Condition(requireName(attribute), " IS NOT NULL"));
+            return this;
+        }
+
+        /**
+         * Returns the first {@code n} rows of every group, see {@link DistinctOnSpec.Builder#topNPerGroup(int)}.
+         */
+        public Builder<T> topNPerGroup(int n) {
+            if (n < 1) {
+                throw new IllegalArgumentException("Rows per group must be positive: " + n);
+            }
+            this.rowsPerGroup = n;
+            return this;
+        }
+
+        /**
+         * Returns at most {@code n} rows in total, the first in ORDER BY order.
+         */
+        public Builder<T> limit(int n) {
+            if (n < 1) {
+                throw new IllegalArgumentException("Limit must be positive: " + n);
+            }
+            this.limit = n;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if no DISTINCT ON attribute is given or the ORDER BY does not start with them
+         */
+        public DistinctOnCriteria<T> build() {
+            if (distinctOn.isEmpty()) {
+                throw new IllegalArgumentException("DISTINCT ON requires at least 1 attribute");
+            }
+            List<DistinctOnSpec.SortKey> order = new ArrayList<>(orderBy);
+            if (order.isEmpty()) {
+                for (String attribute : distinctOn) {
+                    order.add(DistinctOnSpec.SortKey.asc(attribute));
+                }
+            }
+            DistinctOnSpec.checkOrderByPrefix(distinctOn, order);
+            List<Object> values = new ArrayList<>(parameters);
+            if (limit != null) {
+                values.add(limit);
+            }
+            return new DistinctOnCriteria<>(new Shape(entityType, distinctOn, order, conditions, rowsPerGroup, limit != null),
+                    values);
+        }
+
+        private static String name(SingularAttribute<?, ?> attribute) {
+            return Objects.requireNonNull(attribute, "attribute").getName();
+        }
+
+        private static String requireName(String attribute) {
+            if (attribute == null || attribute.trim().isEmpty()) {
+                throw new IllegalArgumentException("Attribute must not be empty");
+            }
+            return attribute.trim();
+        }
+    }
+
+    /**
+     * A filter without its value, the predicate following the column has at most one {@code ?} for it.
+     */
+    private static final class Condition {
+        private final String attribute;
+        private final String predicate;
+
+        private Condition(String attribute, String predicate) {
+            this.attribute = attribute;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Condition)) {
+                return false;
+            }
+            Condition other = (Condition) o;
+            return attribute.equals(other.attribute) && predicate.equals(other.predicate);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * attribute.hashCode() + predicate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return attribute + predicate;
+        }
+    }
+
+    private static final class Shape {
+        private final Class<?> entityType;
+        private final List<String> distinctOn;
+        private final List<DistinctOnSpec.SortKey> orderBy;
+        private final List<Condition> conditions;
+        private final int rowsPerGroup;
+        private final boolean limited;
+
+        private Shape(Class<?> entityType, List<String> distinctOn, List<DistinctOnSpec.SortKey> orderBy,
+                      List<Condition> conditions, int rowsPerGroup, boolean limited) {
+            this.entityType = entityType;
+            this.distinctOn = Collections.unmodifiableList(new ArrayList<>(distinctOn));
+            this.orderBy = Collections.unmodifiableList(new ArrayList<>(orderBy));
+            this.conditions = Collections.unmodifiableList(new ArrayList<>(conditions));
+            this.rowsPerGroup = rowsPerGroup;
+            this.limited = limited;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape) o;
+            return entityType == other.entityType
+                    && distinctOn.equals(other.distinctOn)
+                    && orderBy.equals(other.orderBy)
+                    && conditions.equals(other.conditions)
+                    && rowsPerGroup == other.rowsPerGroup
+                    && limited == other.limited;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entityType, distinctOn, orderBy, conditions, rowsPerGroup, limited);
+        }
+
+        @Override
+        public String toString() {
+            return entityType.getSimpleName() + ", distinctOn=" + distinctOn + ", orderBy=" + orderBy
+                    + (conditions.isEmpty() ? "" : ", where=" + conditions)
+                    + (rowsPerGroup > 1 ? ", rowsPerGroup=" + rowsPerGroup : "")
+                    + (limited ? ", limit=?" : "");
+        }
+    }
+}
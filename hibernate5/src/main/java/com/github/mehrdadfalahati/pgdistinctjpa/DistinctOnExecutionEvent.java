@@ -0,0 +1,54 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one statement run by {@link DistinctOnExecutor}, from execution until the result is read (for a
+ * stream, until it is closed). Disabled by default like {@link DistinctOnRenderEvent}, its setting is
+ * {@code com.github.mehrdadfalahati.pgdistinctjpa.Execution#enabled=true}.
+ */
+@Name("com.github.mehrdadfalahati.pgdistinctjpa.Execution")
+@Label("DISTINCT ON Execution")
+@Category({"PostgreSQL", "DISTINCT ON"})
+@Description("Execution of a DISTINCT ON statement")
+@Enabled(false)
+final class DistinctOnExecutionEvent extends jdk.jfr.Event {
+
+    @Label("Table")
+    String table;
+
+    @Label("Strategy")
+    String strategy;
+
+    @Label("Distinct Column Count")
+    int distinctColumnCount;
+
+    @Label("SQL Shape Hash")
+    @Description("Hash of the SQL text, equal for every execution of the same spec and strategy")
+    int shapeHash;
+
+    @Label("Row Count")
+    long rowCount;
+
+    @Label("Failed")
+    boolean failed;
+
+    /**
+     * Commits the event if the recording wants it, the fields are only computed in that case.
+     */
+    void report(DistinctOnSpec spec, DistinctOnStrategy strategy, String sql, long rowCount, boolean failed) {
+        if (shouldCommit()) {
+            this.table = spec != null ? spec.getTable() : null;
+            this.strategy = strategy != null ? strategy.name() : null;
+            this.distinctColumnCount = spec != null ? spec.getDistinctColumns().size() : 0;
+            this.shapeHash = sql.hashCode();
+            this.rowCount = rowCount;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
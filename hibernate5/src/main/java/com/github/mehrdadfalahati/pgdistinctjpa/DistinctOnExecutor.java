@@ -0,0 +1,863 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.TypeHelper;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.type.Type;
+import org.jboss.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.CopyOut;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs {@link DistinctOnSpec} requests as native queries mapped to entities, using either a fixed
+ * {@link DistinctOnStrategy} or the one picked per request by a {@link DistinctOnStrategySelector}.
+ * Instances are immutable and thread-safe, create one and share it. Queries work on a {@link Session} as well as on a
+ * {@link org.hibernate.StatelessSession}. The {@code list}, {@code page} and spec-based {@code stream} methods report to
+ * the {@link DistinctOnMetrics} configured with {@link #withMetrics}; all executions also emit the JFR event
+ * {@code com.github.mehrdadfalahati.pgdistinctjpa.Execution}, disabled by default.
+ *
+ * <pre>{@code
+ * DistinctOnExecutor executor = new DistinctOnExecutor(new DistinctOnStrategySelector());
+ * List<Event> latest = executor.list(session, spec, Event.class);
+ * }</pre>
+ */
+public class DistinctOnExecutor {
+
+    /**
+     * Rows fetched per round trip by {@link #stream(SharedSessionContract, DistinctOnSpec, Class)}.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * Keys bound per statement by {@link #lookup(SharedSessionContract, DistinctOnSpec, Class, Collection)}.
+     */
+    public static final int DEFAULT_LOOKUP_CHUNK_SIZE = 1000;
+
+    /**
+     * Query cache region used by {@link #withQueryCache()}.
+     */
+    public static final String DEFAULT_QUERY_CACHE_REGION = "distinct-on";
+
+    static final String KEYS_PARAMETER = "distinct_on_keys";
+
+    private static final Logger LOG = Logger.getLogger(DistinctOnExecutor.class);
+
+    private final ExecutorSettings settings;
+    // read from the settings on every query
+    private final DistinctOnStrategy strategy;
+    private final DistinctOnStrategySelector selector;
+    // null when disabled, so the uninstrumented path is a single null check
+    private final DistinctOnMetrics metrics;
+    private final Map<DistinctOnSpec, DistinctOnMaterialization> materializations;
+    private final DistinctOnSortTuner sortTuner;
+    // null when queries are not cached
+    private final String queryCacheRegion;
+    private final ReplicaReads replicaReads;
+    private final Set<Class<?>> checkedEntityTypes = ConcurrentHashMap.newKeySet();
+    // per instance, the SQL depends on the materializations
+    private final CriteriaTemplates criteriaTemplates = new CriteriaTemplates();
+
+    public DistinctOnExecutor() {
+        this(DistinctOnStrategy.DISTINCT_ON);
+    }
+
+    public DistinctOnExecutor(DistinctOnStrategy strategy) {
+        this(ExecutorSettings.builder().strategy(strategy).build());
+    }
+
+    /**
+     * Chooses the strategy of every request with the given cost-based selector.
+     */
+    public DistinctOnExecutor(DistinctOnStrategySelector selector) {
+        this(ExecutorSettings.builder().selector(selector).build());
+    }
+
+    private DistinctOnExecutor(ExecutorSettings settings) {
+        this.settings = settings;
+        this.strategy = settings.getStrategy();
+        this.selector = settings.getSelector();
+        this.metrics = settings.getMetrics();
+        this.materializations = settings.getMaterializations();
+        this.sortTuner = settings.getSortTuner();
+        this.queryCacheRegion = settings.getQueryCacheRegion();
+        this.replicaReads = ReplicaReads.of(settings);
+    }
+
+    /**
+     * A copy of this executor reporting to the given metrics, {@link DistinctOnMetrics#NOOP} disables them.
+     */
+    public DistinctOnExecutor withMetrics(DistinctOnMetrics metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("Metrics must not be null, use DistinctOnMetrics.NOOP");
+        }
+        return new DistinctOnExecutor(settings.toBuilder().metrics(metrics).build());
+    }
+
+    /**
+     * A copy of this executor reading the given, already created, materializations instead of running their specs.
+     * Only a request for exactly the materialized spec is redirected.
+     */
+    public DistinctOnExecutor withMaterializations(DistinctOnMaterialization... materializations) {
+        ExecutorSettings.Builder builder = settings.toBuilder();
+        for (DistinctOnMaterialization materialization : materializations) {
+            builder.materialization(materialization);
+        }
+        return new DistinctOnExecutor(builder.build());
+    }
+
+    /**
+     * A copy of this executor that samples the sorts of its queries and applies the remembered {@code work_mem} and
+     * {@code enable_incremental_sort} settings, see {@link DistinctOnSortTuner}. Applies to {@code list},
+     * {@code lookup}, {@code page}, {@code stream} and {@code parallelList}, not to {@code export}.
+     */
+    public DistinctOnExecutor withSortTuning(DistinctOnSortTuner sortTuner) {
+        if (sortTuner == null) {
+            throw new IllegalArgumentException("Sort tuner must not be null");
+        }
+        return new DistinctOnExecutor(settings.toBuilder().sortTuner(sortTuner).build());
+    }
+
+    /**
+     * A copy of this executor caching the results of {@code list}, {@code lookup}, {@code page} and
+     * {@code parallelList} in the query cache region {@value #DEFAULT_QUERY_CACHE_REGION}, see
+     * {@link #withQueryCache(String)}.
+     */
+    public DistinctOnExecutor withQueryCache() {
+        return withQueryCache(DEFAULT_QUERY_CACHE_REGION);
+    }
+
+    /**
+     * A copy of this executor caching query results in the given region of Hibernate's query cache, which must be
+     * enabled with {@code hibernate.cache.use_query_cache}. Entities are cached as their ids, so the entity should be
+     * cacheable in the second-level cache as well, otherwise every hit loads the entities one by one.
+     * <p>
+     * Every query is synchronized with the spec's table and, for entity results, with the entity's tables. A cached
+     * result is invalidated by writes to those tables only: entity changes, and native updates that declare them with
+     * {@code addSynchronizedEntityClass} or {@code addSynchronizedQuerySpace}.
+     */
+    public DistinctOnExecutor withQueryCache(String region) {
+        if (region == null || region.trim().isEmpty()) {
+            throw new IllegalArgumentException("Query cache region must not be empty");
+        }
+        return new DistinctOnExecutor(settings.toBuilder().queryCacheRegion(region.trim()).build());
+    }
+
+    /**
+     * The query cache region, or {@code null} if results are not cached.
+     */
+    public String getQueryCacheRegion() {
+        return queryCacheRegion;
+    }
+
+    /**
+     * The current counts of the query cache region, requires {@code hibernate.generate_statistics}.
+     *
+     * @throws IllegalStateException if results are not cached
+     */
+    public QueryCacheStatistics queryCacheStatistics(SessionFactory sessionFactory) {
+        if (queryCacheRegion == null) {
+            throw new IllegalStateException("Query cache is not configured, use withQueryCache");
+        }
+        return QueryCacheStatistics.of(sessionFactory, queryCacheRegion);
+    }
+
+    /**
+     * Publishes the statistics of the query cache region to the configured metrics, if results are cached.
+     */
+    public void bindQueryCache(SessionFactory sessionFactory) {
+        if (metrics != null && queryCacheRegion != null) {
+            metrics.bindQueryCache(sessionFactory, queryCacheRegion);
+        }
+    }
+
+    /**
+     * A copy of this executor sending {@code list}, {@code lookup} and {@code page} to a read replica when the session
+     * has no active transaction; queries in a transaction stay on the primary so they see its writes. The router falls
+     * back to the primary while the replica is unreachable or lags too far behind, and a query that loses its replica
+     * connection is retried on the primary.
+     * <p>
+     * Replica queries run on a {@link StatelessSession} over the replica connection, so the returned entities are
+     * detached. Streams, exports and {@code parallelList} always use the primary.
+     * <p>
+     * With {@link #withQueryCache}, replica queries run on a read-only {@link Session} over the replica connection
+     * instead, which is served from the query cache region first and only queries the replica on a miss. Results
+     * cached from the replica are invalidated by writes like any other, but they are as old as the replica: a write
+     * on the primary up to the maximum lag before the miss may be missing from the cached result until the next write
+     * to its tables. A cache hit still borrows a replica connection, without sending a statement.
+     */
+    public DistinctOnExecutor withReadReplica(DistinctOnReplicaRouter replicaRouter) {
+        if (replicaRouter == null) {
+            throw new IllegalArgumentException("Replica router must not be null");
+        }
+        return new DistinctOnExecutor(settings.toBuilder().replicaRouter(replicaRouter).build());
+    }
+
+    /**
+     * The configured replica router, or {@code null}.
+     */
+    public DistinctOnReplicaRouter getReplicaRouter() {
+        return settings.getReplicaRouter();
+    }
+
+    /**
+     * The configured sort tuner, or {@code null}.
+     */
+    public DistinctOnSortTuner getSortTuner() {
+        return sortTuner;
+    }
+
+    /**
+     * The materialization read for the spec, or {@code null}.
+     */
+    public DistinctOnMaterialization materializationFor(DistinctOnSpec spec) {
+        return materializations.get(spec);
+    }
+
+    /**
+     * The configured metrics, {@link DistinctOnMetrics#NOOP} if disabled.
+     */
+    public DistinctOnMetrics getMetrics() {
+        return metrics != null ? metrics : DistinctOnMetrics.NOOP;
+    }
+
+    /**
+     * Publishes the statistics of the session factory's DISTINCT_ON fragment cache to the configured metrics, if the
+     * session factory uses {@link PostgreSqlDistinctOnDialect}.
+     */
+    public void bindFragmentCache(SessionFactory sessionFactory) {
+        Dialect dialect = sessionFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        if (metrics != null && dialect instanceof PostgreSqlDistinctOnDialect) {
+            metrics.bindFragmentCache(((PostgreSqlDistinctOnDialect) dialect).getFragmentCache());
+        }
+    }
+
+    /**
+     * The fixed strategy, or the fallback when a selector is configured.
+     */
+    public DistinctOnStrategy getStrategy() {
+        return strategy;
+    }
+
+    public DistinctOnStrategySelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * The strategy used for the spec: the selector's choice if one is configured, otherwise the fixed strategy.
+     * A fixed {@link DistinctOnStrategy#DISTINCT_ON} falls back to {@link DistinctOnStrategy#ROW_NUMBER} for
+     * top-N-per-group specs, which like DISTINCT ON keeps the group of NULL keys. Materialized specs skip the selector,
+     * their strategy is not used.
+     */
+    public DistinctOnStrategy strategyFor(SharedSessionContract session, DistinctOnSpec spec) {
+        if (selector != null && !materializations.containsKey(spec)) {
+            StrategyDecision decision = selector.select(session, spec);
+            if (metrics != null) {
+                metrics.strategySelected(decision);
+            }
+            return decision.getStrategy();
+        }
+        if (strategy == DistinctOnStrategy.DISTINCT_ON && spec.getRowsPerGroup() > 1) {
+            return DistinctOnStrategy.ROW_NUMBER;
+        }
+        return strategy;
+    }
+
+    /**
+     * Creates the native query for the spec with this executor's strategy. Bind any named parameters
+     * of the spec's filter on the returned query.
+     */
+    public <T> NativeQuery<T> createQuery(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType) {
+        return createQuery(session, spec, entityType, strategyFor(session, spec));
+    }
+
+    public <T> NativeQuery<T> createQuery(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType, DistinctOnStrategy strategy) {
+        return cacheable(session, session.createNativeQuery(render(spec, strategy, null), entityType), spec, entityType);
+    }
+
+    /**
+     * Marks the query cacheable in the configured region, synchronized with the tables it reads.
+     */
+    private <Q extends NativeQuery<?>> Q cacheable(SharedSessionContract session, Q query, DistinctOnSpec spec,
+                                                   Class<?> entityType) {
+        if (queryCacheRegion == null) {
+            return query;
+        }
+        query.setCacheable(true);
+        query.setCacheRegion(queryCacheRegion);
+        query.addSynchronizedQuerySpace(spec.getTable());
+        if (entityType != null) {
+            query.addSynchronizedEntityClass(entityType);
+            if (checkedEntityTypes.add(entityType) && !((SharedSessionContractImplementor) session).getFactory()
+                    .getMetamodel().entityPersister(entityType).canReadFromCache()) {
+                LOG.warnf("%s is not in the second-level cache, every hit of query cache region %s loads its entities "
+                        + "one by one, annotate it with @Cacheable", entityType.getName(), queryCacheRegion);
+            }
+        }
+        return query;
+    }
+
+    private String render(DistinctOnSpec spec, DistinctOnStrategy strategy, String selectList) {
+        DistinctOnMaterialization materialization = materializations.get(spec);
+        return materialization != null ? materialization.render(selectList) : strategy.render(spec, selectList);
+    }
+
+    public <T> List<T> list(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType) {
+        return list(session, spec, entityType, strategyFor(session, spec));
+    }
+
+    public <T> List<T> list(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType, DistinctOnStrategy strategy) {
+        return replicaReads.run(session, s -> execute(s, spec, strategy, createQuery(s, spec, entityType, strategy)));
+    }
+
+    /**
+     * Creates a native query selecting only the projection's columns, returning one projection instance per row.
+     * No entity is loaded, so nothing enters the persistence context.
+     *
+     * @throws IllegalArgumentException if a column type has no Hibernate type
+     */
+    public <R> NativeQuery<R> createQuery(SharedSessionContract session, DistinctOnSpec spec, DistinctOnProjection<R> projection) {
+        return createQuery(session, spec, projection, strategyFor(session, spec));
+    }
+
+    @SuppressWarnings({"unchecked", "deprecation"})
+    public <R> NativeQuery<R> createQuery(SharedSessionContract session, DistinctOnSpec spec, DistinctOnProjection<R> projection,
+                                          DistinctOnStrategy strategy) {
+        NativeQuery<R> query = session.createNativeQuery(render(spec, strategy, projection.getSelectList()));
+        TypeHelper types = ((SharedSessionContractImplementor) session).getFactory().getTypeHelper();
+        for (int i = 0; i < projection.getColumns().size(); i++) {
+            Class<?> javaType = projection.getColumnTypes().get(i);
+            Type type = types.heuristicType(javaType.getName());
+            if (type == null) {
+                throw new IllegalArgumentException("No Hibernate type for " + javaType.getName() + " of " + projection);
+            }
+            query.addScalar(projection.getColumnAlias(i), type);
+        }
+        query.setResultTransformer(new ProjectionTransformer(projection));
+        return cacheable(session, query, spec, null);
+    }
+
+    public <R> List<R> list(SharedSessionContract session, DistinctOnSpec spec, DistinctOnProjection<R> projection) {
+        return list(session, spec, projection, strategyFor(session, spec));
+    }
+
+    public <R> List<R> list(SharedSessionContract session, DistinctOnSpec spec, DistinctOnProjection<R> projection,
+                            DistinctOnStrategy strategy) {
+        return replicaReads.run(session, s -> execute(s, spec, strategy, createQuery(s, spec, projection, strategy)));
+    }
+
+    private <T> List<T> execute(SharedSessionContract session, DistinctOnSpec spec, DistinctOnStrategy strategy,
+                                NativeQuery<T> query) {
+        if (sortTuner == null || !sortTuner.needsTransaction(query.getQueryString())) {
+            return execute(spec, strategy, query);
+        }
+        // SET LOCAL only lasts for a transaction
+        Transaction transaction = session.getTransaction().isActive() ? null : session.beginTransaction();
+        try {
+            sortTuner.prepare(session, spec, strategy, query);
+            List<T> rows = execute(spec, strategy, query);
+            if (transaction != null) {
+                transaction.commit();
+            }
+            return rows;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    private <T> List<T> execute(DistinctOnSpec spec, DistinctOnStrategy strategy, NativeQuery<T> query) {
+        DistinctOnExecutionEvent event = new DistinctOnExecutionEvent();
+        if (metrics == null && !event.isEnabled()) {
+            return query.getResultList();
+        }
+        event.begin();
+        long start = System.nanoTime();
+        List<T> rows;
+        try {
+            rows = query.getResultList();
+        } catch (RuntimeException e) {
+            event.report(spec, strategy, query.getQueryString(), 0, true);
+            if (metrics != null) {
+                metrics.queryFailed(spec, strategy, System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+        event.report(spec, strategy, query.getQueryString(), rows.size(), false);
+        if (metrics != null) {
+            metrics.queryExecuted(spec, strategy, System.nanoTime() - start, rows.size());
+        }
+        return rows;
+    }
+
+    /**
+     * Creates the native query for the criteria with its values bound. The SQL is rendered once per criteria shape and
+     * strategy, later criteria of the same shape only bind their values.
+     *
+     * @throws IllegalArgumentException if an attribute of the criteria is not mapped to exactly one column
+     */
+    public <T> NativeQuery<T> createQuery(SharedSessionContract session, DistinctOnCriteria<T> criteria) {
+        CriteriaTemplates.Template template = template(session, criteria);
+        return createQuery(session, criteria, template, strategyFor(session, template.getSpec()));
+    }
+
+    public <T> List<T> list(SharedSessionContract session, DistinctOnCriteria<T> criteria) {
+        CriteriaTemplates.Template template = template(session, criteria);
+        DistinctOnStrategy strategy = strategyFor(session, template.getSpec());
+        return replicaReads.run(session, s -> execute(s, template.getSpec(), strategy, createQuery(s, criteria, template, strategy)));
+    }
+
+    public <T> Stream<T> stream(SharedSessionContract session, DistinctOnCriteria<T> criteria) {
+        return stream(session, criteria, DEFAULT_FETCH_SIZE);
+    }
+
+    public <T> Stream<T> stream(SharedSessionContract session, DistinctOnCriteria<T> criteria, int fetchSize) {
+        CriteriaTemplates.Template template = template(session, criteria);
+        DistinctOnStrategy strategy = strategyFor(session, template.getSpec());
+        return stream(session, createQuery(session, criteria, template, strategy), fetchSize, template.getSpec(), strategy);
+    }
+
+    private CriteriaTemplates.Template template(SharedSessionContract session, DistinctOnCriteria<?> criteria) {
+        return criteriaTemplates.get(((SharedSessionContractImplementor) session).getFactory(), criteria);
+    }
+
+    private <T> NativeQuery<T> createQuery(SharedSessionContract session, DistinctOnCriteria<T> criteria,
+                                           CriteriaTemplates.Template template, DistinctOnStrategy strategy) {
+        NativeQuery<T> query = session.createNativeQuery(
+                template.sql(strategy, s -> render(template.getSpec(), s, null)), criteria.getEntityType());
+        List<Object> parameters = criteria.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+        return cacheable(session, query, template.getSpec(), criteria.getEntityType());
+    }
+
+    /**
+     * Number of criteria shapes compiled by this executor.
+     */
+    int criteriaTemplateCount() {
+        return criteriaTemplates.size();
+    }
+
+    public <T> List<T> lookup(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType, Collection<?> keys) {
+        return lookup(session, spec, entityType, keys, DEFAULT_LOOKUP_CHUNK_SIZE, Collections.emptyMap());
+    }
+
+    /**
+     * The first row(s) of the groups with the given keys, e.g. the latest event of 5,000 users. The keys are bound as
+     * one array, {@code user_id = ANY(CAST(:distinct_on_keys AS bigint[]))}, so every batch runs the same statement
+     * text and reuses the server-side prepared statement and Hibernate's query plan, whatever the number of keys.
+     * <p>
+     * Duplicate keys are ignored and the keys are sent in chunks of {@code chunkSize}. Numeric and date/time keys are
+     * sorted first, so the result follows the spec's ORDER BY across chunks; text, uuid and boolean keys are only
+     * ordered within a chunk.
+     *
+     * @param parameters values of the named parameters of the spec's filter
+     * @throws IllegalArgumentException if the spec has more than one DISTINCT ON column, or a key is null or of an
+     *                                  unsupported type
+     */
+    public <T> List<T> lookup(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType, Collection<?> keys,
+                              int chunkSize, Map<String, ?> parameters) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        if (spec.getDistinctColumns().size() != 1) {
+            throw new IllegalArgumentException("Lookup requires a single DISTINCT ON column: " + spec.getDistinctColumns());
+        }
+        List<Object> distinctKeys = KeyArray.distinct(keys, spec.getOrderBy().get(0).isDescending());
+        if (distinctKeys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        DistinctOnSpec lookup = spec.and(spec.getDistinctColumns().get(0) + " = ANY(CAST(:" + KEYS_PARAMETER
+                + " AS " + KeyArray.sqlType(distinctKeys) + "[]))");
+        DistinctOnStrategy strategy = strategyFor(session, lookup);
+
+        return replicaReads.run(session, s -> lookupChunks(s, lookup, entityType, strategy, distinctKeys, chunkSize, parameters));
+    }
+
+    private <T> List<T> lookupChunks(SharedSessionContract session, DistinctOnSpec lookup, Class<T> entityType,
+                                     DistinctOnStrategy strategy, List<Object> keys, int chunkSize, Map<String, ?> parameters) {
+        List<T> result = new ArrayList<>(keys.size() * lookup.getRowsPerGroup());
+        for (int from = 0; from < keys.size(); from += chunkSize) {
+            List<Object> chunk = keys.subList(from, Math.min(from + chunkSize, keys.size()));
+            NativeQuery<T> query = createQuery(session, lookup, entityType, strategy);
+            parameters.forEach(query::setParameter);
+            query.setParameter(KEYS_PARAMETER, KeyArray.literal(chunk));
+            result.addAll(execute(session, lookup, strategy, query));
+        }
+        return result;
+    }
+
+    public <T> DistinctOnPage<T> page(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType,
+                                      String pageToken, int pageSize) {
+        return page(session, spec, entityType, pageToken, pageSize, Collections.emptyMap());
+    }
+
+    /**
+     * Keyset (seek) pagination over the groups of the spec: instead of an OFFSET, each page starts after the
+     * DISTINCT ON key of the previous page's last row, carried by an opaque token. With an index on the ORDER BY
+     * every page costs the same as the first one.
+     * <p>
+     * Pass {@code null} as the token for the first page, then {@link DistinctOnPage#getNextPageToken()}. The
+     * DISTINCT ON columns must be NOT NULL and the spec must return one row per group.
+     *
+     * @param parameters values of the named parameters of the spec's filter
+     * @throws IllegalArgumentException if the token is invalid or was issued for another spec
+     */
+    public <T> DistinctOnPage<T> page(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType,
+                                      String pageToken, int pageSize, Map<String, ?> parameters) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        int keyCount = spec.getDistinctColumns().size();
+        List<Object> afterKey = pageToken != null ? KeysetToken.decode(pageToken, spec.hashCode(), keyCount) : null;
+
+        // one extra row tells whether there is a next page
+        DistinctOnStrategy strategy = strategyFor(session, spec);
+        List<?> rows = replicaReads.run(session, s -> pageRows(s, spec, entityType, strategy, afterKey, pageSize + 1, parameters));
+        List<T> content = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (int i = 0; i < rows.size() && i < pageSize; i++) {
+            content.add(entityType.cast(((Object[]) rows.get(i))[0]));
+        }
+        String nextPageToken = null;
+        if (rows.size() > pageSize) {
+            Object[] last = (Object[]) rows.get(pageSize - 1);
+            nextPageToken = KeysetToken.encode(spec.hashCode(), Arrays.asList(last).subList(1, last.length));
+        }
+        return new DistinctOnPage<>(content, nextPageToken);
+    }
+
+    // each row is the entity followed by its DISTINCT ON key
+    private List<?> pageRows(SharedSessionContract session, DistinctOnSpec spec, Class<?> entityType, DistinctOnStrategy strategy,
+                             List<Object> afterKey, int limit, Map<String, ?> parameters) {
+        NativeQuery<?> query = session.createNativeQuery(strategy.renderPage(spec, afterKey != null, limit)).addEntity(entityType);
+        for (int i = 1; i <= spec.getDistinctColumns().size(); i++) {
+            query.addScalar(DistinctOnStrategy.KEY_PARAMETER + i);
+            if (afterKey != null) {
+                query.setParameter(DistinctOnStrategy.KEY_PARAMETER + i, afterKey.get(i - 1));
+            }
+        }
+        parameters.forEach(query::setParameter);
+        cacheable(session, query, spec, entityType);
+        return execute(session, spec, strategy, query);
+    }
+
+    public <T> Stream<T> stream(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType) {
+        return stream(session, spec, entityType, DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Streams the result through a server-side cursor instead of materializing it, see
+     * {@link #stream(SharedSessionContract, NativeQuery, int)}.
+     */
+    public <T> Stream<T> stream(SharedSessionContract session, DistinctOnSpec spec, Class<T> entityType, int fetchSize) {
+        DistinctOnStrategy strategy = strategyFor(session, spec);
+        return stream(session, createQuery(session, spec, entityType, strategy), fetchSize, spec, strategy);
+    }
+
+    public <R> Stream<R> stream(SharedSessionContract session, DistinctOnSpec spec, DistinctOnProjection<R> projection) {
+        return stream(session, spec, projection, DEFAULT_FETCH_SIZE);
+    }
+
+    public <R> Stream<R> stream(SharedSessionContract session, DistinctOnSpec spec, DistinctOnProjection<R> projection, int fetchSize) {
+        DistinctOnStrategy strategy = strategyFor(session, spec);
+        return stream(session, createQuery(session, spec, projection, strategy), fetchSize, spec, strategy);
+    }
+
+    /**
+     * Streams a query created by {@link #createQuery}, e.g. after binding the filter parameters. Rows are read from a
+     * forward-only cursor {@code fetchSize} at a time, so memory stays flat whatever the size of the result:
+     * <ul>
+     *     <li>PostgreSQL only uses a cursor inside a transaction. If none is active, the stream begins one and rolls it
+     *     back when closed.</li>
+     *     <li>On a {@link Session} the entities are loaded read-only and detached once the stream has passed them on,
+     *     so the persistence context does not grow. A {@link org.hibernate.StatelessSession} keeps no state at all.</li>
+     * </ul>
+     * The stream holds a connection and must be closed, use it in a try-with-resources block.
+     */
+    public <T> Stream<T> stream(SharedSessionContract session, NativeQuery<T> query, int fetchSize) {
+        return stream(session, query, fetchSize, null, null);
+    }
+
+    private <T> Stream<T> stream(SharedSessionContract session, NativeQuery<T> query, int fetchSize,
+                                 DistinctOnSpec spec, DistinctOnStrategy strategy) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        query.setFetchSize(fetchSize);
+        if (session instanceof Session) {
+            query.setReadOnly(true);
+            query.setCacheMode(CacheMode.IGNORE);
+        }
+        boolean instrumented = metrics != null && spec != null;
+        long start = instrumented ? System.nanoTime() : 0;
+        DistinctOnExecutionEvent event = new DistinctOnExecutionEvent();
+        event.begin();
+        Transaction transaction = session.getTransaction().isActive() ? null : session.beginTransaction();
+        ScrollableResults results;
+        try {
+            if (sortTuner != null) {
+                sortTuner.prepare(session, spec, strategy, query);
+            }
+            results = query.scroll(ScrollMode.FORWARD_ONLY);
+        } catch (RuntimeException e) {
+            if (transaction != null) {
+                transaction.rollback();
+            }
+            event.report(spec, strategy, query.getQueryString(), 0, true);
+            if (instrumented) {
+                metrics.queryFailed(spec, strategy, System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+        CursorSpliterator<T> spliterator = new CursorSpliterator<>(results, session instanceof Session ? (SessionImplementor) session : null);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                results.close();
+            } finally {
+                if (transaction != null && transaction.isActive()) {
+                    transaction.rollback();
+                }
+                event.report(spec, strategy, query.getQueryString(), spliterator.rows, false);
+                if (instrumented) {
+                    metrics.queryExecuted(spec, strategy, System.nanoTime() - start, spliterator.rows);
+                }
+            }
+        });
+    }
+
+    public long export(SharedSessionContract session, DistinctOnSpec spec, DistinctOnCopySink sink) {
+        return export(session, spec, Collections.emptyList(), sink);
+    }
+
+    /**
+     * Streams the result as {@code COPY (...) TO STDOUT (FORMAT binary)} into the sink, for exports and ETL jobs that
+     * would otherwise load millions of entities. The rows are decoded in place from the COPY buffers, see
+     * {@link DistinctOnCopyRow}: no entity, no JDBC result set and no value is created unless the sink asks for it.
+     * <p>
+     * COPY takes no bind parameters, so the spec's filter must not have any; inline the values instead.
+     *
+     * @param columns select list in field order, empty for all columns of the table
+     * @return the number of rows
+     * @throws IllegalArgumentException if the filter has parameters
+     * @throws HibernateException       if the COPY fails
+     */
+    public long export(SharedSessionContract session, DistinctOnSpec spec, List<String> columns, DistinctOnCopySink sink) {
+        if (spec.hasParameters()) {
+            throw new IllegalArgumentException("COPY cannot bind parameters, inline them in the filter: " + spec.getWhere());
+        }
+        DistinctOnStrategy strategy = strategyFor(session, spec);
+        String sql = "COPY (" + render(spec, strategy, columns.isEmpty() ? null : String.join(", ", columns))
+                + ") TO STDOUT (FORMAT binary)";
+        DistinctOnExecutionEvent event = new DistinctOnExecutionEvent();
+        event.begin();
+        long start = metrics != null ? System.nanoTime() : 0;
+        BinaryCopyParser parser = new BinaryCopyParser(sink);
+        try {
+            session.doWork(connection -> copyOut(connection.unwrap(PGConnection.class).getCopyAPI(), sql, parser));
+        } catch (RuntimeException e) {
+            event.report(spec, strategy, sql, parser.rows(), true);
+            if (metrics != null) {
+                metrics.queryFailed(spec, strategy, System.nanoTime() - start, e);
+            }
+            throw e;
+        }
+        event.report(spec, strategy, sql, parser.rows(), false);
+        if (metrics != null) {
+            metrics.queryExecuted(spec, strategy, System.nanoTime() - start, parser.rows());
+        }
+        return parser.rows();
+    }
+
+    private static void copyOut(CopyManager copyManager, String sql, BinaryCopyParser parser) throws SQLException {
+        CopyOut copy = copyManager.copyOut(sql);
+        try {
+            byte[] chunk;
+            while ((chunk = copy.readFromCopy()) != null) {
+                parser.accept(chunk);
+            }
+            parser.finish();
+        } catch (RuntimeException | SQLException e) {
+            // the connection is unusable until the COPY ends; pgjdbc's cancelCopy() leaves its protocol state
+            // inconsistent for copy-out, so read the rest instead
+            try {
+                while (copy.isActive() && copy.readFromCopy() != null) {
+                    // discard
+                }
+            } catch (SQLException drainFailure) {
+                e.addSuppressed(drainFailure);
+            }
+            throw e;
+        }
+    }
+
+    public <T> List<T> parallelList(SessionFactory sessionFactory, DistinctOnSpec spec, Class<T> entityType,
+                                    DistinctOnPartitioning partitioning) {
+        return parallelList(sessionFactory, spec, entityType, partitioning, Collections.emptyMap());
+    }
+
+    public <T> List<T> parallelList(SessionFactory sessionFactory, DistinctOnSpec spec, Class<T> entityType,
+                                    DistinctOnPartitioning partitioning, Map<String, ?> parameters) {
+        try (Stream<T> stream = parallelStream(sessionFactory, spec, entityType, partitioning, parameters)) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Runs the spec as one query per key range of its leading ORDER BY column, see {@link DistinctOnPartitioning},
+     * concurrently on virtual threads, each with its own {@link StatelessSession} and so its own connection. The
+     * ranges are concatenated in key order, which gives the rows and the order of the serial query.
+     * <p>
+     * Every range is materialized as soon as its query returns, the stream hands them out in order while later
+     * ranges are still running. The number of ranges is the number of connections used at once, keep it within the
+     * connection pool. The entities are detached. Closing the stream cancels the ranges not read yet.
+     *
+     * @param parameters values of the named parameters of the spec's filter
+     */
+    public <T> Stream<T> parallelStream(SessionFactory sessionFactory, DistinctOnSpec spec, Class<T> entityType,
+                                        DistinctOnPartitioning partitioning, Map<String, ?> parameters) {
+        DistinctOnStrategy strategy;
+        List<Object> splits;
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            strategy = strategyFor(session, spec);
+            splits = partitioning.splits(session, spec);
+        }
+
+        List<Future<List<T>>> ranges = new ArrayList<>(splits.size() + 1);
+        // not try-with-resources: close() would wait for every range before the first one is returned
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            for (int i = 0; i <= splits.size(); i++) {
+                Object lower = i > 0 ? splits.get(i - 1) : null;
+                Object upper = i < splits.size() ? splits.get(i) : null;
+                DistinctOnSpec range = DistinctOnPartitioning.range(spec, lower != null, upper != null);
+                ranges.add(threads.submit(() -> {
+                    try (StatelessSession session = sessionFactory.openStatelessSession()) {
+                        NativeQuery<T> query = createQuery(session, range, entityType, strategy);
+                        parameters.forEach(query::setParameter);
+                        if (lower != null) {
+                            query.setParameter(DistinctOnPartitioning.LOWER_PARAMETER, lower);
+                        }
+                        if (upper != null) {
+                            query.setParameter(DistinctOnPartitioning.UPPER_PARAMETER, upper);
+                        }
+                        return execute(session, spec, strategy, query);
+                    }
+                }));
+            }
+        } finally {
+            threads.shutdown();
+        }
+        if (spec.getOrderBy().get(0).isDescending()) {
+            Collections.reverse(ranges);
+        }
+        return ranges.stream()
+                .flatMap(range -> await(range).stream())
+                .onClose(() -> ranges.forEach(range -> range.cancel(true)));
+    }
+
+    private static <T> List<T> await(Future<List<T>> range) {
+        try {
+            return range.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HibernateException("Interrupted while waiting for a DISTINCT ON range", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new HibernateException("DISTINCT ON range failed", e.getCause());
+        }
+    }
+
+    /**
+     * Builds projection instances from scalar rows, for both {@code list()} and scrolling.
+     */
+    @SuppressWarnings("deprecation")
+    private static final class ProjectionTransformer implements ResultTransformer {
+        private static final long serialVersionUID = 1L;
+
+        private final transient DistinctOnProjection<?> projection;
+
+        ProjectionTransformer(DistinctOnProjection<?> projection) {
+            this.projection = projection;
+        }
+
+        @Override
+        public Object transformTuple(Object[] tuple, String[] aliases) {
+            return projection.map(tuple);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public List transformList(List collection) {
+            return collection;
+        }
+    }
+
+    /**
+     * Walks a forward-only cursor, detaching every entity from the session once it has been consumed.
+     */
+    private static final class CursorSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final ScrollableResults results;
+        private final SessionImplementor session;
+        long rows;
+
+        CursorSpliterator(ScrollableResults results, SessionImplementor session) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.results = results;
+            this.session = session;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!results.next()) {
+                return false;
+            }
+            T row = (T) results.get(0);
+            rows++;
+            action.accept(row);
+            // projections are not managed, only entities are detached
+            if (session != null && session.getPersistenceContext().getEntry(row) != null) {
+                session.detach(row);
+            }
+            return true;
+        }
+    }
+}
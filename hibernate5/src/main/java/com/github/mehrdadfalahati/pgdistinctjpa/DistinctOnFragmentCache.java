@@ -0,0 +1,179 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe cache of rendered {@code DISTINCT ON(...)} fragments, keyed by the argument list.
+ * <p>
+ * The cache is a direct-mapped table: every argument shape hashes to exactly one slot and a new shape
+ * simply replaces whatever was there, so the number of cached fragments never exceeds the capacity.
+ * Entries are immutable, which makes the racy slot reads and writes safe without locking.
+ * A hit only hashes and compares the arguments and returns the cached String, it allocates nothing.
+ */
+public final class DistinctOnFragmentCache {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final Entry[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DistinctOnFragmentCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public DistinctOnFragmentCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Fragment cache capacity must be positive: " + capacity);
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Returns {@code DISTINCT ON(col1,col2,...) entity } for the given {@code [col1, col2, ..., entity]} arguments.
+     *
+     * @throws IllegalArgumentException if fewer than two arguments are given
+     */
+    public String render(List<?> arguments) {
+        int hash = hash(arguments);
+        int slot = hash & mask;
+        Entry entry = table[slot];
+        if (entry != null && entry.hash == hash && entry.matches(arguments)) {
+            hits.increment();
+            return entry.fragment;
+        }
+        misses.increment();
+
+        String[] shape = toShape(arguments);
+        String fragment = build(shape);
+        table[slot] = new Entry(hash, shape, fragment);
+        return fragment;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * Number of slots currently holding a fragment, never more than {@link #capacity()}.
+     */
+    public int size() {
+        int size = 0;
+        for (Entry entry : table) {
+            if (entry != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = null;
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static int hash(List<?> arguments) {
+        int hash = 1;
+        if (arguments instanceof RandomAccess) {
+            for (int i = 0, size = arguments.size(); i < size; i++) {
+                hash = 31 * hash + String.valueOf(arguments.get(i)).hashCode();
+            }
+        } else {
+            for (Object argument : arguments) {
+                hash = 31 * hash + String.valueOf(argument).hashCode();
+            }
+        }
+        // spread the high bits so that small tables still see them
+        return hash ^ (hash >>> 16);
+    }
+
+    private static String[] toShape(List<?> arguments) {
+        if (arguments.isEmpty()) {
+            throw new IllegalArgumentException("DISTINCT_ON requires at least 2 arguments: columns and entity");
+        }
+        if (arguments.size() < 2) {
+            throw new IllegalArgumentException("DISTINCT_ON requires at least 2 arguments: one column and the entity to select");
+        }
+        String[] shape = new String[arguments.size()];
+        Iterator<?> iterator = arguments.iterator();
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = String.valueOf(iterator.next());
+        }
+        return shape;
+    }
+
+    // PostgreSQL DISTINCT ON syntax: DISTINCT ON (col1, col2, ...) entity
+    // All arguments except the last go in DISTINCT ON(), the last argument goes after
+    private static String build(String[] shape) {
+        int last = shape.length - 1;
+        // "DISTINCT ON(" + ") " + trailing space, plus (last - 1) commas
+        int length = "DISTINCT ON() ".length() + 1 + (last - 1);
+        for (String part : shape) {
+            length += part.length();
+        }
+        StringBuilder sql = new StringBuilder(length).append("DISTINCT ON(");
+        for (int i = 0; i < last; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(shape[i]);
+        }
+        return sql.append(") ").append(shape[last]).append(' ').toString();
+    }
+
+    private static final class Entry {
+        final int hash;
+        final String[] shape;
+        final String fragment;
+
+        Entry(int hash, String[] shape, String fragment) {
+            this.hash = hash;
+            this.shape = shape;
+            this.fragment = fragment;
+        }
+
+        boolean matches(List<?> arguments) {
+            if (arguments.size() != shape.length) {
+                return false;
+            }
+            if (arguments instanceof RandomAccess) {
+                for (int i = 0; i < shape.length; i++) {
+                    if (!shape[i].equals(String.valueOf(arguments.get(i)))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            int i = 0;
+            for (Object argument : arguments) {
+                if (!shape[i++].equals(String.valueOf(argument))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+import com.github.mehrdadfalahati.pgdistinctjpa.TableProfile.IndexProfile;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.jboss.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Opt-in startup check that every registered {@link DistinctOnSpec} is served by a btree index leading with the
+ * DISTINCT ON columns followed by the ORDER BY tie-breakers. Without one, PostgreSQL sorts the whole table on every
+ * execution. Indexes are read from {@code pg_index} through {@link TableProfile}.
+ * <p>
+ * Register it as a session factory observer, the check then runs once the session factory (and any generated
+ * schema) is ready:
+ *
+ * <pre>{@code
+ * DistinctOnIndexAdvisor advisor = new DistinctOnIndexAdvisor(DistinctOnIndexAdvisor.Mode.FAIL)
+ *         .register(latestEventPerUser, topOrdersPerCustomer);
+ * configuration.setSessionFactoryObserver(advisor);
+ * // or, with JPA: properties.put("hibernate.session_factory_observer", advisor);
+ * }</pre>
+ *
+ * In {@link Mode#WARN} mode every missing index is logged with the suggested {@code CREATE INDEX}, in
+ * {@link Mode#FAIL} mode building the session factory fails.
+ */
+public class DistinctOnIndexAdvisor implements SessionFactoryObserver {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger LOG = Logger.getLogger(DistinctOnIndexAdvisor.class);
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*(\\.[A-Za-z_][A-Za-z0-9_$]*)?|\"[^\"]+\"");
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    public enum Mode {
+        /**
+         * Log a warning per spec without a matching index.
+         */
+        WARN,
+        /**
+         * Fail the session factory bootstrap if any spec has no matching index.
+         */
+        FAIL
+    }
+
+    private final Mode mode;
+    private final List<DistinctOnSpec> specs = new CopyOnWriteArrayList<>();
+    private volatile List<IndexAdvice> advice = Collections.emptyList();
+
+    public DistinctOnIndexAdvisor() {
+        this(Mode.WARN);
+    }
+
+    public DistinctOnIndexAdvisor(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Mode must not be null");
+        }
+        this.mode = mode;
+    }
+
+    public DistinctOnIndexAdvisor register(DistinctOnSpec... specs) {
+        for (DistinctOnSpec spec : specs) {
+            if (spec == null) {
+                throw new IllegalArgumentException("Spec must not be null");
+            }
+            this.specs.add(spec);
+        }
+        return this;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public List<DistinctOnSpec> getSpecs() {
+        return Collections.unmodifiableList(specs);
+    }
+
+    /**
+     * Advice of the last check, one per registered spec.
+     */
+    public List<IndexAdvice> getAdvice() {
+        return advice;
+    }
+
+    @Override
+    public void sessionFactoryCreated(SessionFactory factory) {
+        if (specs.isEmpty()) {
+            return;
+        }
+        try (Session session = factory.openSession()) {
+            session.doReturningWork(this::check);
+        }
+    }
+
+    /**
+     * Checks every registered spec against the indexes of its table, logging or failing according to the mode.
+     *
+     * @throws HibernateException in {@link Mode#FAIL} mode, if a spec has no matching index
+     */
+    public List<IndexAdvice> check(Connection connection) throws SQLException {
+        Map<String, TableProfile> profiles = new HashMap<>();
+        List<IndexAdvice> results = new ArrayList<>(specs.size());
+        List<IndexAdvice> missing = new ArrayList<>();
+        for (DistinctOnSpec spec : specs) {
+            if (!profiles.containsKey(spec.getTable())) {
+                profiles.put(spec.getTable(), loadProfile(connection, spec.getTable()));
+            }
+            TableProfile profile = profiles.get(spec.getTable());
+            IndexAdvice result;
+            if (profile == null) {
+                result = new IndexAdvice(spec, null, "table not found", suggestIndex(spec));
+            } else {
+                result = advise(spec, profile);
+            }
+            results.add(result);
+            if (result.isSatisfied()) {
+                LOG.debugf("%s", result);
+            } else {
+                missing.add(result);
+                LOG.warnf("%s", result);
+            }
+        }
+        this.advice = Collections.unmodifiableList(results);
+        if (mode == Mode.FAIL && !missing.isEmpty()) {
+            StringBuilder message = new StringBuilder("DISTINCT ON queries without a matching btree index:");
+            for (IndexAdvice result : missing) {
+                message.append(System.lineSeparator()).append("  ").append(result);
+            }
+            throw new HibernateException(message.toString());
+        }
+        return results;
+    }
+
+    private static TableProfile loadProfile(Connection connection, String table) throws SQLException {
+        try {
+            return TableProfile.load(connection, table);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The check for one spec: an index must return rows in the spec's full ORDER BY, forwards or backwards.
+     */
+    public static IndexAdvice advise(DistinctOnSpec spec, TableProfile profile) {
+        IndexProfile index = profile.findIndex(spec.getOrderBy());
+        if (index != null) {
+            return new IndexAdvice(spec, index.getName(), null, suggestIndex(spec));
+        }
+        IndexProfile leading = profile.findIndexLeadingWith(spec.getDistinctColumns());
+        String problem = leading != null
+                ? "index " + leading + " leads with the DISTINCT ON columns but does not match ORDER BY " + spec.getOrderBy()
+                : "no btree index leads with the DISTINCT ON columns";
+        return new IndexAdvice(spec, null, problem, suggestIndex(spec));
+    }
+
+    /**
+     * {@code CREATE INDEX} on the spec's ORDER BY, expressions in parentheses.
+     */
+    static String suggestIndex(DistinctOnSpec spec) {
+        StringBuilder name = new StringBuilder(unqualified(spec.getTable()));
+        StringBuilder columns = new StringBuilder();
+        for (SortKey key : spec.getOrderBy()) {
+            String column = key.getColumn();
+            if (columns.length() > 0) {
+                columns.append(", ");
+            }
+            columns.append(IDENTIFIER.matcher(column).matches() ? column : "(" + column + ")");
+            if (key.isDescending()) {
+                columns.append(" DESC");
+            }
+            name.append('_').append(unqualified(column));
+        }
+        String indexName = name.toString().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]+", "_").replaceAll("_+", "_");
+        if (indexName.length() > MAX_IDENTIFIER_LENGTH - 4) {
+            indexName = indexName.substring(0, MAX_IDENTIFIER_LENGTH - 4);
+        }
+        return "CREATE INDEX " + indexName.replaceAll("_$", "") + "_idx ON " + spec.getTable() + " (" + columns + ")";
+    }
+
+    private static String unqualified(String name) {
+        return IDENTIFIER.matcher(name).matches() ? name.substring(name.lastIndexOf('.') + 1) : name;
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.QueryException;
+import org.hibernate.dialect.function.SQLFunction;
+import org.hibernate.engine.spi.Mapping;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import java.util.List;
+
+/**
+ * HQL predicate that marks a query for DISTINCT ON, rewritten into real SQL by {@link DistinctOnStatementInspector}.
+ * <p>
+ * HQL usage: {@code SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department) = true ORDER BY e.department, e.salary DESC}
+ * <p>
+ * The function renders {@code true} preceded by a SQL comment holding the rendered distinct columns
+ * ({@link #MARKER_START} ... {@link #MARKER_END}), so the predicate is always true and the marker survives
+ * Hibernate's SQL generation untouched.
+ */
+public class DistinctOnMarker implements SQLFunction {
+
+    public static final String MARKER_START = "/*distinct_on:";
+    public static final String MARKER_END = "*/";
+
+    @Override
+    public boolean hasArguments() {
+        return true;
+    }
+
+    @Override
+    public boolean hasParenthesesIfNoArguments() {
+        return true;
+    }
+
+    @Override
+    public Type getReturnType(Type type, Mapping mapping) throws QueryException {
+        return StandardBasicTypes.BOOLEAN;
+    }
+
+    @Override
+    public String render(Type type, List arguments, SessionFactoryImplementor sessionFactoryImplementor) throws QueryException {
+        if (arguments.isEmpty()) {
+            throw new QueryException("DISTINCT_ON_KEYS requires at least 1 argument: the distinct columns");
+        }
+        // HQL translation only happens once per query thanks to the QueryPlanCache, so this is not memoized
+        StringBuilder sql = new StringBuilder(64).append(MARKER_START);
+        for (int i = 0; i < arguments.size(); i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append(arguments.get(i));
+        }
+        return sql.append(MARKER_END).append(" true").toString();
+    }
+}
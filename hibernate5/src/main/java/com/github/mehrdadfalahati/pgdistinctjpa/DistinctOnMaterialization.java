@@ -0,0 +1,280 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.SharedSessionContract;
+import org.hibernate.Transaction;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A side table holding the current result of a {@link DistinctOnSpec}, the first row(s) of every group, kept up to
+ * date by a row trigger on the source table. Hot specs then read a table with one row per group instead of
+ * recomputing DISTINCT ON; an executor configured with {@link DistinctOnExecutor#withMaterializations} does so for
+ * the exact spec.
+ * <p>
+ * On every insert, update or delete the trigger recomputes the affected group from the source table, the old and the
+ * new group if an update moves a row. Per group writers are serialized with a transaction-scoped advisory lock, so
+ * the recomputation always sees the rows committed by concurrent writers of the same group. Each write costs one
+ * index probe on the source table, which needs an index on the spec's ORDER BY.
+ * <pre>{@code
+ * DistinctOnMaterialization latest = DistinctOnMaterialization.of(spec);
+ * latest.create(session);
+ * DistinctOnExecutor executor = new DistinctOnExecutor().withMaterializations(latest);
+ * }</pre>
+ * The DISTINCT ON columns must be plain columns and the filter must not have parameters. Recreate the materialization
+ * after changing the columns of the source table. Writers must use READ COMMITTED, the default, so that the trigger
+ * sees the rows of the writers it waited for.
+ */
+public final class DistinctOnMaterialization {
+
+    private static final Pattern COLUMN = Pattern.compile("[A-Za-z_][A-Za-z0-9_$]*");
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+
+    private final DistinctOnSpec spec;
+    private final String table;
+
+    private DistinctOnMaterialization(DistinctOnSpec spec, String table) {
+        this.spec = spec;
+        this.table = table;
+    }
+
+    /**
+     * Materialization into {@code <table>_first_<distinct columns>}.
+     */
+    public static DistinctOnMaterialization of(DistinctOnSpec spec) {
+        return of(spec, defaultTableName(spec));
+    }
+
+    /**
+     * @throws IllegalArgumentException if a DISTINCT ON column is an expression or the filter has parameters
+     */
+    public static DistinctOnMaterialization of(DistinctOnSpec spec, String table) {
+        if (table == null || !COLUMN.matcher(table).matches()) {
+            throw new IllegalArgumentException("Materialization table must be a plain identifier: " + table);
+        }
+        for (String column : spec.getDistinctColumns()) {
+            if (!COLUMN.matcher(column).matches()) {
+                throw new IllegalArgumentException("Materialized DISTINCT ON columns must be plain columns: " + column);
+            }
+        }
+        if (spec.hasParameters()) {
+            throw new IllegalArgumentException("Materialized filter must not have parameters: " + spec.getWhere());
+        }
+        return new DistinctOnMaterialization(spec, table);
+    }
+
+    public DistinctOnSpec getSpec() {
+        return spec;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * Reads the materialized rows in the spec's order, selecting {@code selectList} or all columns.
+     */
+    String render(String selectList) {
+        StringBuilder sql = new StringBuilder(128).append("SELECT ").append(selectList != null ? selectList : "*")
+                .append(" FROM ").append(table).append(" ORDER BY ");
+        DistinctOnStrategy.appendOrderBy(sql, spec.getRowsPerGroup() > 1 ? spec.getOrderBy() : spec.getDistinctOrder());
+        return sql.toString();
+    }
+
+    /**
+     * Creates the table filled with the current result, its index, the trigger function and the trigger. The source
+     * table is locked against writes meanwhile, so that no write falls between the initial fill and the trigger.
+     */
+    public void create(SharedSessionContract session) {
+        execute(session, createStatements());
+    }
+
+    /**
+     * Recomputes the whole table, e.g. after the trigger was disabled.
+     */
+    public void refresh(SharedSessionContract session) {
+        execute(session, Arrays.asList(
+                lockSource(),
+                "TRUNCATE " + table,
+                "INSERT INTO " + table + " " + fill()));
+    }
+
+    public void drop(SharedSessionContract session) {
+        execute(session, dropStatements());
+    }
+
+    /**
+     * Whether the table exists in the database.
+     */
+    public boolean exists(SharedSessionContract session) {
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+                statement.setString(1, table);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    return rs.getBoolean(1);
+                }
+            }
+        });
+    }
+
+    List<String> createStatements() {
+        List<String> statements = new ArrayList<>();
+        statements.add(lockSource());
+        statements.add("CREATE TABLE " + table + " AS " + fill());
+        statements.add("CREATE " + (spec.getRowsPerGroup() == 1 ? "UNIQUE " : "") + "INDEX " + table + "_key ON " + table
+                + " (" + String.join(", ", spec.getDistinctColumns()) + ")");
+        statements.add(createFunction());
+        statements.add("CREATE TRIGGER " + table + "_refresh AFTER INSERT OR UPDATE OR DELETE ON " + spec.getTable()
+                + " FOR EACH ROW EXECUTE FUNCTION " + table + "_refresh()");
+        return statements;
+    }
+
+    List<String> dropStatements() {
+        return Arrays.asList(
+                "DROP TRIGGER IF EXISTS " + table + "_refresh ON " + spec.getTable(),
+                "DROP FUNCTION IF EXISTS " + table + "_refresh()",
+                "DROP TABLE IF EXISTS " + table);
+    }
+
+    /**
+     * The current first row(s) of every group, with exactly the columns of the source table. DISTINCT ON cannot
+     * return several rows per group, so top-N specs rank the rows and unpack the whole-row value, leaving out the
+     * rank; unlike LATERAL this keeps the group of NULL keys, which the trigger maintains too.
+     */
+    private String fill() {
+        if (spec.getRowsPerGroup() == 1) {
+            return DistinctOnStrategy.DISTINCT_ON.render(spec);
+        }
+        StringBuilder sql = new StringBuilder(256)
+                .append("SELECT (ranked.source_row).* FROM (SELECT source_row, ROW_NUMBER() OVER (PARTITION BY ");
+        DistinctOnStrategy.appendList(sql, spec.getDistinctColumns());
+        if (!spec.getTieBreakers().isEmpty()) {
+            sql.append(" ORDER BY ");
+            DistinctOnStrategy.appendOrderBy(sql, spec.getTieBreakers());
+        }
+        sql.append(") AS distinct_on_rn FROM ").append(spec.getTable()).append(" source_row");
+        DistinctOnStrategy.appendWhere(sql, spec.getWhere(), null);
+        return sql.append(") ranked WHERE distinct_on_rn <= ").append(spec.getRowsPerGroup()).toString();
+    }
+
+    private String lockSource() {
+        return "LOCK TABLE " + spec.getTable() + " IN SHARE ROW EXCLUSIVE MODE";
+    }
+
+    private String createFunction() {
+        String lock = "        PERFORM pg_advisory_xact_lock(hashtext('" + table + "'), ";
+        return "CREATE FUNCTION " + table + "_refresh() RETURNS trigger LANGUAGE plpgsql AS $$\n"
+                + "BEGIN\n"
+                + "    IF TG_OP = 'UPDATE' AND " + key("OLD") + " IS DISTINCT FROM " + key("NEW") + " THEN\n"
+                // two groups, locked in a fixed order so that crossing updates cannot deadlock
+                + lock + "least(" + lockKey("OLD") + ", " + lockKey("NEW") + "));\n"
+                + lock + "greatest(" + lockKey("OLD") + ", " + lockKey("NEW") + "));\n"
+                + refreshGroup("OLD")
+                + refreshGroup("NEW")
+                + "    ELSIF TG_OP = 'DELETE' THEN\n"
+                + lock + lockKey("OLD") + ");\n"
+                + refreshGroup("OLD")
+                + "    ELSE\n"
+                + lock + lockKey("NEW") + ");\n"
+                + refreshGroup("NEW")
+                + "    END IF;\n"
+                + "    RETURN NULL;\n"
+                + "END\n"
+                + "$$";
+    }
+
+    /**
+     * Replaces the materialized rows of the group of {@code OLD} or {@code NEW} by its current first rows.
+     */
+    private String refreshGroup(String record) {
+        String matches = keyMatches(record);
+        StringBuilder insert = new StringBuilder(256).append("INSERT INTO ").append(table).append(" SELECT * FROM ")
+                .append(spec.getTable());
+        DistinctOnStrategy.appendWhere(insert, spec.getWhere(), matches);
+        if (!spec.getTieBreakers().isEmpty()) {
+            insert.append(" ORDER BY ");
+            DistinctOnStrategy.appendOrderBy(insert, spec.getTieBreakers());
+        }
+        insert.append(" LIMIT ").append(spec.getRowsPerGroup());
+        return "        DELETE FROM " + table + " WHERE " + matches + ";\n"
+                + "        " + insert + ";\n";
+    }
+
+    private String lockKey(String record) {
+        return "hashtext(" + key(record) + "::text)";
+    }
+
+    private String key(String record) {
+        List<String> columns = new ArrayList<>();
+        for (String column : spec.getDistinctColumns()) {
+            columns.add(record + "." + column);
+        }
+        return "ROW(" + String.join(", ", columns) + ")";
+    }
+
+    private String keyMatches(String record) {
+        List<String> conditions = new ArrayList<>();
+        for (String column : spec.getDistinctColumns()) {
+            conditions.add(column + " IS NOT DISTINCT FROM " + record + "." + column);
+        }
+        return String.join(" AND ", conditions);
+    }
+
+    private void execute(SharedSessionContract session, List<String> statements) {
+        Transaction transaction = session.getTransaction().isActive() ? null : session.beginTransaction();
+        try {
+            session.doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : statements) {
+                        statement.execute(sql);
+                    }
+                }
+            });
+            if (transaction != null) {
+                transaction.commit();
+            }
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            throw e;
+        }
+    }
+
+    static String defaultTableName(DistinctOnSpec spec) {
+        String source = spec.getTable().substring(spec.getTable().lastIndexOf('.') + 1);
+        String name = (source + "_first_" + String.join("_", spec.getDistinctColumns()))
+                .toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]+", "_").replaceAll("_+", "_");
+        // room for the _refresh suffix of the function and trigger
+        return name.length() > MAX_IDENTIFIER_LENGTH - 8 ? name.substring(0, MAX_IDENTIFIER_LENGTH - 8) : name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DistinctOnMaterialization)) {
+            return false;
+        }
+        DistinctOnMaterialization other = (DistinctOnMaterialization) o;
+        return spec.equals(other.spec) && table.equals(other.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * spec.hashCode() + table.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctOnMaterialization{table=" + table + ", spec=" + spec + '}';
+    }
+}
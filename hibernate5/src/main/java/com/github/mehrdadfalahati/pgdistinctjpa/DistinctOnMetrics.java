@@ -0,0 +1,53 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.SessionFactory;
+
+/**
+ * Metrics SPI of the library. Implementations publish to a metrics system, see {@link MicrometerDistinctOnMetrics}.
+ * Every method has an empty default, override only what you need. Callbacks run on the querying thread and must be
+ * cheap and thread-safe.
+ * <p>
+ * {@link DistinctOnExecutor} only reports when metrics are configured with {@link DistinctOnExecutor#withMetrics};
+ * without metrics (or with {@link #NOOP}) it does not even read the clock.
+ */
+public interface DistinctOnMetrics {
+
+    /**
+     * Disables metrics.
+     */
+    DistinctOnMetrics NOOP = new DistinctOnMetrics() {
+    };
+
+    /**
+     * A query of the executor completed. For streams, the duration runs from opening to closing the stream and
+     * {@code rows} is the number of rows consumed.
+     */
+    default void queryExecuted(DistinctOnSpec spec, DistinctOnStrategy strategy, long durationNanos, long rows) {
+    }
+
+    /**
+     * A query of the executor failed.
+     */
+    default void queryFailed(DistinctOnSpec spec, DistinctOnStrategy strategy, long durationNanos, RuntimeException error) {
+    }
+
+    /**
+     * The {@link DistinctOnStrategySelector} of the executor made a decision.
+     */
+    default void strategySelected(StrategyDecision decision) {
+    }
+
+    /**
+     * Called once by {@link DistinctOnExecutor#bindFragmentCache}, to publish the cache statistics, e.g. as gauges
+     * reading {@link DistinctOnFragmentCache#hitCount()}.
+     */
+    default void bindFragmentCache(DistinctOnFragmentCache cache) {
+    }
+
+    /**
+     * Called once by {@link DistinctOnExecutor#bindQueryCache}, to publish the statistics of the executor's query
+     * cache region, e.g. as gauges reading {@link QueryCacheStatistics#of}.
+     */
+    default void bindQueryCache(SessionFactory sessionFactory, String region) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated DISTINCT ON request, see {@link DistinctOnExecutor#page}.
+ */
+public final class DistinctOnPage<T> {
+
+    private final List<T> content;
+    private final String nextPageToken;
+
+    DistinctOnPage(List<T> content, String nextPageToken) {
+        this.content = Collections.unmodifiableList(content);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * Opaque token for the next page, or {@code null} on the last page.
+     */
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctOnPage{size=" + content.size() + ", nextPageToken=" + nextPageToken + '}';
+    }
+}
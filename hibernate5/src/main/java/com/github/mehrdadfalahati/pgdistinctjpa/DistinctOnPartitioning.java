@@ -0,0 +1,174 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.SharedSessionContract;
+import org.jboss.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How {@link DistinctOnExecutor#parallelList} splits a spec into key ranges of its leading ORDER BY column, which is
+ * always a DISTINCT ON column, so every group falls into exactly one range. With the split points
+ * {@code b1 < b2 < ... < bk} the ranges are {@code < b1}, {@code [b1, b2)}, ..., {@code >= bk}; the last one also
+ * holds the NULL keys, which PostgreSQL sorts after every value (before, for a descending key). Reading the ranges in
+ * key order therefore yields exactly the rows, and the order, of the serial query.
+ * <p>
+ * The split points either come from the column's equal-frequency {@code pg_stats.histogram_bounds}, so ranges hold
+ * about the same number of rows, or are given explicitly. Without statistics the spec runs as a single range.
+ */
+public final class DistinctOnPartitioning {
+
+    private static final Logger LOG = Logger.getLogger(DistinctOnPartitioning.class);
+
+    static final String LOWER_PARAMETER = "distinct_on_lower";
+    static final String UPPER_PARAMETER = "distinct_on_upper";
+
+    private static final String TYPE_SQL =
+            "SELECT format_type(a.atttypid, a.atttypmod) FROM pg_attribute a "
+                    + "WHERE a.attrelid = to_regclass(?) AND a.attname = ? AND a.attnum > 0 AND NOT a.attisdropped";
+
+    // histogram_bounds is anyarray, the text round trip gives it the column type so JDBC returns typed values
+    private static final String HISTOGRAM_SQL =
+            "SELECT b.value FROM pg_stats s "
+                    + "JOIN pg_class c ON c.relname = s.tablename "
+                    + "JOIN pg_namespace n ON n.oid = c.relnamespace AND n.nspname = s.schemaname "
+                    + "CROSS JOIN LATERAL unnest(s.histogram_bounds::text::%s[]) WITH ORDINALITY AS b(value, n) "
+                    + "WHERE c.oid = to_regclass(?) AND s.attname = ? "
+                    + "ORDER BY b.n";
+
+    private final int partitions;
+    private final List<Object> splits;
+
+    private DistinctOnPartitioning(int partitions, List<Object> splits) {
+        this.partitions = partitions;
+        this.splits = splits;
+    }
+
+    /**
+     * Up to {@code partitions} ranges of about equal size, split at the column's histogram bounds.
+     */
+    public static DistinctOnPartitioning histogram(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+        }
+        return new DistinctOnPartitioning(partitions, null);
+    }
+
+    /**
+     * Ranges split at the given values of the leading ORDER BY column, in ascending order.
+     *
+     * @throws IllegalArgumentException if a value is null or the values are not strictly ascending
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static DistinctOnPartitioning splits(Object... values) {
+        List<Object> splits = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(values)));
+        for (int i = 0; i < splits.size(); i++) {
+            if (splits.get(i) == null) {
+                throw new IllegalArgumentException("Split values must not be null: " + splits);
+            }
+            if (i > 0 && splits.get(i) instanceof Comparable
+                    && ((Comparable) splits.get(i - 1)).compareTo(splits.get(i)) >= 0) {
+                throw new IllegalArgumentException("Split values must be strictly ascending: " + splits);
+            }
+        }
+        return new DistinctOnPartitioning(splits.size() + 1, splits);
+    }
+
+    /**
+     * The split points for the spec, ascending, at most {@code partitions - 1}.
+     */
+    List<Object> splits(SharedSessionContract session, DistinctOnSpec spec) {
+        if (splits != null) {
+            return splits;
+        }
+        if (partitions == 1) {
+            return Collections.emptyList();
+        }
+        String column = spec.getOrderBy().get(0).getColumn();
+        List<Object> histogram = session.doReturningWork(connection -> histogram(connection, spec.getTable(), column));
+        if (histogram.isEmpty()) {
+            LOG.debugf("No histogram for %s.%s, running DISTINCT ON as a single range", spec.getTable(), column);
+        }
+        return pick(histogram, partitions);
+    }
+
+    private static List<Object> histogram(Connection connection, String table, String column) throws SQLException {
+        String type;
+        try (PreparedStatement statement = connection.prepareStatement(TYPE_SQL)) {
+            statement.setString(1, table);
+            statement.setString(2, column);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    // an expression or an unknown column, there are no column statistics
+                    return Collections.emptyList();
+                }
+                type = rs.getString(1);
+            }
+        }
+        List<Object> bounds = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(String.format(HISTOGRAM_SQL, type))) {
+            statement.setString(1, table);
+            statement.setString(2, column);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    bounds.add(rs.getObject(1));
+                }
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Picks {@code partitions - 1} evenly spaced interior bounds of a histogram. Its {@code n} bounds delimit
+     * {@code n - 1} buckets of about equal frequency.
+     */
+    static List<Object> pick(List<Object> histogram, int partitions) {
+        List<Object> splits = new ArrayList<>();
+        int buckets = histogram.size() - 1;
+        if (buckets < 2) {
+            return splits;
+        }
+        for (int i = 1; i < partitions; i++) {
+            int index = (int) Math.round((double) i * buckets / partitions);
+            if (index <= 0 || index >= buckets) {
+                continue;
+            }
+            Object value = histogram.get(index);
+            if (splits.isEmpty() || !splits.get(splits.size() - 1).equals(value)) {
+                splits.add(value);
+            }
+        }
+        return splits;
+    }
+
+    /**
+     * The spec restricted to one range, its bounds bound as {@link #LOWER_PARAMETER} (inclusive) and
+     * {@link #UPPER_PARAMETER} (exclusive). The range without an upper bound also holds the NULL keys.
+     */
+    static DistinctOnSpec range(DistinctOnSpec spec, boolean lower, boolean upper) {
+        String column = spec.getOrderBy().get(0).getColumn();
+        String predicate;
+        if (lower && upper) {
+            predicate = column + " >= :" + LOWER_PARAMETER + " AND " + column + " < :" + UPPER_PARAMETER;
+        } else if (lower) {
+            predicate = "(" + column + " >= :" + LOWER_PARAMETER + " OR " + column + " IS NULL)";
+        } else if (upper) {
+            predicate = column + " < :" + UPPER_PARAMETER;
+        } else {
+            return spec;
+        }
+        return spec.and(predicate);
+    }
+
+    @Override
+    public String toString() {
+        return splits != null ? "DistinctOnPartitioning{splits=" + splits + '}'
+                : "DistinctOnPartitioning{histogram, partitions=" + partitions + '}';
+    }
+}
@@ -0,0 +1,316 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compile-time counterpart of {@link DistinctOnSpec} and {@link DistinctOnStrategy}: renders every
+ * {@link DistinctOnQuery} into a {@code <Type>_DistinctOn} class holding the SQL constant, a method creating the
+ * native query and, for record result types, the scalar mappings and a direct constructor-call mapper. The SQL is
+ * rendered by the same code as at runtime, so it is validated the same way, only at build time.
+ * <p>
+ * Registered through {@code META-INF/services}, so it runs wherever this artifact is on the compile classpath.
+ */
+@SupportedAnnotationTypes({
+        "com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery",
+        "com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQueries"
+})
+public class DistinctOnProcessor extends AbstractProcessor {
+
+    static final String SUFFIX = "_DistinctOn";
+
+    // Hibernate types of the record component types that can be mapped without a runtime lookup
+    private static final Map<String, String> SCALAR_TYPES = new HashMap<>();
+
+    static {
+        SCALAR_TYPES.put("java.lang.String", "STRING");
+        SCALAR_TYPES.put("java.lang.Integer", "INTEGER");
+        SCALAR_TYPES.put("java.lang.Long", "LONG");
+        SCALAR_TYPES.put("java.lang.Short", "SHORT");
+        SCALAR_TYPES.put("java.lang.Byte", "BYTE");
+        SCALAR_TYPES.put("java.lang.Double", "DOUBLE");
+        SCALAR_TYPES.put("java.lang.Float", "FLOAT");
+        SCALAR_TYPES.put("java.lang.Boolean", "BOOLEAN");
+        SCALAR_TYPES.put("java.lang.Character", "CHARACTER");
+        SCALAR_TYPES.put("java.math.BigDecimal", "BIG_DECIMAL");
+        SCALAR_TYPES.put("java.math.BigInteger", "BIG_INTEGER");
+        SCALAR_TYPES.put("java.time.LocalDate", "LOCAL_DATE");
+        SCALAR_TYPES.put("java.time.LocalDateTime", "LOCAL_DATE_TIME");
+        SCALAR_TYPES.put("java.time.Instant", "INSTANT");
+        SCALAR_TYPES.put("java.time.OffsetDateTime", "OFFSET_DATE_TIME");
+        SCALAR_TYPES.put("java.sql.Date", "DATE");
+        SCALAR_TYPES.put("java.sql.Timestamp", "TIMESTAMP");
+        SCALAR_TYPES.put("java.util.UUID", "UUID_CHAR");
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<Element> types = new LinkedHashSet<>();
+        types.addAll(roundEnv.getElementsAnnotatedWith(DistinctOnQuery.class));
+        types.addAll(roundEnv.getElementsAnnotatedWith(DistinctOnQueries.class));
+        for (Element type : types) {
+            generate((TypeElement) type);
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        List<String> members = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        boolean valid = true;
+        for (DistinctOnQuery query : type.getAnnotationsByType(DistinctOnQuery.class)) {
+            if (!SourceVersion.isName(query.name()) || query.name().contains(".")) {
+                error(type, "@DistinctOnQuery name must be a Java identifier: " + query.name());
+                valid = false;
+            } else if (!names.add(query.name())) {
+                error(type, "Duplicate @DistinctOnQuery name: " + query.name());
+                valid = false;
+            } else {
+                try {
+                    members.add(render(type, query));
+                } catch (IllegalArgumentException e) {
+                    error(type, "@DistinctOnQuery " + query.name() + ": " + e.getMessage());
+                    valid = false;
+                }
+            }
+        }
+        if (valid) {
+            write(type, members);
+        }
+    }
+
+    private String render(TypeElement type, DistinctOnQuery query) {
+        TypeElement resultType = resultType(query);
+        if (resultType == null && annotation(type, "javax.persistence.Entity") == null) {
+            throw new IllegalArgumentException("requires an @Entity type or a resultType");
+        }
+        if (resultType != null && resultType.getKind() != ElementKind.RECORD) {
+            throw new IllegalArgumentException("resultType must be a record: " + resultType.getQualifiedName());
+        }
+
+        DistinctOnSpec.Builder builder = DistinctOnSpec.from(query.table().isEmpty() ? table(type) : query.table())
+                .distinctOn(query.columns())
+                .where(query.where())
+                .topNPerGroup(query.rowsPerGroup());
+        for (String item : query.orderBy()) {
+            builder.orderBy(sortKey(item));
+        }
+        DistinctOnSpec spec = builder.build();
+
+        String constant = DistinctOnProjection.toColumnName(query.name()).toUpperCase(Locale.ROOT);
+        StringBuilder code = new StringBuilder(1024);
+        code.append("    /**\n     * ").append(spec.toString().replace("*/", "*&#47;")).append(", ").append(query.strategy()).append("\n     */\n");
+        if (resultType == null) {
+            String entity = type.getQualifiedName().toString();
+            code.append("    public static final String ").append(constant).append(" = ")
+                    .append(literal(query.strategy().render(spec))).append(";\n\n");
+            code.append("    public static NativeQuery<").append(entity).append("> ").append(query.name())
+                    .append("(SharedSessionContract session) {\n")
+                    .append("        return session.createNativeQuery(").append(constant).append(", ").append(entity).append(".class);\n")
+                    .append("    }\n");
+            return code.toString();
+        }
+
+        List<? extends RecordComponentElement> components = resultType.getRecordComponents();
+        List<String> columns = new ArrayList<>();
+        for (RecordComponentElement component : components) {
+            columns.add(DistinctOnProjection.toColumnName(component.getSimpleName().toString()));
+        }
+        String record = resultType.getQualifiedName().toString();
+        String mapper = "map" + Character.toUpperCase(query.name().charAt(0)) + query.name().substring(1);
+        code.append("    public static final String ").append(constant).append(" = ")
+                .append(literal(query.strategy().render(spec, String.join(", ", columns)))).append(";\n\n");
+
+        code.append("    @SuppressWarnings(\"unchecked\")\n")
+                .append("    public static NativeQuery<Object[]> ").append(query.name()).append("(SharedSessionContract session) {\n")
+                .append("        NativeQuery<Object[]> query = session.createNativeQuery(").append(constant).append(");\n");
+        for (int i = 0; i < components.size(); i++) {
+            String javaType = boxed(components.get(i).asType());
+            String scalarType = SCALAR_TYPES.get(javaType);
+            if (scalarType == null) {
+                throw new IllegalArgumentException("no Hibernate type for " + javaType + " of " + record);
+            }
+            code.append("        query.addScalar(").append(literal(columns.get(i))).append(", StandardBasicTypes.")
+                    .append(scalarType).append(");\n");
+        }
+        code.append("        return query;\n    }\n\n");
+
+        code.append("    public static ").append(record).append(' ').append(mapper).append("(Object[] row) {\n")
+                .append("        return new ").append(record).append('(');
+        for (int i = 0; i < components.size(); i++) {
+            code.append(i > 0 ? ", " : "").append('(').append(boxed(components.get(i).asType())).append(") row[").append(i).append(']');
+        }
+        code.append(");\n    }\n\n");
+
+        code.append("    public static List<").append(record).append("> ").append(mapper).append("(List<Object[]> rows) {\n")
+                .append("        List<").append(record).append("> result = new ArrayList<>(rows.size());\n")
+                .append("        for (Object[] row : rows) {\n")
+                .append("            result.add(").append(mapper).append("(row));\n")
+                .append("        }\n")
+                .append("        return result;\n    }\n");
+        return code.toString();
+    }
+
+    private void write(TypeElement type, List<String> members) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String simpleName = generatedSimpleName(type);
+        String name = pkg.isUnnamed() ? simpleName : pkg.getQualifiedName() + "." + simpleName;
+        try (Writer out = processingEnv.getFiler().createSourceFile(name, type).openWriter()) {
+            if (!pkg.isUnnamed()) {
+                out.write("package " + pkg.getQualifiedName() + ";\n\n");
+            }
+            out.write("import java.util.ArrayList;\n");
+            out.write("import java.util.List;\n");
+            out.write("import javax.annotation.processing.Generated;\n");
+            out.write("import org.hibernate.SharedSessionContract;\n");
+            out.write("import org.hibernate.query.NativeQuery;\n");
+            out.write("import org.hibernate.type.StandardBasicTypes;\n\n");
+            out.write("/**\n * DISTINCT ON queries declared on {@link " + type.getQualifiedName() + "}.\n */\n");
+            out.write("@Generated(\"" + DistinctOnProcessor.class.getName() + "\")\n");
+            out.write("public final class " + simpleName + " {\n\n");
+            for (String member : members) {
+                out.write(member);
+                out.write("\n");
+            }
+            out.write("    private " + simpleName + "() {\n    }\n}\n");
+        } catch (IOException e) {
+            error(type, "Cannot write " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * {@code Outer_Inner_DistinctOn} for nested types, so that the generated class is always top level.
+     */
+    static String generatedSimpleName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element outer = type.getEnclosingElement(); outer instanceof TypeElement; outer = outer.getEnclosingElement()) {
+            name.insert(0, outer.getSimpleName() + "_");
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    private TypeElement resultType(DistinctOnQuery query) {
+        TypeMirror mirror;
+        try {
+            query.resultType();
+            // only reached when the class is already compiled, which the processor never sees
+            return null;
+        } catch (MirroredTypeException e) {
+            mirror = e.getTypeMirror();
+        }
+        if (mirror.getKind() == TypeKind.VOID) {
+            return null;
+        }
+        return (TypeElement) processingEnv.getTypeUtils().asElement(mirror);
+    }
+
+    private String table(TypeElement type) {
+        String table = annotationValue(type, "javax.persistence.Table", "name");
+        if (table == null || table.isEmpty()) {
+            table = annotationValue(type, "javax.persistence.Entity", "name");
+        }
+        return table == null || table.isEmpty() ? type.getSimpleName().toString() : table;
+    }
+
+    static DistinctOnSpec.SortKey sortKey(String item) {
+        String trimmed = item.trim();
+        String upper = trimmed.toUpperCase(Locale.ROOT);
+        if (upper.endsWith(" DESC")) {
+            return DistinctOnSpec.SortKey.desc(trimmed.substring(0, trimmed.length() - 5));
+        }
+        if (upper.endsWith(" ASC")) {
+            return DistinctOnSpec.SortKey.asc(trimmed.substring(0, trimmed.length() - 4));
+        }
+        return DistinctOnSpec.SortKey.asc(trimmed);
+    }
+
+    private String boxed(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static String annotationValue(Element element, String annotationType, String attribute) {
+        AnnotationMirror mirror = annotation(element, annotationType);
+        if (mirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : mirror.getElementValues().entrySet()) {
+            if (value.getKey().getSimpleName().contentEquals(attribute)) {
+                return String.valueOf(value.getValue().getValue());
+            }
+        }
+        return null;
+    }
+
+    static String literal(String value) {
+        StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                case '\r':
+                    literal.append("\\r");
+                    break;
+                case '\t':
+                    literal.append("\\t");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one {@code DISTINCT_ON(...)} rendering by {@link DistinctOn}. Disabled by default, enable it with
+ * {@code jfr configure} or {@code -XX:StartFlightRecording:settings=<file>} setting
+ * {@code com.github.mehrdadfalahati.pgdistinctjpa.Render#enabled=true}. While disabled only an empty event is created,
+ * which the JIT removes.
+ */
+@Name("com.github.mehrdadfalahati.pgdistinctjpa.Render")
+@Label("DISTINCT ON Render")
+@Category({"PostgreSQL", "DISTINCT ON"})
+@Description("Rendering of a DISTINCT_ON(...) HQL function call")
+@Enabled(false)
+@StackTrace(false)
+final class DistinctOnRenderEvent extends jdk.jfr.Event {
+
+    @Label("Distinct Column Count")
+    int distinctColumnCount;
+
+    @Label("SQL Shape Hash")
+    @Description("Hash of the rendered fragment, equal for every call with the same arguments")
+    int shapeHash;
+}
@@ -0,0 +1,194 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.jboss.logging.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out connections to a read replica for {@link DistinctOnExecutor#withReadReplica}, or {@code null} when the
+ * query should stay on the primary:
+ * <ul>
+ * <li>the replica's {@link DataSource} fails to connect; the replica is then skipped for the retry interval,</li>
+ * <li>the replication lag exceeds the maximum. The lag is the age of the last replayed transaction,
+ * {@code now() - pg_last_xact_replay_timestamp()}, or 0 when the replica is streaming from the primary and has
+ * replayed all WAL it received (an idle primary writes no transactions, so the timestamp alone would grow forever).
+ * Without a streaming WAL receiver, e.g. after the primary went away, only the timestamp counts. A server that is not
+ * in recovery has no lag. The lag is measured at most once per check interval, the result is shared by all threads:
+ * while the replica lags, queries use the primary without connecting to it until the next check.</li>
+ * </ul>
+ * The receiver status in {@code pg_stat_wal_receiver} is only visible to superusers and members of
+ * {@code pg_read_all_stats}. Grant that role to the replica's user, otherwise an idle primary makes the replica look
+ * lagging.
+ * Instances are thread-safe. Routing decisions are counted and fallbacks logged at WARN, once per change.
+ */
+public class DistinctOnReplicaRouter {
+
+    private static final Logger LOG = Logger.getLogger(DistinctOnReplicaRouter.class);
+
+    public static final Duration DEFAULT_MAX_LAG = Duration.ofSeconds(10);
+
+    public static final Duration DEFAULT_LAG_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    public static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofSeconds(30);
+
+    static final String LAG_SQL = "SELECT CASE"
+            + " WHEN NOT pg_is_in_recovery() THEN 0"
+            + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn()"
+            + " AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN 0"
+            + " ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint) END";
+
+    private final DataSource replica;
+    private final long maxLagMillis;
+    private final long lagCheckIntervalMillis;
+    private final long retryIntervalMillis;
+
+    // 0 until the first failure
+    private volatile long unavailableUntilMillis;
+    // 0 forces the first check
+    private volatile long lagCheckedAtMillis;
+    private volatile boolean lagging;
+
+    private final LongAdder routed = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public DistinctOnReplicaRouter(DataSource replica) {
+        this(replica, DEFAULT_MAX_LAG, DEFAULT_LAG_CHECK_INTERVAL, DEFAULT_RETRY_INTERVAL);
+    }
+
+    public DistinctOnReplicaRouter(DataSource replica, Duration maxLag) {
+        this(replica, maxLag, DEFAULT_LAG_CHECK_INTERVAL, DEFAULT_RETRY_INTERVAL);
+    }
+
+    /**
+     * @param lagCheckInterval how long a lag measurement is reused, {@link Duration#ZERO} checks before every query
+     * @param retryInterval    how long the replica is skipped after it failed to connect
+     */
+    public DistinctOnReplicaRouter(DataSource replica, Duration maxLag, Duration lagCheckInterval, Duration retryInterval) {
+        if (replica == null) {
+            throw new IllegalArgumentException("Replica data source must not be null");
+        }
+        if (maxLag == null || maxLag.isNegative()) {
+            throw new IllegalArgumentException("Maximum replication lag must not be negative: " + maxLag);
+        }
+        if (lagCheckInterval == null || lagCheckInterval.isNegative()) {
+            throw new IllegalArgumentException("Lag check interval must not be negative: " + lagCheckInterval);
+        }
+        if (retryInterval == null || retryInterval.isNegative()) {
+            throw new IllegalArgumentException("Retry interval must not be negative: " + retryInterval);
+        }
+        this.replica = replica;
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagCheckIntervalMillis = lagCheckInterval.toMillis();
+        this.retryIntervalMillis = retryInterval.toMillis();
+    }
+
+    public Duration getMaxLag() {
+        return Duration.ofMillis(maxLagMillis);
+    }
+
+    /**
+     * Queries sent to the replica.
+     */
+    public long routedCount() {
+        return routed.sum();
+    }
+
+    /**
+     * Queries that stayed on the primary because the replica was unavailable, lagging or failed.
+     */
+    public long fallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * A replica connection within the lag limit, or {@code null} to use the primary. The caller closes the connection.
+     */
+    Connection acquire() {
+        long now = System.currentTimeMillis();
+        if (now < unavailableUntilMillis) {
+            fallbacks.increment();
+            return null;
+        }
+        boolean checkDue = now - lagCheckedAtMillis >= lagCheckIntervalMillis;
+        if (lagging && !checkDue) {
+            fallbacks.increment();
+            return null;
+        }
+        Connection connection;
+        try {
+            connection = replica.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            failed(e);
+            return null;
+        }
+        try {
+            if (checkDue) {
+                checkLag(connection, now);
+            }
+        } catch (SQLException | RuntimeException e) {
+            close(connection);
+            failed(e);
+            return null;
+        }
+        if (lagging) {
+            close(connection);
+            fallbacks.increment();
+            return null;
+        }
+        routed.increment();
+        return connection;
+    }
+
+    /**
+     * Skips the replica for the retry interval, after it failed to connect or a query on it lost its connection.
+     */
+    void failed(Exception e) {
+        fallbacks.increment();
+        if (System.currentTimeMillis() >= unavailableUntilMillis) {
+            LOG.warnf(e, "Read replica is unavailable, DISTINCT ON queries use the primary for %d ms", retryIntervalMillis);
+        }
+        unavailableUntilMillis = System.currentTimeMillis() + retryIntervalMillis;
+    }
+
+    /**
+     * The replica's replication lag, see {@link DistinctOnReplicaRouter}.
+     */
+    protected Duration replicationLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet lag = statement.executeQuery(LAG_SQL)) {
+            lag.next();
+            long millis = lag.getLong(1);
+            // no transaction replayed since the replica started, and it is not caught up with a streaming primary
+            return lag.wasNull() ? null : Duration.ofMillis(millis);
+        }
+    }
+
+    private void checkLag(Connection connection, long now) throws SQLException {
+        Duration lag = replicationLag(connection);
+        boolean exceeded = lag == null || lag.toMillis() > maxLagMillis;
+        if (exceeded != lagging) {
+            if (exceeded) {
+                LOG.warnf("Read replica lags %s behind the primary, more than %d ms, DISTINCT ON queries use the primary",
+                        lag != null ? lag : "an unknown time", maxLagMillis);
+            } else {
+                LOG.infof("Read replica caught up to %s of lag, DISTINCT ON queries use the replica again", lag);
+            }
+        }
+        lagging = exceeded;
+        lagCheckedAtMillis = now;
+    }
+
+    private static void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOG.debug("Failed to close read replica connection", e);
+        }
+    }
+}
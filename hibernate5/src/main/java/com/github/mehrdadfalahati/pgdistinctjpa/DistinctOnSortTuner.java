@@ -0,0 +1,276 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.SharedSessionContract;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.QueryParameter;
+import org.jboss.logging.Logger;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Detects DISTINCT ON sorts that spill to disk and remembers, per statement shape (the SQL text), the settings that
+ * keep them in memory. Without a supporting index PostgreSQL sorts the whole input, and beyond {@code work_mem} it
+ * sorts in temporary files, often ten times slower.
+ * <p>
+ * The first execution of a shape, and again one after every resample interval, also runs
+ * {@code EXPLAIN (ANALYZE, BUFFERS)} with the same parameters; that execution costs twice. If a sort or hash spilled,
+ * {@code work_mem} becomes twice the largest spill (an in-memory sort needs about that much more than its temporary
+ * file), at least double the current value, up to a limit. If a full sort over an index scan spilled while
+ * {@code enable_incremental_sort} is off, incremental sort is turned on, so the planner can sort only within the
+ * groups the index already delivers in order. Decisions are logged at INFO, a spill at the limit at WARN.
+ * <p>
+ * {@link DistinctOnExecutor#withSortTuning} applies the settings with {@code SET LOCAL}, so they end with the
+ * transaction; the executor begins one if none is active. In a caller's transaction the later statements of that
+ * transaction see them too.
+ */
+public class DistinctOnSortTuner {
+
+    private static final Logger LOG = Logger.getLogger(DistinctOnSortTuner.class);
+
+    public static final Duration DEFAULT_RESAMPLE_INTERVAL = Duration.ofMinutes(10);
+
+    public static final long DEFAULT_MAX_WORK_MEM_KB = 256 * 1024;
+
+    // bounds the memory of applications rendering unbounded numbers of shapes, e.g. with inlined literals
+    static final int MAX_SHAPES = 1024;
+
+    // Sort: "Sort Method: external merge  Disk: 22632kB", Incremental Sort: "Peak Disk: 7552kB",
+    // Hash and HashAggregate: "Disk Usage: 9000kB"
+    private static final Pattern SPILL = Pattern.compile("(?:Sort Method: external \\w+\\s+Disk|Peak Disk|Disk Usage): (\\d+)kB");
+    private static final Pattern NODE = Pattern.compile("^(\\s*->\\s+|)([A-Za-z][^(]*?)\\s+\\(");
+
+    private static final String SETTINGS_SQL =
+            "SELECT pg_size_bytes(current_setting('work_mem')) / 1024, current_setting('enable_incremental_sort')::boolean";
+
+    private final ConcurrentMap<String, SortTuning> tunings = new ConcurrentHashMap<>();
+    private final long resampleIntervalMillis;
+    private final long maxWorkMemKb;
+
+    public DistinctOnSortTuner() {
+        this(DEFAULT_RESAMPLE_INTERVAL, DEFAULT_MAX_WORK_MEM_KB);
+    }
+
+    /**
+     * @param maxWorkMemKb the largest {@code work_mem} the tuner sets; every sort node and parallel worker of a query
+     *                     may use that much
+     */
+    public DistinctOnSortTuner(Duration resampleInterval, long maxWorkMemKb) {
+        if (resampleInterval == null || resampleInterval.isNegative()) {
+            throw new IllegalArgumentException("Resample interval must not be negative: " + resampleInterval);
+        }
+        if (maxWorkMemKb < 64) {
+            throw new IllegalArgumentException("Maximum work_mem must be at least 64 kB: " + maxWorkMemKb);
+        }
+        this.resampleIntervalMillis = resampleInterval.toMillis();
+        this.maxWorkMemKb = maxWorkMemKb;
+    }
+
+    /**
+     * The settings remembered for the SQL, or {@code null} if it was not sampled yet.
+     */
+    public SortTuning tuningFor(String sql) {
+        return tunings.get(sql);
+    }
+
+    /**
+     * Every remembered shape with its settings.
+     */
+    public Map<String, SortTuning> getTunings() {
+        return Collections.unmodifiableMap(new HashMap<>(tunings));
+    }
+
+    public void invalidateAll() {
+        tunings.clear();
+    }
+
+    /**
+     * Whether executing the SQL needs a transaction: it has settings to apply or is due for a sample.
+     */
+    boolean needsTransaction(String sql) {
+        SortTuning tuning = tunings.get(sql);
+        if (tuning == null) {
+            return tunings.size() < MAX_SHAPES;
+        }
+        return !tuning.isEmpty() || System.currentTimeMillis() - tuning.getSampledAtMillis() >= resampleIntervalMillis;
+    }
+
+    /**
+     * Applies the remembered settings for the query, then samples it if due and applies the new settings. Runs inside
+     * the transaction of the execution.
+     */
+    void prepare(SharedSessionContract session, DistinctOnSpec spec, DistinctOnStrategy strategy, NativeQuery<?> query) {
+        String sql = query.getQueryString();
+        SortTuning current = tunings.get(sql);
+        apply(session, current);
+        if (!claimSample(sql)) {
+            return;
+        }
+        SortTuning next = sample(session, spec, strategy, query, current);
+        tunings.put(sql, next);
+        if (!next.statements().equals(current != null ? current.statements() : Collections.emptyList())) {
+            apply(session, next);
+        }
+    }
+
+    /**
+     * Marks the SQL as sampled now, so that concurrent executions do not sample it as well. Returns whether the
+     * caller should sample.
+     */
+    private boolean claimSample(String sql) {
+        long now = System.currentTimeMillis();
+        boolean[] claimed = {false};
+        tunings.compute(sql, (key, tuning) -> {
+            if (tuning == null) {
+                if (tunings.size() >= MAX_SHAPES) {
+                    return null;
+                }
+                claimed[0] = true;
+                return new SortTuning(0, null, 0, now);
+            }
+            if (now - tuning.getSampledAtMillis() >= resampleIntervalMillis) {
+                claimed[0] = true;
+                return tuning.sampledAt(now);
+            }
+            return tuning;
+        });
+        return claimed[0];
+    }
+
+    private SortTuning sample(SharedSessionContract session, DistinctOnSpec spec, DistinctOnStrategy strategy,
+                              NativeQuery<?> query, SortTuning current) {
+        NativeQuery<?> explain = session.createNativeQuery("EXPLAIN (ANALYZE, BUFFERS) " + query.getQueryString());
+        for (String name : query.getParameterMetadata().getNamedParameterNames()) {
+            explain.setParameter(name, query.getParameterValue(name));
+        }
+        for (QueryParameter<?> parameter : query.getParameterMetadata().getPositionalParameters()) {
+            explain.setParameter(parameter.getPosition(), query.getParameterValue(parameter.getPosition()));
+        }
+        StringBuilder plan = new StringBuilder();
+        for (Object line : explain.getResultList()) {
+            plan.append(line).append('\n');
+        }
+        long[] workMemKb = {0};
+        boolean[] incrementalSort = {true};
+        session.doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SETTINGS_SQL);
+                 ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                workMemKb[0] = rs.getLong(1);
+                incrementalSort[0] = rs.getBoolean(2);
+            }
+        });
+
+        SortTuning next = decide(plan.toString(), workMemKb[0], incrementalSort[0], current, maxWorkMemKb,
+                System.currentTimeMillis());
+        String shape = describe(spec, strategy, query.getQueryString());
+        if (next.getSpillKb() == 0) {
+            LOG.debugf("DISTINCT ON %s sorted in memory with work_mem %d kB, %s", shape, workMemKb[0], next);
+        } else if (next.getWorkMemKb() > workMemKb[0] || !next.statements().equals(current != null ? current.statements() : Collections.emptyList())) {
+            LOG.infof("DISTINCT ON %s spilled %d kB to disk with work_mem %d kB, tuned to %s",
+                    shape, next.getSpillKb(), workMemKb[0], next);
+        } else {
+            LOG.warnf("DISTINCT ON %s still spills %d kB to disk at the work_mem limit of %d kB, add an index on its ORDER BY",
+                    shape, next.getSpillKb(), maxWorkMemKb);
+        }
+        LOG.tracef("DISTINCT ON %s plan:%n%s", shape, plan);
+        return next;
+    }
+
+    private static void apply(SharedSessionContract session, SortTuning tuning) {
+        if (tuning == null || tuning.isEmpty()) {
+            return;
+        }
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : tuning.statements()) {
+                    statement.execute(sql);
+                }
+            }
+        });
+    }
+
+    /**
+     * The tuning after a sample: pure function of the {@code EXPLAIN ANALYZE} text output and the settings it ran with.
+     */
+    static SortTuning decide(String plan, long workMemKb, boolean incrementalSort, SortTuning previous,
+                             long maxWorkMemKb, long now) {
+        long tunedWorkMemKb = previous != null ? previous.getWorkMemKb() : 0;
+        Boolean tunedIncrementalSort = previous != null ? previous.getIncrementalSort() : null;
+        long spillKb = 0;
+        boolean sortOverIndexSpilled = false;
+
+        List<PlanNode> nodes = parse(plan);
+        for (int i = 0; i < nodes.size(); i++) {
+            PlanNode node = nodes.get(i);
+            spillKb = Math.max(spillKb, node.spillKb);
+            if (node.spillKb > 0 && node.type.equals("Sort") && i + 1 < nodes.size()
+                    && nodes.get(i + 1).indent > node.indent && nodes.get(i + 1).type.startsWith("Index")) {
+                sortOverIndexSpilled = true;
+            }
+        }
+        if (spillKb > 0) {
+            long wanted = roundUpToMegabyte(Math.max(2 * spillKb, 2 * workMemKb));
+            long capped = Math.min(wanted, maxWorkMemKb);
+            if (capped > workMemKb) {
+                tunedWorkMemKb = capped;
+            }
+            if (sortOverIndexSpilled && !incrementalSort) {
+                tunedIncrementalSort = Boolean.TRUE;
+            }
+        }
+        return new SortTuning(tunedWorkMemKb, tunedIncrementalSort, spillKb, now);
+    }
+
+    private static long roundUpToMegabyte(long kb) {
+        return (kb + 1023) / 1024 * 1024;
+    }
+
+    /**
+     * The plan nodes in output order, each with its indentation and the largest spill of its detail lines.
+     */
+    static List<PlanNode> parse(String plan) {
+        List<PlanNode> nodes = new ArrayList<>();
+        PlanNode node = null;
+        for (String line : plan.split("\n")) {
+            Matcher type = NODE.matcher(line);
+            if (line.contains("(cost=") && type.find()) {
+                node = new PlanNode(type.group(2).trim(), type.end(1) > 0 ? line.indexOf("->") : 0);
+                nodes.add(node);
+                continue;
+            }
+            Matcher spill = SPILL.matcher(line);
+            while (node != null && spill.find()) {
+                node.spillKb = Math.max(node.spillKb, Long.parseLong(spill.group(1)));
+            }
+        }
+        return nodes;
+    }
+
+    private static String describe(DistinctOnSpec spec, DistinctOnStrategy strategy, String sql) {
+        return (spec != null ? spec.getTable() + " " : "") + (strategy != null ? strategy + " " : "")
+                + String.format("shape %08x", sql.hashCode());
+    }
+
+    static final class PlanNode {
+        final String type;
+        final int indent;
+        long spillKb;
+
+        PlanNode(String type, int indent) {
+            this.type = type;
+            this.indent = indent;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnMarker.MARKER_END;
+import static com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnMarker.MARKER_START;
+
+/**
+ * Rewrites the markers rendered by {@link DistinctOnMarker} into real {@code SELECT DISTINCT ON (...)} SQL.
+ * <p>
+ * Register it with {@code hibernate.session_factory.statement_inspector}. Hibernate's QueryPlanCache keeps
+ * handing out the same translated SQL for an HQL query, so rewrites are cached per SQL string in a bounded,
+ * direct-mapped table and only the first execution of a query pays for the rewrite.
+ * Statements without a marker are returned unchanged.
+ */
+public class DistinctOnStatementInspector implements StatementInspector {
+
+    public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+    private static final long serialVersionUID = 1L;
+
+    private final Entry[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DistinctOnStatementInspector() {
+        this(DEFAULT_CACHE_CAPACITY);
+    }
+
+    public DistinctOnStatementInspector(int cacheCapacity) {
+        if (cacheCapacity < 1) {
+            throw new IllegalArgumentException("Rewrite cache capacity must be positive: " + cacheCapacity);
+        }
+        int size = cacheCapacity == 1 ? 1 : Integer.highestOneBit(cacheCapacity - 1) << 1;
+        this.table = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int hash = sql.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = table[slot];
+        if (entry != null && (entry.sql == sql || entry.sql.equals(sql))) {
+            hits.increment();
+            return entry.rewritten;
+        }
+        if (!sql.contains(MARKER_START)) {
+            return sql;
+        }
+        misses.increment();
+
+        String rewritten = rewrite(sql);
+        table[slot] = new Entry(sql, rewritten);
+        return rewritten;
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Moves every marker into a {@code DISTINCT ON (...)} clause of the SELECT it belongs to and drops the marker
+     * comment, leaving the always-true {@code true=true} predicate behind. Works for subqueries as well, each marker
+     * applies to the nearest preceding SELECT at its own parenthesis depth. String literals, which Hibernate 5 inlines
+     * from HQL, and quoted identifiers are skipped, so neither parentheses nor markers inside them count.
+     */
+    static String rewrite(String sql) {
+        List<Edit> edits = new ArrayList<>();
+
+        int marker = findMarker(sql, 0);
+        while (marker >= 0) {
+            int end = sql.indexOf(MARKER_END, marker + MARKER_START.length());
+            if (end < 0) {
+                throw new IllegalStateException("Unterminated DISTINCT ON marker in SQL: " + sql);
+            }
+            String columns = sql.substring(marker + MARKER_START.length(), end);
+            int select = findSelect(sql, marker);
+            if (select < 0) {
+                throw new IllegalStateException("No SELECT found for DISTINCT ON marker in SQL: " + sql);
+            }
+
+            // replace a plain "distinct" right after select, DISTINCT ON supersedes it
+            int afterSelect = select + "select".length();
+            int word = skipWhitespace(sql, afterSelect);
+            int replaced = 0;
+            if (isWord(sql, word, "distinct") && !isWord(sql, skipWhitespace(sql, word + "distinct".length()), "on")) {
+                replaced = word + "distinct".length() - afterSelect;
+            }
+            edits.add(new Edit(afterSelect, replaced, " distinct on (" + columns + ")"));
+
+            int removeEnd = end + MARKER_END.length();
+            if (removeEnd < sql.length() && sql.charAt(removeEnd) == ' ') {
+                removeEnd++;
+            }
+            edits.add(new Edit(marker, removeEnd - marker, ""));
+
+            marker = findMarker(sql, removeEnd);
+        }
+
+        // apply edits from the end of the string so earlier positions stay valid
+        edits.sort((a, b) -> Integer.compare(b.position, a.position));
+
+        StringBuilder rewritten = new StringBuilder(sql);
+        for (Edit edit : edits) {
+            rewritten.replace(edit.position, edit.position + edit.length, edit.text);
+        }
+        return rewritten.toString();
+    }
+
+    private static int findMarker(String sql, int from) {
+        for (int i = from; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = closingQuote(sql, i);
+            } else if (c == '/' && sql.startsWith(MARKER_START, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int findSelect(String sql, int from) {
+        int depth = 0;
+        for (int i = from - 1; i >= 0; i--) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = openingQuote(sql, i);
+            } else if (c == ')') {
+                depth++;
+            } else if (c == '(') {
+                depth--;
+            } else if (depth == 0 && (c == 's' || c == 'S') && isWord(sql, i, "select")) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // a doubled quote inside a quoted segment is an escaped quote
+    private static int closingQuote(String sql, int open) {
+        char quote = sql.charAt(open);
+        int i = open + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    private static int openingQuote(String sql, int close) {
+        char quote = sql.charAt(close);
+        int i = close - 1;
+        while (i >= 0) {
+            if (sql.charAt(i) == quote) {
+                if (i > 0 && sql.charAt(i - 1) == quote) {
+                    i -= 2;
+                    continue;
+                }
+                return i;
+            }
+            i--;
+        }
+        return -1;
+    }
+
+    private static boolean isWord(String sql, int index, String word) {
+        if (index < 0 || !sql.regionMatches(true, index, word, 0, word.length())) {
+            return false;
+        }
+        boolean startsWord = index == 0 || !Character.isJavaIdentifierPart(sql.charAt(index - 1));
+        int end = index + word.length();
+        boolean endsWord = end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end));
+        return startsWord && endsWord;
+    }
+
+    private static int skipWhitespace(String sql, int index) {
+        while (index < sql.length() && Character.isWhitespace(sql.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    private static final class Edit {
+        final int position;
+        final int length;
+        final String text;
+
+        Edit(int position, int length, String text) {
+            this.position = position;
+            this.length = length;
+            this.text = text;
+        }
+    }
+
+    private static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String sql;
+        final String rewritten;
+
+        Entry(String sql, String rewritten) {
+            this.sql = sql;
+            this.rewritten = rewritten;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+import com.github.mehrdadfalahati.pgdistinctjpa.TableProfile.IndexProfile;
+import org.hibernate.SharedSessionContract;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Picks the cheapest {@link DistinctOnStrategy} for a {@link DistinctOnSpec} from catalog statistics.
+ * <p>
+ * Table profiles ({@link TableProfile}) are cached per table and reloaded on the first use after the refresh interval.
+ * The cost model is deliberately coarse, in planner-like units: it estimates the number of groups from
+ * {@code pg_stats.n_distinct} and checks for btree indexes that lead with the DISTINCT ON columns or return rows in
+ * the full ORDER BY. The filter of a spec is not taken into account. Every decision is logged at DEBUG and returned
+ * with its inputs, see {@link StrategyDecision}. Top-N-per-group specs never get {@link DistinctOnStrategy#DISTINCT_ON}.
+ * {@link DistinctOnStrategy#LATERAL} and {@link DistinctOnStrategy#SKIP_SCAN} skip the group of NULL keys, so they are
+ * only candidates when every DISTINCT ON column is declared {@code NOT NULL}.
+ */
+public class DistinctOnStrategySelector {
+
+    private static final Logger LOG = Logger.getLogger(DistinctOnStrategySelector.class);
+
+    public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofMinutes(10);
+
+    // per-row costs, roughly seq_page_cost / cpu_tuple_cost / cpu_operator_cost scaled to a single row
+    static final double SEQ_ROW = 0.0125;
+    static final double INDEX_ROW = 0.02;
+    static final double SORT_ROW = 0.005;
+    static final double HASH_ROW = 0.0025;
+    static final double WINDOW_ROW = 0.0025;
+    // one descent from the index root to a leaf
+    static final double PROBE = 0.1;
+    static final double PROBE_LEVEL = 0.005;
+
+    private final ConcurrentMap<String, TableProfile> profiles = new ConcurrentHashMap<>();
+    private final long refreshIntervalMillis;
+
+    public DistinctOnStrategySelector() {
+        this(DEFAULT_REFRESH_INTERVAL);
+    }
+
+    public DistinctOnStrategySelector(Duration refreshInterval) {
+        if (refreshInterval == null || refreshInterval.isNegative()) {
+            throw new IllegalArgumentException("Refresh interval must not be negative: " + refreshInterval);
+        }
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+    }
+
+    /**
+     * Chooses the strategy for the spec, loading or refreshing the table profile through the session's connection.
+     */
+    public StrategyDecision select(SharedSessionContract session, DistinctOnSpec spec) {
+        StrategyDecision decision = decide(spec, profile(session, spec.getTable()));
+        LOG.debugf("DISTINCT ON %s", decision);
+        return decision;
+    }
+
+    /**
+     * The cached profile of the table, reloaded when older than the refresh interval.
+     */
+    public TableProfile profile(SharedSessionContract session, String table) {
+        TableProfile profile = profiles.get(table);
+        if (profile == null || System.currentTimeMillis() - profile.getLoadedAtMillis() >= refreshIntervalMillis) {
+            profile = session.doReturningWork(connection -> TableProfile.load(connection, table));
+            profiles.put(table, profile);
+            LOG.debugf("Loaded DISTINCT ON %s", profile);
+        }
+        return profile;
+    }
+
+    public void invalidate(String table) {
+        profiles.remove(table);
+    }
+
+    public void invalidateAll() {
+        profiles.clear();
+    }
+
+    /**
+     * The cost model: pure function of the spec and the table profile.
+     */
+    public StrategyDecision decide(DistinctOnSpec spec, TableProfile profile) {
+        double rows = Math.max(profile.getRowCount(), 1);
+        double groups = profile.estimateGroups(spec.getDistinctColumns());
+        double rowsPerGroup = rows / groups;
+        int limit = spec.getRowsPerGroup();
+        double probe = PROBE + log2(rows) * PROBE_LEVEL;
+
+        IndexProfile orderIndex = profile.findIndex(spec.getOrderBy());
+        IndexProfile keyOrderIndex = profile.findIndex(spec.getDistinctOrder());
+        IndexProfile leadingIndex = profile.findIndexLeadingWith(spec.getDistinctColumns());
+
+        // reading every row in ORDER BY order: an index scan or a sequential scan plus a sort
+        double sortedScan = orderIndex != null ? rows * INDEX_ROW : rows * SEQ_ROW + sort(rows);
+
+        // fetching the first row(s) of one group
+        double firstRow;
+        if (orderIndex != null) {
+            firstRow = probe + Math.min(limit - 1, rowsPerGroup) * INDEX_ROW;
+        } else if (leadingIndex != null) {
+            firstRow = probe + rowsPerGroup * INDEX_ROW + sort(rowsPerGroup);
+        } else {
+            firstRow = rows * SEQ_ROW;
+        }
+
+        Map<DistinctOnStrategy, Double> costs = new EnumMap<>(DistinctOnStrategy.class);
+        if (limit == 1) {
+            costs.put(DistinctOnStrategy.DISTINCT_ON, sortedScan);
+        }
+        costs.put(DistinctOnStrategy.ROW_NUMBER, sortedScan + rows * WINDOW_ROW);
+        if (notNull(spec.getDistinctColumns(), profile)) {
+            costs.put(DistinctOnStrategy.LATERAL, rows * (SEQ_ROW + HASH_ROW) + groups * firstRow);
+            if (keyOrderIndex != null && sameDirection(spec.getDistinctOrder())) {
+                costs.put(DistinctOnStrategy.SKIP_SCAN, groups * (probe + firstRow));
+            }
+        }
+
+        DistinctOnStrategy cheapest = null;
+        for (Map.Entry<DistinctOnStrategy, Double> cost : costs.entrySet()) {
+            if (cheapest == null || cost.getValue() < costs.get(cheapest)) {
+                cheapest = cost.getKey();
+            }
+        }
+        return new StrategyDecision(cheapest, spec, profile.getRowCount(), groups,
+                leadingIndex != null ? leadingIndex.getName() : null,
+                orderIndex != null ? orderIndex.getName() : null,
+                costs);
+    }
+
+    private static boolean notNull(List<String> columns, TableProfile profile) {
+        for (String column : columns) {
+            if (!profile.isNotNull(column)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameDirection(List<SortKey> keys) {
+        for (SortKey key : keys) {
+            if (key.isDescending() != keys.get(0).isDescending()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static double sort(double rows) {
+        return rows * log2(rows) * SORT_ROW;
+    }
+
+    private static double log2(double value) {
+        return Math.log(value + 1) / Math.log(2);
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The configuration of a {@link DistinctOnExecutor}. Instances are immutable; the executor's {@code with} methods
+ * change one setting of a {@link #toBuilder()} copy and build the new executor from it.
+ */
+final class ExecutorSettings {
+
+    private final DistinctOnStrategy strategy;
+    private final DistinctOnStrategySelector selector;
+    private final DistinctOnMetrics metrics;
+    private final Map<DistinctOnSpec, DistinctOnMaterialization> materializations;
+    private final DistinctOnSortTuner sortTuner;
+    private final String queryCacheRegion;
+    private final DistinctOnReplicaRouter replicaRouter;
+
+    private ExecutorSettings(Builder builder) {
+        this.strategy = builder.strategy;
+        this.selector = builder.selector;
+        this.metrics = builder.metrics;
+        this.materializations = Collections.unmodifiableMap(new HashMap<>(builder.materializations));
+        this.sortTuner = builder.sortTuner;
+        this.queryCacheRegion = builder.queryCacheRegion;
+        this.replicaRouter = builder.replicaRouter;
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.strategy = strategy;
+        builder.selector = selector;
+        builder.metrics = metrics;
+        builder.materializations.putAll(materializations);
+        builder.sortTuner = sortTuner;
+        builder.queryCacheRegion = queryCacheRegion;
+        builder.replicaRouter = replicaRouter;
+        return builder;
+    }
+
+    DistinctOnStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * The strategy selector, or {@code null} for the fixed strategy.
+     */
+    DistinctOnStrategySelector getSelector() {
+        return selector;
+    }
+
+    /**
+     * The metrics, or {@code null} when disabled.
+     */
+    DistinctOnMetrics getMetrics() {
+        return metrics;
+    }
+
+    Map<DistinctOnSpec, DistinctOnMaterialization> getMaterializations() {
+        return materializations;
+    }
+
+    /**
+     * The sort tuner, or {@code null}.
+     */
+    DistinctOnSortTuner getSortTuner() {
+        return sortTuner;
+    }
+
+    /**
+     * The query cache region, or {@code null} when queries are not cached.
+     */
+    String getQueryCacheRegion() {
+        return queryCacheRegion;
+    }
+
+    /**
+     * The replica router, or {@code null} when every query runs on the caller's session.
+     */
+    DistinctOnReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    static final class Builder {
+        private DistinctOnStrategy strategy = DistinctOnStrategy.DISTINCT_ON;
+        private DistinctOnStrategySelector selector;
+        private DistinctOnMetrics metrics;
+        private final Map<DistinctOnSpec, DistinctOnMaterialization> materializations = new HashMap<>();
+        private DistinctOnSortTuner sortTuner;
+        private String queryCacheRegion;
+        private DistinctOnReplicaRouter replicaRouter;
+
+        private Builder() {
+        }
+
+        Builder strategy(DistinctOnStrategy strategy) {
+            if (strategy == null) {
+                throw new IllegalArgumentException("Strategy must not be null");
+            }
+            this.strategy = strategy;
+            return this;
+        }
+
+        Builder selector(DistinctOnStrategySelector selector) {
+            if (selector == null) {
+                throw new IllegalArgumentException("Strategy selector must not be null");
+            }
+            this.selector = selector;
+            return this;
+        }
+
+        /**
+         * {@link DistinctOnMetrics#NOOP} is kept as {@code null}, so the uninstrumented path is a single null check.
+         */
+        Builder metrics(DistinctOnMetrics metrics) {
+            this.metrics = metrics == DistinctOnMetrics.NOOP ? null : metrics;
+            return this;
+        }
+
+        /**
+         * Adds the materialization, replacing one of the same spec.
+         */
+        Builder materialization(DistinctOnMaterialization materialization) {
+            materializations.put(materialization.getSpec(), materialization);
+            return this;
+        }
+
+        Builder sortTuner(DistinctOnSortTuner sortTuner) {
+            this.sortTuner = sortTuner;
+            return this;
+        }
+
+        Builder queryCacheRegion(String queryCacheRegion) {
+            this.queryCacheRegion = queryCacheRegion;
+            return this;
+        }
+
+        Builder replicaRouter(DistinctOnReplicaRouter replicaRouter) {
+            this.replicaRouter = replicaRouter;
+            return this;
+        }
+
+        ExecutorSettings build() {
+            return new ExecutorSettings(this);
+        }
+    }
+}
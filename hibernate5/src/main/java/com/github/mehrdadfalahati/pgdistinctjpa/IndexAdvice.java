@@ -0,0 +1,58 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+/**
+ * Result of checking one {@link DistinctOnSpec} with {@link DistinctOnIndexAdvisor}: the btree index that returns rows
+ * in the spec's ORDER BY, or the {@code CREATE INDEX} statement that would add one.
+ */
+public final class IndexAdvice {
+
+    private final DistinctOnSpec spec;
+    private final String index;
+    private final String problem;
+    private final String suggestedIndex;
+
+    IndexAdvice(DistinctOnSpec spec, String index, String problem, String suggestedIndex) {
+        this.spec = spec;
+        this.index = index;
+        this.problem = problem;
+        this.suggestedIndex = suggestedIndex;
+    }
+
+    public DistinctOnSpec getSpec() {
+        return spec;
+    }
+
+    /**
+     * Name of the matching index, or {@code null}.
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    public boolean isSatisfied() {
+        return index != null;
+    }
+
+    /**
+     * Why the spec is not served by an index, or {@code null} when it is.
+     */
+    public String getProblem() {
+        return problem;
+    }
+
+    /**
+     * {@code CREATE INDEX} statement for the spec's ORDER BY, also given when an index exists.
+     */
+    public String getSuggestedIndex() {
+        return suggestedIndex;
+    }
+
+    @Override
+    public String toString() {
+        if (isSatisfied()) {
+            return "DISTINCT ON " + spec.getDistinctColumns() + " on " + spec.getTable() + " uses index " + index;
+        }
+        return "DISTINCT ON " + spec.getDistinctColumns() + " on " + spec.getTable() + ": " + problem
+                + ", suggested: " + suggestedIndex;
+    }
+}
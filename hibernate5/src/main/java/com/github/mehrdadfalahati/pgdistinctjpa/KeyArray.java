@@ -0,0 +1,117 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binds a key set as a single PostgreSQL array literal, {@code '{"1","2"}'}, cast to the key type in SQL:
+ * {@code = ANY(CAST(:keys AS bigint[]))}. The statement text does not depend on the number of keys.
+ */
+final class KeyArray {
+
+    private static final Map<Class<?>, String> SQL_TYPES = new HashMap<>();
+    // Java order equals PostgreSQL order for these, text depends on the collation and uuid compares differently
+    private static final Map<Class<?>, Boolean> ORDERED = new HashMap<>();
+
+    static {
+        register(Long.class, "bigint", true);
+        register(Integer.class, "integer", true);
+        register(Short.class, "smallint", true);
+        register(BigDecimal.class, "numeric", true);
+        register(BigInteger.class, "numeric", true);
+        register(Double.class, "double precision", true);
+        register(Float.class, "real", true);
+        register(LocalDate.class, "date", true);
+        register(java.sql.Date.class, "date", true);
+        register(LocalDateTime.class, "timestamp", true);
+        register(Timestamp.class, "timestamp", true);
+        register(Instant.class, "timestamptz", true);
+        register(OffsetDateTime.class, "timestamptz", true);
+        register(String.class, "text", false);
+        register(UUID.class, "uuid", false);
+        register(Boolean.class, "boolean", false);
+    }
+
+    private KeyArray() {
+    }
+
+    private static void register(Class<?> type, String sqlType, boolean ordered) {
+        SQL_TYPES.put(type, sqlType);
+        ORDERED.put(type, ordered);
+    }
+
+    /**
+     * The SQL element type of the keys.
+     *
+     * @throws IllegalArgumentException if the keys have different or unsupported types
+     */
+    static String sqlType(List<?> keys) {
+        Class<?> type = keys.get(0).getClass();
+        String sqlType = SQL_TYPES.get(type);
+        if (sqlType == null) {
+            throw new IllegalArgumentException("Unsupported key type " + type.getName());
+        }
+        for (Object key : keys) {
+            if (key.getClass() != type) {
+                throw new IllegalArgumentException("Keys must all be of type " + type.getName() + ", found " + key.getClass().getName());
+            }
+        }
+        return sqlType;
+    }
+
+    /**
+     * The keys without duplicates. Keys of a type that PostgreSQL orders like Java are sorted, descending if the
+     * ORDER BY is, so that consecutive chunks are consecutive key ranges.
+     *
+     * @throws IllegalArgumentException if a key is null
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static List<Object> distinct(Collection<?> keys, boolean descending) {
+        List<Object> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (distinct.contains(null)) {
+            throw new IllegalArgumentException("Keys must not be null, NULL never matches a key");
+        }
+        if (!distinct.isEmpty() && Boolean.TRUE.equals(ORDERED.get(distinct.get(0).getClass()))
+                && distinct.stream().allMatch(key -> key.getClass() == distinct.get(0).getClass())) {
+            Comparator<Object> natural = (a, b) -> ((Comparable) a).compareTo(b);
+            distinct.sort(descending ? natural.reversed() : natural);
+        }
+        return distinct;
+    }
+
+    /**
+     * The array literal of the keys, every element quoted so that text keys need no further escaping rules.
+     */
+    static String literal(List<?> keys) {
+        StringBuilder literal = new StringBuilder(keys.size() * 12).append('{');
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                literal.append(',');
+            }
+            literal.append('"');
+            String key = keys.get(i).toString();
+            for (int j = 0; j < key.length(); j++) {
+                char c = key.charAt(j);
+                if (c == '"' || c == '\\') {
+                    literal.append('\\');
+                }
+                literal.append(c);
+            }
+            literal.append('"');
+        }
+        return literal.append('}').toString();
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Opaque continuation token of {@link DistinctOnExecutor#page}: the typed DISTINCT ON key of the last row of a page,
+ * plus a fingerprint of the spec so a token cannot be replayed against a different request. URL-safe Base64.
+ */
+final class KeysetToken {
+
+    private static final byte VERSION = 1;
+
+    private static final byte STRING = 'S';
+    private static final byte INTEGER = 'I';
+    private static final byte LONG = 'L';
+    private static final byte SHORT = 'H';
+    private static final byte DOUBLE = 'D';
+    private static final byte FLOAT = 'F';
+    private static final byte BOOLEAN = 'Z';
+    private static final byte BIG_DECIMAL = 'N';
+    private static final byte BIG_INTEGER = 'B';
+    private static final byte DATE = 'd';
+    private static final byte TIMESTAMP = 't';
+    private static final byte UUID_VALUE = 'U';
+
+    private KeysetToken() {
+    }
+
+    static String encode(int fingerprint, List<?> key) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(fingerprint);
+            out.writeByte(key.size());
+            for (Object value : key) {
+                write(out, value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed or was issued for another spec
+     */
+    static List<Object> decode(String token, int fingerprint, int keyCount) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readByte() != VERSION) {
+                throw new IllegalArgumentException("Invalid page token: " + token);
+            }
+            if (in.readInt() != fingerprint || in.readByte() != keyCount) {
+                throw new IllegalArgumentException("Page token does not belong to this DISTINCT ON request: " + token);
+            }
+            List<Object> key = new ArrayList<>(keyCount);
+            for (int i = 0; i < keyCount; i++) {
+                key.add(read(in));
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Invalid page token: " + token);
+            }
+            return key;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+    }
+
+    private static void write(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeUTF(((Timestamp) value).toInstant().toString());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_VALUE);
+            out.writeUTF(value.toString());
+        } else if (value == null) {
+            throw new IllegalArgumentException("Keyset pagination requires NOT NULL DISTINCT ON columns");
+        } else {
+            throw new IllegalArgumentException("Unsupported DISTINCT ON key type for a page token: " + value.getClass().getName());
+        }
+    }
+
+    private static Object read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case STRING:
+                return in.readUTF();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case SHORT:
+                return in.readShort();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case BOOLEAN:
+                return in.readBoolean();
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case BIG_INTEGER:
+                return new BigInteger(in.readUTF());
+            case DATE:
+                return Date.valueOf(in.readUTF());
+            case TIMESTAMP:
+                return Timestamp.from(Instant.parse(in.readUTF()));
+            case UUID_VALUE:
+                return UUID.fromString(in.readUTF());
+            default:
+                throw new IOException("Unknown key type " + (char) type);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.SessionFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DistinctOnMetrics} publishing to a Micrometer {@link MeterRegistry}. Requires {@code io.micrometer:micrometer-core}
+ * on the classpath, it is an optional dependency of this library.
+ * <p>
+ * Meters, tagged with {@code table}, {@code distinct_on} (the DISTINCT ON columns, the query shape) and {@code strategy}:
+ * <ul>
+ *     <li>{@code distinct_on.query} timer, with an {@code outcome} tag of {@code success} or {@code error}</li>
+ *     <li>{@code distinct_on.query.rows} distribution summary</li>
+ *     <li>{@code distinct_on.strategy.selected} counter of the selector's decisions</li>
+ *     <li>{@code distinct_on.fragment_cache.hits}, {@code .misses} function counters and {@code .size} gauge</li>
+ *     <li>{@code distinct_on.query_cache.hits}, {@code .misses}, {@code .puts} function counters and {@code .hit_ratio}
+ *     gauge, tagged with the {@code region}</li>
+ * </ul>
+ */
+public class MicrometerDistinctOnMetrics implements DistinctOnMetrics {
+
+    private final MeterRegistry registry;
+    // meters per query shape and strategy, to skip the builders on every query
+    private final ConcurrentMap<ShapeKey, ShapeMeters> meters = new ConcurrentHashMap<>();
+
+    public MicrometerDistinctOnMetrics(MeterRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("Meter registry must not be null");
+        }
+        this.registry = registry;
+    }
+
+    @Override
+    public void queryExecuted(DistinctOnSpec spec, DistinctOnStrategy strategy, long durationNanos, long rows) {
+        ShapeMeters shape = meters(spec, strategy);
+        shape.success.record(durationNanos, TimeUnit.NANOSECONDS);
+        shape.rows.record(rows);
+    }
+
+    @Override
+    public void queryFailed(DistinctOnSpec spec, DistinctOnStrategy strategy, long durationNanos, RuntimeException error) {
+        meters(spec, strategy).error.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void strategySelected(StrategyDecision decision) {
+        meters(decision.getSpec(), decision.getStrategy()).selected.increment();
+    }
+
+    @Override
+    public void bindFragmentCache(DistinctOnFragmentCache cache) {
+        FunctionCounter.builder("distinct_on.fragment_cache.hits", cache, DistinctOnFragmentCache::hitCount)
+                .description("DISTINCT_ON fragments served from the cache")
+                .register(registry);
+        FunctionCounter.builder("distinct_on.fragment_cache.misses", cache, DistinctOnFragmentCache::missCount)
+                .description("DISTINCT_ON fragments rendered")
+                .register(registry);
+        Gauge.builder("distinct_on.fragment_cache.size", cache, DistinctOnFragmentCache::size)
+                .register(registry);
+    }
+
+    @Override
+    public void bindQueryCache(SessionFactory sessionFactory, String region) {
+        Tags tags = Tags.of("region", region);
+        FunctionCounter.builder("distinct_on.query_cache.hits", sessionFactory,
+                        factory -> QueryCacheStatistics.of(factory, region).getHitCount())
+                .description("DISTINCT ON results served from the query cache")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("distinct_on.query_cache.misses", sessionFactory,
+                        factory -> QueryCacheStatistics.of(factory, region).getMissCount())
+                .description("DISTINCT ON results not found in the query cache")
+                .tags(tags)
+                .register(registry);
+        FunctionCounter.builder("distinct_on.query_cache.puts", sessionFactory,
+                        factory -> QueryCacheStatistics.of(factory, region).getPutCount())
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("distinct_on.query_cache.hit_ratio", sessionFactory,
+                        factory -> QueryCacheStatistics.of(factory, region).getHitRatio())
+                .tags(tags)
+                .register(registry);
+    }
+
+    private ShapeMeters meters(DistinctOnSpec spec, DistinctOnStrategy strategy) {
+        ShapeKey key = new ShapeKey(spec, strategy);
+        ShapeMeters shape = meters.get(key);
+        if (shape == null) {
+            shape = meters.computeIfAbsent(key, k -> new ShapeMeters(registry, shapeTags(spec, strategy)));
+        }
+        return shape;
+    }
+
+    private static Tags shapeTags(DistinctOnSpec spec, DistinctOnStrategy strategy) {
+        return Tags.of("table", spec.getTable(),
+                "distinct_on", String.join(",", spec.getDistinctColumns()),
+                "strategy", strategy.name());
+    }
+
+    private static final class ShapeMeters {
+        final Timer success;
+        final Timer error;
+        final DistributionSummary rows;
+        final Counter selected;
+
+        ShapeMeters(MeterRegistry registry, Tags tags) {
+            this.success = Timer.builder("distinct_on.query").tags(tags).tag("outcome", "success").register(registry);
+            this.error = Timer.builder("distinct_on.query").tags(tags).tag("outcome", "error").register(registry);
+            this.rows = DistributionSummary.builder("distinct_on.query.rows").tags(tags).register(registry);
+            this.selected = Counter.builder("distinct_on.strategy.selected").tags(tags).register(registry);
+        }
+    }
+
+    private static final class ShapeKey {
+        private final String table;
+        private final Object distinctColumns;
+        private final DistinctOnStrategy strategy;
+
+        ShapeKey(DistinctOnSpec spec, DistinctOnStrategy strategy) {
+            this.table = spec.getTable();
+            this.distinctColumns = spec.getDistinctColumns();
+            this.strategy = strategy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ShapeKey)) {
+                return false;
+            }
+            ShapeKey other = (ShapeKey) o;
+            return strategy == other.strategy && table.equals(other.table) && distinctColumns.equals(other.distinctColumns);
+        }
+
+        @Override
+        public int hashCode() {
+            return (table.hashCode() * 31 + distinctColumns.hashCode()) * 31 + strategy.hashCode();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.dialect.PostgreSQL95Dialect;
+
+public class PostgreSqlDistinctOnDialect extends PostgreSQL95Dialect {
+
+    private final DistinctOn distinctOn = new DistinctOn();
+
+    public PostgreSqlDistinctOnDialect() {
+        super();
+        registerFunction("DISTINCT_ON", distinctOn);
+        registerFunction("DISTINCT_ON_KEYS", new DistinctOnMarker());
+    }
+
+    /**
+     * Rendered-fragment cache of the registered DISTINCT_ON function, exposes hit/miss counters for monitoring.
+     */
+    public DistinctOnFragmentCache getFragmentCache() {
+        return distinctOn.getFragmentCache();
+    }
+}
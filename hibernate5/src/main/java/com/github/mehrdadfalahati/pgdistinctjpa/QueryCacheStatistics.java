@@ -0,0 +1,80 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import java.util.Locale;
+
+/**
+ * Hit, miss and put counts of a query cache region, read from the session factory's statistics. Hibernate only
+ * counts with {@code hibernate.generate_statistics=true}, otherwise all counts are 0.
+ */
+public final class QueryCacheStatistics {
+
+    private final String region;
+    private final long hitCount;
+    private final long missCount;
+    private final long putCount;
+
+    QueryCacheStatistics(String region, long hitCount, long missCount, long putCount) {
+        this.region = region;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.putCount = putCount;
+    }
+
+    /**
+     * The current counts of the region, all 0 before its first query.
+     */
+    public static QueryCacheStatistics of(SessionFactory sessionFactory, String region) {
+        Statistics statistics = sessionFactory.getStatistics();
+        // Hibernate remembers the statistics of a region that does not exist yet as missing, and then fails every
+        // query of the region with a NullPointerException when it counts the miss
+        if (!statistics.isStatisticsEnabled() || ((SessionFactoryImplementor) sessionFactory).getCache()
+                .getQueryResultsCacheStrictly(region) == null) {
+            return new QueryCacheStatistics(region, 0, 0, 0);
+        }
+        CacheRegionStatistics counts = statistics.getQueryRegionStatistics(region);
+        if (counts == null) {
+            return new QueryCacheStatistics(region, 0, 0, 0);
+        }
+        return new QueryCacheStatistics(region, counts.getHitCount(), counts.getMissCount(), counts.getPutCount());
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getPutCount() {
+        return putCount;
+    }
+
+    /**
+     * Hits per lookup, between 0 and 1, 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCacheStatistics{" +
+                "region=" + region +
+                ", hits=" + hitCount +
+                ", misses=" + missCount +
+                ", puts=" + putCount +
+                ", hitRatio=" + String.format(Locale.ROOT, "%.3f", getHitRatio()) +
+                '}';
+    }
+}
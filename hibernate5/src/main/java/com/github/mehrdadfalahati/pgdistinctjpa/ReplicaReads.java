@@ -0,0 +1,90 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.exception.JDBCConnectionException;
+import org.jboss.logging.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Function;
+
+/**
+ * Chooses the session the reads of a {@link DistinctOnExecutor} run on: a session over a connection handed out by
+ * the {@link DistinctOnReplicaRouter}, or the caller's session when there is no router, the caller's session has an
+ * active transaction or the router keeps the query on the primary. A read that loses its replica connection is run
+ * again on the caller's session.
+ */
+final class ReplicaReads {
+
+    private static final Logger LOG = Logger.getLogger(ReplicaReads.class);
+
+    static final ReplicaReads PRIMARY = new ReplicaReads(null, false);
+
+    private final DistinctOnReplicaRouter router;
+    private final boolean queryCache;
+
+    private ReplicaReads(DistinctOnReplicaRouter router, boolean queryCache) {
+        this.router = router;
+        this.queryCache = queryCache;
+    }
+
+    static ReplicaReads of(ExecutorSettings settings) {
+        return settings.getReplicaRouter() == null ? PRIMARY
+                : new ReplicaReads(settings.getReplicaRouter(), settings.getQueryCacheRegion() != null);
+    }
+
+    <R> R run(SharedSessionContract session, Function<SharedSessionContract, R> read) {
+        if (router == null || session.getTransaction().isActive()) {
+            return read.apply(session);
+        }
+        Connection connection = router.acquire();
+        if (connection == null) {
+            return read.apply(session);
+        }
+        SharedSessionContract replica = null;
+        try {
+            replica = open(((SharedSessionContractImplementor) session).getFactory(), connection);
+            return read.apply(replica);
+        } catch (RuntimeException e) {
+            if (!lostConnection(e)) {
+                throw e;
+            }
+            router.failed(e);
+            return read.apply(session);
+        } finally {
+            if (replica != null) {
+                replica.close();
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOG.debug("Failed to close read replica connection", e);
+            }
+        }
+    }
+
+    // a StatelessSession ignores the query cache, a read-only Session looks up the region before querying the replica
+    private SharedSessionContract open(SessionFactoryImplementor factory, Connection connection) {
+        if (!queryCache) {
+            return factory.openStatelessSession(connection);
+        }
+        Session replica = factory.withOptions().connection(connection).openSession();
+        replica.setDefaultReadOnly(true);
+        replica.setHibernateFlushMode(FlushMode.MANUAL);
+        return replica;
+    }
+
+    // the JPA query methods wrap Hibernate's exceptions in a PersistenceException
+    private static boolean lostConnection(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JDBCConnectionException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Session settings that {@link DistinctOnSortTuner} remembered for one statement shape, applied with
+ * {@code SET LOCAL} before every later execution. {@link #toString()} is meant for log lines.
+ */
+public final class SortTuning {
+
+    private final long workMemKb;
+    private final Boolean incrementalSort;
+    private final long spillKb;
+    private final long sampledAtMillis;
+
+    SortTuning(long workMemKb, Boolean incrementalSort, long spillKb, long sampledAtMillis) {
+        this.workMemKb = workMemKb;
+        this.incrementalSort = incrementalSort;
+        this.spillKb = spillKb;
+        this.sampledAtMillis = sampledAtMillis;
+    }
+
+    /**
+     * The {@code work_mem} in kB, 0 to keep the session's.
+     */
+    public long getWorkMemKb() {
+        return workMemKb;
+    }
+
+    /**
+     * The {@code enable_incremental_sort} setting, {@code null} to keep the session's.
+     */
+    public Boolean getIncrementalSort() {
+        return incrementalSort;
+    }
+
+    /**
+     * Largest sort or hash spill of the last sampled execution in kB, 0 if it ran in memory.
+     */
+    public long getSpillKb() {
+        return spillKb;
+    }
+
+    public long getSampledAtMillis() {
+        return sampledAtMillis;
+    }
+
+    /**
+     * Whether there is anything to apply.
+     */
+    public boolean isEmpty() {
+        return workMemKb == 0 && incrementalSort == null;
+    }
+
+    SortTuning sampledAt(long millis) {
+        return new SortTuning(workMemKb, incrementalSort, spillKb, millis);
+    }
+
+    List<String> statements() {
+        List<String> statements = new ArrayList<>(2);
+        if (workMemKb > 0) {
+            statements.add("SET LOCAL work_mem = '" + workMemKb + "kB'");
+        }
+        if (incrementalSort != null) {
+            statements.add("SET LOCAL enable_incremental_sort = " + (incrementalSort ? "on" : "off"));
+        }
+        return statements;
+    }
+
+    @Override
+    public String toString() {
+        return "SortTuning{" +
+                "workMem=" + (workMemKb > 0 ? workMemKb + "kB" : "default") +
+                ", incrementalSort=" + (incrementalSort != null ? incrementalSort : "default") +
+                ", lastSpill=" + spillKb + "kB" +
+                '}';
+    }
+}
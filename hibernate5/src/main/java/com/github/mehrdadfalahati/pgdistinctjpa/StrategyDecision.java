@@ -0,0 +1,89 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Outcome of {@link DistinctOnStrategySelector}: the chosen strategy together with the inputs and the estimated cost of
+ * every candidate, so the choice can be logged and explained. {@link #toString()} is meant for log lines.
+ */
+public final class StrategyDecision {
+
+    private final DistinctOnStrategy strategy;
+    private final DistinctOnSpec spec;
+    private final double rowCount;
+    private final double estimatedGroups;
+    private final String leadingIndex;
+    private final String orderIndex;
+    private final Map<DistinctOnStrategy, Double> costs;
+
+    StrategyDecision(DistinctOnStrategy strategy, DistinctOnSpec spec, double rowCount, double estimatedGroups,
+                     String leadingIndex, String orderIndex, Map<DistinctOnStrategy, Double> costs) {
+        this.strategy = strategy;
+        this.spec = spec;
+        this.rowCount = rowCount;
+        this.estimatedGroups = estimatedGroups;
+        this.leadingIndex = leadingIndex;
+        this.orderIndex = orderIndex;
+        this.costs = Collections.unmodifiableMap(new EnumMap<>(costs));
+    }
+
+    public DistinctOnStrategy getStrategy() {
+        return strategy;
+    }
+
+    public DistinctOnSpec getSpec() {
+        return spec;
+    }
+
+    public double getRowCount() {
+        return rowCount;
+    }
+
+    public double getEstimatedGroups() {
+        return estimatedGroups;
+    }
+
+    /**
+     * Index whose leading columns are the DISTINCT ON columns, or {@code null}.
+     */
+    public String getLeadingIndex() {
+        return leadingIndex;
+    }
+
+    /**
+     * Index that returns rows in the full ORDER BY of the spec, or {@code null}.
+     */
+    public String getOrderIndex() {
+        return orderIndex;
+    }
+
+    /**
+     * Estimated cost of every strategy able to express the spec, in arbitrary planner-like units.
+     */
+    public Map<DistinctOnStrategy, Double> getCosts() {
+        return costs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder costText = new StringBuilder();
+        costs.forEach((candidate, cost) -> {
+            if (costText.length() > 0) {
+                costText.append(", ");
+            }
+            costText.append(candidate).append('=').append(String.format("%.1f", cost));
+        });
+        return "StrategyDecision{" +
+                "strategy=" + strategy +
+                ", table=" + spec.getTable() +
+                ", distinctOn=" + spec.getDistinctColumns() +
+                ", rows=" + (long) rowCount +
+                ", groups=" + (long) estimatedGroups +
+                ", leadingIndex=" + leadingIndex +
+                ", orderIndex=" + orderIndex +
+                ", costs={" + costText + '}' +
+                '}';
+    }
+}
@@ -0,0 +1,305 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Planner statistics of one table, read from the PostgreSQL catalog: estimated row count ({@code pg_class.reltuples}),
+ * per-column {@code pg_stats.n_distinct}, the {@code NOT NULL} columns and the key columns of every valid, non-partial
+ * btree index.
+ * Statistics are only as fresh as the last {@code ANALYZE}.
+ */
+public final class TableProfile {
+
+    /**
+     * PostgreSQL's own guess for the number of distinct values when a column has no statistics.
+     */
+    static final double DEFAULT_NUM_DISTINCT = 200;
+
+    private static final String ROW_COUNT_SQL =
+            "SELECT reltuples FROM pg_class WHERE oid = to_regclass(?)";
+
+    private static final String N_DISTINCT_SQL =
+            "SELECT s.attname, s.n_distinct FROM pg_stats s "
+                    + "JOIN pg_class c ON c.relname = s.tablename "
+                    + "JOIN pg_namespace n ON n.oid = c.relnamespace AND n.nspname = s.schemaname "
+                    + "WHERE c.oid = to_regclass(?) AND NOT s.inherited";
+
+    private static final String NOT_NULL_SQL =
+            "SELECT attname FROM pg_attribute "
+                    + "WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped AND attnotnull";
+
+    private static final String INDEX_SQL =
+            "SELECT ic.relname, pg_get_indexdef(i.indexrelid, k.n, true), (i.indoption[k.n - 1] & 1) = 1 "
+                    + "FROM pg_index i "
+                    + "JOIN pg_class ic ON ic.oid = i.indexrelid "
+                    + "JOIN pg_am am ON am.oid = ic.relam AND am.amname = 'btree' "
+                    + "CROSS JOIN LATERAL generate_series(1, i.indnkeyatts) AS k(n) "
+                    + "WHERE i.indrelid = to_regclass(?) AND i.indisvalid AND i.indpred IS NULL "
+                    + "ORDER BY ic.relname, k.n";
+
+    private final String table;
+    private final double rowCount;
+    private final Map<String, Double> nDistinct;
+    private final Set<String> notNullColumns;
+    private final List<IndexProfile> indexes;
+    private final long loadedAtMillis;
+
+    /**
+     * A profile without {@code NOT NULL} information: every column is taken to be nullable.
+     */
+    public TableProfile(String table, double rowCount, Map<String, Double> nDistinct, List<IndexProfile> indexes, long loadedAtMillis) {
+        this(table, rowCount, nDistinct, Collections.emptySet(), indexes, loadedAtMillis);
+    }
+
+    public TableProfile(String table, double rowCount, Map<String, Double> nDistinct, Set<String> notNullColumns,
+                        List<IndexProfile> indexes, long loadedAtMillis) {
+        this.table = table;
+        this.rowCount = rowCount;
+        Map<String, Double> normalized = new HashMap<>();
+        nDistinct.forEach((column, value) -> normalized.put(normalize(column), value));
+        this.nDistinct = Collections.unmodifiableMap(normalized);
+        Set<String> notNull = new HashSet<>();
+        notNullColumns.forEach(column -> notNull.add(normalize(column)));
+        this.notNullColumns = Collections.unmodifiableSet(notNull);
+        this.indexes = Collections.unmodifiableList(new ArrayList<>(indexes));
+        this.loadedAtMillis = loadedAtMillis;
+    }
+
+    /**
+     * Reads the profile of a table, optionally schema-qualified, from the catalog.
+     *
+     * @throws IllegalArgumentException if the table does not exist
+     */
+    public static TableProfile load(Connection connection, String table) throws SQLException {
+        double rowCount;
+        try (PreparedStatement statement = connection.prepareStatement(ROW_COUNT_SQL)) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalArgumentException("Table not found: " + table);
+                }
+                // -1 (PostgreSQL 14+) or 0 means never vacuumed or analyzed
+                rowCount = Math.max(rs.getDouble(1), 0);
+            }
+        }
+
+        Map<String, Double> nDistinct = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(N_DISTINCT_SQL)) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    nDistinct.put(rs.getString(1), rs.getDouble(2));
+                }
+            }
+        }
+
+        Set<String> notNullColumns = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(NOT_NULL_SQL)) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    notNullColumns.add(rs.getString(1));
+                }
+            }
+        }
+
+        Map<String, List<SortKey>> indexColumns = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(INDEX_SQL)) {
+            statement.setString(1, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    String column = rs.getString(2);
+                    indexColumns.computeIfAbsent(rs.getString(1), name -> new ArrayList<>())
+                            .add(rs.getBoolean(3) ? SortKey.desc(column) : SortKey.asc(column));
+                }
+            }
+        }
+        List<IndexProfile> indexes = new ArrayList<>();
+        indexColumns.forEach((name, columns) -> indexes.add(new IndexProfile(name, columns)));
+
+        return new TableProfile(table, rowCount, nDistinct, notNullColumns, indexes, System.currentTimeMillis());
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public double getRowCount() {
+        return rowCount;
+    }
+
+    public List<IndexProfile> getIndexes() {
+        return indexes;
+    }
+
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    /**
+     * Estimated number of distinct values of a column: {@code pg_stats.n_distinct}, where negative values are a
+     * fraction of the row count, or {@link #DEFAULT_NUM_DISTINCT} for columns or expressions without statistics.
+     */
+    public double distinctValues(String column) {
+        Double value = nDistinct.get(normalize(column));
+        if (value == null) {
+            return Math.min(DEFAULT_NUM_DISTINCT, Math.max(rowCount, 1));
+        }
+        return value < 0 ? -value * rowCount : value;
+    }
+
+    /**
+     * Whether a column is declared {@code NOT NULL}. Expressions and unknown columns are taken to be nullable.
+     */
+    public boolean isNotNull(String column) {
+        return notNullColumns.contains(normalize(column));
+    }
+
+    /**
+     * Estimated number of groups for a combination of columns, assuming independent columns, capped at the row count.
+     */
+    public double estimateGroups(List<String> columns) {
+        double groups = 1;
+        for (String column : columns) {
+            groups *= Math.max(distinctValues(column), 1);
+        }
+        return Math.max(1, Math.min(groups, Math.max(rowCount, 1)));
+    }
+
+    /**
+     * First index whose leading columns are exactly {@code order}, scanned forwards or backwards, or {@code null}.
+     */
+    public IndexProfile findIndex(List<SortKey> order) {
+        for (IndexProfile index : indexes) {
+            if (index.supportsOrder(order)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * First index whose leading columns are the given columns in any order and direction, or {@code null}.
+     */
+    public IndexProfile findIndexLeadingWith(List<String> columns) {
+        for (IndexProfile index : indexes) {
+            if (index.leadsWith(columns)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "TableProfile{" +
+                "table='" + table + '\'' +
+                ", rows=" + (long) rowCount +
+                ", nDistinct=" + nDistinct +
+                ", notNull=" + notNullColumns +
+                ", indexes=" + indexes +
+                '}';
+    }
+
+    /**
+     * Lower case, without the parentheses {@code pg_get_indexdef} puts around index expressions.
+     */
+    static String normalize(String column) {
+        String normalized = column.trim().toLowerCase(Locale.ROOT);
+        while (normalized.startsWith("(") && closingParenthesis(normalized) == normalized.length() - 1) {
+            normalized = normalized.substring(1, normalized.length() - 1).trim();
+        }
+        return normalized;
+    }
+
+    private static int closingParenthesis(String expression) {
+        int depth = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Key columns of a btree index, with their sort direction.
+     */
+    public static final class IndexProfile {
+        private final String name;
+        private final List<SortKey> columns;
+
+        public IndexProfile(String name, List<SortKey> columns) {
+            this.name = name;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<SortKey> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Whether an index scan returns rows in the given order. A btree can be read backwards, so the directions
+         * must either all match or all be inverted.
+         */
+        public boolean supportsOrder(List<SortKey> order) {
+            if (order.size() > columns.size()) {
+                return false;
+            }
+            boolean forward = true;
+            boolean backward = true;
+            for (int i = 0; i < order.size(); i++) {
+                SortKey wanted = order.get(i);
+                SortKey actual = columns.get(i);
+                if (!normalize(wanted.getColumn()).equals(normalize(actual.getColumn()))) {
+                    return false;
+                }
+                forward &= wanted.isDescending() == actual.isDescending();
+                backward &= wanted.isDescending() != actual.isDescending();
+            }
+            return forward || backward;
+        }
+
+        public boolean leadsWith(List<String> leading) {
+            if (leading.size() > columns.size()) {
+                return false;
+            }
+            List<String> remaining = new ArrayList<>();
+            for (String column : leading) {
+                remaining.add(normalize(column));
+            }
+            for (int i = 0; i < leading.size(); i++) {
+                if (!remaining.remove(normalize(columns.get(i).getColumn()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return name + columns;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCopyParserTest {
+
+    private static final UUID ID = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+
+    @Test
+    @DisplayName("Fields of every supported type are decoded from the binary format")
+    void testTypes() throws IOException {
+        List<String> rows = parse(Arrays.asList(copy()));
+        assertEquals(Arrays.asList(
+                "42|9000000000|Zoë|true|" + ID + "|-1234.5670|2024-01-01|2024-01-01T12:30:00.000001|2.5|0.25",
+                "7|null|null|false|null|0.0012|infinity|null|null|null",
+                "-1|1|x|false|null|12345678901234567890|2000-01-01|2000-01-01T00:00|null|null"), rows);
+    }
+
+    @Test
+    @DisplayName("Tuples split across chunks at any byte give the same rows")
+    void testChunkBoundaries() throws IOException {
+        byte[] data = copy();
+        List<String> expected = parse(Arrays.asList(data));
+        for (int split = 1; split < data.length; split++) {
+            assertEquals(expected, parse(Arrays.asList(Arrays.copyOfRange(data, 0, split), Arrays.copyOfRange(data, split, data.length))),
+                    "split at " + split);
+        }
+        List<byte[]> bytes = new ArrayList<>();
+        for (byte b : data) {
+            bytes.add(new byte[]{b});
+        }
+        assertEquals(expected, parse(bytes));
+    }
+
+    @Test
+    @DisplayName("Bad signature, missing trailer and data after the trailer are rejected")
+    void testInvalid() throws IOException {
+        byte[] data = copy();
+        byte[] badSignature = data.clone();
+        badSignature[0] = 'X';
+        assertThrows(IllegalStateException.class, () -> parse(Arrays.asList(badSignature)));
+        assertThrows(IllegalStateException.class, () -> parse(Arrays.asList(Arrays.copyOf(data, data.length - 2))));
+        assertThrows(IllegalStateException.class, () -> parse(Arrays.asList(Arrays.copyOf(data, data.length + 1))));
+    }
+
+    @Test
+    @DisplayName("Typed getters reject NULL and short fields")
+    void testGetterChecks() throws IOException {
+        List<RuntimeException> errors = new ArrayList<>();
+        BinaryCopyParser parser = new BinaryCopyParser(row -> {
+            if (row.isNull(1)) {
+                errors.add(assertThrows(IllegalStateException.class, () -> row.getLong(1)));
+                errors.add(assertThrows(IllegalStateException.class, () -> row.getLong(0)));
+                errors.add(assertThrows(IndexOutOfBoundsException.class, () -> row.isNull(10)));
+            }
+        });
+        parser.accept(copy());
+        parser.finish();
+        assertEquals(3, errors.size());
+        assertEquals(3, parser.rows());
+    }
+
+    private static List<String> parse(List<byte[]> chunks) {
+        List<String> rows = new ArrayList<>();
+        BinaryCopyParser parser = new BinaryCopyParser(row -> {
+            LocalDate date = row.getDate(6);
+            rows.add(row.getInt(0)
+                    + "|" + (row.isNull(1) ? null : row.getLong(1))
+                    + "|" + row.getString(2)
+                    + "|" + row.getBoolean(3)
+                    + "|" + row.getUuid(4)
+                    + "|" + row.getBigDecimal(5).toPlainString()
+                    + "|" + (LocalDate.MAX.equals(date) ? "infinity" : date)
+                    + "|" + row.getTimestamp(7)
+                    + "|" + (row.isNull(8) ? null : row.getDouble(8))
+                    + "|" + (row.isNull(9) ? null : row.getFloat(9)));
+        });
+        for (byte[] chunk : chunks) {
+            parser.accept(chunk);
+        }
+        parser.finish();
+        assertEquals(rows.size(), parser.rows());
+        return rows;
+    }
+
+    private static byte[] copy() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write("PGCOPY\n".getBytes(StandardCharsets.US_ASCII));
+        out.write(new byte[]{(byte) 0xff, '\r', '\n', 0});
+        out.writeInt(0);
+        // header extension, skipped
+        out.writeInt(3);
+        out.write(new byte[]{1, 2, 3});
+
+        out.writeShort(10);
+        int4(out, 42);
+        int8(out, 9_000_000_000L);
+        text(out, "Zoë");
+        bool(out, true);
+        uuid(out, ID);
+        numeric(out, 0x4000, 0, 4, 1234, 5670);
+        int4(out, 8766);
+        int8(out, (8766L * 86_400 + 12 * 3600 + 30 * 60) * 1_000_000 + 1);
+        int8(out, Double.doubleToLongBits(2.5));
+        int4(out, Float.floatToIntBits(0.25f));
+
+        out.writeShort(10);
+        int4(out, 7);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        bool(out, false);
+        out.writeInt(-1);
+        numeric(out, 0, -1, 4, 12);
+        int4(out, Integer.MAX_VALUE);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        out.writeInt(-1);
+
+        out.writeShort(10);
+        int4(out, -1);
+        int8(out, 1);
+        text(out, "x");
+        bool(out, false);
+        out.writeInt(-1);
+        numeric(out, 0, 4, 0, 1234, 5678, 9012, 3456, 7890);
+        int4(out, 0);
+        int8(out, 0);
+        out.writeInt(-1);
+        out.writeInt(-1);
+
+        out.writeShort(-1);
+        return bytes.toByteArray();
+    }
+
+    private static void int4(DataOutputStream out, int value) throws IOException {
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    private static void int8(DataOutputStream out, long value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    private static void bool(DataOutputStream out, boolean value) throws IOException {
+        out.writeInt(1);
+        out.writeByte(value ? 1 : 0);
+    }
+
+    private static void text(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static void uuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static void numeric(DataOutputStream out, int sign, int weight, int scale, int... digits) throws IOException {
+        out.writeInt(8 + 2 * digits.length);
+        out.writeShort(digits.length);
+        out.writeShort(weight);
+        out.writeShort(sign);
+        out.writeShort(scale);
+        for (int digit : digits) {
+            out.writeShort(digit);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Binary COPY export of DISTINCT ON results.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnCopyExportIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec topSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private static final List<String> employeeColumns = Arrays.asList("id", "name", "department", "salary");
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g || ' ü', 'Dept ' || (g % 50), (g * 7919) % 1000, '2020-01-01' "
+                    + "FROM generate_series(1, 5000) g").executeUpdate();
+            session.createNativeQuery("CREATE TABLE copy_types (grp int, amount numeric(14,4), day date, "
+                    + "at timestamp, ref uuid, flag boolean, note text, ratio double precision)").executeUpdate();
+            session.createNativeQuery("INSERT INTO copy_types VALUES "
+                    + "(1, -1234.5670, '2024-02-29', '2024-02-29 12:30:00.000001', "
+                    + "'123e4567-e89b-12d3-a456-426614174000', true, 'first', 0.5), "
+                    + "(1, 1, '1999-12-31', '1999-12-31 23:59:59', NULL, false, 'second', 1.5), "
+                    + "(2, 0.0001, 'infinity', NULL, NULL, NULL, NULL, NULL), "
+                    + "(3, 1234567890.1234, '2000-01-01', '2000-01-01 00:00:00', NULL, false, '', -2.25)").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            try (Session session = sessionFactory.openSession()) {
+                session.beginTransaction();
+                session.createNativeQuery("DROP TABLE copy_types").executeUpdate();
+                session.getTransaction().commit();
+            }
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Every strategy exports the rows of the entity query")
+    void testExportMatchesList() {
+        for (DistinctOnStrategy strategy : DistinctOnStrategy.values()) {
+            DistinctOnExecutor executor = new DistinctOnExecutor(strategy);
+            try (Session session = sessionFactory.openSession()) {
+                List<String> expected = executor.list(session, topSalary, Employee.class).stream()
+                        .map(e -> e.getId() + "|" + e.getName() + "|" + e.getDepartment() + "|" + e.getSalary())
+                        .collect(Collectors.toList());
+                List<String> exported = new ArrayList<>();
+                long rows = executor.export(session, topSalary, employeeColumns, row -> exported.add(
+                        row.getLong(0) + "|" + row.getString(1) + "|" + row.getString(2) + "|" + row.getInt(3)));
+
+                assertEquals(50, rows, strategy.name());
+                assertEquals(expected, exported, strategy.name());
+            }
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Numeric, date, timestamp, uuid, boolean, float and NULL fields")
+    void testTypes() {
+        DistinctOnSpec spec = DistinctOnSpec.from("copy_types").distinctOn("grp").orderBy("grp").orderBy("amount").build();
+        List<Object[]> rows = new ArrayList<>();
+        try (Session session = sessionFactory.openSession()) {
+            new DistinctOnExecutor().export(session, spec, row -> {
+                assertEquals(8, row.size());
+                rows.add(new Object[]{row.getInt(0), row.getBigDecimal(1), row.getDate(2), row.getTimestamp(3),
+                        row.getUuid(4), row.isNull(5) ? null : row.getBoolean(5), row.getString(6),
+                        row.isNull(7) ? null : row.getDouble(7)});
+            });
+        }
+
+        assertEquals(3, rows.size());
+        assertArrayEquals(new Object[]{1, new BigDecimal("-1234.5670"), LocalDate.of(2024, 2, 29),
+                LocalDateTime.of(2024, 2, 29, 12, 30, 0, 1000), UUID.fromString("123e4567-e89b-12d3-a456-426614174000"),
+                true, "first", 0.5}, rows.get(0));
+        assertArrayEquals(new Object[]{2, new BigDecimal("0.0001"), LocalDate.MAX, null, null, null, null, null}, rows.get(1));
+        assertArrayEquals(new Object[]{3, new BigDecimal("1234567890.1234"), LocalDate.of(2000, 1, 1),
+                LocalDateTime.of(2000, 1, 1, 0, 0), null, false, "", -2.25}, rows.get(2));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("A failing sink ends the COPY and leaves the session usable")
+    void testSinkFailure() {
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+        try (Session session = sessionFactory.openSession()) {
+            int[] seen = {0};
+            IllegalStateException e = assertThrows(IllegalStateException.class, () ->
+                    executor.export(session, topSalary, employeeColumns, row -> {
+                        if (++seen[0] == 10) {
+                            throw new IllegalStateException("sink full");
+                        }
+                    }));
+            assertEquals("sink full", e.getMessage());
+            assertEquals(50, executor.list(session, topSalary, Employee.class).size());
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Filters with parameters are rejected, inline values are exported")
+    void testParameters() {
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+        try (Session session = sessionFactory.openSession()) {
+            DistinctOnSpec parameterized = topSalary.toBuilder().where("salary > :min").build();
+            assertThrows(IllegalArgumentException.class, () -> executor.export(session, parameterized, row -> {
+            }));
+
+            DistinctOnSpec inline = topSalary.toBuilder().where("salary > 990 AND name <> 'x'").build();
+            long rows = executor.export(session, inline, employeeColumns, row -> assertTrue(row.getInt(3) > 990));
+            assertEquals(executor.list(session, inline, Employee.class).size(), rows);
+        }
+    }
+}
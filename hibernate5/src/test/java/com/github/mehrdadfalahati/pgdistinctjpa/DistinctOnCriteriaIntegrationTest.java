@@ -0,0 +1,191 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnCriteria.Operator;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Type-safe criteria against the entity mapping, compared with the equivalent hand-written specs.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnCriteriaIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+    private static SingularAttribute<? super Employee, String> department;
+    private static SingularAttribute<? super Employee, Integer> salary;
+    private static SingularAttribute<? super Employee, Long> id;
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        EntityType<Employee> employee = sessionFactory.getMetamodel().entity(Employee.class);
+        department = employee.getSingularAttribute("department", String.class);
+        salary = employee.getSingularAttribute("salary", Integer.class);
+        id = employee.getSingularAttribute("id", Long.class);
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 20), (g * 7919) % 100000, "
+                    + "CASE WHEN g % 3 = 0 THEN NULL ELSE '2020-01-01' END "
+                    + "FROM generate_series(1, 2000) g").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Metamodel attributes resolve to the mapped columns and match the hand-written spec")
+    void testMatchesSpec() {
+        DistinctOnCriteria<Employee> criteria = DistinctOnCriteria.from(Employee.class)
+                .distinctOn(department)
+                .orderBy(department)
+                .orderByDesc(salary)
+                .orderBy(id)
+                .where(salary, Operator.GE, 20000)
+                .whereNotNull("hireDate")
+                .build();
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .where("salary >= 20000 AND hire_date IS NOT NULL")
+                .build();
+
+        for (DistinctOnStrategy strategy : DistinctOnStrategy.values()) {
+            DistinctOnExecutor executor = new DistinctOnExecutor(strategy);
+            try (Session session = sessionFactory.openSession()) {
+                List<Employee> expected = executor.list(session, spec, Employee.class);
+                List<Employee> actual = executor.list(session, criteria);
+
+                assertEquals(20, actual.size(), strategy.name());
+                assertEquals(ids(expected), ids(actual), strategy.name());
+            }
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Criteria of the same shape compile once and only bind their values")
+    void testTemplateReused() {
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+        try (Session session = sessionFactory.openSession()) {
+            for (int minSalary : new int[]{0, 50000, 99000}) {
+                DistinctOnCriteria<Employee> criteria = DistinctOnCriteria.from(Employee.class)
+                        .distinctOn(department)
+                        .orderBy(department)
+                        .orderByDesc(salary)
+                        .where(salary, Operator.GE, minSalary)
+                        .build();
+
+                List<Employee> rows = executor.list(session, criteria);
+                assertFalse(rows.isEmpty());
+                assertTrue(rows.stream().allMatch(e -> e.getSalary() >= minSalary));
+            }
+            assertEquals(1, executor.criteriaTemplateCount());
+
+            executor.list(session, DistinctOnCriteria.from(Employee.class).distinctOn(department).build());
+            assertEquals(2, executor.criteriaTemplateCount());
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("IN lists bind as one array and the limit applies to the final, ordered result")
+    void testInAndLimit() {
+        DistinctOnExecutor executor = new DistinctOnExecutor(DistinctOnStrategy.LATERAL);
+        DistinctOnCriteria.Builder<Employee> builder = DistinctOnCriteria.from(Employee.class)
+                .distinctOn(department)
+                .orderBy(department)
+                .orderByDesc(salary)
+                .orderBy(id)
+                .whereIn(department, Arrays.asList("Dept 1", "Dept 2", "Dept 3", "Dept 4"))
+                .topNPerGroup(3);
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> all = executor.list(session, builder.build());
+            List<Employee> limited = executor.list(session, builder.limit(5).build());
+
+            assertEquals(12, all.size());
+            assertEquals(ids(all.subList(0, 5)), ids(limited));
+            assertEquals(Arrays.asList("Dept 1", "Dept 2", "Dept 3", "Dept 4"),
+                    all.stream().map(Employee::getDepartment).distinct().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Criteria stream through a cursor")
+    void testStream() {
+        DistinctOnCriteria<Employee> criteria = DistinctOnCriteria.from(Employee.class)
+                .distinctOn(department)
+                .orderBy(department)
+                .orderByDesc(salary)
+                .whereNull("hireDate")
+                .build();
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             Stream<Employee> rows = executor.stream(session, criteria, 7)) {
+            List<Employee> streamed = rows.collect(Collectors.toList());
+
+            assertEquals(20, streamed.size());
+            assertTrue(streamed.stream().allMatch(e -> e.getHireDate() == null));
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Unknown attributes are rejected when the criteria is compiled")
+    void testUnknownAttribute() {
+        DistinctOnCriteria<Employee> criteria = DistinctOnCriteria.from(Employee.class).distinctOn("team").build();
+        try (Session session = sessionFactory.openSession()) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> new DistinctOnExecutor().list(session, criteria));
+            assertTrue(e.getMessage().contains("team"), e.getMessage());
+        }
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnCriteria.Operator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnCriteriaTest {
+
+    private static DistinctOnCriteria.Builder<Employee> topSalary() {
+        return DistinctOnCriteria.from(Employee.class)
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary");
+    }
+
+    @Test
+    @DisplayName("Filter values, IN lists and the limit are bound in order, the limit last")
+    void testParameters() {
+        DistinctOnCriteria<Employee> criteria = topSalary()
+                .where("salary", Operator.GE, 1000)
+                .whereNotNull("hireDate")
+                .whereIn("department", Arrays.asList("IT", "HR", "IT"))
+                .limit(10)
+                .build();
+
+        assertEquals(Employee.class, criteria.getEntityType());
+        assertEquals(Arrays.asList(1000, "{\"IT\",\"HR\"}", 10), criteria.getParameters());
+        assertEquals(3, criteria.limitPosition());
+        assertEquals(0, topSalary().build().limitPosition());
+    }
+
+    @Test
+    @DisplayName("Criteria differing only in their values share a shape")
+    void testShape() {
+        DistinctOnCriteria<Employee> first = topSalary().where("salary", Operator.GE, 1000).limit(10).build();
+        DistinctOnCriteria<Employee> second = topSalary().where("salary", Operator.GE, 5000).limit(3).build();
+
+        assertEquals(first.shape(), second.shape());
+        assertEquals(first.shape().hashCode(), second.shape().hashCode());
+        assertNotEquals(first.shape(), topSalary().where("salary", Operator.GT, 1000).limit(10).build().shape());
+        assertNotEquals(first.shape(), topSalary().where("salary", Operator.GE, 1000).build().shape());
+        assertNotEquals(first.shape(), topSalary().where("salary", Operator.GE, 1000).limit(10).topNPerGroup(2).build().shape());
+        // the array element type is part of the SQL
+        assertNotEquals(topSalary().whereIn("salary", Collections.singletonList(1)).build().shape(),
+                topSalary().whereIn("salary", Collections.singletonList(1L)).build().shape());
+    }
+
+    @Test
+    @DisplayName("The ORDER BY prefix rule is enforced when the criteria is built")
+    void testPrefixRule() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> DistinctOnCriteria.from(Employee.class)
+                .distinctOn("department")
+                .orderByDesc("salary")
+                .orderBy("department")
+                .build());
+        assertTrue(e.getMessage().contains("must start with the DISTINCT ON columns"));
+
+        DistinctOnCriteria<Employee> defaultOrder = DistinctOnCriteria.from(Employee.class).distinctOn("department").build();
+        assertTrue(defaultOrder.toString().contains("orderBy=[department]"), defaultOrder.toString());
+    }
+
+    @Test
+    @DisplayName("Missing attributes, null values, empty IN lists and non-positive limits are rejected")
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnCriteria.from(Employee.class).build());
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnCriteria.from(Employee.class).distinctOn(" "));
+        assertThrows(IllegalArgumentException.class, () -> topSalary().where("salary", Operator.EQ, null));
+        assertThrows(IllegalArgumentException.class, () -> topSalary().where("salary", null, 1));
+        assertThrows(IllegalArgumentException.class, () -> topSalary().whereIn("department", Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> topSalary().whereIn("department", Collections.singletonList(new Object())));
+        assertThrows(IllegalArgumentException.class, () -> topSalary().limit(0));
+        assertThrows(IllegalArgumentException.class, () -> topSalary().topNPerGroup(0));
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnFragmentCacheTest {
+
+    @Test
+    @DisplayName("Cache hit returns the same fragment instance and counts the hit")
+    void testCacheHitReturnsSameInstance() {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache();
+
+        String first = cache.render(Arrays.asList("e.department", "e"));
+        String second = cache.render(new ArrayList<>(Arrays.asList("e.department", "e")));
+
+        assertEquals("DISTINCT ON(e.department) e ", first);
+        assertSame(first, second, "Second render of the same shape should come from the cache");
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(0.5, cache.hitRatio());
+    }
+
+    @Test
+    @DisplayName("Different argument shapes render different fragments")
+    void testDifferentShapes() {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache();
+
+        assertEquals("DISTINCT ON(e.department,e.name) e ", cache.render(Arrays.asList("e.department", "e.name", "e")));
+        assertEquals("DISTINCT ON(e.department) e.name ", cache.render(Arrays.asList("e.department", "e.name")));
+        assertEquals("DISTINCT ON(e.department,e.name) e ", cache.render(new LinkedList<>(Arrays.asList("e.department", "e.name", "e"))));
+        assertEquals(2, cache.missCount());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    @DisplayName("Cache never holds more fragments than its capacity")
+    void testBoundedEviction() {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache(8);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.render(Arrays.asList("e.col" + i, "e"));
+        }
+
+        assertEquals(8, cache.capacity());
+        assertTrue(cache.size() <= 8, "Cache size should be bounded by its capacity");
+        assertEquals(1000, cache.missCount());
+    }
+
+    @Test
+    @DisplayName("Capacity is rounded up to a power of two")
+    void testCapacityRounding() {
+        assertEquals(1, new DistinctOnFragmentCache(1).capacity());
+        assertEquals(64, new DistinctOnFragmentCache(50).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnFragmentCache(0));
+    }
+
+    @Test
+    @DisplayName("Invalid argument counts are rejected and never cached")
+    void testInvalidArguments() {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache();
+
+        assertThrows(IllegalArgumentException.class, () -> cache.render(Collections.emptyList()));
+        assertThrows(IllegalArgumentException.class, () -> cache.render(Collections.singletonList("e")));
+        assertThrows(IllegalArgumentException.class, () -> cache.render(Collections.singletonList("e")));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hitCount());
+    }
+
+    @Test
+    @DisplayName("Clear drops fragments and resets counters")
+    void testClear() {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache();
+        cache.render(Arrays.asList("e.department", "e"));
+        cache.render(Arrays.asList("e.department", "e"));
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hitCount());
+        assertEquals(0, cache.missCount());
+    }
+
+    @Test
+    @DisplayName("Concurrent rendering always returns the correct fragment")
+    void testConcurrentRendering() throws Exception {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache(4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        String column = "e.col" + (i % 16);
+                        assertEquals("DISTINCT ON(" + column + ") e ", cache.render(Arrays.asList(column, "e")));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(80_000, cache.hitCount() + cache.missCount());
+    }
+}
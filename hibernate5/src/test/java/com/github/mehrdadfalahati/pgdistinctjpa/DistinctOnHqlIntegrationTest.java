@@ -0,0 +1,58 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HQL queries using DISTINCT_ON_KEYS(...), rewritten into SELECT DISTINCT ON by {@link DistinctOnStatementInspector}.
+ */
+public class DistinctOnHqlIntegrationTest extends AbstractDistinctOnHqlIntegrationTest {
+
+    @Override
+    protected void configure(Configuration configuration) {
+        configuration.setProperty("hibernate.session_factory.statement_inspector", DistinctOnStatementInspector.class.getName());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Repeated HQL executions reuse the cached rewrite")
+    void testRewriteIsCached() {
+        DistinctOnStatementInspector inspector = (DistinctOnStatementInspector)
+                sessionFactory.getSessionFactoryOptions().getStatementInspector();
+        long hitsBefore = inspector.hitCount();
+
+        for (int i = 0; i < 3; i++) {
+            try (Session session = sessionFactory.openSession()) {
+                session.createQuery(
+                        "SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department, e.name) = true ORDER BY e.department, e.name",
+                        Employee.class
+                ).getResultList();
+            }
+        }
+
+        assertTrue(inspector.hitCount() - hitsBefore >= 2, "Executions after the first should hit the rewrite cache");
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Test DISTINCT ON error handling - no arguments")
+    void testDistinctOnNoArguments() {
+        try (Session session = sessionFactory.openSession()) {
+            // This should throw an error as DISTINCT_ON requires arguments
+            String hql = "SELECT DISTINCT_ON() FROM Employee e";
+
+            assertThrows(Exception.class, () -> {
+                session.createQuery(hql, Employee.class).getResultList();
+            }, "DISTINCT_ON without arguments should throw an exception");
+
+        } catch (Exception e) {
+            // Expected to fail
+            System.out.println("Correctly caught exception for no arguments: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The index advisor runs while the session factory is built, after schema generation.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnIndexAdvisorIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static final DistinctOnSpec highestSalaryPerDepartment = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .build();
+
+    private static Configuration configuration(String schemaAction, DistinctOnIndexAdvisor advisor) {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", schemaAction);
+        configuration.addAnnotatedClass(Employee.class);
+        if (advisor != null) {
+            configuration.setSessionFactoryObserver(advisor);
+        }
+        return configuration;
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("WARN mode reports the missing index and the session factory still starts")
+    void testWarnMode() {
+        DistinctOnIndexAdvisor advisor = new DistinctOnIndexAdvisor().register(highestSalaryPerDepartment);
+
+        try (SessionFactory sessionFactory = configuration("create", advisor).buildSessionFactory()) {
+            List<IndexAdvice> advice = advisor.getAdvice();
+
+            assertEquals(1, advice.size());
+            assertFalse(advice.get(0).isSatisfied());
+            assertEquals("CREATE INDEX employees_department_salary_idx ON employees (department, salary DESC)",
+                    advice.get(0).getSuggestedIndex());
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("FAIL mode aborts the bootstrap with the suggested CREATE INDEX")
+    void testFailMode() {
+        DistinctOnIndexAdvisor advisor = new DistinctOnIndexAdvisor(DistinctOnIndexAdvisor.Mode.FAIL)
+                .register(highestSalaryPerDepartment, DistinctOnSpec.from("no_such_table").distinctOn("id").build());
+
+        HibernateException exception = assertThrows(HibernateException.class,
+                () -> configuration("none", advisor).buildSessionFactory());
+
+        assertTrue(exception.getMessage().contains("CREATE INDEX employees_department_salary_idx"));
+        assertTrue(exception.getMessage().contains("no_such_table: table not found"));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Suggested index satisfies the check")
+    void testSuggestedIndexSatisfies() {
+        try (SessionFactory sessionFactory = configuration("none", null).buildSessionFactory();
+             Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery(DistinctOnIndexAdvisor.suggestIndex(highestSalaryPerDepartment)).executeUpdate();
+            session.getTransaction().commit();
+        }
+
+        DistinctOnIndexAdvisor advisor = new DistinctOnIndexAdvisor(DistinctOnIndexAdvisor.Mode.FAIL).register(highestSalaryPerDepartment);
+        try (SessionFactory sessionFactory = configuration("none", advisor).buildSessionFactory()) {
+            assertTrue(advisor.getAdvice().get(0).isSatisfied());
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        configuration("create-drop", null).buildSessionFactory().close();
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+import com.github.mehrdadfalahati.pgdistinctjpa.TableProfile.IndexProfile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnIndexAdvisorTest {
+
+    private final DistinctOnSpec spec = DistinctOnSpec.from("public.events")
+            .distinctOn("user_id")
+            .orderBy("user_id")
+            .orderByDesc("created_at")
+            .build();
+
+    private static TableProfile profile(IndexProfile... indexes) {
+        return new TableProfile("events", 1_000_000, Collections.emptyMap(), Arrays.asList(indexes), System.currentTimeMillis());
+    }
+
+    @Test
+    @DisplayName("Suggested index follows the full ORDER BY")
+    void testSuggestIndex() {
+        assertEquals("CREATE INDEX events_user_id_created_at_idx ON public.events (user_id, created_at DESC)",
+                DistinctOnIndexAdvisor.suggestIndex(spec));
+
+        DistinctOnSpec expression = DistinctOnSpec.from("employees")
+                .distinctOn("department", "salary % 3")
+                .orderBy("department")
+                .orderBy("salary % 3")
+                .orderByDesc("salary")
+                .build();
+        assertEquals("CREATE INDEX employees_department_salary_3_salary_idx ON employees (department, (salary % 3), salary DESC)",
+                DistinctOnIndexAdvisor.suggestIndex(expression));
+    }
+
+    @Test
+    @DisplayName("Index matching the ORDER BY, also backwards, satisfies the spec")
+    void testSatisfied() {
+        IndexAdvice advice = DistinctOnIndexAdvisor.advise(spec, profile(
+                new IndexProfile("events_backwards_idx", Arrays.asList(SortKey.desc("user_id"), SortKey.asc("created_at"), SortKey.asc("id")))));
+
+        assertTrue(advice.isSatisfied());
+        assertEquals("events_backwards_idx", advice.getIndex());
+        assertNull(advice.getProblem());
+    }
+
+    @Test
+    @DisplayName("Missing or partially matching index is reported with a suggestion")
+    void testMissing() {
+        IndexAdvice none = DistinctOnIndexAdvisor.advise(spec, profile());
+        IndexAdvice leading = DistinctOnIndexAdvisor.advise(spec, profile(
+                new IndexProfile("events_user_idx", Collections.singletonList(SortKey.asc("user_id")))));
+
+        assertFalse(none.isSatisfied());
+        assertEquals("no btree index leads with the DISTINCT ON columns", none.getProblem());
+        assertTrue(leading.getProblem().contains("events_user_idx"));
+        assertTrue(leading.toString().endsWith("suggested: " + DistinctOnIndexAdvisor.suggestIndex(spec)));
+    }
+
+    @Test
+    @DisplayName("Index expressions match regardless of the parentheses added by pg_get_indexdef")
+    void testExpressionIndex() {
+        DistinctOnSpec expression = DistinctOnSpec.from("events").distinctOn("lower(email)").build();
+
+        assertTrue(DistinctOnIndexAdvisor.advise(expression, profile(
+                new IndexProfile("events_email_idx", Collections.singletonList(SortKey.asc("(lower(email))"))))).isSatisfied());
+        assertEquals("(a) + (b)", TableProfile.normalize("(a) + (b)"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.query.NativeQuery;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walking every page with continuation tokens must return exactly the unpaginated result.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnKeysetPaginationIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        // 5,000 employees over 40 departments
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 40), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 5000) g").executeUpdate();
+            session.createNativeQuery("CREATE INDEX employees_department_salary_idx ON employees (department, salary DESC, id)").executeUpdate();
+            session.createNativeQuery("ANALYZE employees").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+
+    private static List<Long> allPages(DistinctOnExecutor executor, DistinctOnSpec spec, int pageSize, Map<String, ?> parameters) {
+        List<Long> ids = new ArrayList<>();
+        try (Session session = sessionFactory.openSession()) {
+            String token = null;
+            do {
+                DistinctOnPage<Employee> page = executor.page(session, spec, Employee.class, token, pageSize, parameters);
+                assertTrue(page.getContent().size() <= pageSize);
+                ids.addAll(ids(page.getContent()));
+                token = page.getNextPageToken();
+            } while (token != null);
+        }
+        return ids;
+    }
+
+    private static List<Long> unpaginated(DistinctOnSpec spec, Map<String, ?> parameters) {
+        try (Session session = sessionFactory.openSession()) {
+            NativeQuery<Employee> query = new DistinctOnExecutor().createQuery(session, spec, Employee.class);
+            parameters.forEach(query::setParameter);
+            return ids(query.getResultList());
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Pages of every strategy add up to the unpaginated DISTINCT ON result")
+    void testAllPagesMatchUnpaginated() {
+        List<Long> expected = unpaginated(spec, Collections.emptyMap());
+        assertEquals(40, expected.size());
+
+        for (DistinctOnStrategy strategy : DistinctOnStrategy.values()) {
+            assertEquals(expected, allPages(new DistinctOnExecutor(strategy), spec, 7, Collections.emptyMap()), strategy.name());
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Pagination with a bound filter and mixed key directions")
+    void testFilterAndMixedDirections() {
+        DistinctOnSpec mixed = DistinctOnSpec.from("employees")
+                .distinctOn("department", "salary % 3")
+                .orderByDesc("department")
+                .orderBy("salary % 3")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .where("salary > :minSalary")
+                .build();
+        Map<String, Object> parameters = Collections.singletonMap("minSalary", 10000);
+        List<Long> expected = unpaginated(mixed, parameters);
+
+        assertEquals(120, expected.size());
+        assertEquals(expected, allPages(new DistinctOnExecutor(), mixed, 25, parameters));
+        assertEquals(expected, allPages(new DistinctOnExecutor(DistinctOnStrategy.LATERAL), mixed, 25, parameters));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Last page has no token and tokens of another spec are rejected")
+    void testTokens() {
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+
+        try (Session session = sessionFactory.openSession()) {
+            DistinctOnPage<Employee> first = executor.page(session, spec, Employee.class, null, 30);
+            assertTrue(first.hasNext());
+
+            DistinctOnPage<Employee> last = executor.page(session, spec, Employee.class, first.getNextPageToken(), 30);
+            assertEquals(10, last.getContent().size());
+            assertFalse(last.hasNext());
+            assertNull(last.getNextPageToken());
+
+            DistinctOnSpec other = spec.toBuilder().where("salary > 0").build();
+            assertThrows(IllegalArgumentException.class,
+                    () -> executor.page(session, other, Employee.class, first.getNextPageToken(), 30));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batched first-row-per-key lookups bound as one array parameter.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnLookupIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec bySalary = DistinctOnSpec.from("employees")
+            .distinctOn("salary")
+            .orderBy("salary")
+            .orderBy("id")
+            .build();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.generate_statistics", "true");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 100), g % 500, '2020-01-01' "
+                    + "FROM generate_series(1, 5000) g").executeUpdate();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "VALUES ('Quoted', 'R&D \"Labs\" \\ {x,y}', 9999, '2020-01-01')").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Chunked lookup returns the first row of every key, in ORDER BY order")
+    void testLookupMatchesFilter() {
+        List<Integer> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add((i * 37) % 500);
+        }
+        keys.add(12345); // no such group
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> expected = executor.list(session, bySalary.toBuilder()
+                    .where("salary IN (" + keys.stream().map(String::valueOf).collect(Collectors.joining(",")) + ")")
+                    .build(), Employee.class);
+            List<Employee> chunked = executor.lookup(session, bySalary, Employee.class, keys, 7, Collections.emptyMap());
+
+            assertEquals(100, chunked.size());
+            assertEquals(ids(expected), ids(chunked));
+            assertEquals(ids(expected), ids(executor.lookup(session, bySalary, Employee.class, keys)));
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Every batch size runs the same statement text")
+    void testStableStatement() {
+        sessionFactory.getStatistics().clear();
+        DistinctOnExecutor executor = new DistinctOnExecutor(DistinctOnStrategy.LATERAL);
+
+        try (Session session = sessionFactory.openSession()) {
+            executor.lookup(session, bySalary, Employee.class, Arrays.asList(1, 2));
+            executor.lookup(session, bySalary, Employee.class, Arrays.asList(1, 2, 3, 4, 5));
+            executor.lookup(session, bySalary, Employee.class, Collections.singletonList(42));
+        }
+
+        List<String> queries = Arrays.stream(sessionFactory.getStatistics().getQueries())
+                .filter(query -> query.contains("salary = ANY(CAST(? AS integer[]))"))
+                .collect(Collectors.toList());
+        assertEquals(1, queries.size(), queries.toString());
+        assertEquals(3, sessionFactory.getStatistics().getQueryStatistics(queries.get(0)).getExecutionCount());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Text keys with quotes, backslashes and braces")
+    void testTextKeys() {
+        DistinctOnSpec byDepartment = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .where("salary >= :min")
+                .build();
+        DistinctOnExecutor executor = new DistinctOnExecutor(DistinctOnStrategy.ROW_NUMBER);
+
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> found = executor.lookup(session, byDepartment, Employee.class,
+                    Arrays.asList("Dept 7", "R&D \"Labs\" \\ {x,y}", "Dept 7", "Nope"),
+                    DistinctOnExecutor.DEFAULT_LOOKUP_CHUNK_SIZE, Collections.singletonMap("min", 0));
+
+            assertEquals(2, found.size());
+            assertEquals("Dept 7", found.get(0).getDepartment());
+            assertEquals(407, found.get(0).getSalary());
+            assertEquals("Quoted", found.get(1).getName());
+        }
+        assertThrows(IllegalArgumentException.class, () -> executor.lookup(null,
+                DistinctOnSpec.from("employees").distinctOn("department", "salary").build(), Employee.class, Arrays.asList("a")));
+        assertTrue(executor.lookup(null, byDepartment, Employee.class, Collections.emptyList()).isEmpty());
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,241 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The trigger-maintained side table always equals the live DISTINCT ON query, also under concurrent writers.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnMaterializationIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private static final DistinctOnMaterialization materialization = DistinctOnMaterialization.of(spec);
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.connection.pool_size", "10");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 20), (g * 7919) % 1000, '2020-01-01' "
+                    + "FROM generate_series(1, 2000) g").executeUpdate();
+            session.createNativeQuery("CREATE INDEX employees_department_salary_idx ON employees (department, salary DESC, id)")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            try (Session session = sessionFactory.openSession()) {
+                materialization.drop(session);
+            }
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Create fills the side table with the current result")
+    void testCreate() {
+        try (Session session = sessionFactory.openSession()) {
+            assertFalse(materialization.exists(session));
+            materialization.create(session);
+
+            assertTrue(materialization.exists(session));
+            assertEquals(live(session), materialized(session));
+            assertEquals(20, materialized(session).size());
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Inserts, updates and deletes keep the side table equal to DISTINCT ON")
+    void testSingleWrites() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "VALUES ('Top', 'Dept 3', 5000, '2020-01-01'), ('Nobody', NULL, 1, '2020-01-01'), "
+                    + "('New', 'Dept new', 10, '2020-01-01')").executeUpdate();
+            session.getTransaction().commit();
+            assertEquals(live(session), materialized(session));
+
+            session.beginTransaction();
+            // moves the top row to another group, then removes it
+            session.createNativeQuery("UPDATE employees SET department = 'Dept 4' WHERE name = 'Top'").executeUpdate();
+            session.getTransaction().commit();
+            assertEquals(live(session), materialized(session));
+
+            session.beginTransaction();
+            session.createNativeQuery("DELETE FROM employees WHERE name IN ('Top', 'New')").executeUpdate();
+            session.createNativeQuery("UPDATE employees SET salary = salary + 1 WHERE department = 'Dept 7'").executeUpdate();
+            session.getTransaction().commit();
+            assertEquals(live(session), materialized(session));
+            assertEquals(21, materialized(session).size());
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Concurrent writers on the same groups")
+    void testConcurrentWrites() throws Exception {
+        List<Future<?>> writers = new ArrayList<>();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < 8; w++) {
+                writers.add(threads.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 150; i++) {
+                        try (Session session = sessionFactory.openSession()) {
+                            session.beginTransaction();
+                            String department = "Dept " + random.nextInt(5);
+                            int operation = random.nextInt(10);
+                            if (operation < 6) {
+                                session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                                                + "VALUES ('Writer', :department, :salary, '2020-01-01')")
+                                        .setParameter("department", department)
+                                        .setParameter("salary", random.nextInt(2000))
+                                        .executeUpdate();
+                            } else if (operation < 9) {
+                                session.createNativeQuery("UPDATE employees SET salary = :salary, department = :department "
+                                                + "WHERE id = (SELECT id FROM employees WHERE department = :from ORDER BY salary DESC, id LIMIT 1)")
+                                        .setParameter("salary", random.nextInt(2000))
+                                        .setParameter("department", department)
+                                        .setParameter("from", "Dept " + random.nextInt(5))
+                                        .executeUpdate();
+                            } else {
+                                session.createNativeQuery("DELETE FROM employees WHERE id = "
+                                                + "(SELECT id FROM employees WHERE department = :department ORDER BY salary DESC, id LIMIT 1)")
+                                        .setParameter("department", department)
+                                        .executeUpdate();
+                            }
+                            session.getTransaction().commit();
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(live(session), materialized(session));
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Executor reads the materialization for the exact spec")
+    void testExecutorReadsMaterialization() {
+        DistinctOnExecutor executor = new DistinctOnExecutor(new DistinctOnStrategySelector()).withMaterializations(materialization);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertTrue(executor.createQuery(session, spec, Employee.class).getQueryString().contains("FROM employees_first_department"));
+            assertEquals(live(session), ids(executor.list(session, spec, Employee.class)));
+            assertFalse(executor.createQuery(session, spec.toBuilder().where("salary > 0").build(), Employee.class)
+                    .getQueryString().contains("employees_first_department"));
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("A top-3 materialization is created, maintained and refreshed like the live ROW_NUMBER query")
+    void testTopNPerGroup() {
+        DistinctOnSpec top3 = spec.toBuilder().topNPerGroup(3).build();
+        DistinctOnMaterialization materialization = DistinctOnMaterialization.of(top3, "employees_top3_department");
+
+        try (Session session = sessionFactory.openSession()) {
+            materialization.create(session);
+            try {
+                assertEquals(live(session, top3), materialized(session, materialization));
+                // 3 per department plus the single employee without one
+                assertEquals(61, materialized(session, materialization).size());
+
+                session.beginTransaction();
+                session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                        + "VALUES ('Top', 'Dept 3', 5000, '2020-01-01'), ('Second', NULL, 2, '2020-01-01')").executeUpdate();
+                session.createNativeQuery("UPDATE employees SET department = 'Dept 4' WHERE name = 'Top'").executeUpdate();
+                session.createNativeQuery("DELETE FROM employees WHERE id = "
+                        + "(SELECT id FROM employees WHERE department = 'Dept 7' ORDER BY salary DESC, id LIMIT 1)").executeUpdate();
+                session.getTransaction().commit();
+                assertEquals(live(session, top3), materialized(session, materialization));
+                assertEquals(62, materialized(session, materialization).size());
+
+                session.beginTransaction();
+                session.createNativeQuery("DELETE FROM employees_top3_department").executeUpdate();
+                session.getTransaction().commit();
+                materialization.refresh(session);
+                assertEquals(live(session, top3), materialized(session, materialization));
+            } finally {
+                materialization.drop(session);
+            }
+        }
+    }
+
+    private static List<Long> live(Session session, DistinctOnSpec spec) {
+        return ids(new DistinctOnExecutor().list(session, spec, Employee.class, DistinctOnStrategy.ROW_NUMBER));
+    }
+
+    private static List<Long> live(Session session) {
+        return ids(new DistinctOnExecutor().list(session, spec, Employee.class));
+    }
+
+    private static List<Long> materialized(Session session) {
+        return materialized(session, materialization);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> materialized(Session session, DistinctOnMaterialization materialization) {
+        List<Number> ids = session.createNativeQuery(materialization.render("id")).getResultList();
+        return ids.stream().map(Number::longValue).collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
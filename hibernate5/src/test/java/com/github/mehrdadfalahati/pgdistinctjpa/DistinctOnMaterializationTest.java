@@ -0,0 +1,86 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnMaterializationTest {
+
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    @Test
+    @DisplayName("Reads the side table in DISTINCT ON order")
+    void testRender() {
+        DistinctOnMaterialization materialization = DistinctOnMaterialization.of(spec);
+
+        assertEquals("employees_first_department", materialization.getTable());
+        assertEquals("SELECT * FROM employees_first_department ORDER BY department", materialization.render(null));
+        assertEquals("SELECT name, salary FROM top3 ORDER BY department, salary DESC, id",
+                DistinctOnMaterialization.of(spec.toBuilder().topNPerGroup(3).build(), "top3").render("name, salary"));
+    }
+
+    @Test
+    @DisplayName("Trigger refreshes the group under an advisory lock")
+    void testCreateStatements() {
+        List<String> statements = DistinctOnMaterialization.of(spec).createStatements();
+
+        assertEquals("LOCK TABLE employees IN SHARE ROW EXCLUSIVE MODE", statements.get(0));
+        assertEquals("CREATE TABLE employees_first_department AS SELECT DISTINCT ON (department) * FROM employees "
+                + "ORDER BY department, salary DESC, id", statements.get(1));
+        assertEquals("CREATE UNIQUE INDEX employees_first_department_key ON employees_first_department (department)",
+                statements.get(2));
+        String function = statements.get(3);
+        assertTrue(function.contains("PERFORM pg_advisory_xact_lock(hashtext('employees_first_department'), "
+                + "hashtext(ROW(NEW.department)::text));"), function);
+        assertTrue(function.contains("DELETE FROM employees_first_department WHERE department IS NOT DISTINCT FROM OLD.department;"), function);
+        assertTrue(function.contains("INSERT INTO employees_first_department SELECT * FROM employees "
+                + "WHERE department IS NOT DISTINCT FROM NEW.department ORDER BY salary DESC, id LIMIT 1;"), function);
+        assertEquals("CREATE TRIGGER employees_first_department_refresh AFTER INSERT OR UPDATE OR DELETE ON employees "
+                + "FOR EACH ROW EXECUTE FUNCTION employees_first_department_refresh()", statements.get(4));
+    }
+
+    @Test
+    @DisplayName("Top-N fills rank the rows and keep only the source columns")
+    void testTopNStatements() {
+        DistinctOnMaterialization top3 = DistinctOnMaterialization.of(spec.toBuilder().topNPerGroup(3).build(), "top3");
+        List<String> statements = top3.createStatements();
+
+        assertEquals("CREATE TABLE top3 AS SELECT (ranked.source_row).* FROM (SELECT source_row, ROW_NUMBER() OVER "
+                + "(PARTITION BY department ORDER BY salary DESC, id) AS distinct_on_rn FROM employees source_row) ranked "
+                + "WHERE distinct_on_rn <= 3", statements.get(1));
+        assertEquals("CREATE INDEX top3_key ON top3 (department)", statements.get(2));
+        assertTrue(statements.get(3).contains("INSERT INTO top3 SELECT * FROM employees "
+                + "WHERE department IS NOT DISTINCT FROM NEW.department ORDER BY salary DESC, id LIMIT 3;"), statements.get(3));
+    }
+
+    @Test
+    @DisplayName("Only plain key columns and parameterless filters")
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnMaterialization.of(
+                DistinctOnSpec.from("employees").distinctOn("lower(name)").build()));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnMaterialization.of(
+                spec.toBuilder().where("salary > :min").build()));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnMaterialization.of(spec, "bad name"));
+        // a cast is not a parameter
+        assertEquals("hire_date::date > '2020-01-01'", DistinctOnMaterialization.of(
+                spec.toBuilder().where("hire_date::date > '2020-01-01'").build()).getSpec().getWhere());
+    }
+
+    @Test
+    @DisplayName("Default table name is sanitized and leaves room for suffixes")
+    void testDefaultTableName() {
+        assertEquals("events_first_user_id_device",
+                DistinctOnMaterialization.defaultTableName(DistinctOnSpec.from("audit.events").distinctOn("user_id", "device").build()));
+        String longName = DistinctOnMaterialization.defaultTableName(DistinctOnSpec.from("employees")
+                .distinctOn("a_really_long_column_name", "another_really_long_column_name").build());
+        assertTrue(longName.length() <= 55, longName);
+    }
+}
@@ -0,0 +1,176 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The executor reports list, page and stream executions and the selector's decisions.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnMetricsIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 40), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 5000) g").executeUpdate();
+            session.createNativeQuery("ANALYZE employees").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("List, page and stream are timed with their row counts")
+    void testExecutionMetrics() {
+        DistinctOnExecutor executor = new DistinctOnExecutor(DistinctOnStrategy.LATERAL)
+                .withMetrics(new MicrometerDistinctOnMetrics(registry));
+
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, spec, Employee.class);
+            executor.page(session, spec, Employee.class, null, 10);
+            try (Stream<Employee> stream = executor.stream(session, spec, Employee.class)) {
+                assertEquals(5, stream.limit(5).count());
+            }
+        }
+
+        assertEquals(3, registry.get("distinct_on.query").tag("strategy", "LATERAL").tag("outcome", "success").timer().count());
+        // 40 rows, 11 rows (page size + 1) and 5 streamed rows
+        assertEquals(56, registry.get("distinct_on.query.rows").summary().totalAmount());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Failures and strategy decisions are reported")
+    void testFailureAndDecisions() {
+        DistinctOnExecutor executor = new DistinctOnExecutor(new DistinctOnStrategySelector())
+                .withMetrics(new MicrometerDistinctOnMetrics(registry));
+        DistinctOnSpec broken = spec.toBuilder().where("no_such_column > 0").build();
+
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, spec, Employee.class);
+            assertThrows(RuntimeException.class, () -> executor.list(session, broken, Employee.class));
+        }
+
+        assertEquals(2, registry.get("distinct_on.strategy.selected").counter().count());
+        assertEquals(1, registry.get("distinct_on.query").tag("outcome", "error").timer().count());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Fragment cache of the dialect is published")
+    void testFragmentCacheBinding() {
+        DistinctOnExecutor executor = new DistinctOnExecutor().withMetrics(new MicrometerDistinctOnMetrics(registry));
+        executor.bindFragmentCache(sessionFactory);
+
+        try (Session session = sessionFactory.openSession()) {
+            for (int i = 0; i < 3; i++) {
+                session.createQuery("SELECT DISTINCT_ON(e.department, e) FROM Employee e ORDER BY e.department", Object.class)
+                        .getResultList();
+                session.clear();
+            }
+        }
+
+        assertTrue(registry.get("distinct_on.fragment_cache.misses").functionCounter().count() >= 1);
+        assertTrue(registry.get("distinct_on.fragment_cache.size").gauge().value() >= 1);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("NOOP metrics disable reporting")
+    void testNoop() {
+        DistinctOnExecutor executor = new DistinctOnExecutor().withMetrics(DistinctOnMetrics.NOOP);
+
+        assertSame(DistinctOnMetrics.NOOP, executor.getMetrics());
+        assertThrows(IllegalArgumentException.class, () -> executor.withMetrics(null));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Executions emit JFR events when enabled, also without metrics")
+    void testExecutionEvents() throws Exception {
+        DistinctOnExecutor executor = new DistinctOnExecutor(DistinctOnStrategy.LATERAL);
+        Path file = Files.createTempFile("distinct-on", ".jfr");
+
+        try (Recording recording = new Recording(); Session session = sessionFactory.openSession()) {
+            recording.enable("com.github.mehrdadfalahati.pgdistinctjpa.Execution").withThreshold(Duration.ZERO);
+            recording.start();
+            executor.list(session, spec, Employee.class);
+            try (Stream<Employee> stream = executor.stream(session, spec, Employee.class)) {
+                assertEquals(3, stream.limit(3).count());
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("com.github.mehrdadfalahati.pgdistinctjpa.Execution"))
+                .collect(Collectors.toList());
+        Files.delete(file);
+        assertEquals(2, events.size());
+        assertEquals("employees", events.get(0).getString("table"));
+        assertEquals("LATERAL", events.get(0).getString("strategy"));
+        assertEquals(1, events.get(0).getInt("distinctColumnCount"));
+        assertEquals(40, events.get(0).getLong("rowCount"));
+        assertEquals(3, events.get(1).getLong("rowCount"));
+        assertEquals(events.get(0).getInt("shapeHash"), events.get(1).getInt("shapeHash"));
+        assertFalse(events.get(0).getBoolean("failed"));
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.query.NativeQuery;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parallel key-range execution returns exactly the rows and the order of the serial query.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnParallelIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.connection.pool_size", "10");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            // 700 departments, every 50th employee without one
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, CASE WHEN g % 50 = 0 THEN NULL ELSE 'Dept ' || (g % 700) END, "
+                    + "(g * 7919) % 1000, '2020-01-01' FROM generate_series(1, 20000) g").executeUpdate();
+            session.createNativeQuery("ANALYZE employees").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Histogram splits come from pg_stats")
+    void testHistogramSplits() {
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            List<Object> splits = DistinctOnPartitioning.histogram(8).splits(session, spec);
+            assertEquals(7, splits.size());
+            assertTrue(splits.get(0) instanceof String);
+            assertTrue(DistinctOnPartitioning.histogram(8).splits(session,
+                    DistinctOnSpec.from("employees").distinctOn("lower(name)").build()).isEmpty());
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Every strategy returns the serial result")
+    void testMatchesSerial() {
+        for (DistinctOnStrategy strategy : DistinctOnStrategy.values()) {
+            DistinctOnExecutor executor = new DistinctOnExecutor(strategy);
+            List<Long> parallel = ids(executor.parallelList(sessionFactory, spec, Employee.class, DistinctOnPartitioning.histogram(8)));
+
+            assertEquals(serial(executor, spec, Collections.emptyMap()), parallel, strategy.name());
+            // 686 departments (the 14 with a multiple of 50 only have NULL rows), plus the NULL group
+            // except for the strategies that skip NULL keys
+            boolean skipsNull = strategy == DistinctOnStrategy.LATERAL || strategy == DistinctOnStrategy.SKIP_SCAN;
+            assertEquals(skipsNull ? 686 : 687, parallel.size(), strategy.name());
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Descending leading key reads the ranges in reverse")
+    void testDescending() {
+        DistinctOnSpec descending = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderByDesc("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .build();
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+
+        assertEquals(serial(executor, descending, Collections.emptyMap()),
+                ids(executor.parallelList(sessionFactory, descending, Employee.class, DistinctOnPartitioning.histogram(4))));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Explicit splits, filter parameters and top N per group")
+    void testSplitsAndFilter() {
+        DistinctOnSpec bySalary = DistinctOnSpec.from("employees")
+                .distinctOn("salary")
+                .orderBy("salary")
+                .orderBy("id")
+                .where("name <> :excluded")
+                .topNPerGroup(2)
+                .build();
+        DistinctOnExecutor executor = new DistinctOnExecutor(DistinctOnStrategy.LATERAL);
+        Map<String, Object> parameters = Collections.singletonMap("excluded", "Employee 7");
+
+        assertEquals(serial(executor, bySalary, parameters),
+                ids(executor.parallelList(sessionFactory, bySalary, Employee.class,
+                        DistinctOnPartitioning.splits(250, 500, 750), parameters)));
+    }
+
+    private static List<Long> serial(DistinctOnExecutor executor, DistinctOnSpec spec, Map<String, ?> parameters) {
+        try (Session session = sessionFactory.openSession()) {
+            NativeQuery<Employee> query = executor.createQuery(session, spec, Employee.class);
+            parameters.forEach(query::setParameter);
+            return ids(query.getResultList());
+        }
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnPartitioningTest {
+
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .build();
+
+    @Test
+    @DisplayName("Histogram bounds are picked evenly")
+    void testPick() {
+        List<Object> histogram = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            histogram.add(i * 10);
+        }
+
+        assertEquals(Arrays.asList(250, 500, 750), DistinctOnPartitioning.pick(histogram, 4));
+        assertEquals(Arrays.asList(500), DistinctOnPartitioning.pick(histogram, 2));
+        assertTrue(DistinctOnPartitioning.pick(histogram, 1).isEmpty());
+        // never more splits than interior bounds
+        assertEquals(Arrays.asList(10, 20), DistinctOnPartitioning.pick(Arrays.asList(0, 10, 20, 30), 16));
+        assertTrue(DistinctOnPartitioning.pick(Arrays.asList(0, 10), 4).isEmpty());
+        assertTrue(DistinctOnPartitioning.pick(new ArrayList<>(), 4).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Explicit splits must be non-null and ascending")
+    void testSplits() {
+        assertEquals(Arrays.asList("b", "m"), DistinctOnPartitioning.splits("b", "m").splits(null, spec));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnPartitioning.splits("m", "b"));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnPartitioning.splits("b", "b"));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnPartitioning.splits("b", null));
+        assertThrows(IllegalArgumentException.class, () -> DistinctOnPartitioning.histogram(0));
+        assertTrue(DistinctOnPartitioning.histogram(1).splits(null, spec).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Ranges restrict the leading ORDER BY column, the last one keeps NULL keys")
+    void testRange() {
+        assertEquals("department < :distinct_on_upper",
+                DistinctOnPartitioning.range(spec, false, true).getWhere());
+        assertEquals("department >= :distinct_on_lower AND department < :distinct_on_upper",
+                DistinctOnPartitioning.range(spec, true, true).getWhere());
+        assertEquals("(department >= :distinct_on_lower OR department IS NULL)",
+                DistinctOnPartitioning.range(spec, true, false).getWhere());
+        assertSame(spec, DistinctOnPartitioning.range(spec, false, false));
+
+        DistinctOnSpec filtered = spec.toBuilder().where("salary > :min OR name = 'x'").build();
+        assertEquals("(salary > :min OR name = 'x') AND department < :distinct_on_upper",
+                DistinctOnPartitioning.range(filtered, false, true).getWhere());
+        assertEquals(spec.getOrderBy(), DistinctOnPartitioning.range(filtered, false, true).getOrderBy());
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnProcessorTest {
+
+    @TempDir
+    Path output;
+
+    @Test
+    @DisplayName("Generated SQL equals the runtime rendering of the same spec")
+    void testGeneratedSql() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .build();
+
+        assertEquals(DistinctOnStrategy.DISTINCT_ON.render(spec), Employee_DistinctOn.TOP_SALARY_PER_DEPARTMENT);
+        assertEquals(DistinctOnStrategy.ROW_NUMBER.render(spec.toBuilder().where("salary >= :minSalary").build(),
+                DistinctOnProjection.of(DepartmentTopSalary.class).getSelectList()), Employee_DistinctOn.TOP_SALARY_ROWS);
+    }
+
+    @Test
+    @DisplayName("Generated mapper calls the record constructor")
+    void testGeneratedMapper() {
+        assertEquals(new DepartmentTopSalary("IT", "Ann", 100),
+                Employee_DistinctOn.mapTopSalaryRows(new Object[]{"IT", "Ann", 100}));
+        assertEquals(2, Employee_DistinctOn.mapTopSalaryRows(Arrays.asList(
+                new Object[]{"IT", "Ann", 100}, new Object[]{"HR", "Bob", 90})).size());
+    }
+
+    @Test
+    @DisplayName("ORDER BY prefix violations fail the compilation")
+    void testOrderByPrefixIsCheckedAtCompileTime() throws Exception {
+        List<String> errors = compile("Bad", "@javax.persistence.Entity @javax.persistence.Table(name = \"events\")\n"
+                + "@com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery(name = \"latest\", columns = \"user_id\", orderBy = \"created_at DESC\")\n"
+                + "public class Bad { @javax.persistence.Id Long id; }");
+
+        assertEquals(1, errors.size(), errors.toString());
+        assertTrue(errors.get(0).contains("@DistinctOnQuery latest: ORDER BY [created_at DESC] must start with the DISTINCT ON columns [user_id]"), errors.get(0));
+    }
+
+    @Test
+    @DisplayName("Invalid declarations are compile errors")
+    void testInvalidDeclarations() throws Exception {
+        assertTrue(compile("NoEntity", "@com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery(name = \"latest\", columns = \"user_id\")\n"
+                + "public class NoEntity {}").get(0).contains("requires an @Entity type or a resultType"));
+        assertTrue(compile("TopN", "@javax.persistence.Entity\n"
+                + "@com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery(name = \"top\", columns = \"user_id\", rowsPerGroup = 3)\n"
+                + "public class TopN { @javax.persistence.Id Long id; }").get(0).contains("top"));
+        assertTrue(compile("Names", "@javax.persistence.Entity\n"
+                + "@com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery(name = \"a\", columns = \"x\")\n"
+                + "@com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery(name = \"a\", columns = \"y\")\n"
+                + "public class Names { @javax.persistence.Id Long id; }").get(0).contains("Duplicate @DistinctOnQuery name: a"));
+    }
+
+    @Test
+    @DisplayName("A valid declaration compiles, table defaults to the entity name")
+    void testValidDeclaration() throws Exception {
+        assertEquals(Collections.emptyList(), compile("Event", "@javax.persistence.Entity\n"
+                + "@com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnQuery(name = \"latest\", columns = \"user_id\", orderBy = {\"user_id\", \"created_at DESC\"})\n"
+                + "public class Event { @javax.persistence.Id Long id; }"));
+        String generated = Files.readString(output.resolve("Event_DistinctOn.java"));
+        assertTrue(generated.contains("LATEST = \"SELECT DISTINCT ON (user_id) * FROM Event ORDER BY user_id, created_at DESC\""), generated);
+    }
+
+    @Test
+    @DisplayName("ORDER BY items and Java string literals")
+    void testHelpers() {
+        assertEquals(DistinctOnSpec.SortKey.desc("salary"), DistinctOnProcessor.sortKey(" salary desc "));
+        assertEquals(DistinctOnSpec.SortKey.asc("salary"), DistinctOnProcessor.sortKey("salary ASC"));
+        assertEquals(DistinctOnSpec.SortKey.asc("lower(name)"), DistinctOnProcessor.sortKey("lower(name)"));
+        assertEquals("\"a \\\"b\\\" \\\\ \\n\"", DistinctOnProcessor.literal("a \"b\" \\ \n"));
+    }
+
+    private List<String> compile(String className, String source) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                "-d", output.toString(), "-s", output.toString(), "-proc:only");
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics, options, null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new DistinctOnProcessor()));
+        task.call();
+        return diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.query.NativeQuery;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Projections must return the same rows as the entity queries, without loading any entity.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnProjectionIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    record TopSalary(Long id, String department, Integer salary) {
+    }
+
+    static final class SalaryBand {
+        final String department;
+        final int band;
+
+        SalaryBand(String department, int band) {
+            this.department = department;
+            this.band = band;
+        }
+    }
+
+    private static final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private final DistinctOnExecutor executor = new DistinctOnExecutor();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.generate_statistics", "true");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        // 5,000 employees over 40 departments
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 40), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 5000) g").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private static List<TopSalary> fromEntities(List<Employee> employees) {
+        return employees.stream()
+                .map(employee -> new TopSalary(employee.getId(), employee.getDepartment(), employee.getSalary()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Record projection matches the entity query for every strategy")
+    void testRecordProjectionMatchesEntities() {
+        DistinctOnProjection<TopSalary> projection = DistinctOnProjection.of(TopSalary.class);
+
+        try (Session session = sessionFactory.openSession()) {
+            List<TopSalary> expected = fromEntities(executor.list(session, spec, Employee.class));
+            session.clear();
+
+            for (DistinctOnStrategy strategy : DistinctOnStrategy.values()) {
+                assertEquals(expected, executor.list(session, spec, projection, strategy), strategy.name());
+            }
+            assertEquals(40, expected.size());
+            assertEquals(0, session.getStatistics().getEntityCount(), "Projections should not load entities");
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("DTO projection with an expression column and a primitive parameter")
+    void testDtoProjection() {
+        DistinctOnProjection<SalaryBand> projection = DistinctOnProjection.of(SalaryBand.class, "department", "salary / 10000 AS band");
+
+        try (Session session = sessionFactory.openSession()) {
+            List<SalaryBand> bands = executor.list(session, spec, projection);
+            List<Employee> employees = executor.list(session, spec, Employee.class);
+
+            assertEquals(40, bands.size());
+            for (int i = 0; i < bands.size(); i++) {
+                assertEquals(employees.get(i).getDepartment(), bands.get(i).department);
+                assertEquals(employees.get(i).getSalary() / 10000, bands.get(i).band);
+            }
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Projection query with bound parameters and top-N-per-group")
+    void testBoundTopNProjection() {
+        DistinctOnSpec topThree = spec.toBuilder().where("salary >= :minSalary").topNPerGroup(3).build();
+
+        try (Session session = sessionFactory.openSession()) {
+            NativeQuery<TopSalary> query = executor.createQuery(session, topThree, DistinctOnProjection.of(TopSalary.class));
+            query.setParameter("minSalary", 50000);
+            List<TopSalary> results = query.getResultList();
+
+            NativeQuery<Employee> entityQuery = executor.createQuery(session, topThree, Employee.class);
+            entityQuery.setParameter("minSalary", 50000);
+            assertEquals(fromEntities(entityQuery.getResultList()), results);
+            assertEquals(120, results.size());
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Streaming a projection")
+    void testStreamProjection() {
+        try (Session session = sessionFactory.openSession();
+             Stream<TopSalary> stream = executor.stream(session, spec, DistinctOnProjection.of(TopSalary.class), 8)) {
+            List<TopSalary> streamed = stream.collect(Collectors.toList());
+
+            assertEquals(executor.list(session, spec, DistinctOnProjection.of(TopSalary.class)), streamed);
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Queries generated at compile time from @DistinctOnQuery")
+    void testGeneratedQueries() {
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> employees = Employee_DistinctOn.topSalaryPerDepartment(session).getResultList();
+            List<DepartmentTopSalary> rows = Employee_DistinctOn.mapTopSalaryRows(
+                    Employee_DistinctOn.topSalaryRows(session).setParameter("minSalary", 0).getResultList());
+
+            assertEquals(40, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(new DepartmentTopSalary(employees.get(i).getDepartment(), employees.get(i).getName(),
+                        employees.get(i).getSalary()), rows.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Query cache region with table-scoped invalidation, on a JCache (Caffeine) second-level cache.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnQueryCacheIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec topSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private static final DistinctOnExecutor executor = new DistinctOnExecutor().withQueryCache();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.cache.use_second_level_cache", "true");
+        configuration.setProperty("hibernate.cache.use_query_cache", "true");
+        configuration.setProperty("hibernate.cache.region.factory_class", "jcache");
+        configuration.setProperty("hibernate.javax.cache.missing_cache_strategy", "create");
+        configuration.setProperty("hibernate.generate_statistics", "true");
+        // cache every entity without annotating the shared test entity
+        configuration.setProperty("javax.persistence.sharedCache.mode", "ALL");
+        configuration.setProperty("hibernate.cache.default_cache_concurrency_strategy", "read-write");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("CREATE TABLE IF NOT EXISTS audit_log (id serial PRIMARY KEY, message text)")
+                    .addSynchronizedQuerySpace("audit_log")
+                    .executeUpdate();
+            for (int i = 1; i <= 300; i++) {
+                session.persist(new Employee("Employee " + i, "Dept " + (i % 10), (i * 7919) % 100000, "2020-01-01"));
+            }
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            try (Session session = sessionFactory.openSession()) {
+                session.beginTransaction();
+                session.createNativeQuery("DROP TABLE IF EXISTS audit_log").addSynchronizedQuerySpace("audit_log").executeUpdate();
+                session.getTransaction().commit();
+            }
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("A repeated query is served from the region without a statement")
+    void testRepeatedQueryHits() {
+        Statistics statistics = sessionFactory.getStatistics();
+        List<Employee> first;
+        try (Session session = sessionFactory.openSession()) {
+            first = executor.list(session, topSalary, Employee.class);
+        }
+        long statements = statistics.getPrepareStatementCount();
+        QueryCacheStatistics before = executor.queryCacheStatistics(sessionFactory);
+
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> second = executor.list(session, topSalary, Employee.class);
+            assertEquals(ids(first), ids(second));
+        }
+
+        QueryCacheStatistics after = executor.queryCacheStatistics(sessionFactory);
+        assertEquals(10, first.size());
+        assertEquals(statements, statistics.getPrepareStatementCount(), "entities come from the second-level cache");
+        assertEquals(before.getHitCount() + 1, after.getHitCount(), after.toString());
+        assertEquals(DistinctOnExecutor.DEFAULT_QUERY_CACHE_REGION, after.getRegion());
+        assertTrue(after.getHitRatio() > 0 && after.getHitRatio() <= 1, after.toString());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Writes to the entity's table invalidate the cached result")
+    void testEntityWriteInvalidates() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.persist(new Employee("New Top", "Dept 3", 1_000_000, "2024-01-01"));
+            session.getTransaction().commit();
+        }
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> rows = executor.list(session, topSalary, Employee.class);
+            assertTrue(rows.stream().anyMatch(e -> e.getName().equals("New Top")));
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Native writes synchronized with another table keep the cached result")
+    void testUnrelatedNativeWriteKeepsResult() {
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, topSalary, Employee.class);
+        }
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO audit_log (message) VALUES ('report')")
+                    .addSynchronizedQuerySpace("audit_log")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        long hits = executor.queryCacheStatistics(sessionFactory).getHitCount();
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, topSalary, Employee.class);
+        }
+        assertEquals(hits + 1, executor.queryCacheStatistics(sessionFactory).getHitCount());
+
+        // a native write declaring the entity invalidates it
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("UPDATE employees SET salary = salary + 1 WHERE department = 'Dept 5'")
+                    .addSynchronizedEntityClass(Employee.class)
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, topSalary, Employee.class);
+        }
+        assertEquals(hits + 1, executor.queryCacheStatistics(sessionFactory).getHitCount());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Projections and criteria are cached per bound value and invalidated by the spec's table")
+    void testProjectionAndCriteria() {
+        DistinctOnProjection<DepartmentTopSalary> projection = DistinctOnProjection.of(DepartmentTopSalary.class);
+        DistinctOnCriteria<Employee> criteria = DistinctOnCriteria.from(Employee.class)
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .where("salary", DistinctOnCriteria.Operator.GE, 50000)
+                .build();
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, topSalary, projection);
+            executor.list(session, criteria);
+        }
+        long hits = executor.queryCacheStatistics(sessionFactory).getHitCount();
+        try (Session session = sessionFactory.openSession()) {
+            List<DepartmentTopSalary> bands = executor.list(session, topSalary, projection);
+            executor.list(session, criteria);
+            assertEquals(10, bands.size());
+        }
+        assertEquals(hits + 2, executor.queryCacheStatistics(sessionFactory).getHitCount());
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("UPDATE employees SET salary = salary + 1")
+                    .addSynchronizedQuerySpace("employees")
+                    .executeUpdate();
+            session.getTransaction().commit();
+        }
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, topSalary, projection);
+        }
+        assertEquals(hits + 2, executor.queryCacheStatistics(sessionFactory).getHitCount());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Streams bypass the query cache")
+    void testStreamUncached() {
+        try (Session session = sessionFactory.openSession();
+             Stream<Employee> rows = executor.stream(session, topSalary, Employee.class)) {
+            assertEquals(10, rows.count());
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Statistics read before the region's first query do not break the region")
+    void testStatisticsBeforeFirstQuery() {
+        DistinctOnExecutor fresh = new DistinctOnExecutor().withQueryCache("distinct-on-fresh");
+        QueryCacheStatistics before = fresh.queryCacheStatistics(sessionFactory);
+        assertEquals(0, before.getMissCount());
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(10, fresh.list(session, topSalary, Employee.class).size());
+        }
+
+        QueryCacheStatistics after = fresh.queryCacheStatistics(sessionFactory);
+        assertEquals(1, after.getMissCount(), after.toString());
+        assertEquals(1, after.getPutCount(), after.toString());
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Without a query cache no statistics are available")
+    void testNotConfigured() {
+        assertNull(new DistinctOnExecutor().getQueryCacheRegion());
+        assertThrows(IllegalStateException.class, () -> new DistinctOnExecutor().queryCacheStatistics(sessionFactory));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnExecutor().withQueryCache(" "));
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
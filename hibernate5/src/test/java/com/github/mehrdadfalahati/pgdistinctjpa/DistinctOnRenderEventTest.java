@@ -0,0 +1,65 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnRenderEventTest {
+
+    private static final String RENDER = "com.github.mehrdadfalahati.pgdistinctjpa.Render";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Render events carry the column count and the fragment hash when enabled")
+    void testRenderEvent() throws Exception {
+        DistinctOn function = new DistinctOn();
+        Path file = directory.resolve("render.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(RENDER).withThreshold(Duration.ZERO);
+            recording.start();
+            function.render(null, Arrays.asList("e.department", "e.name", "e"), null);
+            function.render(null, Arrays.asList("e.department", "e.name", "e"), null);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals(RENDER))
+                .collect(Collectors.toList());
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(0).getInt("distinctColumnCount"));
+        assertEquals("DISTINCT ON(e.department,e.name) e ".hashCode(), events.get(0).getInt("shapeHash"));
+        assertEquals(events.get(0).getInt("shapeHash"), events.get(1).getInt("shapeHash"));
+    }
+
+    @Test
+    @DisplayName("Render events are not recorded unless enabled")
+    void testDisabledByDefault() throws Exception {
+        DistinctOn function = new DistinctOn();
+        Path file = directory.resolve("default.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.start();
+            function.render(null, Arrays.asList("e.department", "e"), null);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        assertTrue(RecordingFile.readAllEvents(file).stream()
+                .noneMatch(event -> event.getEventType().getName().equals(RENDER)));
+    }
+}
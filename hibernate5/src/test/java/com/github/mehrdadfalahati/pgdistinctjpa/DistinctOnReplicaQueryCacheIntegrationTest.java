@@ -0,0 +1,181 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.*;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read replica routing combined with the query cache. As in {@link DistinctOnReplicaRoutingIntegrationTest}, the
+ * "replica" holds other rows than the primary, with ids the primary does not use.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnReplicaQueryCacheIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Container
+    private static final PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("replicadb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static DistinctOnReplicaRouter router;
+
+    private static DistinctOnExecutor executor;
+
+    private static final DistinctOnSpec topSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private static final DistinctOnSpec lowestSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderBy("salary")
+            .orderBy("id")
+            .build();
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", primary.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", primary.getUsername());
+        configuration.setProperty("hibernate.connection.password", primary.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.cache.use_second_level_cache", "true");
+        configuration.setProperty("hibernate.cache.use_query_cache", "true");
+        configuration.setProperty("hibernate.cache.region.factory_class", "jcache");
+        configuration.setProperty("hibernate.javax.cache.missing_cache_strategy", "create");
+        configuration.setProperty("hibernate.generate_statistics", "true");
+        configuration.setProperty("javax.persistence.sharedCache.mode", "ALL");
+        configuration.setProperty("hibernate.cache.default_cache_concurrency_strategy", "read-write");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.persist(new Employee("John Doe", "Engineering", 80000, "2020-01-15"));
+            session.persist(new Employee("Jane Smith", "Engineering", 95000, "2019-03-20"));
+            session.persist(new Employee("Charlie Wilson", "Sales", 85000, "2018-11-05"));
+            session.getTransaction().commit();
+        }
+
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE employees (id bigserial PRIMARY KEY, name varchar(255), "
+                    + "department varchar(255), salary integer, hire_date varchar(255))");
+            statement.execute("INSERT INTO employees (id, name, department, salary, hire_date) VALUES "
+                    + "(101, 'Replica Engineer', 'Engineering', 99000, '2020-01-01'), "
+                    + "(102, 'Replica Seller', 'Sales', 88000, '2020-01-01')");
+        }
+
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(replica.getJdbcUrl());
+        dataSource.setUser(replica.getUsername());
+        dataSource.setPassword(replica.getPassword());
+        router = new DistinctOnReplicaRouter(dataSource);
+        executor = new DistinctOnExecutor().withQueryCache().withReadReplica(router);
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS employees");
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Results loaded from the replica are cached, a repeated query sends no statement")
+    void testReplicaResultIsCached() {
+        Statistics statistics = sessionFactory.getStatistics();
+        QueryCacheStatistics before = executor.queryCacheStatistics(sessionFactory);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("Replica Engineer", "Replica Seller"), names(executor.list(session, topSalary, Employee.class)));
+        }
+        long statements = statistics.getPrepareStatementCount();
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("Replica Engineer", "Replica Seller"), names(executor.list(session, topSalary, Employee.class)));
+        }
+
+        QueryCacheStatistics after = executor.queryCacheStatistics(sessionFactory);
+        assertEquals(before.getHitCount() + 1, after.getHitCount(), after.toString());
+        assertEquals(statements, statistics.getPrepareStatementCount());
+        assertEquals(2, router.routedCount());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("A result cached by a query on the primary is served without querying the replica")
+    void testPrimaryResultIsServedFromCache() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            assertEquals(List.of("John Doe", "Charlie Wilson"), names(executor.list(session, lowestSalary, Employee.class)));
+            session.getTransaction().commit();
+        }
+        QueryCacheStatistics before = executor.queryCacheStatistics(sessionFactory);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("John Doe", "Charlie Wilson"), names(executor.list(session, lowestSalary, Employee.class)));
+        }
+
+        assertEquals(before.getHitCount() + 1, executor.queryCacheStatistics(sessionFactory).getHitCount());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("A write on the primary invalidates results cached from the replica")
+    void testPrimaryWriteInvalidates() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.persist(new Employee("New Hire", "Sales", 50000, "2024-01-01"));
+            session.getTransaction().commit();
+        }
+        QueryCacheStatistics before = executor.queryCacheStatistics(sessionFactory);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("Replica Engineer", "Replica Seller"), names(executor.list(session, topSalary, Employee.class)));
+        }
+
+        QueryCacheStatistics after = executor.queryCacheStatistics(sessionFactory);
+        assertEquals(before.getHitCount(), after.getHitCount(), after.toString());
+        assertEquals(before.getMissCount() + 1, after.getMissCount(), after.toString());
+    }
+
+    private static List<String> names(List<Employee> employees) {
+        return employees.stream().map(Employee::getName).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnReplicaRouterTest {
+
+    // refuses every connection and counts the attempts
+    private static final class UnreachableDataSource extends PGSimpleDataSource {
+        private static final long serialVersionUID = 1L;
+
+        private int attempts;
+
+        UnreachableDataSource() {
+            setServerNames(new String[]{"localhost"});
+            setPortNumbers(new int[]{1});
+            setConnectTimeout(2);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            attempts++;
+            return super.getConnection();
+        }
+    }
+
+    @Test
+    @DisplayName("Rejects a missing data source and negative durations")
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnReplicaRouter(null));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnReplicaRouter(new UnreachableDataSource(),
+                Duration.ofSeconds(-1)));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnReplicaRouter(new UnreachableDataSource(),
+                Duration.ZERO, null, Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnReplicaRouter(new UnreachableDataSource(),
+                Duration.ZERO, Duration.ZERO, Duration.ofMillis(-1)));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnExecutor().withReadReplica(null));
+    }
+
+    @Test
+    @DisplayName("A connection failure falls back and skips the replica for the retry interval")
+    void testBackoffAfterFailure() {
+        UnreachableDataSource dataSource = new UnreachableDataSource();
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(dataSource, Duration.ofSeconds(1),
+                Duration.ZERO, Duration.ofMinutes(1));
+
+        assertNull(router.acquire());
+        assertNull(router.acquire());
+        assertEquals(1, dataSource.attempts);
+        assertEquals(2, router.fallbackCount());
+        assertEquals(0, router.routedCount());
+    }
+
+    @Test
+    @DisplayName("Without a retry interval every query tries the replica again")
+    void testNoBackoff() {
+        UnreachableDataSource dataSource = new UnreachableDataSource();
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(dataSource, Duration.ofSeconds(1),
+                Duration.ZERO, Duration.ZERO);
+
+        assertNull(router.acquire());
+        assertNull(router.acquire());
+        assertEquals(2, dataSource.attempts);
+    }
+}
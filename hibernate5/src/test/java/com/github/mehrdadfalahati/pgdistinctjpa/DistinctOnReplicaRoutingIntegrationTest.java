@@ -0,0 +1,256 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Read replica routing between two PostgreSQL instances. The "replica" holds other rows than the primary, so every
+ * result shows where the query ran.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnReplicaRoutingIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    @Container
+    private static final PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("replicadb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec topSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", primary.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", primary.getUsername());
+        configuration.setProperty("hibernate.connection.password", primary.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.persist(new Employee("John Doe", "Engineering", 80000, "2020-01-15"));
+            session.persist(new Employee("Jane Smith", "Engineering", 95000, "2019-03-20"));
+            session.persist(new Employee("Charlie Wilson", "Sales", 85000, "2018-11-05"));
+            session.getTransaction().commit();
+        }
+
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE employees (id bigserial PRIMARY KEY, name varchar(255), "
+                    + "department varchar(255), salary integer, hire_date varchar(255))");
+            statement.execute("INSERT INTO employees (name, department, salary, hire_date) VALUES "
+                    + "('Replica Engineer', 'Engineering', 99000, '2020-01-01'), "
+                    + "('Replica Seller', 'Sales', 88000, '2020-01-01')");
+        }
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+        try (Connection connection = DriverManager.getConnection(replica.getJdbcUrl(), replica.getUsername(), replica.getPassword());
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS employees");
+        }
+    }
+
+    private static PGSimpleDataSource replicaDataSource() {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(replica.getJdbcUrl());
+        dataSource.setUser(replica.getUsername());
+        dataSource.setPassword(replica.getPassword());
+        return dataSource;
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Queries outside a transaction run on the replica")
+    void testRoutedOutsideTransaction() {
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(replicaDataSource());
+        DistinctOnExecutor executor = new DistinctOnExecutor().withReadReplica(router);
+
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> results = executor.list(session, topSalary, Employee.class);
+
+            assertEquals(List.of("Replica Engineer", "Replica Seller"), names(results));
+            assertFalse(session.contains(results.get(0)), "Replica entities are detached");
+
+            DistinctOnPage<Employee> page = executor.page(session, topSalary, Employee.class, null, 1);
+            assertEquals(List.of("Replica Engineer"), names(page.getContent()));
+        }
+        assertEquals(2, router.routedCount());
+        assertEquals(0, router.fallbackCount());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Queries inside a transaction stay on the primary")
+    void testPrimaryInsideTransaction() {
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(replicaDataSource());
+        DistinctOnExecutor executor = new DistinctOnExecutor().withReadReplica(router);
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            List<Employee> results = executor.list(session, topSalary, Employee.class);
+            session.getTransaction().commit();
+
+            assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(results));
+        }
+        assertEquals(0, router.routedCount());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("A replica that is not in recovery reports no lag")
+    void testReplicationLagOfPrimaryServer() throws SQLException {
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(replicaDataSource());
+        try (Connection connection = replicaDataSource().getConnection()) {
+            assertEquals(Duration.ZERO, router.replicationLag(connection));
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Queries fall back to the primary while the replica lags more than the maximum")
+    void testFallbackOnLag() {
+        Duration[] lag = {Duration.ofMinutes(1)};
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(replicaDataSource(), Duration.ofSeconds(5),
+                Duration.ZERO, DistinctOnReplicaRouter.DEFAULT_RETRY_INTERVAL) {
+            @Override
+            protected Duration replicationLag(Connection connection) {
+                return lag[0];
+            }
+        };
+        DistinctOnExecutor executor = new DistinctOnExecutor().withReadReplica(router);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(executor.list(session, topSalary, Employee.class)));
+            assertEquals(1, router.fallbackCount());
+
+            lag[0] = Duration.ofSeconds(1);
+            assertEquals(List.of("Replica Engineer", "Replica Seller"), names(executor.list(session, topSalary, Employee.class)));
+            assertEquals(1, router.routedCount());
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Queries fall back to the primary when the replica cannot be reached, and skip it for the retry interval")
+    void testFallbackOnConnectionFailure() {
+        PGSimpleDataSource unreachable = replicaDataSource();
+        unreachable.setServerNames(new String[]{"localhost"});
+        unreachable.setPortNumbers(new int[]{1});
+        unreachable.setConnectTimeout(2);
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(unreachable, DistinctOnReplicaRouter.DEFAULT_MAX_LAG,
+                DistinctOnReplicaRouter.DEFAULT_LAG_CHECK_INTERVAL, Duration.ofMinutes(1));
+        DistinctOnExecutor executor = new DistinctOnExecutor().withReadReplica(router);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(executor.list(session, topSalary, Employee.class)));
+            assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(executor.list(session, topSalary, Employee.class)));
+        }
+        assertEquals(0, router.routedCount());
+        assertEquals(2, router.fallbackCount());
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("While the replica lags, queries skip it without connecting until the next lag check")
+    void testLaggingReplicaIsNotConnected() {
+        int[] connections = {0};
+        PGSimpleDataSource dataSource = new PGSimpleDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                connections[0]++;
+                return super.getConnection();
+            }
+        };
+        dataSource.setUrl(replica.getJdbcUrl());
+        dataSource.setUser(replica.getUsername());
+        dataSource.setPassword(replica.getPassword());
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(dataSource, Duration.ofSeconds(5),
+                Duration.ofMinutes(1), DistinctOnReplicaRouter.DEFAULT_RETRY_INTERVAL) {
+            @Override
+            protected Duration replicationLag(Connection connection) {
+                return Duration.ofMinutes(1);
+            }
+        };
+        DistinctOnExecutor executor = new DistinctOnExecutor().withReadReplica(router);
+
+        try (Session session = sessionFactory.openSession()) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(executor.list(session, topSalary, Employee.class)));
+            }
+        }
+        assertEquals(1, connections[0]);
+        assertEquals(3, router.fallbackCount());
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("A query that loses its replica connection reruns on the primary and the replica is skipped")
+    void testFallbackOnLostConnection() {
+        DistinctOnReplicaRouter router = new DistinctOnReplicaRouter(replicaDataSource(), DistinctOnReplicaRouter.DEFAULT_MAX_LAG,
+                Duration.ZERO, Duration.ofMinutes(1)) {
+            @Override
+            protected Duration replicationLag(Connection connection) throws SQLException {
+                Duration lag = super.replicationLag(connection);
+                // the connection drops between the lag check and the query
+                connection.close();
+                return lag;
+            }
+        };
+        DistinctOnExecutor executor = new DistinctOnExecutor().withReadReplica(router);
+
+        try (Session session = sessionFactory.openSession()) {
+            assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(executor.list(session, topSalary, Employee.class)));
+            assertEquals(1, router.routedCount());
+            assertEquals(1, router.fallbackCount());
+
+            assertEquals(List.of("Jane Smith", "Charlie Wilson"), names(executor.list(session, topSalary, Employee.class)));
+            assertEquals(1, router.routedCount());
+            assertEquals(2, router.fallbackCount());
+        }
+    }
+
+    private static List<String> names(List<Employee> employees) {
+        return employees.stream().map(Employee::getName).collect(Collectors.toList());
+    }
+}
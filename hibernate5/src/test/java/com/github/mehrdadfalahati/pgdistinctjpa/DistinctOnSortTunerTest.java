@@ -0,0 +1,129 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DistinctOnSortTunerTest {
+
+    private static final String SORT_OVER_SEQ_SCAN = String.join("\n",
+            "Unique  (cost=56556.90..58056.90 rows=1000 width=63) (actual time=203.003..263.481 rows=1000 loops=1)",
+            "  Buffers: local read=3704, temp read=8481 written=8522",
+            "  ->  Sort  (cost=56556.90..57306.90 rows=300000 width=63) (actual time=202.999..242.965 rows=300000 loops=1)",
+            "        Sort Key: k, v DESC",
+            "        Sort Method: external merge  Disk: 22632kB",
+            "        ->  Seq Scan on t  (cost=0.00..6704.00 rows=300000 width=63) (actual time=0.021..34.626 rows=300000 loops=1)",
+            "Planning Time: 0.163 ms",
+            "Execution Time: 265.738 ms");
+
+    private static final String SORT_OVER_INDEX_SCAN = String.join("\n",
+            "Unique  (cost=69527.04..71027.04 rows=4 width=63) (actual time=232.386..276.805 rows=4 loops=1)",
+            "  ->  Sort  (cost=69527.04..70277.04 rows=300000 width=63) (actual time=232.382..261.698 rows=300000 loops=1)",
+            "        Sort Key: k, v DESC",
+            "        Sort Method: external merge  Disk: 22632kB",
+            "        ->  Index Scan using t_k_idx on t  (cost=0.42..19674.14 rows=300000 width=63) (actual time=0.020..59.210 rows=300000 loops=1)",
+            "Execution Time: 278.469 ms");
+
+    private static final String INCREMENTAL_SORT = String.join("\n",
+            "Subquery Scan on x  (cost=30562.78..104812.57 rows=1500 width=71) (actual time=51.367..202.767 rows=3 loops=1)",
+            "  Filter: (x.rn = 1)",
+            "  ->  WindowAgg  (cost=30562.78..101062.57 rows=300000 width=71) (actual time=51.365..202.760 rows=3 loops=1)",
+            "        ->  Incremental Sort  (cost=30562.78..95812.57 rows=300000 width=63) (actual time=51.348..187.753 rows=300000 loops=1)",
+            "              Sort Key: u.k, u.v DESC",
+            "              Presorted Key: u.k",
+            "              Full-sort Groups: 3  Sort Method: quicksort  Average Memory: 32kB  Peak Memory: 32kB",
+            "              Pre-sorted Groups: 3  Sort Method: external merge  Average Disk: 7552kB  Peak Disk: 7552kB",
+            "              ->  Index Scan using u_k_idx on u  (cost=0.42..19147.65 rows=300000 width=63) (actual time=0.022..53.936 rows=300000 loops=1)",
+            "Execution Time: 203.432 ms");
+
+    private static final String IN_MEMORY = String.join("\n",
+            "Unique  (cost=46966.04..48466.04 rows=4 width=63) (actual time=222.262..297.451 rows=4 loops=1)",
+            "  ->  Sort  (cost=46966.04..47716.04 rows=300000 width=63) (actual time=222.259..276.426 rows=300000 loops=1)",
+            "        Sort Key: k, v DESC",
+            "        Sort Method: quicksort  Memory: 40945kB",
+            "        ->  Index Scan using t_k_idx on t  (cost=0.42..19674.14 rows=300000 width=63) (actual time=0.037..51.886 rows=300000 loops=1)",
+            "Execution Time: 299.648 ms");
+
+    @Test
+    @DisplayName("Plan nodes are parsed with their indentation and spill")
+    void testParse() {
+        List<DistinctOnSortTuner.PlanNode> nodes = DistinctOnSortTuner.parse(INCREMENTAL_SORT);
+        assertEquals(Arrays.asList("Subquery Scan on x", "WindowAgg", "Incremental Sort", "Index Scan using u_k_idx on u"),
+                nodes.stream().map(node -> node.type).collect(Collectors.toList()));
+        assertEquals(7552, nodes.get(2).spillKb);
+        assertEquals(0, nodes.get(3).spillKb);
+        assertTrue(nodes.get(3).indent > nodes.get(2).indent);
+
+        String hash = "HashAggregate  (cost=7454.00..7464.00 rows=1000 width=4) (actual time=65.681..65.764 rows=1000 loops=1)\n"
+                + "  Group Key: k\n"
+                + "  Batches: 5  Memory Usage: 4145kB  Disk Usage: 9000kB\n";
+        assertEquals(9000, DistinctOnSortTuner.parse(hash).get(0).spillKb);
+        String workers = "Gather Merge  (cost=1.00..2.00 rows=1 width=4) (actual time=1..2 rows=1 loops=1)\n"
+                + "  ->  Sort  (cost=1.00..2.00 rows=1 width=4) (actual time=1..2 rows=1 loops=3)\n"
+                + "        Sort Method: external merge  Disk: 1000kB\n"
+                + "        Worker 0:  Sort Method: external merge  Disk: 1200kB\n";
+        assertEquals(1200, DistinctOnSortTuner.parse(workers).get(1).spillKb);
+    }
+
+    @Test
+    @DisplayName("A spill sets work_mem to twice the spill, rounded up to a megabyte")
+    void testWorkMem() {
+        SortTuning tuning = DistinctOnSortTuner.decide(SORT_OVER_SEQ_SCAN, 4096, true, null, 1024 * 1024, 1);
+        assertEquals(22632, tuning.getSpillKb());
+        assertEquals(45 * 1024, tuning.getWorkMemKb());
+        assertNull(tuning.getIncrementalSort());
+        assertEquals(Collections.singletonList("SET LOCAL work_mem = '46080kB'"), tuning.statements());
+
+        // at least doubled, when the current work_mem already exceeds twice the spill
+        assertEquals(128 * 1024, DistinctOnSortTuner.decide(SORT_OVER_SEQ_SCAN, 64 * 1024, true, null, 1024 * 1024, 1).getWorkMemKb());
+        // incremental sort groups spill too
+        assertEquals(15 * 1024, DistinctOnSortTuner.decide(INCREMENTAL_SORT, 4096, true, null, 1024 * 1024, 1).getWorkMemKb());
+    }
+
+    @Test
+    @DisplayName("work_mem is capped, and not lowered once the limit is reached")
+    void testLimit() {
+        assertEquals(32 * 1024, DistinctOnSortTuner.decide(SORT_OVER_SEQ_SCAN, 4096, true, null, 32 * 1024, 1).getWorkMemKb());
+
+        SortTuning previous = new SortTuning(32 * 1024, null, 22632, 1);
+        SortTuning again = DistinctOnSortTuner.decide(SORT_OVER_SEQ_SCAN, 32 * 1024, true, previous, 32 * 1024, 2);
+        assertEquals(32 * 1024, again.getWorkMemKb());
+        assertEquals(2, again.getSampledAtMillis());
+    }
+
+    @Test
+    @DisplayName("Incremental sort is enabled for a spilling sort over an index scan")
+    void testIncrementalSort() {
+        assertEquals(Boolean.TRUE, DistinctOnSortTuner.decide(SORT_OVER_INDEX_SCAN, 4096, false, null, 1024 * 1024, 1).getIncrementalSort());
+        // already enabled, or no ordered input to build on
+        assertNull(DistinctOnSortTuner.decide(SORT_OVER_INDEX_SCAN, 4096, true, null, 1024 * 1024, 1).getIncrementalSort());
+        assertNull(DistinctOnSortTuner.decide(SORT_OVER_SEQ_SCAN, 4096, false, null, 1024 * 1024, 1).getIncrementalSort());
+    }
+
+    @Test
+    @DisplayName("An in-memory sort keeps the earlier settings")
+    void testInMemory() {
+        assertTrue(DistinctOnSortTuner.decide(IN_MEMORY, 4096, true, null, 1024 * 1024, 1).isEmpty());
+
+        SortTuning previous = new SortTuning(45 * 1024, Boolean.TRUE, 22632, 1);
+        SortTuning kept = DistinctOnSortTuner.decide(IN_MEMORY, 45 * 1024, true, previous, 1024 * 1024, 2);
+        assertEquals(0, kept.getSpillKb());
+        assertEquals(45 * 1024, kept.getWorkMemKb());
+        assertEquals(Arrays.asList("SET LOCAL work_mem = '46080kB'", "SET LOCAL enable_incremental_sort = on"), kept.statements());
+    }
+
+    @Test
+    @DisplayName("Invalid configuration is rejected")
+    void testValidation() {
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnSortTuner(Duration.ofSeconds(-1), 1024));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnSortTuner(Duration.ZERO, 16));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnExecutor().withSortTuning(null));
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Sort spill detection and per-shape work_mem tuning, on connections with a tiny work_mem.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnSortTuningIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    // no index on the ORDER BY, so PostgreSQL sorts all rows
+    private static final DistinctOnSpec topSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private static final DistinctOnSortTuner tuner = new DistinctOnSortTuner();
+    private static final DistinctOnExecutor executor = new DistinctOnExecutor().withSortTuning(tuner);
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.connection.options", "-c work_mem=64kB");
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 200), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 50000) g").executeUpdate();
+            session.createNativeQuery("ANALYZE employees").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("The first execution detects the spill and remembers a larger work_mem")
+    void testSampleDetectsSpill() {
+        String sql = DistinctOnStrategy.DISTINCT_ON.render(topSalary);
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> tuned = executor.list(session, topSalary, Employee.class);
+            List<Employee> plain = new DistinctOnExecutor().list(session, topSalary, Employee.class);
+
+            assertEquals(200, tuned.size());
+            assertEquals(ids(plain), ids(tuned));
+        }
+        SortTuning tuning = tuner.tuningFor(sql);
+        assertNotNull(tuning, tuner.getTunings().toString());
+        assertTrue(tuning.getSpillKb() > 0, tuning.toString());
+        assertTrue(tuning.getWorkMemKb() >= 2 * tuning.getSpillKb(), tuning.toString());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Later executions apply the setting with SET LOCAL inside the transaction")
+    void testSettingApplied() {
+        SortTuning tuning = tuner.tuningFor(DistinctOnStrategy.DISTINCT_ON.render(topSalary));
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            assertEquals("64kB", workMem(session));
+            executor.list(session, topSalary, Employee.class);
+            assertEquals(tuning.getWorkMemKb() / 1024 + "MB", workMem(session));
+            session.getTransaction().rollback();
+
+            // without a transaction the executor runs its own, the setting ends with it
+            executor.list(session, topSalary, Employee.class);
+            assertEquals("64kB", workMem(session));
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Resampling with the tuned setting finds no spill and keeps the setting")
+    void testResample() {
+        DistinctOnSortTuner resampling = new DistinctOnSortTuner(Duration.ZERO, DistinctOnSortTuner.DEFAULT_MAX_WORK_MEM_KB);
+        DistinctOnExecutor resamplingExecutor = new DistinctOnExecutor().withSortTuning(resampling);
+        String sql = DistinctOnStrategy.DISTINCT_ON.render(topSalary);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            resamplingExecutor.list(session, topSalary, Employee.class);
+            SortTuning first = resampling.tuningFor(sql);
+            assertTrue(first.getSpillKb() > 0, first.toString());
+
+            resamplingExecutor.list(session, topSalary, Employee.class);
+            SortTuning second = resampling.tuningFor(sql);
+            assertEquals(0, second.getSpillKb(), second.toString());
+            assertEquals(first.getWorkMemKb(), second.getWorkMemKb());
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Streams and parameterized filters are tuned too")
+    void testStreamWithParameters() {
+        DistinctOnSpec filtered = topSalary.toBuilder().where("salary >= :min").build();
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> listed;
+            try (Stream<Employee> stream = executor.stream(session, executor.createQuery(session, filtered, Employee.class)
+                    .setParameter("min", 10), DistinctOnExecutor.DEFAULT_FETCH_SIZE)) {
+                listed = stream.collect(Collectors.toList());
+            }
+            assertEquals(200, listed.size());
+        }
+        SortTuning tuning = tuner.tuningFor(DistinctOnStrategy.DISTINCT_ON.render(filtered));
+        assertNotNull(tuning);
+        assertTrue(tuning.getSpillKb() > 0, tuning.toString());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("A shape that sorts in memory gets no settings")
+    void testNoSpill() {
+        DistinctOnSpec small = topSalary.toBuilder().where("id <= 100").build();
+        try (Session session = sessionFactory.openSession()) {
+            executor.list(session, small, Employee.class);
+        }
+        SortTuning tuning = tuner.tuningFor(DistinctOnStrategy.DISTINCT_ON.render(small));
+        assertTrue(tuning.isEmpty(), tuning.toString());
+        assertFalse(tuner.needsTransaction(DistinctOnStrategy.DISTINCT_ON.render(small)));
+    }
+
+    private static String workMem(Session session) {
+        return (String) session.createNativeQuery("SHOW work_mem").getSingleResult();
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.QueryException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnStatementInspectorTest {
+
+    private static final String SELECT = "select employee0_.id as id1_0_, employee0_.department as departme2_0_ from employees employee0_";
+
+    @Test
+    @DisplayName("Marker function renders the distinct columns in a comment before an always-true literal")
+    void testMarkerRender() {
+        DistinctOnMarker marker = new DistinctOnMarker();
+
+        assertEquals("/*distinct_on:employee0_.department*/ true",
+                marker.render(null, Collections.singletonList("employee0_.department"), null));
+        assertEquals("/*distinct_on:employee0_.department,employee0_.name*/ true",
+                marker.render(null, Arrays.asList("employee0_.department", "employee0_.name"), null));
+        assertThrows(QueryException.class, () -> marker.render(null, Collections.emptyList(), null));
+    }
+
+    @Test
+    @DisplayName("Marker is moved into a DISTINCT ON clause after SELECT")
+    void testRewriteSingleMarker() {
+        String sql = SELECT + " where /*distinct_on:employee0_.department*/ true=true order by employee0_.department, employee0_.salary desc";
+
+        assertEquals("select distinct on (employee0_.department) employee0_.id as id1_0_, employee0_.department as departme2_0_"
+                        + " from employees employee0_ where true=true order by employee0_.department, employee0_.salary desc",
+                DistinctOnStatementInspector.rewrite(sql));
+    }
+
+    @Test
+    @DisplayName("Plain DISTINCT is replaced by DISTINCT ON")
+    void testRewriteReplacesDistinct() {
+        String sql = "select distinct employee0_.id as id1_0_ from employees employee0_ where /*distinct_on:employee0_.name*/ true=true";
+
+        assertEquals("select distinct on (employee0_.name) employee0_.id as id1_0_ from employees employee0_ where true=true",
+                DistinctOnStatementInspector.rewrite(sql));
+    }
+
+    @Test
+    @DisplayName("Markers in subqueries apply to the subquery SELECT")
+    void testRewriteSubquery() {
+        String sql = SELECT + " where /*distinct_on:lower(employee0_.department)*/ true=true and (employee0_.id in"
+                + " (select employee1_.id from employees employee1_ where /*distinct_on:employee1_.name*/ true=true))";
+
+        assertEquals("select distinct on (lower(employee0_.department)) employee0_.id as id1_0_, employee0_.department as departme2_0_"
+                        + " from employees employee0_ where true=true and (employee0_.id in"
+                        + " (select distinct on (employee1_.name) employee1_.id from employees employee1_ where true=true))",
+                DistinctOnStatementInspector.rewrite(sql));
+    }
+
+    @Test
+    @DisplayName("Parentheses, SELECT and markers inside string literals are ignored")
+    void testRewriteSkipsStringLiterals() {
+        String sql = "select concat(employee0_.name, ')') as col_0_0_, 'select (it''s' as col_1_0_ from employees employee0_"
+                + " where employee0_.name<>'/*distinct_on:x*/' and /*distinct_on:employee0_.department*/ true=true";
+
+        assertEquals("select distinct on (employee0_.department) concat(employee0_.name, ')') as col_0_0_, 'select (it''s' as col_1_0_"
+                        + " from employees employee0_ where employee0_.name<>'/*distinct_on:x*/' and true=true",
+                DistinctOnStatementInspector.rewrite(sql));
+    }
+
+    @Test
+    @DisplayName("Statements without a marker pass through untouched")
+    void testInspectWithoutMarker() {
+        DistinctOnStatementInspector inspector = new DistinctOnStatementInspector();
+        String sql = SELECT + " where employee0_.salary>?";
+
+        assertSame(sql, inspector.inspect(sql));
+        assertEquals(0, inspector.hitCount());
+        assertEquals(0, inspector.missCount());
+    }
+
+    @Test
+    @DisplayName("Rewrites are cached per SQL string")
+    void testInspectCachesRewrite() {
+        DistinctOnStatementInspector inspector = new DistinctOnStatementInspector();
+        String sql = SELECT + " where /*distinct_on:employee0_.department*/ true=true order by employee0_.department";
+
+        String first = inspector.inspect(sql);
+        String second = inspector.inspect(new String(sql));
+
+        assertTrue(first.startsWith("select distinct on (employee0_.department) "));
+        assertSame(first, second, "Second inspection should be served from the rewrite cache");
+        assertEquals(1, inspector.hitCount());
+        assertEquals(1, inspector.missCount());
+    }
+}
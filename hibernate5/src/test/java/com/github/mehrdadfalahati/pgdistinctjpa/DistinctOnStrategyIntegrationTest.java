@@ -0,0 +1,213 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every {@link DistinctOnStrategy} must return exactly the same entities as plain DISTINCT ON.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnStrategyIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        // 5,000 employees over 40 departments, with an index leading with the distinct column
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 40), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 5000) g").executeUpdate();
+            session.createNativeQuery("CREATE INDEX employees_department_salary_idx ON employees (department, salary DESC, id)").executeUpdate();
+            session.createNativeQuery("ANALYZE employees").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).collect(Collectors.toList());
+    }
+
+    private static void assertSameResults(DistinctOnSpec spec, DistinctOnStrategy strategy) {
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> expected = executor.list(session, spec, Employee.class, DistinctOnStrategy.DISTINCT_ON);
+            List<Employee> actual = executor.list(session, spec, Employee.class, strategy);
+
+            assertFalse(expected.isEmpty());
+            assertEquals(ids(expected), ids(actual), strategy + " should return the same rows in the same order as DISTINCT_ON");
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("SKIP_SCAN matches DISTINCT ON for the highest paid employee per department")
+    void testSkipScanMatchesDistinctOn() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .build();
+
+        assertSameResults(spec, DistinctOnStrategy.SKIP_SCAN);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("SKIP_SCAN matches DISTINCT ON with a filter and descending keys")
+    void testSkipScanMatchesDistinctOnWithFilter() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderByDesc("department")
+                .orderBy("salary")
+                .orderBy("id")
+                .where("salary > 50000")
+                .build();
+
+        assertSameResults(spec, DistinctOnStrategy.SKIP_SCAN);
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("SKIP_SCAN matches DISTINCT ON on multiple distinct columns")
+    void testSkipScanMatchesDistinctOnMultipleColumns() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department", "salary % 3")
+                .orderBy("department")
+                .orderBy("salary % 3")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .build();
+
+        assertSameResults(spec, DistinctOnStrategy.SKIP_SCAN);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("ROW_NUMBER and LATERAL match DISTINCT ON, including mixed key directions")
+    void testRowNumberAndLateralMatchDistinctOn() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department", "salary % 3")
+                .orderByDesc("department")
+                .orderBy("salary % 3")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .where("salary > 10000")
+                .build();
+
+        assertSameResults(spec, DistinctOnStrategy.ROW_NUMBER);
+        assertSameResults(spec, DistinctOnStrategy.LATERAL);
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Strategy selector reads catalog statistics and picks SKIP_SCAN for 40 groups once the key is NOT NULL")
+    void testSelectorUsesCatalogStatistics() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .build();
+        DistinctOnStrategySelector selector = new DistinctOnStrategySelector();
+
+        try (Session session = sessionFactory.openSession()) {
+            StrategyDecision nullable = selector.select(session, spec);
+
+            assertEquals(5000, nullable.getRowCount(), 1);
+            assertEquals(40, nullable.getEstimatedGroups(), 1);
+            assertEquals("employees_department_salary_idx", nullable.getOrderIndex());
+            assertFalse(nullable.getCosts().containsKey(DistinctOnStrategy.SKIP_SCAN), "A nullable key must not use SKIP_SCAN");
+            assertFalse(nullable.getCosts().containsKey(DistinctOnStrategy.LATERAL), "A nullable key must not use LATERAL");
+
+            session.beginTransaction();
+            session.createNativeQuery("ALTER TABLE employees ALTER COLUMN department SET NOT NULL").executeUpdate();
+            session.getTransaction().commit();
+            selector.invalidate("employees");
+
+            StrategyDecision decision = selector.select(session, spec);
+            System.out.println(decision);
+
+            assertEquals(DistinctOnStrategy.SKIP_SCAN, decision.getStrategy());
+
+            List<Employee> results = new DistinctOnExecutor(selector).list(session, spec, Employee.class);
+            assertEquals(40, results.size());
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Top 3 per department: LATERAL and SKIP_SCAN match ROW_NUMBER")
+    void testTopNPerGroupMatchesRowNumber() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees")
+                .distinctOn("department")
+                .orderBy("department")
+                .orderByDesc("salary")
+                .orderBy("id")
+                .topNPerGroup(3)
+                .build();
+        DistinctOnExecutor executor = new DistinctOnExecutor();
+
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> expected = executor.list(session, spec, Employee.class, DistinctOnStrategy.ROW_NUMBER);
+
+            assertEquals(120, expected.size(), "Should have three employees per department");
+            assertEquals(ids(expected), ids(executor.list(session, spec, Employee.class, DistinctOnStrategy.SKIP_SCAN)));
+            assertEquals(ids(expected), ids(executor.list(session, spec, Employee.class, DistinctOnStrategy.LATERAL)));
+            assertEquals(ids(expected), ids(executor.list(session, spec, Employee.class)), "Default executor should fall back to ROW_NUMBER");
+            assertEquals(DistinctOnStrategy.ROW_NUMBER, executor.strategyFor(session, spec));
+        }
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("SKIP_SCAN returns one managed entity per department")
+    void testSkipScanReturnsEntities() {
+        DistinctOnSpec spec = DistinctOnSpec.from("employees").distinctOn("department").build();
+
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> results = new DistinctOnExecutor(DistinctOnStrategy.SKIP_SCAN).list(session, spec, Employee.class);
+
+            assertEquals(40, results.size(), "Should have one employee per department");
+            assertTrue(session.contains(results.get(0)), "Results should be managed entities");
+        }
+    }
+}
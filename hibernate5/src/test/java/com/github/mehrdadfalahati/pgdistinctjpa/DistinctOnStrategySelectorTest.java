@@ -0,0 +1,185 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.DistinctOnSpec.SortKey;
+import com.github.mehrdadfalahati.pgdistinctjpa.TableProfile.IndexProfile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnStrategySelectorTest {
+
+    private final DistinctOnStrategySelector selector = new DistinctOnStrategySelector();
+
+    private final DistinctOnSpec latestPerUser = DistinctOnSpec.from("events")
+            .distinctOn("user_id")
+            .orderBy("user_id")
+            .orderByDesc("created_at")
+            .build();
+
+    private static TableProfile profile(double rows, double userIds, IndexProfile... indexes) {
+        Map<String, Double> nDistinct = new HashMap<>();
+        nDistinct.put("user_id", userIds);
+        nDistinct.put("created_at", -0.9);
+        return new TableProfile("events", rows, nDistinct, Collections.singleton("user_id"), Arrays.asList(indexes),
+                System.currentTimeMillis());
+    }
+
+    private static IndexProfile index(String name, SortKey... columns) {
+        return new IndexProfile(name, Arrays.asList(columns));
+    }
+
+    @Test
+    @DisplayName("Few groups in a huge indexed table choose SKIP_SCAN")
+    void testSkipScanForFewGroups() {
+        TableProfile profile = profile(500_000_000, 10_000,
+                index("events_user_created_idx", SortKey.asc("user_id"), SortKey.desc("created_at")));
+
+        StrategyDecision decision = selector.decide(latestPerUser, profile);
+
+        assertEquals(DistinctOnStrategy.SKIP_SCAN, decision.getStrategy());
+        assertEquals(10_000, decision.getEstimatedGroups());
+        assertEquals("events_user_created_idx", decision.getOrderIndex());
+        assertEquals("events_user_created_idx", decision.getLeadingIndex());
+        assertEquals(DistinctOnStrategy.values().length, decision.getCosts().size());
+    }
+
+    @Test
+    @DisplayName("Many groups choose DISTINCT_ON even with a matching index")
+    void testDistinctOnForManyGroups() {
+        TableProfile profile = profile(1_000_000, -0.5,
+                index("events_user_created_idx", SortKey.asc("user_id"), SortKey.desc("created_at")));
+
+        StrategyDecision decision = selector.decide(latestPerUser, profile);
+
+        assertEquals(DistinctOnStrategy.DISTINCT_ON, decision.getStrategy());
+        assertEquals(500_000, decision.getEstimatedGroups());
+    }
+
+    @Test
+    @DisplayName("Without an index DISTINCT_ON is chosen and SKIP_SCAN is not a candidate")
+    void testNoIndex() {
+        StrategyDecision decision = selector.decide(latestPerUser, profile(1_000_000, 50));
+
+        assertEquals(DistinctOnStrategy.DISTINCT_ON, decision.getStrategy());
+        assertFalse(decision.getCosts().containsKey(DistinctOnStrategy.SKIP_SCAN));
+        assertNull(decision.getLeadingIndex());
+        assertTrue(decision.getCosts().get(DistinctOnStrategy.ROW_NUMBER) > decision.getCosts().get(DistinctOnStrategy.DISTINCT_ON));
+    }
+
+    @Test
+    @DisplayName("Mixed key directions rule out SKIP_SCAN and choose LATERAL for few groups")
+    void testLateralForMixedDirections() {
+        DistinctOnSpec spec = DistinctOnSpec.from("events")
+                .distinctOn("user_id", "device_id")
+                .orderBy("user_id")
+                .orderByDesc("device_id")
+                .orderByDesc("created_at")
+                .build();
+        Map<String, Double> nDistinct = new HashMap<>();
+        nDistinct.put("user_id", 20.0);
+        nDistinct.put("device_id", 5.0);
+        TableProfile profile = new TableProfile("events", 10_000_000, nDistinct, new HashSet<>(Arrays.asList("user_id", "device_id")),
+                Collections.singletonList(
+                index("events_user_device_created_idx", SortKey.asc("user_id"), SortKey.desc("device_id"), SortKey.desc("created_at"))),
+                System.currentTimeMillis());
+
+        StrategyDecision decision = selector.decide(spec, profile);
+
+        assertEquals(DistinctOnStrategy.LATERAL, decision.getStrategy());
+        assertEquals(100, decision.getEstimatedGroups());
+        assertFalse(decision.getCosts().containsKey(DistinctOnStrategy.SKIP_SCAN));
+    }
+
+    @Test
+    @DisplayName("Nullable DISTINCT ON columns rule out LATERAL and SKIP_SCAN, which skip the NULL group")
+    void testNullableKeys() {
+        Map<String, Double> nDistinct = new HashMap<>();
+        nDistinct.put("user_id", 10_000.0);
+        TableProfile profile = new TableProfile("events", 500_000_000, nDistinct, Collections.singletonList(
+                index("events_user_created_idx", SortKey.asc("user_id"), SortKey.desc("created_at"))),
+                System.currentTimeMillis());
+
+        StrategyDecision decision = selector.decide(latestPerUser, profile);
+
+        assertEquals(DistinctOnStrategy.DISTINCT_ON, decision.getStrategy());
+        assertFalse(decision.getCosts().containsKey(DistinctOnStrategy.LATERAL));
+        assertFalse(decision.getCosts().containsKey(DistinctOnStrategy.SKIP_SCAN));
+        assertEquals(DistinctOnStrategy.ROW_NUMBER,
+                selector.decide(latestPerUser.toBuilder().topNPerGroup(5).build(), profile).getStrategy());
+    }
+
+    @Test
+    @DisplayName("Top-N-per-group never chooses DISTINCT_ON and prefers index probes over a full sort")
+    void testTopNPerGroup() {
+        TableProfile profile = profile(10_000_000, 1_000,
+                index("events_user_created_idx", SortKey.asc("user_id"), SortKey.desc("created_at")));
+
+        StrategyDecision decision = selector.decide(latestPerUser.toBuilder().topNPerGroup(5).build(), profile);
+
+        assertFalse(decision.getCosts().containsKey(DistinctOnStrategy.DISTINCT_ON));
+        assertNotEquals(DistinctOnStrategy.ROW_NUMBER, decision.getStrategy());
+
+        StrategyDecision unindexed = selector.decide(latestPerUser.toBuilder().topNPerGroup(5).build(), profile(1_000_000, -0.5));
+        assertEquals(DistinctOnStrategy.ROW_NUMBER, unindexed.getStrategy());
+    }
+
+    @Test
+    @DisplayName("Decision text carries the inputs for logging")
+    void testDecisionToString() {
+        TableProfile profile = profile(500_000_000, 10_000,
+                index("events_user_created_idx", SortKey.asc("user_id"), SortKey.desc("created_at")));
+
+        String text = selector.decide(latestPerUser, profile).toString();
+
+        assertTrue(text.contains("strategy=SKIP_SCAN"));
+        assertTrue(text.contains("rows=500000000"));
+        assertTrue(text.contains("groups=10000"));
+        assertTrue(text.contains("orderIndex=events_user_created_idx"));
+        assertTrue(text.contains("DISTINCT_ON="));
+    }
+
+    @Test
+    @DisplayName("Table profile estimates groups from n_distinct")
+    void testProfileEstimates() {
+        Map<String, Double> nDistinct = new HashMap<>();
+        nDistinct.put("user_id", 50.0);
+        nDistinct.put("session_id", -0.25);
+        TableProfile profile = new TableProfile("events", 1000, nDistinct, Collections.singleton("USER_ID"), Collections.emptyList(), 0);
+
+        assertEquals(50, profile.distinctValues("USER_ID"));
+        assertEquals(250, profile.distinctValues("session_id"));
+        assertEquals(TableProfile.DEFAULT_NUM_DISTINCT, profile.distinctValues("lower(name)"));
+        assertEquals(1000, profile.estimateGroups(Arrays.asList("user_id", "session_id")), "Groups are capped at the row count");
+        assertTrue(profile.isNotNull("user_id"));
+        assertFalse(profile.isNotNull("session_id"));
+    }
+
+    @Test
+    @DisplayName("Index matching accepts backward scans and any column order for the leading columns")
+    void testIndexMatching() {
+        IndexProfile index = index("idx", SortKey.asc("user_id"), SortKey.desc("created_at"), SortKey.asc("id"));
+        List<SortKey> backward = Arrays.asList(SortKey.desc("user_id"), SortKey.asc("created_at"));
+        List<SortKey> mixed = Arrays.asList(SortKey.asc("user_id"), SortKey.asc("created_at"));
+
+        assertTrue(index.supportsOrder(backward));
+        assertFalse(index.supportsOrder(mixed));
+        assertTrue(index.leadsWith(Arrays.asList("created_at", "user_id")));
+        assertFalse(index.leadsWith(Arrays.asList("user_id", "id")));
+    }
+
+    @Test
+    @DisplayName("Negative refresh interval is rejected")
+    void testRefreshInterval() {
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnStrategySelector(Duration.ofSeconds(-1)));
+        assertNotNull(new DistinctOnStrategySelector(Duration.ZERO));
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.query.NativeQuery;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streaming DISTINCT ON results through a server-side cursor.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnStreamingIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static SessionFactory sessionFactory;
+
+    private static final DistinctOnSpec spec = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private final DistinctOnExecutor executor = new DistinctOnExecutor();
+
+    @BeforeAll
+    static void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.generate_statistics", "true");
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+
+        // 30,000 employees over 10,000 departments
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 10000), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 30000) g").executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    private List<Long> expectedIds() {
+        try (Session session = sessionFactory.openSession()) {
+            return executor.list(session, spec, Employee.class).stream().map(Employee::getId).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("Streaming returns the same rows as getResultList without growing the persistence context")
+    void testStreamKeepsPersistenceContextFlat() {
+        AtomicInteger maxManaged = new AtomicInteger();
+
+        try (Session session = sessionFactory.openSession();
+             Stream<Employee> stream = executor.stream(session, spec, Employee.class, 100)) {
+            List<Long> ids = stream
+                    .peek(employee -> maxManaged.accumulateAndGet(session.getStatistics().getEntityCount(), Math::max))
+                    .map(Employee::getId)
+                    .collect(Collectors.toList());
+
+            assertEquals(10000, ids.size());
+            assertEquals(expectedIds(), ids);
+            assertEquals(1, maxManaged.get(), "Only the current entity should be managed");
+            assertEquals(0, session.getStatistics().getEntityCount());
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Stream opens a transaction for the cursor and ends it on close")
+    void testStreamTransaction() {
+        try (Session session = sessionFactory.openSession()) {
+            try (Stream<Employee> stream = executor.stream(session, spec, Employee.class)) {
+                assertTrue(session.getTransaction().isActive());
+                assertEquals(5, stream.limit(5).count());
+            }
+            assertFalse(session.getTransaction().isActive());
+
+            session.beginTransaction();
+            try (Stream<Employee> stream = executor.stream(session, spec, Employee.class)) {
+                assertEquals(10000, stream.count());
+            }
+            assertTrue(session.getTransaction().isActive(), "A caller's transaction must be left open");
+            session.getTransaction().rollback();
+        }
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Stateless session streams detached entities")
+    void testStatelessStream() {
+        try (StatelessSession session = sessionFactory.openStatelessSession();
+             Stream<Employee> stream = executor.stream(session, spec, Employee.class, 500)) {
+            List<Long> ids = stream.map(Employee::getId).collect(Collectors.toList());
+
+            assertEquals(expectedIds(), ids);
+        }
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Streaming a query with bound filter parameters")
+    void testStreamBoundQuery() {
+        DistinctOnSpec filtered = spec.toBuilder().where("salary >= :minSalary").build();
+
+        try (Session session = sessionFactory.openSession()) {
+            NativeQuery<Employee> query = executor.createQuery(session, filtered, Employee.class);
+            query.setParameter("minSalary", 99000);
+
+            try (Stream<Employee> stream = executor.stream(session, query, 50)) {
+                assertTrue(stream.allMatch(employee -> employee.getSalary() >= 99000));
+            }
+        }
+    }
+}
@@ -101,6 +101,19 @@ class DistinctOnUnitTest {
         }, "Should throw QueryException when no arguments provided");
     }
 
+    @Test
+    @DisplayName("Test repeated render is served from the fragment cache")
+    void testRenderUsesFragmentCache() {
+        List<String> arguments = Arrays.asList("e.department", "e");
+
+        String first = distinctOn.render(null, arguments, null);
+        String second = distinctOn.render(null, Arrays.asList("e.department", "e"), null);
+
+        assertSame(first, second, "Same argument shape should return the cached fragment");
+        assertEquals(1, distinctOn.getFragmentCache().hitCount());
+        assertEquals(1, distinctOn.getFragmentCache().missCount());
+    }
+
     @Test
     @DisplayName("Analyze what the correct SQL should look like")
     void analyzeCorrectSqlSyntax() {
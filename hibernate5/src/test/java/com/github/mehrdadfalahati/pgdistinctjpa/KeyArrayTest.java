@@ -0,0 +1,43 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyArrayTest {
+
+    @Test
+    @DisplayName("Array literal quotes every element and escapes quotes and backslashes")
+    void testLiteral() {
+        assertEquals("{\"1\",\"2\"}", KeyArray.literal(Arrays.asList(1L, 2L)));
+        assertEquals("{\"a b\",\"x\\\"y\",\"c\\\\d\",\"{,}\"}", KeyArray.literal(Arrays.asList("a b", "x\"y", "c\\d", "{,}")));
+        assertEquals("{\"2024-01-31\"}", KeyArray.literal(Collections.singletonList(LocalDate.of(2024, 1, 31))));
+        assertEquals("{}", KeyArray.literal(Collections.emptyList()));
+    }
+
+    @Test
+    @DisplayName("SQL type follows the key class")
+    void testSqlType() {
+        assertEquals("bigint", KeyArray.sqlType(Arrays.asList(1L, 2L)));
+        assertEquals("text", KeyArray.sqlType(Collections.singletonList("a")));
+        assertEquals("uuid", KeyArray.sqlType(Collections.singletonList(UUID.randomUUID())));
+        assertThrows(IllegalArgumentException.class, () -> KeyArray.sqlType(Arrays.asList(1L, 2)));
+        assertThrows(IllegalArgumentException.class, () -> KeyArray.sqlType(Collections.singletonList(new Object())));
+    }
+
+    @Test
+    @DisplayName("Keys are deduplicated, ordered types are sorted in ORDER BY direction")
+    void testDistinct() {
+        assertEquals(Arrays.asList(1L, 2L, 3L), KeyArray.distinct(Arrays.asList(3L, 1L, 2L, 3L), false));
+        assertEquals(Arrays.asList(3L, 2L, 1L), KeyArray.distinct(Arrays.asList(3L, 1L, 2L, 1L), true));
+        // text order depends on the collation, keep the caller's order
+        assertEquals(Arrays.asList("b", "a"), KeyArray.distinct(Arrays.asList("b", "a", "b"), false));
+        assertThrows(IllegalArgumentException.class, () -> KeyArray.distinct(Arrays.asList(1L, null), false));
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetTokenTest {
+
+    @Test
+    @DisplayName("Token round-trips typed key values")
+    void testRoundTrip() {
+        List<Object> key = Arrays.asList("Dept 7", 42, 7L, new BigDecimal("12.50"), Date.valueOf("2024-02-29"),
+                Timestamp.valueOf("2024-02-29 12:34:56.789"), UUID.randomUUID(), true);
+
+        String token = KeysetToken.encode(123, key);
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), "Token should be URL-safe");
+        assertEquals(key, KeysetToken.decode(token, 123, key.size()));
+    }
+
+    @Test
+    @DisplayName("Token of another spec or a corrupted token is rejected")
+    void testInvalidToken() {
+        String token = KeysetToken.encode(123, Collections.singletonList("Dept 7"));
+
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.decode(token, 456, 1));
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.decode(token, 123, 2));
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.decode(token.substring(0, token.length() - 2), 123, 1));
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.decode("not a token!", 123, 1));
+    }
+
+    @Test
+    @DisplayName("NULL and unsupported key values cannot be encoded")
+    void testUnsupportedValues() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.encode(1, Collections.singletonList(null)));
+        assertThrows(IllegalArgumentException.class, () -> KeysetToken.encode(1, Collections.singletonList(new Object())));
+    }
+}
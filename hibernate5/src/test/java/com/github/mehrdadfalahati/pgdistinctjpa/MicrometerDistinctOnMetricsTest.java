@@ -0,0 +1,75 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicrometerDistinctOnMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerDistinctOnMetrics metrics = new MicrometerDistinctOnMetrics(registry);
+    private final DistinctOnSpec spec = DistinctOnSpec.from("employees").distinctOn("department", "name").build();
+
+    @Test
+    @DisplayName("Queries are timed per shape, strategy and outcome")
+    void testQueryTimers() {
+        metrics.queryExecuted(spec, DistinctOnStrategy.LATERAL, TimeUnit.MILLISECONDS.toNanos(5), 40);
+        metrics.queryExecuted(spec, DistinctOnStrategy.LATERAL, TimeUnit.MILLISECONDS.toNanos(7), 42);
+        metrics.queryFailed(spec, DistinctOnStrategy.LATERAL, 1, new IllegalStateException());
+
+        Timer success = registry.get("distinct_on.query")
+                .tags("table", "employees", "distinct_on", "department,name", "strategy", "LATERAL", "outcome", "success")
+                .timer();
+        assertEquals(2, success.count());
+        assertEquals(12, success.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, registry.get("distinct_on.query").tag("outcome", "error").timer().count());
+        assertEquals(82, registry.get("distinct_on.query.rows").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Strategy decisions are counted")
+    void testStrategySelected() {
+        StrategyDecision decision = new StrategyDecision(DistinctOnStrategy.SKIP_SCAN, spec, 1000, 10, "idx", "idx",
+                new EnumMap<>(DistinctOnStrategy.class));
+
+        metrics.strategySelected(decision);
+        // every builder.register() passes the meter filters, later decisions must not register again
+        AtomicInteger registrations = new AtomicInteger();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                registrations.incrementAndGet();
+                return id;
+            }
+        });
+        metrics.strategySelected(decision);
+
+        assertEquals(2, registry.get("distinct_on.strategy.selected").tag("strategy", "SKIP_SCAN").counter().count());
+        assertEquals(0, registrations.get());
+    }
+
+    @Test
+    @DisplayName("Fragment cache statistics are read from the cache")
+    void testFragmentCache() {
+        DistinctOnFragmentCache cache = new DistinctOnFragmentCache();
+        metrics.bindFragmentCache(cache);
+
+        cache.render(Arrays.asList("e.department", "e"));
+        cache.render(Arrays.asList("e.department", "e"));
+        cache.render(Arrays.asList("e.name", "e"));
+
+        assertEquals(1, registry.get("distinct_on.fragment_cache.hits").functionCounter().count());
+        assertEquals(2, registry.get("distinct_on.fragment_cache.misses").functionCounter().count());
+        assertEquals(2, registry.get("distinct_on.fragment_cache.size").gauge().value());
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import org.hibernate.cfg.Configuration;
+
+/**
+ * {@link AbstractHibernateVersionBenchmark} on Hibernate 6, with the HQL rendered by the dialect's SQL AST translator.
+ */
+public class HibernateVersionBenchmark extends AbstractHibernateVersionBenchmark {
+
+    @Override
+    protected void configure(Configuration configuration) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.query.ReturnableType;
+import org.hibernate.query.sqm.function.AbstractSqmSelfRenderingFunctionDescriptor;
+import org.hibernate.query.sqm.produce.function.StandardArgumentsValidators;
+import org.hibernate.query.sqm.produce.function.StandardFunctionReturnTypeResolvers;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.spi.SqlAppender;
+import org.hibernate.sql.ast.tree.SqlAstNode;
+import org.hibernate.type.BasicType;
+
+import java.util.List;
+
+/**
+ * HQL and Criteria predicate that marks a query for DISTINCT ON, turned into a real clause by
+ * {@link DistinctOnSqlAstTranslator} when the SQL AST is rendered.
+ * <p>
+ * HQL usage: {@code SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department) = true ORDER BY e.department, e.salary DESC}
+ * <p>
+ * Criteria usage: {@code cb.isTrue(cb.function("DISTINCT_ON_KEYS", Boolean.class, root.get("department")))}
+ * <p>
+ * The function itself renders {@code true}, so the predicate is always true. Its arguments are rendered by the
+ * translator as the DISTINCT ON columns of the query it belongs to.
+ */
+public class DistinctOnMarker extends AbstractSqmSelfRenderingFunctionDescriptor {
+
+    public static final String NAME = "DISTINCT_ON_KEYS";
+
+    public DistinctOnMarker(BasicType<Boolean> booleanType) {
+        super(NAME, StandardArgumentsValidators.min(1), StandardFunctionReturnTypeResolvers.invariant(booleanType), null);
+    }
+
+    @Override
+    public void render(SqlAppender sqlAppender, List<? extends SqlAstNode> sqlAstArguments, ReturnableType<?> returnType,
+                       SqlAstTranslator<?> walker) {
+        sqlAppender.appendSql("true");
+    }
+}
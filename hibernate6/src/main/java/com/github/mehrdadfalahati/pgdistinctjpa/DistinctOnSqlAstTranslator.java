@@ -0,0 +1,86 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.dialect.PostgreSQLSqlAstTranslator;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.query.sqm.function.SelfRenderingFunctionSqlAstExpression;
+import org.hibernate.sql.ast.tree.SqlAstNode;
+import org.hibernate.sql.ast.tree.Statement;
+import org.hibernate.sql.ast.tree.expression.Expression;
+import org.hibernate.sql.ast.tree.predicate.BooleanExpressionPredicate;
+import org.hibernate.sql.ast.tree.predicate.ComparisonPredicate;
+import org.hibernate.sql.ast.tree.predicate.Junction;
+import org.hibernate.sql.ast.tree.predicate.Predicate;
+import org.hibernate.sql.ast.tree.predicate.SelfRenderingPredicate;
+import org.hibernate.sql.ast.tree.select.QueryPart;
+import org.hibernate.sql.ast.tree.select.QuerySpec;
+import org.hibernate.sql.ast.tree.select.SelectClause;
+import org.hibernate.sql.exec.spi.JdbcOperation;
+
+/**
+ * Renders {@code DISTINCT ON (...)} for query specs whose WHERE clause contains a {@link DistinctOnMarker}.
+ * <p>
+ * The columns are the marker's arguments, rendered like any other expression of the query, so they get the
+ * table aliases Hibernate chose. Every query spec is handled on its own, which makes markers in subqueries apply to
+ * the subquery. A plain {@code DISTINCT} on the same query is superseded by DISTINCT ON.
+ */
+public class DistinctOnSqlAstTranslator<T extends JdbcOperation> extends PostgreSQLSqlAstTranslator<T> {
+
+    public DistinctOnSqlAstTranslator(SessionFactoryImplementor sessionFactory, Statement statement) {
+        super(sessionFactory, statement);
+    }
+
+    /**
+     * Called right after {@code select } or {@code select distinct } was written, so the clause goes in front of the
+     * select list.
+     */
+    @Override
+    protected void visitSqlSelections(SelectClause selectClause) {
+        QueryPart queryPart = getCurrentQueryPart();
+        SelfRenderingFunctionSqlAstExpression marker = queryPart instanceof QuerySpec querySpec
+                ? findMarker(querySpec.getWhereClauseRestrictions())
+                : null;
+        if (marker != null) {
+            appendSql(selectClause.isDistinct() ? "on (" : "distinct on (");
+            String separator = "";
+            for (SqlAstNode argument : marker.getArguments()) {
+                appendSql(separator);
+                argument.accept(this);
+                separator = ",";
+            }
+            appendSql(") ");
+        }
+        super.visitSqlSelections(selectClause);
+    }
+
+    private static SelfRenderingFunctionSqlAstExpression findMarker(Predicate predicate) {
+        if (predicate instanceof Junction junction) {
+            // only a conjunction makes the marker apply to the whole query
+            if (junction.getNature() != Junction.Nature.CONJUNCTION) {
+                return null;
+            }
+            for (Predicate child : junction.getPredicates()) {
+                SelfRenderingFunctionSqlAstExpression marker = findMarker(child);
+                if (marker != null) {
+                    return marker;
+                }
+            }
+        } else if (predicate instanceof ComparisonPredicate comparison) {
+            SelfRenderingFunctionSqlAstExpression marker = asMarker(comparison.getLeftHandExpression());
+            return marker != null ? marker : asMarker(comparison.getRightHandExpression());
+        } else if (predicate instanceof BooleanExpressionPredicate booleanExpression && !booleanExpression.isNegated()) {
+            return asMarker(booleanExpression.getExpression());
+        } else if (predicate instanceof SelfRenderingPredicate selfRendering) {
+            // Criteria's isTrue() of a boolean function
+            return asMarker(selfRendering.getSelfRenderingExpression());
+        }
+        return null;
+    }
+
+    private static SelfRenderingFunctionSqlAstExpression asMarker(Expression expression) {
+        if (expression instanceof SelfRenderingFunctionSqlAstExpression function
+                && DistinctOnMarker.NAME.equalsIgnoreCase(function.getFunctionName())) {
+            return function;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.sql.ast.SqlAstTranslator;
+import org.hibernate.sql.ast.SqlAstTranslatorFactory;
+import org.hibernate.sql.ast.spi.StandardSqlAstTranslatorFactory;
+import org.hibernate.sql.ast.tree.Statement;
+import org.hibernate.sql.exec.spi.JdbcOperation;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Hibernate 6 dialect with the {@code DISTINCT_ON_KEYS} predicate. Unlike Hibernate 5 there is no SQL string
+ * rewriting: the DISTINCT ON clause is rendered from the SQL AST by {@link DistinctOnSqlAstTranslator}, so no
+ * statement inspector needs to be registered.
+ */
+public class PostgreSqlDistinctOnDialect extends PostgreSQLDialect {
+
+    @Override
+    public void initializeFunctionRegistry(FunctionContributions functionContributions) {
+        super.initializeFunctionRegistry(functionContributions);
+        functionContributions.getFunctionRegistry().register(DistinctOnMarker.NAME, new DistinctOnMarker(
+                functionContributions.getTypeConfiguration().getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN)));
+    }
+
+    @Override
+    public SqlAstTranslatorFactory getSqlAstTranslatorFactory() {
+        return new StandardSqlAstTranslatorFactory() {
+            @Override
+            protected <T extends JdbcOperation> SqlAstTranslator<T> buildTranslator(
+                    SessionFactoryImplementor sessionFactory, Statement statement) {
+                return new DistinctOnSqlAstTranslator<>(sessionFactory, statement);
+            }
+        };
+    }
+}
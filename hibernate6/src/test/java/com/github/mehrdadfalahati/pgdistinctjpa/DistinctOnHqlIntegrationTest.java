@@ -0,0 +1,106 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HQL and Criteria queries using DISTINCT_ON_KEYS(...), rendered as SELECT DISTINCT ON by {@link DistinctOnSqlAstTranslator}.
+ */
+public class DistinctOnHqlIntegrationTest extends AbstractDistinctOnHqlIntegrationTest {
+
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+
+    @Override
+    protected void configure(Configuration configuration) {
+        configuration.setStatementInspector((StatementInspector) sql -> {
+            statements.add(sql);
+            return sql;
+        });
+    }
+
+    // runs after the shared test data is inserted
+    @BeforeEach
+    void clearStatements() {
+        statements.clear();
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("The clause is rendered from the SQL AST with the query's own aliases")
+    void testRenderedSql() {
+        try (Session session = sessionFactory.openSession()) {
+            session.createQuery(
+                    "SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department, e.name) = true ORDER BY e.department, e.name",
+                    Employee.class
+            ).getResultList();
+        }
+
+        String sql = statements.get(statements.size() - 1).toLowerCase(Locale.ROOT);
+        assertTrue(sql.matches("select distinct on \\((\\w+)\\.department,\\1\\.name\\) .*"), sql);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Criteria queries use the same marker")
+    void testCriteria() {
+        try (Session session = sessionFactory.openSession()) {
+            CriteriaBuilder cb = session.getCriteriaBuilder();
+            CriteriaQuery<Employee> query = cb.createQuery(Employee.class);
+            Root<Employee> root = query.from(Employee.class);
+            query.select(root)
+                    .where(cb.isTrue(cb.function(DistinctOnMarker.NAME, Boolean.class, root.get("department"))),
+                            cb.greaterThan(root.get("salary"), 70000))
+                    .orderBy(cb.asc(root.get("department")), cb.asc(root.get("salary")));
+
+            List<Employee> results = session.createQuery(query).getResultList();
+
+            assertEquals(List.of("Bob Johnson", "Eve Adams", "Charlie Wilson"),
+                    results.stream().map(Employee::getName).toList());
+        }
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("A marker in a subquery applies to the subquery and DISTINCT ON supersedes DISTINCT")
+    void testSubqueryAndDistinct() {
+        try (Session session = sessionFactory.openSession()) {
+            List<String> names = session.createQuery(
+                    "SELECT e.name FROM Employee e WHERE e.id IN ("
+                            + "SELECT t.id FROM Employee t WHERE DISTINCT_ON_KEYS(t.department) = true ORDER BY t.department, t.salary) "
+                            + "ORDER BY e.name",
+                    String.class
+            ).getResultList();
+            assertEquals(List.of("Alice Brown", "Bob Johnson", "Diana Prince"), names);
+
+            List<String> departments = session.createQuery(
+                    "SELECT DISTINCT e.department FROM Employee e WHERE DISTINCT_ON_KEYS(e.department) = true ORDER BY e.department",
+                    String.class
+            ).getResultList();
+            assertEquals(List.of("Engineering", "HR", "Sales"), departments);
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("DISTINCT_ON_KEYS without arguments is rejected")
+    void testDistinctOnKeysNoArguments() {
+        try (Session session = sessionFactory.openSession()) {
+            assertThrows(Exception.class, () -> session.createQuery(
+                    "SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS() = true", Employee.class).getResultList());
+        }
+    }
+}
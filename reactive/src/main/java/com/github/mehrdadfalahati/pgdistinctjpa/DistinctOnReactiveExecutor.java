@@ -0,0 +1,309 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import io.r2dbc.spi.Statement;
+import reactor.adapter.JdkFlowAdapter;
+import reactor.core.publisher.Flux;
+
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+/**
+ * Runs {@link DistinctOnSpec} requests over R2DBC instead of JDBC, so that no thread blocks while the query runs.
+ * The SQL is rendered by the same {@link DistinctOnStrategy} as for the Hibernate {@code DistinctOnExecutor}, this
+ * module only needs {@code pg-distinct-jpa-core} and {@code org.postgresql:r2dbc-postgresql}.
+ * <pre>{@code
+ * DistinctOnReactiveExecutor executor = new DistinctOnReactiveExecutor(connectionFactory);
+ * Flow.Publisher<LatestState> states = executor.publish(spec, DistinctOnProjection.of(LatestState.class));
+ * }</pre>
+ * Rows are fetched {@code fetchSize} at a time through a suspended portal, and the next batch is only requested when
+ * the subscriber has signalled demand for it, so a slow subscriber holds at most one batch. Every subscription runs
+ * the query on its own connection, closed when the publisher completes, fails or is cancelled.
+ * <p>
+ * There are no entities without a Hibernate session: rows map to a {@link DistinctOnProjection} or a function of the
+ * row. The filter's named parameters are sent as {@code $n} bind markers.
+ */
+public class DistinctOnReactiveExecutor {
+
+    /**
+     * Rows fetched per round trip.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final Set<String> POSITIONAL_KEYWORDS = Set.of("SELECT", "WHERE", "AND", "OR", "NOT", "IN", "IS",
+            "LIKE", "ILIKE", "BETWEEN", "WHEN", "THEN", "ELSE", "LIMIT", "OFFSET", "FETCH", "VALUES", "SET", "ON", "BY",
+            "HAVING", "RETURNING", "AS", "ANY", "ALL");
+
+    private final ConnectionFactory connectionFactory;
+    private final DistinctOnStrategy strategy;
+
+    public DistinctOnReactiveExecutor(ConnectionFactory connectionFactory) {
+        this(connectionFactory, DistinctOnStrategy.DISTINCT_ON);
+    }
+
+    public DistinctOnReactiveExecutor(ConnectionFactory connectionFactory, DistinctOnStrategy strategy) {
+        if (connectionFactory == null) {
+            throw new IllegalArgumentException("Connection factory must not be null");
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("Strategy must not be null");
+        }
+        this.connectionFactory = connectionFactory;
+        this.strategy = strategy;
+    }
+
+    public DistinctOnStrategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * The strategy used for the spec, {@link DistinctOnStrategy#ROW_NUMBER} instead of a fixed
+     * {@link DistinctOnStrategy#DISTINCT_ON} for top-N-per-group specs, like {@code DistinctOnExecutor#strategyFor}.
+     */
+    public DistinctOnStrategy strategyFor(DistinctOnSpec spec) {
+        if (strategy == DistinctOnStrategy.DISTINCT_ON && spec.getRowsPerGroup() > 1) {
+            return DistinctOnStrategy.ROW_NUMBER;
+        }
+        return strategy;
+    }
+
+    public <R> Flow.Publisher<R> publish(DistinctOnSpec spec, DistinctOnProjection<R> projection) {
+        return publish(spec, projection, Collections.emptyMap(), DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Selects only the projection's columns and builds one instance per row.
+     *
+     * @param parameters values of the named parameters of the spec's filter
+     * @throws IllegalArgumentException if a parameter has no value or the fetch size is not positive
+     */
+    public <R> Flow.Publisher<R> publish(DistinctOnSpec spec, DistinctOnProjection<R> projection, Map<String, ?> parameters,
+                                         int fetchSize) {
+        List<Class<?>> columnTypes = projection.getColumnTypes();
+        Class<?>[] types = new Class<?>[columnTypes.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = MethodType.methodType(columnTypes.get(i)).wrap().returnType();
+        }
+        return publish(strategyFor(spec).render(spec, projection.getSelectList()), parameters, fetchSize, row -> {
+            Object[] values = new Object[types.length];
+            for (int i = 0; i < types.length; i++) {
+                values[i] = row.get(i, types[i]);
+            }
+            return projection.map(values);
+        });
+    }
+
+    /**
+     * Selects all columns of the spec's table and maps every row with the given function.
+     *
+     * @param parameters values of the named parameters of the spec's filter
+     * @throws IllegalArgumentException if a parameter has no value or the fetch size is not positive
+     */
+    public <R> Flow.Publisher<R> publish(DistinctOnSpec spec, Map<String, ?> parameters, int fetchSize,
+                                         Function<? super Readable, ? extends R> mapper) {
+        return publish(strategyFor(spec).render(spec), parameters, fetchSize, mapper);
+    }
+
+    private <R> Flow.Publisher<R> publish(String sql, Map<String, ?> parameters, int fetchSize,
+                                          Function<? super Readable, ? extends R> mapper) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        }
+        List<String> names = new ArrayList<>();
+        String bindable = toBindMarkers(sql, names);
+        Object[] values = new Object[names.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = parameters.get(names.get(i));
+            if (values[i] == null) {
+                throw new IllegalArgumentException("No value for parameter :" + names.get(i));
+            }
+        }
+        Flux<R> rows = Flux.usingWhen(connectionFactory.create(),
+                connection -> {
+                    Statement statement = connection.createStatement(bindable).fetchSize(fetchSize);
+                    for (int i = 0; i < values.length; i++) {
+                        statement.bind(i, values[i]);
+                    }
+                    return Flux.from(statement.execute()).concatMap(result -> result.map(mapper));
+                },
+                Connection::close,
+                (connection, error) -> connection.close(),
+                Connection::close);
+        return JdkFlowAdapter.publisherToFlowPublisher(rows);
+    }
+
+    /**
+     * Replaces the named parameters by {@code $1..$n}, the same name by the same marker, and adds the names in marker
+     * order. Quoted literals and identifiers, {@code E'...'} escape strings, dollar-quoted strings, {@code --} and
+     * {@code /* *}{@code /} comments and {@code ::} casts are left alone.
+     * <p>
+     * A {@code ?} between two operands is PostgreSQL's jsonb key operator, like {@code ?|} and {@code ?&}, and is kept.
+     * Any other {@code ?}, including one after a keyword such as {@code LIMIT} or {@code AND}, is taken for a positional
+     * parameter. The check is lexical, it does not parse the SQL.
+     *
+     * @throws IllegalArgumentException if the SQL has positional {@code ?} parameters
+     */
+    static String toBindMarkers(String sql, List<String> names) {
+        StringBuilder bindable = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            int skip = skipLiteralOrComment(sql, i);
+            if (skip > i) {
+                bindable.append(sql, i, skip);
+                i = skip;
+            } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+                bindable.append("::");
+                i += 2;
+            } else if (c == ':' && i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    end++;
+                }
+                String name = sql.substring(i + 1, end);
+                int index = names.indexOf(name);
+                if (index < 0) {
+                    names.add(name);
+                    index = names.size() - 1;
+                }
+                bindable.append('$').append(index + 1);
+                i = end;
+            } else if (c == '?' && !isJsonbOperator(sql, i)) {
+                throw new IllegalArgumentException("Positional parameters are not supported, use named parameters: " + sql);
+            } else {
+                bindable.append(c);
+                i++;
+            }
+        }
+        return bindable.toString();
+    }
+
+    /**
+     * The end of the literal or comment starting at {@code i}, or {@code i} if there is none. An unterminated one
+     * extends to the end of the SQL.
+     */
+    private static int skipLiteralOrComment(String sql, int i) {
+        char c = sql.charAt(i);
+        boolean wordStart = i == 0 || !isIdentifierPart(sql.charAt(i - 1));
+        if (c == '\'' || c == '"') {
+            // a doubled quote continues the literal
+            int end = i + 1;
+            while (end < sql.length()) {
+                if (sql.charAt(end) == c) {
+                    if (end + 1 < sql.length() && sql.charAt(end + 1) == c) {
+                        end += 2;
+                        continue;
+                    }
+                    return end + 1;
+                }
+                end++;
+            }
+            return sql.length();
+        }
+        if ((c == 'E' || c == 'e') && wordStart && i + 1 < sql.length() && sql.charAt(i + 1) == '\'') {
+            int end = i + 2;
+            while (end < sql.length()) {
+                char e = sql.charAt(end);
+                if (e == '\\') {
+                    end += 2;
+                } else if (e == '\'' && end + 1 < sql.length() && sql.charAt(end + 1) == '\'') {
+                    end += 2;
+                } else if (e == '\'') {
+                    return end + 1;
+                } else {
+                    end++;
+                }
+            }
+            return sql.length();
+        }
+        if (c == '-' && sql.startsWith("--", i)) {
+            int end = sql.indexOf('\n', i);
+            return end < 0 ? sql.length() : end + 1;
+        }
+        if (c == '/' && sql.startsWith("/*", i)) {
+            // block comments nest in PostgreSQL
+            int depth = 0;
+            int end = i;
+            while (end < sql.length()) {
+                if (sql.startsWith("/*", end)) {
+                    depth++;
+                    end += 2;
+                } else if (sql.startsWith("*/", end)) {
+                    end += 2;
+                    if (--depth == 0) {
+                        return end;
+                    }
+                } else {
+                    end++;
+                }
+            }
+            return sql.length();
+        }
+        if (c == '$' && wordStart) {
+            // $tag$ ... $tag$, the tag is empty or an identifier; $1 is a bind marker
+            int tagEnd = i + 1;
+            if (tagEnd < sql.length() && Character.isDigit(sql.charAt(tagEnd))) {
+                return i;
+            }
+            while (tagEnd < sql.length() && isIdentifierPart(sql.charAt(tagEnd)) && sql.charAt(tagEnd) != '$') {
+                tagEnd++;
+            }
+            if (tagEnd >= sql.length() || sql.charAt(tagEnd) != '$') {
+                return i;
+            }
+            String tag = sql.substring(i, tagEnd + 1);
+            int close = sql.indexOf(tag, tagEnd + 1);
+            return close < 0 ? sql.length() : close + tag.length();
+        }
+        return i;
+    }
+
+    /**
+     * Whether the {@code ?} at {@code i} is a jsonb operator: {@code ?|}, {@code ?&}, or {@code ?} with an operand on
+     * both sides.
+     */
+    private static boolean isJsonbOperator(String sql, int i) {
+        if (i + 1 < sql.length() && (sql.charAt(i + 1) == '|' || sql.charAt(i + 1) == '&')) {
+            return true;
+        }
+        int before = i - 1;
+        while (before >= 0 && Character.isWhitespace(sql.charAt(before))) {
+            before--;
+        }
+        int after = i + 1;
+        while (after < sql.length() && Character.isWhitespace(sql.charAt(after))) {
+            after++;
+        }
+        if (before < 0 || after >= sql.length() || after == i + 1 && Character.isDigit(sql.charAt(after))) {
+            return false;
+        }
+        char left = sql.charAt(before);
+        char right = sql.charAt(after);
+        boolean operandBefore = isIdentifierPart(left) || left == ')' || left == ']' || left == '\'' || left == '"';
+        boolean operandAfter = isIdentifierPart(right) || right == '\'' || right == '"' || right == '(' || right == ':';
+        return operandBefore && operandAfter && !isKeywordBefore(sql, before);
+    }
+
+    // a positional parameter after LIMIT, OFFSET, IN, AND ... is preceded by a keyword, not an operand
+    private static boolean isKeywordBefore(String sql, int end) {
+        int start = end;
+        while (start > 0 && isIdentifierPart(sql.charAt(start - 1))) {
+            start--;
+        }
+        String word = sql.substring(start, end + 1).toUpperCase(Locale.ROOT);
+        return POSITIONAL_KEYWORDS.contains(word);
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+/**
+ * Projection of the top salary row of a department.
+ */
+public record DepartmentTopSalary(String department, String name, int salary) {
+}
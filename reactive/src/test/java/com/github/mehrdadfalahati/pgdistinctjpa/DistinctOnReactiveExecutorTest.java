@@ -0,0 +1,92 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistinctOnReactiveExecutorTest {
+
+    @Test
+    @DisplayName("Named parameters become $n bind markers, repeated names share one")
+    void testBindMarkers() {
+        List<String> names = new ArrayList<>();
+        String sql = DistinctOnReactiveExecutor.toBindMarkers(
+                "SELECT * FROM t WHERE a >= :min AND (b = :name OR c = :min) AND d = CAST(:day AS date)", names);
+
+        assertEquals("SELECT * FROM t WHERE a >= $1 AND (b = $2 OR c = $1) AND d = CAST($3 AS date)", sql);
+        assertEquals(Arrays.asList("min", "name", "day"), names);
+    }
+
+    @Test
+    @DisplayName("Casts, quoted literals and identifiers are left alone")
+    void testLiteralsUntouched() {
+        List<String> names = new ArrayList<>();
+        String sql = DistinctOnReactiveExecutor.toBindMarkers(
+                "SELECT \"a:b\" FROM t WHERE x::text = ':not' AND y = :value", names);
+
+        assertEquals("SELECT \"a:b\" FROM t WHERE x::text = ':not' AND y = $1", sql);
+        assertEquals(Collections.singletonList("value"), names);
+    }
+
+    @Test
+    @DisplayName("Comments are left alone, block comments nest")
+    void testCommentsUntouched() {
+        List<String> names = new ArrayList<>();
+        String sql = DistinctOnReactiveExecutor.toBindMarkers(
+                "SELECT * FROM t -- :line comment?\nWHERE /* :block /* :nested? */ :still */ a = :value", names);
+
+        assertEquals("SELECT * FROM t -- :line comment?\nWHERE /* :block /* :nested? */ :still */ a = $1", sql);
+        assertEquals(Collections.singletonList("value"), names);
+    }
+
+    @Test
+    @DisplayName("Escape strings, doubled quotes and dollar-quoted strings are left alone")
+    void testEscapeAndDollarQuotedStringsUntouched() {
+        List<String> names = new ArrayList<>();
+        String sql = DistinctOnReactiveExecutor.toBindMarkers(
+                "SELECT E'it\\'s :a?', 'it''s :b', $$ :c? $$, $tag$ $$ :d $tag$ FROM t WHERE a = :value AND c$d$ = 1", names);
+
+        assertEquals("SELECT E'it\\'s :a?', 'it''s :b', $$ :c? $$, $tag$ $$ :d $tag$ FROM t WHERE a = $1 AND c$d$ = 1", sql);
+        assertEquals(Collections.singletonList("value"), names);
+    }
+
+    @Test
+    @DisplayName("jsonb ?, ?| and ?& operators are kept")
+    void testJsonbOperators() {
+        List<String> names = new ArrayList<>();
+        String sql = DistinctOnReactiveExecutor.toBindMarkers(
+                "SELECT * FROM t WHERE data ? 'key' AND data ?| array['a', 'b'] AND data->'tags' ?& :tags AND (data) ? :key",
+                names);
+
+        assertEquals("SELECT * FROM t WHERE data ? 'key' AND data ?| array['a', 'b'] AND data->'tags' ?& $1 AND (data) ? $2", sql);
+        assertEquals(Arrays.asList("tags", "key"), names);
+    }
+
+    @Test
+    @DisplayName("Positional parameters are rejected")
+    void testPositionalRejected() {
+        for (String sql : Arrays.asList("SELECT * FROM t WHERE a = ?1", "SELECT * FROM t WHERE a = ?",
+                "SELECT * FROM t WHERE a IN (?, ?)", "SELECT * FROM t LIMIT ?", "SELECT * FROM t WHERE a BETWEEN ? AND 10")) {
+            assertThrows(IllegalArgumentException.class, () -> DistinctOnReactiveExecutor.toBindMarkers(sql, new ArrayList<>()), sql);
+        }
+    }
+
+    @Test
+    @DisplayName("Top-N specs fall back to ROW_NUMBER with a fixed DISTINCT_ON strategy")
+    void testStrategyFor() {
+        DistinctOnReactiveExecutor executor = new DistinctOnReactiveExecutor(
+                ConnectionFactories.get("r2dbc:postgresql://test@localhost/testdb"));
+        DistinctOnSpec spec = DistinctOnSpec.from("employees").distinctOn("department").build();
+
+        assertEquals(DistinctOnStrategy.DISTINCT_ON, executor.strategyFor(spec));
+        assertEquals(DistinctOnStrategy.ROW_NUMBER, executor.strategyFor(spec.toBuilder().topNPerGroup(3).build()));
+        assertThrows(IllegalArgumentException.class, () -> new DistinctOnReactiveExecutor(null));
+    }
+}
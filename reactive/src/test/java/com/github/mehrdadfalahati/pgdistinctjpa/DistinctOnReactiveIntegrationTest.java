@@ -0,0 +1,203 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.adapter.JdkFlowAdapter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The same specs over R2DBC, compared with equivalent hand-written queries over JDBC.
+ */
+@Testcontainers
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DistinctOnReactiveIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    private static DistinctOnReactiveExecutor reactive;
+
+    private static final DistinctOnSpec topSalary = DistinctOnSpec.from("employees")
+            .distinctOn("department")
+            .orderBy("department")
+            .orderByDesc("salary")
+            .orderBy("id")
+            .build();
+
+    private static final DistinctOnProjection<DepartmentTopSalary> projection = DistinctOnProjection.of(DepartmentTopSalary.class);
+
+    @BeforeAll
+    static void setUp() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE employees (id bigserial PRIMARY KEY, name varchar(255), "
+                    + "department varchar(255), salary integer, hire_date varchar(255))");
+            statement.execute("INSERT INTO employees (name, department, salary, hire_date) "
+                    + "SELECT 'Employee ' || g, 'Dept ' || (g % 5000), (g * 7919) % 100000, '2020-01-01' "
+                    + "FROM generate_series(1, 20000) g");
+        }
+
+        ConnectionFactoryOptions options = ConnectionFactoryOptions.parse("r2dbc:" + postgres.getJdbcUrl().substring("jdbc:".length()))
+                .mutate()
+                .option(ConnectionFactoryOptions.USER, postgres.getUsername())
+                .option(ConnectionFactoryOptions.PASSWORD, postgres.getPassword())
+                .build();
+        reactive = new DistinctOnReactiveExecutor(ConnectionFactories.get(options));
+    }
+
+    @AfterAll
+    static void tearDown() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS employees");
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("A projection over R2DBC returns the rows of the JDBC executor")
+    void testProjection() throws SQLException {
+        List<DepartmentTopSalary> expected = topSalaries("SELECT DISTINCT ON (department) department, name, salary "
+                + "FROM employees ORDER BY department, salary DESC, id");
+
+        List<DepartmentTopSalary> actual = collect(reactive.publish(topSalary, projection));
+
+        assertEquals(5000, actual.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("Named parameters are bound and top-N specs use ROW_NUMBER")
+    void testParametersAndTopN() throws SQLException {
+        DistinctOnSpec spec = topSalary.toBuilder()
+                .where("salary >= :minSalary AND department IN (:first, :second)")
+                .topNPerGroup(2)
+                .build();
+        Map<String, Object> parameters = Map.of("minSalary", 10000, "first", "Dept 7", "second", "Dept 8");
+
+        List<DepartmentTopSalary> expected = topSalaries("SELECT department, name, salary FROM ("
+                + "SELECT *, row_number() OVER (PARTITION BY department ORDER BY salary DESC, id) AS rn FROM employees "
+                + "WHERE salary >= 10000 AND department IN ('Dept 7', 'Dept 8')) ranked "
+                + "WHERE rn <= 2 ORDER BY department, salary DESC, id");
+
+        List<DepartmentTopSalary> actual = collect(reactive.publish(spec, projection, parameters, 1));
+
+        assertEquals(4, actual.size());
+        assertEquals(expected, actual);
+        assertThrows(IllegalArgumentException.class, () -> reactive.publish(spec, projection, Collections.emptyMap(), 1));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Rows can be mapped with a function of the row")
+    void testRowMapper() throws SQLException {
+        List<Long> ids = collect(reactive.publish(topSalary, Collections.emptyMap(), 100, row -> row.get("id", Long.class)));
+
+        List<Long> expected = new ArrayList<>();
+        try (Connection connection = connect();
+             ResultSet rows = connection.createStatement().executeQuery(
+                     "SELECT DISTINCT ON (department) id FROM employees ORDER BY department, salary DESC, id")) {
+            while (rows.next()) {
+                expected.add(rows.getLong(1));
+            }
+        }
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("A subscriber only receives what it requested and cancelling releases the connection")
+    void testDemand() throws InterruptedException, SQLException {
+        List<DepartmentTopSalary> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstBatch = new CountDownLatch(3);
+        boolean[] terminated = {false};
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+
+        reactive.publish(topSalary, projection, Collections.emptyMap(), 10).subscribe(new Flow.Subscriber<DepartmentTopSalary>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(3);
+            }
+
+            @Override
+            public void onNext(DepartmentTopSalary item) {
+                received.add(item);
+                firstBatch.countDown();
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                terminated[0] = true;
+            }
+
+            @Override
+            public void onComplete() {
+                terminated[0] = true;
+            }
+        });
+
+        assertTrue(firstBatch.await(10, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals(3, received.size(), "no rows beyond the demand");
+        assertFalse(terminated[0]);
+
+        subscription[0].cancel();
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (r2dbcConnections() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, r2dbcConnections());
+    }
+
+    private static long r2dbcConnections() throws SQLException {
+        try (Connection connection = connect();
+             ResultSet count = connection.createStatement().executeQuery(
+                     "SELECT count(*) FROM pg_stat_activity WHERE application_name = 'r2dbc-postgresql'")) {
+            count.next();
+            return count.getLong(1);
+        }
+    }
+
+    private static List<DepartmentTopSalary> topSalaries(String sql) throws SQLException {
+        List<DepartmentTopSalary> rows = new ArrayList<>();
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                rows.add(new DepartmentTopSalary(resultSet.getString(1), resultSet.getString(2), resultSet.getInt(3)));
+            }
+        }
+        return rows;
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    private static <T> List<T> collect(Flow.Publisher<T> publisher) {
+        return JdkFlowAdapter.flowPublisherToFlux(publisher).collectList().block(Duration.ofSeconds(30));
+    }
+}
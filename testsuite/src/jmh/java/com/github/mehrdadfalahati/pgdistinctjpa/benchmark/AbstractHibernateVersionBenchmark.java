@@ -0,0 +1,62 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.Employee;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The highest paid employee of every department through HQL and through a native query mapped to the entity. Each
+ * Hibernate module runs it as {@code HibernateVersionBenchmark}, run both and compare their
+ * {@code target/jmh-result.json}. Needs a PostgreSQL database, see {@link BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class AbstractHibernateVersionBenchmark {
+
+    private static final String HQL = "SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department) = true "
+            + "ORDER BY e.department, e.salary DESC, e.id";
+    private static final String SQL = "SELECT DISTINCT ON (department) * FROM employees ORDER BY department, salary DESC, id";
+
+    @Param({"100", "10000"})
+    public int departments;
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * Adds the module's settings, e.g. a statement inspector.
+     */
+    protected abstract void configure(Configuration configuration);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sessionFactory = BenchmarkDatabase.open(100_000, departments, this::configure);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public List<Employee> hql() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createQuery(HQL, Employee.class).getResultList();
+        }
+    }
+
+    @Benchmark
+    public List<Employee> nativeQuery() {
+        try (Session session = sessionFactory.openSession()) {
+            return session.createNativeQuery(SQL, Employee.class).getResultList();
+        }
+    }
+}
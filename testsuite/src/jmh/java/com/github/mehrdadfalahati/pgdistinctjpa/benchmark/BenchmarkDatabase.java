@@ -0,0 +1,72 @@
+package com.github.mehrdadfalahati.pgdistinctjpa.benchmark;
+
+import com.github.mehrdadfalahati.pgdistinctjpa.Employee;
+import com.github.mehrdadfalahati.pgdistinctjpa.PostgreSqlDistinctOnDialect;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import java.util.function.Consumer;
+
+/**
+ * Session factory over a real PostgreSQL for the benchmarks that execute queries, with the {@code employees} test
+ * table recreated and filled on every trial. The database is configured with the system properties
+ * {@code benchmark.jdbc.url}, {@code benchmark.jdbc.user} and {@code benchmark.jdbc.password}. Connections come from a
+ * HikariCP pool of the given size. Shared by the hibernate5 and hibernate6 modules.
+ */
+final class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    static SessionFactory open(int rows, int departments) {
+        return open(rows, departments, configuration -> {
+        });
+    }
+
+    /**
+     * @param customizer applies additional settings, e.g. a statement inspector
+     */
+    static SessionFactory open(int rows, int departments, Consumer<Configuration> customizer) {
+        return open(System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/postgres"),
+                System.getProperty("benchmark.jdbc.user", "postgres"),
+                System.getProperty("benchmark.jdbc.password", ""),
+                64, rows, departments, customizer);
+    }
+
+    static SessionFactory open(String url, String user, String password, int poolSize, int rows, int departments) {
+        return open(url, user, password, poolSize, rows, departments, configuration -> {
+        });
+    }
+
+    private static SessionFactory open(String url, String user, String password, int poolSize, int rows, int departments,
+                                       Consumer<Configuration> customizer) {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", url);
+        configuration.setProperty("hibernate.connection.username", user);
+        configuration.setProperty("hibernate.connection.password", password);
+        // HikariCP blocks a thread until a connection is free, Hibernate's built-in pool fails instead
+        configuration.setProperty("hibernate.connection.provider_class", "org.hibernate.hikaricp.internal.HikariCPConnectionProvider");
+        configuration.setProperty("hibernate.hikari.maximumPoolSize", String.valueOf(poolSize));
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.addAnnotatedClass(Employee.class);
+        customizer.accept(configuration);
+
+        SessionFactory sessionFactory = configuration.buildSessionFactory();
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("INSERT INTO employees (name, department, salary, hire_date) "
+                            + "SELECT 'Employee ' || g, 'Dept ' || (g % :departments), (CAST(g AS bigint) * 7919) % 100000, '2020-01-01' "
+                            + "FROM generate_series(1, :rows) g")
+                    .setParameter("departments", departments)
+                    .setParameter("rows", rows)
+                    .executeUpdate();
+            session.createNativeQuery("CREATE INDEX employees_department_salary_idx ON employees (department, salary DESC, id)").executeUpdate();
+            session.createNativeQuery("ANALYZE employees").executeUpdate();
+            session.getTransaction().commit();
+        }
+        return sessionFactory;
+    }
+}
@@ -1,9 +1,16 @@
 package com.github.mehrdadfalahati.pgdistinctjpa;
 
-import javax.persistence.*;
+import ${persistence.package}.*;
 
+/**
+ * The test entity of both Hibernate modules, copied with {@code javax.persistence} or {@code jakarta.persistence}
+ * imports by the build. The queries are compiled by the Hibernate 5 module only.
+ */
 @Entity
 @Table(name = "employees")
+@DistinctOnQuery(name = "topSalaryPerDepartment", columns = "department", orderBy = {"department", "salary DESC", "id"})
+@DistinctOnQuery(name = "topSalaryRows", columns = "department", orderBy = {"department", "salary DESC", "id"},
+        strategy = DistinctOnStrategy.ROW_NUMBER, where = "salary >= :minSalary", resultType = DepartmentTopSalary.class)
 public class Employee {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,121 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HQL queries using DISTINCT_ON_KEYS(...), shared by the hibernate5 and hibernate6 modules. Each module's
+ * {@code DistinctOnHqlIntegrationTest} sets up how the marker becomes SQL and adds the tests of its mechanism.
+ */
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public abstract class AbstractDistinctOnHqlIntegrationTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("testdb")
+            .withUsername("test")
+            .withPassword("test");
+
+    protected SessionFactory sessionFactory;
+
+    /**
+     * Adds the module's settings, e.g. a statement inspector.
+     */
+    protected abstract void configure(Configuration configuration);
+
+    @BeforeAll
+    void setUp() {
+        Configuration configuration = new Configuration();
+        configuration.setProperty("hibernate.dialect", PostgreSqlDistinctOnDialect.class.getName());
+        configuration.setProperty("hibernate.connection.driver_class", "org.postgresql.Driver");
+        configuration.setProperty("hibernate.connection.url", postgres.getJdbcUrl());
+        configuration.setProperty("hibernate.connection.username", postgres.getUsername());
+        configuration.setProperty("hibernate.connection.password", postgres.getPassword());
+        configuration.setProperty("hibernate.hbm2ddl.auto", "create-drop");
+        configuration.setProperty("hibernate.show_sql", "true");
+        configure(configuration);
+
+        configuration.addAnnotatedClass(Employee.class);
+
+        sessionFactory = configuration.buildSessionFactory();
+    }
+
+    @AfterAll
+    void tearDown() {
+        if (sessionFactory != null) {
+            sessionFactory.close();
+        }
+    }
+
+    @BeforeEach
+    void insertTestData() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+
+            session.persist(new Employee("John Doe", "Engineering", 80000, "2020-01-15"));
+            session.persist(new Employee("Jane Smith", "Engineering", 95000, "2019-03-20"));
+            session.persist(new Employee("Bob Johnson", "Engineering", 75000, "2021-06-10"));
+
+            session.persist(new Employee("Alice Brown", "Sales", 70000, "2020-05-12"));
+            session.persist(new Employee("Charlie Wilson", "Sales", 85000, "2018-11-05"));
+
+            session.persist(new Employee("Diana Prince", "HR", 65000, "2021-02-28"));
+            session.persist(new Employee("Eve Adams", "HR", 72000, "2019-08-15"));
+
+            session.getTransaction().commit();
+        }
+    }
+
+    @AfterEach
+    void cleanData() {
+        try (Session session = sessionFactory.openSession()) {
+            session.beginTransaction();
+            session.createNativeQuery("DELETE FROM employees", Employee.class).executeUpdate();
+            session.getTransaction().commit();
+        }
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("HQL DISTINCT ON returns the highest paid employee entity per department")
+    void testHqlDistinctOnSingleColumn() {
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> results = session.createQuery(
+                    "SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department) = true ORDER BY e.department, e.salary DESC",
+                    Employee.class
+            ).getResultList();
+
+            assertEquals(3, results.size(), "Should have 3 results (one per department)");
+            assertEquals("Jane Smith", results.get(0).getName());
+            assertEquals("Eve Adams", results.get(1).getName());
+            assertEquals("Charlie Wilson", results.get(2).getName());
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("HQL DISTINCT ON combines with other predicates, parameters and paging")
+    void testHqlDistinctOnWithFilterAndLimit() {
+        try (Session session = sessionFactory.openSession()) {
+            List<Employee> results = session.createQuery(
+                    "SELECT e FROM Employee e WHERE DISTINCT_ON_KEYS(e.department) = true AND e.salary < :max ORDER BY e.department, e.salary DESC",
+                    Employee.class
+            ).setParameter("max", 90000).setMaxResults(2).getResultList();
+
+            assertEquals(2, results.size());
+            assertEquals("John Doe", results.get(0).getName());
+            assertEquals("Eve Adams", results.get(1).getName());
+        }
+    }
+}
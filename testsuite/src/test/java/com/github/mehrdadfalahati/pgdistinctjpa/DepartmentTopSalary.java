@@ -0,0 +1,7 @@
+package com.github.mehrdadfalahati.pgdistinctjpa;
+
+/**
+ * Result type of the generated {@code Employee_DistinctOn.topSalaryRows} query.
+ */
+public record DepartmentTopSalary(String department, String name, int salary) {
+}
@@ -48,7 +48,9 @@ public class DistinctOnIntegrationTest {
         }
     }
 
+    // save and createQuery(String) are deprecated in Hibernate 6
     @BeforeEach
+    @SuppressWarnings("deprecation")
     void insertTestData() {
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
@@ -69,6 +71,7 @@ public class DistinctOnIntegrationTest {
     }
 
     @AfterEach
+    @SuppressWarnings("deprecation")
     void cleanData() {
         try (Session session = sessionFactory.openSession()) {
             session.beginTransaction();
@@ -145,6 +148,7 @@ public class DistinctOnIntegrationTest {
             // Execute raw SQL to see what the expected result should be
             String sql = "SELECT DISTINCT ON (department) * FROM employees ORDER BY department, salary DESC";
 
+            @SuppressWarnings({"unchecked", "deprecation"})
             List<Object[]> results = session.createNativeQuery(sql).getResultList();
 
             System.out.println("Results from raw SQL DISTINCT ON:");
@@ -161,24 +165,6 @@ public class DistinctOnIntegrationTest {
         }
     }
 
-    @Test
-    @Order(4)
-    @DisplayName("Test DISTINCT ON error handling - no arguments")
-    void testDistinctOnNoArguments() {
-        try (Session session = sessionFactory.openSession()) {
-            // This should throw an error as DISTINCT_ON requires arguments
-            String hql = "SELECT DISTINCT_ON() FROM Employee e";
-
-            assertThrows(Exception.class, () -> {
-                session.createQuery(hql, Employee.class).getResultList();
-            }, "DISTINCT_ON without arguments should throw an exception");
-
-        } catch (Exception e) {
-            // Expected to fail
-            System.out.println("Correctly caught exception for no arguments: " + e.getMessage());
-        }
-    }
-
     @Test
     @Order(5)
     @DisplayName("Verify database container is running")